@@ -143,5 +143,50 @@ module.exports = [
         options: tsLoaderOptions
       }
     ]
+  },
+  {
+    test: /resultSpillWorker\.ts/,
+    use: [
+      {
+        loader: 'worker-loader',
+        options: {
+          name: 'result-spill-worker-[hash].js'
+        }
+      },
+      {
+        loader: 'ts-loader',
+        options: tsLoaderOptions
+      }
+    ]
+  },
+  {
+    test: /csvExportWorker\.ts/,
+    use: [
+      {
+        loader: 'worker-loader',
+        options: {
+          name: 'csv-export-worker-[hash].js'
+        }
+      },
+      {
+        loader: 'ts-loader',
+        options: tsLoaderOptions
+      }
+    ]
+  },
+  {
+    test: /forceSimulationWorker\.ts/,
+    use: [
+      {
+        loader: 'worker-loader',
+        options: {
+          name: 'force-simulation-worker-[hash].js'
+        }
+      },
+      {
+        loader: 'ts-loader',
+        options: tsLoaderOptions
+      }
+    ]
   }
 ]
@@ -53,6 +53,10 @@ module.exports = {
         helpers.sourcePath,
         'neo4j-arc/graph-visualization'
       ),
+      'neo4j-arc/graph-visualization/worker$': path.resolve(
+        helpers.sourcePath,
+        'neo4j-arc/graph-visualization/worker'
+      ),
       'neo4j-arc/common$': path.resolve(helpers.sourcePath, 'neo4j-arc/common'),
       'neo4j-arc/cypher-language-support$': path.resolve(
         helpers.sourcePath,
@@ -37,6 +37,8 @@ module.exports = {
       '<rootDir>/node_modules/monaco-editor/esm/vs/editor/editor.main.js',
     '^neo4j-arc/graph-visualization$':
       '<rootDir>/src/neo4j-arc/graph-visualization',
+    '^neo4j-arc/graph-visualization/worker$':
+      '<rootDir>/src/neo4j-arc/graph-visualization/worker',
     '^neo4j-arc/common$': '<rootDir>/src/neo4j-arc/common'
   },
   modulePaths: ['<rootDir>/src', '<rootDir>/src/shared'],
@@ -60,3 +60,27 @@ declare module 'shared/services/bolt/boltWorker' {
 
   export default WebpackWorker
 }
+
+declare module 'shared/services/resultSpillWorker' {
+  class WebpackWorker extends Worker {
+    constructor()
+  }
+
+  export default WebpackWorker
+}
+
+declare module 'shared/services/exporting/csvExportWorker' {
+  class WebpackWorker extends Worker {
+    constructor()
+  }
+
+  export default WebpackWorker
+}
+
+declare module 'shared/services/forceSimulationWorker' {
+  class WebpackWorker extends Worker {
+    constructor()
+  }
+
+  export default WebpackWorker
+}
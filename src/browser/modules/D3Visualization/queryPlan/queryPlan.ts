@@ -124,15 +124,7 @@ function queryPlan(this: any, element: any) {
     }[] = []
 
     const wordWrap = function (string: string, className: string) {
-      const canvas = document.createElement('canvas')
-      const canvas2DContext = canvas.getContext('2d')
-      const measure = (text: string) =>
-        measureText(
-          text,
-          fixedWidthFont,
-          10,
-          <CanvasRenderingContext2D>canvas2DContext
-        )
+      const measure = (text: string) => measureText(text, fixedWidthFont, 10)
 
       const words = string.split(/([^a-zA-Z\d])/)
 
@@ -102,6 +102,30 @@ const visualSettings = [
             'The timeout in milliseconds when establishing a connection to Neo4j.',
           type: 'input'
         }
+      },
+      {
+        minBoltWorkers: {
+          displayName: 'Minimum query workers',
+          tooltip:
+            'Number of workers started and connected ahead of the first queries.',
+          type: 'input'
+        }
+      },
+      {
+        maxBoltWorkers: {
+          displayName: 'Maximum query workers',
+          tooltip:
+            'Max number of queries run at the same time. Further queries wait for a free worker.',
+          type: 'input'
+        }
+      },
+      {
+        boltWorkerIdleTimeout: {
+          displayName: 'Idle query worker timeout (ms)',
+          tooltip:
+            'Workers above the minimum are stopped after being idle this long. 0 keeps them.',
+          type: 'input'
+        }
       }
     ]
   },
@@ -115,6 +139,13 @@ const visualSettings = [
             'Max number of result frames. When reached, old frames gets retired.'
         }
       },
+      {
+        maxResultsMemory: {
+          displayName: 'Result memory budget (MB)',
+          tooltip:
+            'Approximate memory kept for query results. When reached, results of the least recently viewed frames are dropped and can be restored from the frame.'
+        }
+      },
       {
         maxHistory: {
           displayName: 'Max history length',
@@ -128,6 +159,14 @@ const visualSettings = [
           tooltip: 'Automatically scroll stream to top on new frames.',
           type: 'checkbox'
         }
+      },
+      {
+        cacheReadResults: {
+          displayName: 'Reuse read query results',
+          tooltip:
+            'Re-running a read query returns the previous result until a write query is run from this browser. Changes made by other clients are not seen.',
+          type: 'checkbox'
+        }
       }
     ]
   },
@@ -35,12 +35,10 @@ import {
 import {
   getBodyAndStatusBarMessages,
   getRecordsToDisplayInTable,
-  resultHasTruncatedFields,
-  stringifyResultArray,
-  transformResultRecordsToResultArray
+  resultHasTruncatedFields
 } from './helpers'
+import { getTextRows } from './resultCells'
 import Ellipsis from 'browser-components/Ellipsis'
-import { stringModifier } from 'services/bolt/cypherTypesFormatting'
 import { shallowEquals } from 'services/utils'
 import { GlobalState } from 'shared/globalState'
 import { BrowserRequestResult } from 'shared/modules/requests/requestsDuck'
@@ -111,12 +109,7 @@ export class AsciiViewComponent extends Component<
     if (!hasRecords) return
 
     const records = getRecordsToDisplayInTable(props.result, props.maxRows)
-    const serializedRows =
-      stringifyResultArray(
-        stringModifier,
-        transformResultRecordsToResultArray(records, maxFieldItems),
-        true
-      ) || []
+    const serializedRows = getTextRows(records, maxFieldItems)
     this.setState({ serializedRows })
     const maxColWidth = asciitable.maxColumnWidth(serializedRows)
 
@@ -110,4 +110,41 @@ describe('CypherFrame', () => {
     expect(getByText(/Code/i)).not.toBeNull()
     expect(queryByText(/Error/)).toBeNull()
   })
+  test('renders streamed records while the request is pending', () => {
+    // Given
+    const record = { keys: ['name'], _fields: ['Molly'], get: () => 'Molly' }
+    const streamingProps = createProps('pending', undefined)
+    streamingProps.request.streamedRecords = [record, record] as any
+    streamingProps.request.streamedCount = 2
+
+    // When
+    const { getAllByText, getByText, queryByTestId } = render(
+      withProvider(store, <CypherFrame {...streamingProps} />)
+    )
+
+    // Then
+    expect(queryByTestId('spinner')).toBeNull()
+    expect(getAllByText(/Molly/i)).toHaveLength(2)
+    expect(getByText(/2 records received/i)).not.toBeNull()
+  })
+  test('offers to restore evicted read query results', () => {
+    // Given
+    const onFetchMore = jest.fn()
+    const evictedProps = {
+      ...createProps('success', undefined),
+      onFetchMore
+    }
+    evictedProps.request.evicted = { bytes: 3 * 1024 * 1024, queryType: 'r' }
+
+    // When
+    const { getByTestId, getByText, queryByText } = render(
+      withProvider(store, <CypherFrame {...evictedProps} />)
+    )
+    getByTestId('restoreResultButton').click()
+
+    // Then
+    expect(getByText(/3.0 MB/)).not.toBeNull()
+    expect(queryByText(/Table/i)).toBeNull()
+    expect(onFetchMore).toHaveBeenCalledWith(evictedProps.frame, 11)
+  })
 })
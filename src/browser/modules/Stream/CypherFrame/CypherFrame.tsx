@@ -19,7 +19,7 @@
  */
 import { saveAs } from 'file-saver'
 import { map } from 'lodash'
-import { Record as Neo4jRecord } from 'neo4j-driver'
+import { Record as Neo4jRecord, QueryResult } from 'neo4j-driver'
 import React, { Component } from 'react'
 import { connect } from 'react-redux'
 import { Dispatch } from 'redux'
@@ -27,7 +27,9 @@ import { Dispatch } from 'redux'
 import {
   AlertIcon,
   AsciiIcon,
+  CancelIcon,
   CodeIcon,
+  DoubleDownIcon,
   ErrorIcon,
   PlanIcon,
   SpinnerIcon,
@@ -38,38 +40,65 @@ import {
 import FrameBodyTemplate from '../../Frame/FrameBodyTemplate'
 import FrameSidebar from '../../Frame/FrameSidebar'
 import { BaseFrameProps } from '../Stream'
-import { SpinnerContainer, StyledStatsBarContainer } from '../styled'
+import {
+  SpinnerContainer,
+  StyledCsvExportProgress,
+  StyledRightPartial,
+  StyledStatsBar,
+  StyledStatsBarContainer
+} from '../styled'
 import { AsciiStatusbar, AsciiView } from './AsciiView'
 import { CancelView } from './CancelView'
 import { CodeStatusbar, CodeView } from './CodeView'
 import { ErrorsStatusbar } from './ErrorsView/ErrorsStatusbar'
 import { ErrorsView } from './ErrorsView/ErrorsView'
+import { EvictedView } from './EvictedView'
 import { PlanStatusbar, PlanView } from './PlanView'
+import { QueryTimingsInfo } from './QueryTimingsInfo'
 import RelatableView, {
   RelatableStatusbar
 } from './RelatableView/relatable-view'
+import { SpilledTableView } from './SpilledTableView'
 import { VisualizationConnectedBus } from './VisualizationView/VisualizationView'
 import { WarningsStatusbar, WarningsView } from './WarningsView'
 import {
+  canFetchMoreRecords,
+  getResultWithinRowLimit,
   initialView,
+  isResultPartial,
   recordToJSONMapper,
   resultHasNodes,
   resultHasPlan,
   resultHasRows,
   resultHasWarnings,
-  resultIsError,
-  stringifyResultArray,
-  transformResultRecordsToResultArray
+  resultIsError
 } from './helpers'
+import { getCsvRows } from './resultCells'
 import Centered from 'browser-components/Centered'
 import Display from 'browser-components/Display'
-import { CypherFrameButton } from 'browser-components/buttons'
-import { StyledFrameBody } from 'browser/modules/Frame/styled'
-import { csvFormat, stringModifier } from 'services/bolt/cypherTypesFormatting'
+import { CypherFrameButton, FrameButton } from 'browser-components/buttons'
+import {
+  StyledFrameBody,
+  StyledFrameTitlebarButtonSection
+} from 'browser/modules/Frame/styled'
+import { stringModifier } from 'services/bolt/cypherTypesFormatting'
+import {
+  CSV_EXPORT_CANCELLED,
+  CsvExport,
+  CsvExportProgress,
+  exportQueryToCsv,
+  exportResultToCsv,
+  isCsvExportSupported
+} from 'services/exporting/csvExport'
 import { downloadPNGFromSVG, downloadSVG } from 'services/exporting/imageUtils'
+import { getQueryTimings, recordQueryPhase } from 'services/queryTimings'
 import { CSVSerializer } from 'services/serializer'
 import { stringifyMod } from 'services/utils'
 import { GlobalState } from 'shared/globalState'
+import {
+  ExecuteSingleCommandAction,
+  executeSingleCommand
+} from 'shared/modules/commands/commandsDuck'
 import * as ViewTypes from 'shared/modules/frames/frameViewTypes'
 import {
   Frame,
@@ -77,13 +106,22 @@ import {
   getRecentView,
   setRecentView
 } from 'shared/modules/frames/framesDuck'
+import { getParams } from 'shared/modules/params/paramsDuck'
+import {
+  getQueryResult,
+  getResultRecords
+} from 'shared/modules/requests/compactResult'
 import {
   BrowserRequest,
   BrowserRequestResult,
   REQUEST_STATUS_PENDING,
   REQUEST_STATUS_SUCCESS,
+  RestoreAction,
+  ViewedAction,
   getRequest,
-  isCancelStatus
+  isCancelStatus,
+  restore,
+  viewed
 } from 'shared/modules/requests/requestsDuck'
 import {
   getInitialNodeDisplay,
@@ -98,7 +136,11 @@ export type CypherFrameProps = BaseFrameProps & {
   maxNeighbours: number
   maxRows: number
   request: BrowserRequest
+  params?: Record<string, unknown>
   onRecentViewChanged: (view: ViewTypes.FrameView) => void
+  onFetchMore: (frame: Frame, maxRecords: number) => void
+  onViewed?: (requestId: string) => void
+  onRestore?: (requestId: string) => void
 }
 
 type CypherFrameState = {
@@ -108,6 +150,7 @@ type CypherFrameState = {
   asciiMaxColWidth?: number
   asciiSetColWidth?: string
   planExpand: PlanExpand
+  csvExport?: { rows: number; total?: number; cancel: () => void }
 }
 export type PlanExpand = 'EXPAND' | 'COLLAPSE'
 
@@ -117,6 +160,8 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
     graphElement: unknown
     type: 'plan' | 'graph'
   } = null
+  viewedSentinel = React.createRef<HTMLDivElement>()
+  viewedObserver?: IntersectionObserver
   state: CypherFrameState = {
     openView: undefined,
     hasVis: false,
@@ -125,6 +170,88 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
     planExpand: 'EXPAND'
   }
 
+  // Frames keep the row limit they were run with
+  getRowLimit(): number {
+    const maxRecords = this.props.frame?.maxRecords
+    return maxRecords ? maxRecords - 1 : this.props.maxRows
+  }
+
+  limitedResult?: {
+    result: BrowserRequestResult
+    rowLimit: number
+    withinLimit: BrowserRequestResult
+  }
+
+  // The graph and code views and the exports show all rows of the result,
+  // without the extra row fetched to know there are more
+  getResultWithinRowLimit(result: BrowserRequestResult): BrowserRequestResult {
+    const rowLimit = this.getRowLimit()
+    if (
+      this.limitedResult?.result !== result ||
+      this.limitedResult.rowLimit !== rowLimit
+    ) {
+      this.limitedResult = {
+        result,
+        rowLimit,
+        withinLimit: getResultWithinRowLimit(result, rowLimit)
+      }
+    }
+    return this.limitedResult.withinLimit
+  }
+
+  isPartial = (): boolean =>
+    isResultPartial(this.props.request.result, this.getRowLimit())
+
+  fetchMore = (): void => {
+    this.props.onFetchMore(
+      this.props.frame,
+      this.getRowLimit() + this.props.maxRows + 1
+    )
+  }
+
+  // Reads a spilled result back, other results are restored by
+  // re-running the query with the row limit of the evicted result
+  restoreResult = (): void => {
+    const { frame, request, onRestore } = this.props
+    if (request.spill && onRestore) {
+      onRestore(frame.requestId)
+    } else {
+      this.props.onFetchMore(frame, this.getRowLimit() + 1)
+    }
+  }
+
+  // Keeps the results of frames scrolled into view from being evicted
+  observeViewed(): void {
+    const sentinel = this.viewedSentinel.current
+    if (!sentinel || typeof IntersectionObserver === 'undefined') {
+      return
+    }
+    this.viewedObserver = new IntersectionObserver(entries => {
+      const requestId = this.props.frame?.requestId
+      if (requestId && entries.some(entry => entry.isIntersecting)) {
+        this.props.onViewed?.(requestId)
+      }
+    })
+    this.viewedObserver.observe(sentinel)
+  }
+
+  // Once per request, when the result view has rendered. QueryTimingsInfo
+  // shows it without re-rendering the frame.
+  recordRenderTiming(): void {
+    const { request, frame } = this.props
+    const requestId = frame?.requestId
+    if (
+      !requestId ||
+      !request.updated ||
+      request.status !== REQUEST_STATUS_SUCCESS ||
+      !this.state.openView ||
+      getQueryTimings(requestId)?.render !== undefined
+    ) {
+      return
+    }
+    recordQueryPhase(requestId, 'render', Date.now() - request.updated)
+  }
+
   changeView(view: ViewTypes.FrameView): void {
     this.setState({ openView: view })
     if (this.props.onRecentViewChanged) {
@@ -138,13 +265,15 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
   ): boolean {
     return (
       this.props.request.updated !== props.request.updated ||
+      this.props.request.evicted !== props.request.evicted ||
       this.state.openView !== state.openView ||
       this.props.isCollapsed !== props.isCollapsed ||
       this.props.isFullscreen !== props.isFullscreen ||
       this.state.asciiMaxColWidth !== state.asciiMaxColWidth ||
       this.state.asciiSetColWidth !== state.asciiSetColWidth ||
       this.state.planExpand !== state.planExpand ||
-      this.state.hasVis !== state.hasVis
+      this.state.hasVis !== state.hasVis ||
+      this.state.csvExport !== state.csvExport
     )
   }
 
@@ -164,7 +293,10 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
     }
 
     // When frame re-use leads to result without visualization
-    const doneLoading = this.props.request.status === REQUEST_STATUS_SUCCESS
+    // Evicted results keep their view for when they are restored
+    const doneLoading =
+      this.props.request.status === REQUEST_STATUS_SUCCESS &&
+      !this.props.request.evicted
     const currentlyShowingViz = this.state.openView === ViewTypes.VISUALIZATION
     if (doneLoading && currentlyShowingViz && !this.canShowViz()) {
       const view = initialView(this.props, {
@@ -174,6 +306,8 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
       if (view) this.setState({ openView: view })
     }
 
+    this.recordRenderTiming()
+
     const textDownloadEnabled = () =>
       this.getRecords().length > 0 &&
       this.state.openView &&
@@ -187,6 +321,9 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
 
     const downloadText = [
       { name: 'CSV', download: this.exportCSV },
+      ...(this.canExportAllRows()
+        ? [{ name: 'CSV (all rows)', download: this.exportAllRowsCSV }]
+        : []),
       { name: 'JSON', download: this.exportJSON }
     ]
     const downloadGraphics = [
@@ -206,14 +343,13 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
   componentDidMount(): void {
     const view = initialView(this.props, this.state)
     if (view) this.setState({ openView: view })
+    this.observeViewed()
   }
 
-  getRecords = (): Neo4jRecord[] => {
-    if (this.props.request.result && 'records' in this.props.request.result) {
-      return this.props.request.result.records
-    }
-    return []
-  }
+  getRecords = (): Neo4jRecord[] =>
+    getResultRecords(
+      this.getResultWithinRowLimit(getQueryResult(this.props.request.result))
+    )
 
   canShowViz = (): boolean =>
     resultHasNodes(this.props.request) && !this.state.errors
@@ -305,11 +441,40 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
     )
   }
 
+  getStreamingContents(records: Neo4jRecord[]): JSX.Element {
+    // Shows the first page of the records received so far,
+    // the initial view is picked once the full result has arrived
+    return (
+      <StyledFrameBody
+        data-testid="frame-streaming-contents"
+        isFullscreen={this.props.isFullscreen}
+        isCollapsed={this.props.isCollapsed}
+        removePadding
+      >
+        <RelatableView
+          updated={this.props.request.updated}
+          result={{ records } as QueryResult}
+        />
+      </StyledFrameBody>
+    )
+  }
+
+  getStreamingStatusbar(count: number): JSX.Element {
+    return (
+      <StyledStatsBarContainer>
+        <StyledStatsBar>
+          Streaming... {count} records received
+        </StyledStatsBar>
+      </StyledStatsBarContainer>
+    )
+  }
+
   getFrameContents(
     request: BrowserRequest,
     result: BrowserRequestResult,
     query: string
   ): JSX.Element {
+    const resultWithinLimit = this.getResultWithinRowLimit(result)
     return (
       <StyledFrameBody
         data-testid="frame-loaded-contents"
@@ -321,7 +486,7 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
         <Display if={this.state.openView === ViewTypes.TEXT} lazy>
           <AsciiView
             asciiSetColWidth={this.state.asciiSetColWidth}
-            maxRows={this.props.maxRows}
+            maxRows={this.getRowLimit()}
             result={result}
             updated={this.props.request.updated}
             setAsciiMaxColWidth={asciiMaxColWidth =>
@@ -330,10 +495,18 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
           />
         </Display>
         <Display if={this.state.openView === ViewTypes.TABLE} lazy>
-          <RelatableView updated={this.props.request.updated} result={result} />
+          <RelatableView
+            maxRows={this.getRowLimit()}
+            updated={this.props.request.updated}
+            result={result}
+          />
         </Display>
         <Display if={this.state.openView === ViewTypes.CODE} lazy>
-          <CodeView result={result} request={request} query={query} />
+          <CodeView
+            result={resultWithinLimit}
+            request={{ ...request, result: resultWithinLimit }}
+            query={query}
+          />
         </Display>
         <Display if={this.state.openView === ViewTypes.ERRORS} lazy>
           <ErrorsView result={result} updated={this.props.request.updated} />
@@ -359,7 +532,8 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
         <Display if={this.state.openView === ViewTypes.VISUALIZATION} lazy>
           <VisualizationConnectedBus
             isFullscreen={this.props.isFullscreen}
-            result={result}
+            result={resultWithinLimit}
+            requestId={this.props.frame?.requestId}
             updated={this.props.request.updated}
             assignVisElement={(svgElement: any, graphElement: any) => {
               this.visElement = { svgElement, graphElement, type: 'graph' }
@@ -381,7 +555,7 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
           <AsciiStatusbar
             asciiMaxColWidth={this.state.asciiMaxColWidth}
             asciiSetColWidth={this.state.asciiSetColWidth}
-            maxRows={this.props.maxRows}
+            maxRows={this.getRowLimit()}
             result={result}
             updated={this.props.request.updated}
             setAsciiSetColWidth={asciiSetColWidth =>
@@ -391,12 +565,20 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
         </Display>
         <Display if={this.state.openView === ViewTypes.TABLE} lazy>
           <RelatableStatusbar
+            maxRows={this.getRowLimit()}
             updated={this.props.request.updated}
             result={result}
           />
         </Display>
         <Display if={this.state.openView === ViewTypes.CODE} lazy>
-          <CodeStatusbar result={result} />
+          <CodeStatusbar maxRows={this.getRowLimit()} result={result} />
+        </Display>
+        <Display if={this.state.openView === ViewTypes.VISUALIZATION} lazy>
+          <RelatableStatusbar
+            maxRows={this.getRowLimit()}
+            updated={this.props.request.updated}
+            result={result}
+          />
         </Display>
         <Display if={this.state.openView === ViewTypes.ERRORS} lazy>
           <ErrorsStatusbar result={result} />
@@ -415,23 +597,136 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
             }
           />
         </Display>
+        {this.props.frame?.requestId && (
+          <QueryTimingsInfo requestId={this.props.frame.requestId} />
+        )}
+        {this.getCsvExportInfo()}
+        {this.state.openView &&
+          [
+            ViewTypes.TABLE,
+            ViewTypes.TEXT,
+            ViewTypes.CODE,
+            ViewTypes.VISUALIZATION
+          ].includes(this.state.openView) &&
+          canFetchMoreRecords(result, this.getRowLimit()) && (
+            <StyledRightPartial>
+              <StyledFrameTitlebarButtonSection>
+                <FrameButton
+                  title="Fetch more rows"
+                  dataTestId="fetchMoreButton"
+                  onClick={this.fetchMore}
+                >
+                  <DoubleDownIcon />
+                </FrameButton>
+              </StyledFrameTitlebarButtonSection>
+            </StyledRightPartial>
+          )}
       </StyledStatsBarContainer>
     )
   }
 
+  getCsvExportInfo(): JSX.Element | null {
+    const { csvExport } = this.state
+    if (!csvExport) {
+      return null
+    }
+    const { rows, total } = csvExport
+    return (
+      <StyledCsvExportProgress data-testid="csvExportProgress">
+        Exporting CSV… {total ? `${rows} of ${total}` : rows} rows
+        <FrameButton
+          title="Cancel CSV export"
+          dataTestId="cancelCsvExportButton"
+          onClick={csvExport.cancel}
+        >
+          <CancelIcon />
+        </FrameButton>
+      </StyledCsvExportProgress>
+    )
+  }
+
+  // Read queries past the row limit can be run again for the export
+  canExportAllRows = (): boolean =>
+    isCsvExportSupported() &&
+    canFetchMoreRecords(this.props.request.result, this.getRowLimit())
+
+  // Serializes in a worker and saves once all parts are written
+  runCsvExport(
+    startExport: (onProgress: CsvExportProgress) => CsvExport,
+    fileName: string,
+    fallback?: () => void
+  ): void {
+    this.state.csvExport?.cancel()
+    const isCurrent = () => this.state.csvExport?.cancel === csvExport.cancel
+    const csvExport = startExport((rows, total) => {
+      if (isCurrent()) {
+        this.setState({ csvExport: { rows, total, cancel: csvExport.cancel } })
+      }
+    })
+    this.setState({ csvExport: { rows: 0, cancel: csvExport.cancel } })
+    csvExport.done.then(
+      blob => {
+        if (isCurrent()) {
+          this.setState({ csvExport: undefined })
+        }
+        saveAs(blob, fileName)
+      },
+      error => {
+        if (isCurrent()) {
+          this.setState({ csvExport: undefined })
+        }
+        if (error.message !== CSV_EXPORT_CANCELLED && fallback) {
+          fallback()
+        }
+      }
+    )
+  }
+
+  // Exports of results past the row limit only have the rows that are shown
+  getExportFileName = (name: string, extension: string): string =>
+    this.isPartial() ? `${name}-partial.${extension}` : `${name}.${extension}`
+
   exportCSV = (): void => {
-    const records = this.getRecords()
-    const exportData = stringifyResultArray(
-      csvFormat,
-      transformResultRecordsToResultArray(records)
+    if (!isCsvExportSupported()) {
+      this.exportCSVFromRecords()
+      return
+    }
+    const { result, spill } = this.props.request
+    this.runCsvExport(
+      onProgress =>
+        exportResultToCsv(result, spill, onProgress, this.getRowLimit()),
+      this.getExportFileName('export', 'csv'),
+      this.exportCSVFromRecords
     )
+  }
+
+  exportAllRowsCSV = (): void => {
+    const { frame, params = {} } = this.props
+    this.runCsvExport(
+      onProgress =>
+        exportQueryToCsv(
+          {
+            query: frame.query,
+            params,
+            useDb: frame.useDb,
+            autoCommit: frame.autoCommit
+          },
+          onProgress
+        ),
+      'export.csv'
+    )
+  }
+
+  exportCSVFromRecords = (): void => {
+    const records = this.getRecords()
+    const exportData = getCsvRows(records)
     const data = exportData.slice()
     const csv = CSVSerializer(data.shift())
     csv.appendRows(data)
     const blob = new Blob([csv.output()], {
       type: 'text/plain;charset=utf-8'
     })
-    saveAs(blob, 'export.csv')
+    saveAs(blob, this.getExportFileName('export', 'csv'))
   }
 
   exportJSON = (): void => {
@@ -441,7 +736,7 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
     const blob = new Blob([data], {
       type: 'text/plain;charset=utf-8'
     })
-    saveAs(blob, 'records.json')
+    saveAs(blob, this.getExportFileName('records', 'json'))
   }
 
   hasStringPlan = (): boolean =>
@@ -481,29 +776,52 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
   render(): JSX.Element {
     const { frame = {} as Frame, request = {} as BrowserRequest } = this.props
     const { cmd: query = '' } = frame
-    const { result = {} as BrowserRequestResult, status: requestStatus } =
-      request
-
-    const frameContents =
-      requestStatus === REQUEST_STATUS_PENDING ? (
-        this.getSpinner()
-      ) : isCancelStatus(requestStatus) ? (
-        <CancelView requestStatus={requestStatus} />
-      ) : (
-        this.getFrameContents(request, result, query)
-      )
-    const statusBar =
-      this.state.openView !== ViewTypes.VISUALIZATION &&
-      requestStatus !== 'error'
-        ? this.getStatusbar(result)
-        : null
+    const {
+      status: requestStatus,
+      streamedRecords = [],
+      streamedCount = 0,
+      evicted
+    } = request
+    const result = getQueryResult(request.result) ?? ({} as QueryResult)
+    const isStreaming =
+      requestStatus === REQUEST_STATUS_PENDING && streamedCount > 0
+
+    const frameContents = isStreaming ? (
+      this.getStreamingContents(streamedRecords)
+    ) : requestStatus === REQUEST_STATUS_PENDING ? (
+      this.getSpinner()
+    ) : isCancelStatus(requestStatus) ? (
+      <CancelView requestStatus={requestStatus} />
+    ) : evicted && request.spill && !evicted.restoring ? (
+      // Pages of spilled results are read back without restoring them
+      <SpilledTableView spill={request.spill} onRestore={this.restoreResult} />
+    ) : evicted ? (
+      <EvictedView request={request} onRestore={this.restoreResult} />
+    ) : (
+      this.getFrameContents(request, result, query)
+    )
+    const statusBar = isStreaming
+      ? this.getStreamingStatusbar(streamedCount)
+      : (this.state.openView !== ViewTypes.VISUALIZATION ||
+          this.isPartial()) &&
+        requestStatus !== 'error' &&
+        !evicted
+      ? this.getStatusbar(result)
+      : null
 
     return (
       <FrameBodyTemplate
         isCollapsed={this.props.isCollapsed}
         isFullscreen={this.props.isFullscreen}
-        sidebar={requestStatus !== 'error' ? this.sidebar : undefined}
-        contents={frameContents}
+        sidebar={
+          requestStatus !== 'error' && !evicted ? this.sidebar : undefined
+        }
+        contents={
+          <>
+            <div ref={this.viewedSentinel} />
+            {frameContents}
+          </>
+        }
         statusBar={statusBar}
         removePadding
       />
@@ -511,6 +829,8 @@ export class CypherFrame extends Component<CypherFrameProps, CypherFrameState> {
   }
   componentWillUnmount(): void {
     this.props.setExportItems([])
+    this.state.csvExport?.cancel()
+    this.viewedObserver?.disconnect()
   }
 }
 
@@ -520,12 +840,37 @@ const mapStateToProps = (state: GlobalState, ownProps: BaseFrameProps) => ({
   maxNeighbours: getMaxNeighbours(state),
   autoComplete: shouldAutoComplete(state),
   recentView: getRecentView(state),
-  request: getRequest(state, ownProps.frame.requestId)
+  request: getRequest(state, ownProps.frame.requestId),
+  params: getParams(state)
 })
 
-const mapDispatchToProps = (dispatch: Dispatch<SetRecentViewAction>) => ({
+const mapDispatchToProps = (
+  dispatch: Dispatch<
+    | SetRecentViewAction
+    | ExecuteSingleCommandAction
+    | ViewedAction
+    | RestoreAction
+  >
+) => ({
   onRecentViewChanged: (view: ViewTypes.FrameView) => {
     dispatch(setRecentView(view))
+  },
+  onFetchMore: (frame: Frame, maxRecords: number) => {
+    dispatch({
+      ...executeSingleCommand(frame.cmd, {
+        id: frame.id,
+        useDb: frame.useDb,
+        isRerun: true,
+        maxRecords
+      }),
+      parentId: frame.parentId
+    })
+  },
+  onViewed: (requestId: string) => {
+    dispatch(viewed(requestId))
+  },
+  onRestore: (requestId: string) => {
+    dispatch(restore(requestId))
   }
 })
 
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import React from 'react'
+
+import { StyledBodyMessage } from '../styled'
+import Centered from 'browser-components/Centered'
+import { FormButton } from 'browser-components/buttons'
+import {
+  BrowserRequest,
+  canRestoreResult
+} from 'shared/modules/requests/requestsDuck'
+
+const formatMegabytes = (bytes: number): string =>
+  `${(bytes / (1024 * 1024)).toFixed(1)} MB`
+
+interface EvictedViewProps {
+  request: BrowserRequest
+  onRestore: () => void
+}
+
+export const EvictedView = ({
+  request,
+  onRestore
+}: EvictedViewProps): JSX.Element => (
+  <Centered>
+    <StyledBodyMessage data-testid="frame-evicted-contents">
+      <div>
+        The result ({formatMegabytes(request.evicted?.bytes ?? 0)}) was
+        dropped to stay within the result memory budget.
+      </div>
+      {request.evicted?.restoring ? (
+        <div>Restoring...</div>
+      ) : canRestoreResult(request) ? (
+        <FormButton data-testid="restoreResultButton" onClick={onRestore}>
+          Restore
+        </FormButton>
+      ) : (
+        <div>Re-run the query to see its result.</div>
+      )}
+    </StyledBodyMessage>
+  </Centered>
+)
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import React, { useEffect, useState } from 'react'
+
+import { StyledQueryTimings } from '../styled'
+import {
+  formatQueryTimings,
+  formatQueryTimingsTotal,
+  getQueryTimings,
+  subscribeToQueryTimings
+} from 'services/queryTimings'
+
+interface QueryTimingsInfoProps {
+  requestId: string
+}
+
+/**
+ * Where the time of a request went, updated on its own as phases are
+ * recorded so the frame doesn't re-render for the render timing.
+ */
+export const QueryTimingsInfo = ({
+  requestId
+}: QueryTimingsInfoProps): JSX.Element | null => {
+  const [, setRecorded] = useState(0)
+  useEffect(
+    () =>
+      subscribeToQueryTimings(requestId, () =>
+        setRecorded(recorded => recorded + 1)
+      ),
+    [requestId]
+  )
+
+  const timings = getQueryTimings(requestId)
+  if (!timings) {
+    return null
+  }
+  return (
+    <StyledQueryTimings
+      data-testid="queryTimings"
+      title={formatQueryTimings(timings)}
+    >
+      {formatQueryTimingsTotal(timings)}
+    </StyledQueryTimings>
+  )
+}
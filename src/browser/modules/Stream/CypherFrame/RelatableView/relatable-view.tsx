@@ -33,6 +33,7 @@ import {
   getBodyAndStatusBarMessages,
   resultHasTruncatedFields
 } from '../helpers'
+import { getDisplayText, getTruncatedCell } from '../resultCells'
 import Relatable from './relatable'
 import {
   CopyIconAbsolutePositioner,
@@ -48,13 +49,13 @@ import {
   getMaxRows
 } from 'project-root/src/shared/modules/settings/settingsDuck'
 import arrayHasItems from 'project-root/src/shared/utils/array-has-items'
-import { stringModifier } from 'services/bolt/cypherTypesFormatting'
-import { stringifyMod, unescapeDoubleQuotesForDisplay } from 'services/utils'
 
-const RelatableView = connect((state: GlobalState) => ({
-  maxRows: getMaxRows(state),
-  maxFieldItems: getMaxFieldItems(state)
-}))(RelatableViewComponent)
+const RelatableView = connect(
+  (state: GlobalState, ownProps: { maxRows?: number }) => ({
+    maxRows: ownProps.maxRows ?? getMaxRows(state),
+    maxFieldItems: getMaxFieldItems(state)
+  })
+)(RelatableViewComponent)
 
 export default RelatableView
 
@@ -95,15 +96,10 @@ export function RelatableViewComponent({
 function getColumns(records: Record[], maxFieldItems: number) {
   const keys = get(head(records), 'keys', [])
 
-  return map(keys, key => ({
+  return map(keys, (key, column) => ({
     Header: key,
-    accessor: (record: Record) => {
-      const fieldItem = record.get(key)
-
-      if (!Array.isArray(fieldItem)) return fieldItem
-
-      return slice(fieldItem, 0, maxFieldItems)
-    },
+    accessor: (record: Record) =>
+      getTruncatedCell(record, column, maxFieldItems),
     Cell: CypherCell
   }))
 }
@@ -129,12 +125,7 @@ const renderCell = (entry: any) => {
     return renderObject(entry)
   } else {
     return (
-      <ClickableUrls
-        text={unescapeDoubleQuotesForDisplay(
-          stringifyMod(entry, stringModifier, true)
-        )}
-        WrappingTag={StyledPreSpan}
-      />
+      <ClickableUrls text={getDisplayText(entry)} WrappingTag={StyledPreSpan} />
     )
   }
 }
@@ -142,9 +133,7 @@ const renderCell = (entry: any) => {
 const renderObject = (entry: any) => {
   if (isInt(entry)) return entry.toString()
   if (entry === null) return <em>null</em>
-  const text = unescapeDoubleQuotesForDisplay(
-    stringifyMod(entry, stringModifier, true)
-  )
+  const text = getDisplayText(entry)
 
   return (
     <StyledJsonPre>
@@ -170,10 +159,12 @@ function RelatableBodyMessage({ maxRows, result }: RelatableBodyMessageProps) {
   )
 }
 
-export const RelatableStatusbar = connect((state: GlobalState) => ({
-  maxRows: getMaxRows(state),
-  maxFieldItems: getMaxFieldItems(state)
-}))(RelatableStatusbarComponent)
+export const RelatableStatusbar = connect(
+  (state: GlobalState, ownProps: { maxRows?: number }) => ({
+    maxRows: ownProps.maxRows ?? getMaxRows(state),
+    maxFieldItems: getMaxFieldItems(state)
+  })
+)(RelatableStatusbarComponent)
 
 type RelatableStatusBarComponentProps = {
   maxRows: number
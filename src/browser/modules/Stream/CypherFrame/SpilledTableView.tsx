@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { Record as Neo4jRecord, QueryResult } from 'neo4j-driver'
+import React, { useEffect, useState } from 'react'
+
+import {
+  SpinnerContainer,
+  StyledBodyMessage,
+  StyledStatsBar,
+  StyledStatsBarContainer
+} from '../styled'
+import RelatableView from './RelatableView/relatable-view'
+import Centered from 'browser-components/Centered'
+import { FormButton } from 'browser-components/buttons'
+import { SpinnerIcon } from 'browser-components/icons/LegacyIcons'
+import { SpillHandle, readSpilledRecords } from 'services/resultSpillStore'
+
+export const SPILLED_PAGE_ROWS = 100
+
+interface SpilledTableViewProps {
+  spill: SpillHandle
+  onRestore: () => void
+}
+
+/**
+ * Table of an evicted result that was written to IndexedDB, only the
+ * records of the page shown are read back.
+ */
+export const SpilledTableView = ({
+  spill,
+  onRestore
+}: SpilledTableViewProps): JSX.Element => {
+  const [page, setPage] = useState(0)
+  const [records, setRecords] = useState<Neo4jRecord[] | null>(null)
+  const [failed, setFailed] = useState(false)
+  const pageCount = Math.max(1, Math.ceil(spill.rowCount / SPILLED_PAGE_ROWS))
+  const start = page * SPILLED_PAGE_ROWS
+  const end = Math.min(start + SPILLED_PAGE_ROWS, spill.rowCount)
+
+  useEffect(() => {
+    let current = true
+    setRecords(null)
+    readSpilledRecords(spill, start, end)
+      .then(pageRecords => current && setRecords(pageRecords))
+      .catch(() => current && setFailed(true))
+    return () => {
+      current = false
+    }
+  }, [spill, start, end])
+
+  return (
+    <>
+      <StyledStatsBarContainer>
+        <StyledStatsBar data-testid="spilled-table-pager">
+          <FormButton
+            buttonType="secondary"
+            disabled={page === 0}
+            onClick={() => setPage(page - 1)}
+          >
+            Previous
+          </FormButton>
+          <span>
+            Rows {start + 1}-{end} of {spill.rowCount}, read from browser
+            storage
+          </span>
+          <FormButton
+            buttonType="secondary"
+            disabled={page >= pageCount - 1}
+            onClick={() => setPage(page + 1)}
+          >
+            Next
+          </FormButton>
+          <FormButton data-testid="restoreResultButton" onClick={onRestore}>
+            Restore
+          </FormButton>
+        </StyledStatsBar>
+      </StyledStatsBarContainer>
+      {failed ? (
+        <Centered>
+          <StyledBodyMessage>
+            The result could not be read back, re-run the query to see it.
+          </StyledBodyMessage>
+        </Centered>
+      ) : records ? (
+        <RelatableView
+          maxRows={SPILLED_PAGE_ROWS}
+          result={{ records, summary: spill.summary } as QueryResult}
+        />
+      ) : (
+        <Centered>
+          <SpinnerContainer>
+            <SpinnerIcon />
+          </SpinnerContainer>
+        </Centered>
+      )}
+    </>
+  )
+}
@@ -29,6 +29,7 @@ import { GraphModel, GraphVisualizer } from 'neo4j-arc/graph-visualization'
 import { StyledVisContainer } from './VisualizationView.styled'
 import { resultHasTruncatedFields } from 'browser/modules/Stream/CypherFrame/helpers'
 import bolt from 'services/bolt/bolt'
+import { VisGraphExtractor } from 'services/bolt/boltMappings'
 import {
   BasicNode,
   BasicNodesAndRels,
@@ -48,9 +49,16 @@ import {
   getNodePropertiesExpandedByDefault,
   setNodePropertiesExpandedByDefault
 } from 'shared/modules/frames/framesDuck'
+import ForceSimulationWorker from 'shared/services/forceSimulationWorker'
 import { DetailsPane } from './PropertiesPanelContent/DetailsPane'
 import OverviewPane from './PropertiesPanelContent/OverviewPane'
 
+// The layout runs on the main thread where there are no workers
+const createSimulationWorker =
+  typeof Worker !== 'undefined'
+    ? (): Worker => new ForceSimulationWorker()
+    : undefined
+
 type VisualizationState = {
   updated: number
   nodes: BasicNode[]
@@ -61,6 +69,8 @@ type VisualizationState = {
 
 export type VisualizationProps = {
   result: any
+  // Owns the entities interned for the visualization
+  requestId?: string
   graphStyleData: any
   updated: number
   autoComplete: boolean
@@ -83,6 +93,8 @@ export class Visualization extends Component<
 > {
   autoCompleteCallback: ((rels: BasicRelationship[]) => void) | undefined
   graph: GraphModel | undefined
+  graphExtractor: VisGraphExtractor | undefined
+  entityOwner: string | undefined
   state: VisualizationState = {
     nodes: [],
     relationships: [],
@@ -113,6 +125,17 @@ export class Visualization extends Component<
     )
   }
 
+  componentWillUnmount(): void {
+    this.releaseEntities()
+  }
+
+  releaseEntities(): void {
+    if (this.entityOwner) {
+      bolt.releaseVisEntities(this.entityOwner)
+      this.entityOwner = undefined
+    }
+  }
+
   componentDidUpdate(prevProps: VisualizationProps): void {
     if (
       this.props.updated !== prevProps.updated ||
@@ -123,25 +146,38 @@ export class Visualization extends Component<
   }
 
   populateDataToStateFromProps(props: VisualizationProps): void {
-    const { nodes, relationships } =
-      bolt.extractNodesAndRelationshipsFromRecordsForOldVis(
-        props.result.records,
+    const { records = [] } = props.result
+    // Records streamed into the same result since the last update
+    // are the only ones that need extracting
+    let { graphExtractor } = this
+    if (!graphExtractor?.canExtend(records, props.maxFieldItems)) {
+      // The new extractor interns every entity again, the keys the old one
+      // interned for the same owner would otherwise never be released
+      this.releaseEntities()
+      this.entityOwner = props.requestId
+      graphExtractor = bolt.createGraphExtractorForOldVis(
         true,
-        props.maxFieldItems
+        props.maxFieldItems,
+        this.entityOwner
       )
+      this.graphExtractor = graphExtractor
+    }
+    graphExtractor.addRecords(records.slice(graphExtractor.recordCount))
+    const { nodes, relationships } = graphExtractor.getGraph()
 
     const { nodes: uniqNodes, nodeLimitHit } = deduplicateNodes(
       nodes,
       this.props.initialNodeDisplay
     )
 
-    const uniqRels = nodeLimitHit
-      ? relationships.filter(
-          rel =>
-            !!uniqNodes.find(node => node.id === rel.startNodeId) &&
-            !!uniqNodes.find(node => node.id === rel.endNodeId)
-        )
-      : relationships
+    let uniqRels = relationships
+    if (nodeLimitHit) {
+      const uniqNodeIds = new Set(uniqNodes.map(node => node.id))
+      uniqRels = relationships.filter(
+        rel =>
+          uniqNodeIds.has(rel.startNodeId) && uniqNodeIds.has(rel.endNodeId)
+      )
+    }
 
     const hasTruncatedFields = resultHasTruncatedFields(
       props.result,
@@ -213,7 +249,8 @@ LIMIT ${maxNewNeighbours}`
                 bolt.extractNodesAndRelationshipsFromRecordsForOldVis(
                   response.result.records,
                   false,
-                  this.props.maxFieldItems
+                  this.props.maxFieldItems,
+                  this.entityOwner
                 )
               this.autoCompleteRelationships(
                 this.graph?.nodes() || [],
@@ -251,7 +288,8 @@ LIMIT ${maxNewNeighbours}`
                 ...bolt.extractNodesAndRelationshipsFromRecordsForOldVis(
                   response.result.records,
                   false,
-                  this.props.maxFieldItems
+                  this.props.maxFieldItems,
+                  this.entityOwner
                 )
               })
             }
@@ -297,6 +335,7 @@ LIMIT ${maxNewNeighbours}`
           disableWheelZoomInfoMessage={this.props.disableWheelZoomInfoMessage}
           DetailsPaneOverride={DetailsPane}
           OverviewPaneOverride={OverviewPane}
+          createSimulationWorker={createSimulationWorker}
         />
       </StyledVisContainer>
     )
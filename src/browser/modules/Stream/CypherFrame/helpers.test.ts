@@ -23,6 +23,7 @@ import {
   extractRecordsToResultArray,
   flattenGraphItemsInResultArray,
   getRecordsToDisplayInTable,
+  getResultWithinRowLimit,
   initialView,
   recordToJSONMapper,
   resultHasNodes,
@@ -53,6 +54,21 @@ describe('helpers', () => {
       ).toEqual(item.expect)
     })
   })
+  test('getResultWithinRowLimit should drop the rows past the limit', () => {
+    // Given
+    const maxRows = 2
+    const summary = { queryType: 'r' }
+    const complete = { records: [1, 2], summary }
+    const partial = { records: [1, 2, 3], summary }
+
+    // When
+    const withinLimit = getResultWithinRowLimit(partial, maxRows)
+
+    // Then
+    expect(getResultWithinRowLimit(complete, maxRows)).toBe(complete)
+    expect(withinLimit).toEqual({ records: [1, 2], summary })
+    expect(partial.records).toEqual([1, 2, 3])
+  })
   test('resultHasRows should report if there are rows or not in the result', () => {
     // Given
     const items = [
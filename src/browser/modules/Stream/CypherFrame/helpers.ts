@@ -33,13 +33,20 @@ import {
 import neo4j from 'neo4j-driver'
 
 import bolt from 'services/bolt/bolt'
-import { recursivelyExtractGraphItems } from 'services/bolt/boltMappings'
+import {
+  flattenGraphItems,
+  recursivelyExtractGraphItems
+} from 'services/bolt/boltMappings'
 import {
   durationFormat,
   stringModifier
 } from 'services/bolt/cypherTypesFormatting'
 import { stringifyMod, unescapeDoubleQuotesForDisplay } from 'services/utils'
 import * as viewTypes from 'shared/modules/frames/frameViewTypes'
+import {
+  getRecordCount,
+  getResultRecords
+} from 'shared/modules/requests/compactResult'
 
 /**
  * Checks if a results has records which fields will be truncated when displayed
@@ -80,15 +87,16 @@ export function getBodyAndStatusBarMessages(
     totalTime.toNumber() === 0
       ? 'in less than 1'
       : `after ${totalTime.toString()}`
+  const recordCount = getRecordCount(result)
   const streamMessageTail =
-    result.records.length > maxRows
+    recordCount > maxRows
       ? `ms, displaying first ${maxRows} rows.`
       : ' ms.'
 
   let updateMessages = bolt.retrieveFormattedUpdateStatistics(result)
   let streamMessage =
-    result.records.length > 0
-      ? `started streaming ${result.records.length} records ${resultAvailableAfter} ms and completed ${totalTimeString} ${streamMessageTail}`
+    recordCount > 0
+      ? `started streaming ${recordCount} records ${resultAvailableAfter} ms and completed ${totalTimeString} ${streamMessageTail}`
       : `completed ${totalTimeString} ${streamMessageTail}`
 
   if (updateMessages && updateMessages.length > 0) {
@@ -102,7 +110,7 @@ export function getBodyAndStatusBarMessages(
   const systemUpdatesValue = get(result, 'summary.counters._systemUpdates')
   const bodyMessage =
     (!updateMessages || updateMessages.length === 0) &&
-    result.records.length === 0
+    recordCount === 0
       ? `(${
           (systemUpdatesValue > 0 &&
             `${systemUpdatesValue} system update${
@@ -118,6 +126,21 @@ export function getBodyAndStatusBarMessages(
   }
 }
 
+// Cypher frames fetch one row more than they show, to know there are more
+export const isResultPartial = (result: any, maxRows: number): boolean =>
+  getRecordCount(result) > maxRows
+
+// The result without the rows past the limit, for the views and exports
+// that show all rows
+export const getResultWithinRowLimit = <T>(result: T, maxRows: number): T =>
+  isResultPartial(result, maxRows)
+    ? { ...result, records: (result as any).records.slice(0, maxRows) }
+    : result
+
+// Re-running is only safe for read queries
+export const canFetchMoreRecords = (result: any, maxRows: number): boolean =>
+  isResultPartial(result, maxRows) && result.summary?.queryType === 'r'
+
 export const getRecordsToDisplayInTable = (result: any, maxRows: any) => {
   if (!result) return []
   return result && result.records && result.records.length > maxRows
@@ -139,10 +162,8 @@ export const flattenArrayDeep = (arr: any) => {
 
 export const resultHasNodes = (request: any, types = neo4j.types) => {
   if (!request) return false
-  const { result = {} } = request
-  if (!result || !result.records) return false
-  const { records = undefined } = result
-  if (!records || !records.length) return false
+  const records = getResultRecords(request.result)
+  if (!records.length) return false
   const keys = records[0].keys
   for (let i = 0; i < records.length; i++) {
     const graphItems = keys.map((key: any) => records[i].get(key))
@@ -159,12 +180,7 @@ export const resultHasNodes = (request: any, types = neo4j.types) => {
 }
 
 export const resultHasRows = (request: any) => {
-  return !!(
-    request &&
-    request.result &&
-    request.result.records &&
-    request.result.records.length
-  )
+  return !!(request && getRecordCount(request.result))
 }
 
 export const resultHasWarnings = (request: any) => {
@@ -294,80 +310,6 @@ export const flattenGraphItemsInResultArray = (
   return result.map(flattenGraphItems.bind(null, types, intChecker))
 }
 
-/**
- * Recursively looks for graph items and elevates their properties if found.
- * Leaves everything else (including neo4j integers) as is
- */
-export const flattenGraphItems = (
-  types = neo4j.types,
-  intChecker = neo4j.isInt,
-  item: any
-): any => {
-  if (Array.isArray(item)) {
-    return item.map(flattenGraphItems.bind(null, types, intChecker))
-  }
-  if (
-    typeof item === 'object' &&
-    item !== null &&
-    !isGraphItem(types, item) &&
-    !intChecker(item)
-  ) {
-    const out: any = {}
-    const keys = Object.keys(item)
-    for (let i = 0; i < keys.length; i++) {
-      out[keys[i]] = flattenGraphItems(types, intChecker, item[keys[i]])
-    }
-    return out
-  }
-  if (isGraphItem(types, item)) {
-    return extractPropertiesFromGraphItems(types, item)
-  }
-  return item
-}
-
-export const isGraphItem = (types = neo4j.types, item: any) => {
-  return (
-    item instanceof (types.Node as any) ||
-    item instanceof (types.Relationship as any) ||
-    item instanceof (types.Path as any) ||
-    item instanceof (types.PathSegment as any) ||
-    item instanceof neo4j.types.Date ||
-    item instanceof neo4j.types.DateTime ||
-    item instanceof neo4j.types.Duration ||
-    item instanceof neo4j.types.LocalDateTime ||
-    item instanceof neo4j.types.LocalTime ||
-    item instanceof neo4j.types.Time ||
-    item instanceof neo4j.types.Point
-  )
-}
-
-export function extractPropertiesFromGraphItems(types = neo4j.types, obj: any) {
-  if (
-    obj instanceof (types.Node as any) ||
-    obj instanceof (types.Relationship as any)
-  ) {
-    return obj.properties
-  } else if (obj instanceof (types.Path as any)) {
-    return [].concat.apply([], arrayifyPath(types, obj))
-  }
-  return obj
-}
-
-const arrayifyPath = (types = neo4j.types, path: any) => {
-  let segments = path.segments
-  // Zero length path. No relationship, end === start
-  if (!Array.isArray(path.segments) || path.segments.length < 1) {
-    segments = [{ ...path, end: null }]
-  }
-  return segments.map((segment: any) =>
-    [
-      extractPropertiesFromGraphItems(types, segment.start),
-      extractPropertiesFromGraphItems(types, segment.relationship),
-      extractPropertiesFromGraphItems(types, segment.end)
-    ].filter(part => part !== null)
-  )
-}
-
 /**
  * Converts a raw Neo4j record into a JSON friendly format, mimicking APOC output
  * Note: This preserves Neo4j integers as objects because they can't be guaranteed
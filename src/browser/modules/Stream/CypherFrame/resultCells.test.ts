@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import {
+  stringifyResultArray,
+  transformResultRecordsToResultArray
+} from './helpers'
+import {
+  getCsvRows,
+  getDisplayText,
+  getTextRows,
+  getTruncatedCell
+} from './resultCells'
+import { csvFormat, stringModifier } from 'services/bolt/cypherTypesFormatting'
+
+const createRecords = () => {
+  const node = new (neo4j.types.Node as any)(neo4j.int(1), ['Person'], {
+    name: 'Molly "M"',
+    age: neo4j.int(9)
+  })
+  return [
+    new (neo4j.types.Record as any)(
+      ['n', 'list', 'num'],
+      [node, [1, 2, 3, 4], neo4j.int('882573709873217509')]
+    ),
+    new (neo4j.types.Record as any)(
+      ['n', 'list', 'num'],
+      [null, ['a', { b: 'c' }], 0.5]
+    )
+  ]
+}
+
+describe('resultCells', () => {
+  test('getTextRows serializes like the eager conversion', () => {
+    // Given
+    const records = createRecords()
+
+    // When
+    const rows = getTextRows(records, 2)
+
+    // Then
+    expect(rows).toEqual(
+      stringifyResultArray(
+        stringModifier,
+        transformResultRecordsToResultArray(createRecords(), 2),
+        true
+      )
+    )
+  })
+
+  test('getCsvRows serializes like the eager conversion', () => {
+    // Given
+    const records = createRecords()
+
+    // When
+    const rows = getCsvRows(records)
+
+    // Then
+    expect(rows).toEqual(
+      stringifyResultArray(
+        csvFormat,
+        transformResultRecordsToResultArray(createRecords())
+      )
+    )
+    expect(getCsvRows([])).toEqual([])
+  })
+
+  test('keeps converted cells for later views', () => {
+    // Given
+    const [record] = createRecords()
+
+    // When
+    const truncated = getTruncatedCell(record, 1, 2)
+
+    // Then
+    expect(truncated).toEqual([1, 2])
+    expect(getTruncatedCell(record, 1, 2)).toBe(truncated)
+    expect(getTruncatedCell(record, 1, 3)).toEqual([1, 2, 3])
+    expect(getDisplayText({ name: 'Molly "M"' })).toEqual(
+      '{\n  "name": "Molly "M""\n}'
+    )
+  })
+})
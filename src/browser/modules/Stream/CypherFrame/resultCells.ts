@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { take } from 'lodash-es'
+import neo4j from 'neo4j-driver'
+
+import { flattenGraphItems } from 'services/bolt/boltMappings'
+import { csvFormat, stringModifier } from 'services/bolt/cypherTypesFormatting'
+import { stringifyMod, unescapeDoubleQuotesForDisplay } from 'services/utils'
+
+/**
+ * Lazily converted result cells. A cell is converted the first time a view
+ * renders or exports it and the conversion is kept, so rows cut off by
+ * maxRows are never converted and the table, text and export views share
+ * the work. Received records never change, so they key the cache.
+ */
+type CellConversions = Map<string, unknown>
+const recordCells = new WeakMap<object, CellConversions[]>()
+
+const getCell = <T>(
+  record: any,
+  column: number,
+  conversion: string,
+  convert: (value: any) => T
+): T => {
+  let cells = recordCells.get(record)
+  if (cells === undefined) {
+    cells = []
+    recordCells.set(record, cells)
+  }
+  let conversions = cells[column]
+  if (conversions === undefined) {
+    conversions = new Map()
+    cells[column] = conversions
+  }
+  if (!conversions.has(conversion)) {
+    conversions.set(conversion, convert(record._fields[column]))
+  }
+  return conversions.get(conversion) as T
+}
+
+export const getTruncatedCell = (
+  record: any,
+  column: number,
+  maxFieldItems?: number
+): any =>
+  getCell(record, column, `truncated:${maxFieldItems}`, value =>
+    maxFieldItems && Array.isArray(value) ? take(value, maxFieldItems) : value
+  )
+
+// Graph items replaced by their properties, like in the text view and exports
+const getFlattenedCell = (
+  record: any,
+  column: number,
+  maxFieldItems?: number
+): any =>
+  getCell(record, column, `flattened:${maxFieldItems}`, () =>
+    flattenGraphItems(
+      neo4j.types,
+      neo4j.isInt,
+      getTruncatedCell(record, column, maxFieldItems)
+    )
+  )
+
+export const getTextCell = (
+  record: any,
+  column: number,
+  maxFieldItems?: number
+): string =>
+  getCell(record, column, `text:${maxFieldItems}`, () =>
+    unescapeDoubleQuotesForDisplay(
+      stringifyMod(
+        getFlattenedCell(record, column, maxFieldItems),
+        stringModifier
+      )
+    )
+  )
+
+export const getCsvCell = (record: any, column: number): string =>
+  getCell(record, column, 'csv', () =>
+    stringifyMod(getFlattenedCell(record, column), csvFormat)
+  )
+
+/**
+ * Header and rows of the text view, same as `stringifyResultArray` on
+ * `transformResultRecordsToResultArray` output.
+ */
+export const getTextRows = (
+  records: any[] = [],
+  maxFieldItems?: number
+): string[][] =>
+  records.length
+    ? [
+        records[0].keys.map((key: string) =>
+          unescapeDoubleQuotesForDisplay(stringifyMod(key, stringModifier))
+        ),
+        ...records.map(record =>
+          record.keys.map((_key: string, column: number) =>
+            getTextCell(record, column, maxFieldItems)
+          )
+        )
+      ]
+    : []
+
+export const getCsvRows = (records: any[] = []): string[][] =>
+  records.length
+    ? [
+        records[0].keys.map((key: string) => stringifyMod(key, csvFormat)),
+        ...records.map(record =>
+          record.keys.map((_key: string, column: number) =>
+            getCsvCell(record, column)
+          )
+        )
+      ]
+    : []
+
+const displayTexts = new WeakMap<object, string>()
+
+/**
+ * Pretty printed value for table cells, kept for objects like nodes and maps.
+ */
+export const getDisplayText = (value: any): string => {
+  if (value === null || typeof value !== 'object') {
+    return unescapeDoubleQuotesForDisplay(
+      stringifyMod(value, stringModifier, true)
+    )
+  }
+  let text = displayTexts.get(value)
+  if (text === undefined) {
+    text = unescapeDoubleQuotesForDisplay(
+      stringifyMod(value, stringModifier, true)
+    )
+    displayTexts.set(value, text)
+  }
+  return text
+}
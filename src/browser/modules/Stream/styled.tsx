@@ -189,6 +189,27 @@ export const StyledTruncatedMessage = styled.span`
   color: orange;
 `
 
+export const StyledQueryTimings = styled.div`
+  flex: 0 0 auto;
+  line-height: 39px;
+  padding: 0 12px;
+  font-size: 12px;
+  white-space: nowrap;
+  cursor: help;
+  color: ${props => props.theme.secondaryText};
+`
+
+export const StyledCsvExportProgress = styled.div`
+  display: flex;
+  flex: 0 0 auto;
+  align-items: center;
+  line-height: 39px;
+  padding-left: 12px;
+  font-size: 12px;
+  white-space: nowrap;
+  color: ${props => props.theme.secondaryText};
+`
+
 export const StyledOneRowStatsBar = styled(StyledStatsBar)`
   height: 39px;
 `
@@ -21,6 +21,7 @@ export { deepEquals, mapObjectValues } from './utils/objectUtils'
 export { isMac } from './utils/platformUtils'
 export { extractUniqueNodesAndRels } from './utils/driverUtils'
 export {
+  getDriverTypeName,
   getPropertyTypeDisplayName,
   propertyToString
 } from './utils/cypherTypeUtils'
@@ -29,12 +29,22 @@ import {
 import { Duration as luxonDuration } from 'luxon'
 import { CypherProperty, isCypherTemporalType } from '../types/cypherDataTypes'
 
-const getDriverTypeName = (val: CypherProperty) => {
-  const driverTypeMap = types
-  const driverTypes = Object.keys(types)
-  for (const type of driverTypes) {
-    if (val instanceof (driverTypeMap as any)[type]) {
-      return type
+// Driver type constructors by name, so most values are named by one lookup
+const driverTypeNames = new Map<unknown, string>(
+  Object.entries(types).map(([name, type]) => [type, name])
+)
+
+export const getDriverTypeName = (
+  val: CypherProperty
+): string | undefined => {
+  const typeName = driverTypeNames.get((val as any).constructor)
+  if (typeName) {
+    return typeName
+  }
+  // Instances of subclasses
+  for (const [type, name] of driverTypeNames) {
+    if (val instanceof (type as any)) {
+      return name
     }
   }
   return undefined
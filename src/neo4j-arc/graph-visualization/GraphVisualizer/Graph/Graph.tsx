@@ -59,6 +59,7 @@ export type GraphProps = {
   offset: number
   wheelZoomInfoMessageEnabled: boolean
   disableWheelZoomInfoMessage: () => void
+  createSimulationWorker?: () => Worker
 }
 
 type GraphState = {
@@ -93,7 +94,8 @@ export class Graph extends React.Component<GraphProps, GraphState> {
       setGraph,
       getAutoCompleteCallback,
       assignVisElement,
-      isFullscreen
+      isFullscreen,
+      createSimulationWorker
     } = this.props
 
     if (!this.svgElement.current) return
@@ -111,7 +113,8 @@ export class Graph extends React.Component<GraphProps, GraphState> {
       this.handleDisplayZoomWheelInfoMessage,
       graph,
       graphStyle,
-      isFullscreen
+      isFullscreen,
+      createSimulationWorker
     )
 
     const graphEventHandler = new GraphEventHandlerModel(
@@ -159,6 +162,10 @@ export class Graph extends React.Component<GraphProps, GraphState> {
     }
   }
 
+  componentWillUnmount(): void {
+    this.visualization?.destroy()
+  }
+
   handleZoomEvent = (limitsReached: ZoomLimitsReached): void => {
     if (
       limitsReached.zoomInLimitReached !== this.state.zoomInLimitReached ||
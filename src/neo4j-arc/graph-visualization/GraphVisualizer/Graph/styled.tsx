@@ -101,6 +101,19 @@ export const StyledSvgWrapper = styled.div`
       }
     }
   }
+  > canvas {
+    position: absolute;
+    top: 0;
+    left: 0;
+    height: 100%;
+    width: 100%;
+    pointer-events: none;
+    background-color: ${props => props.theme.frameBackground};
+  }
+  > svg.canvas-rendered {
+    position: relative;
+    background-color: transparent;
+  }
 `
 
 export const StyledZoomHolder = styled.div<{
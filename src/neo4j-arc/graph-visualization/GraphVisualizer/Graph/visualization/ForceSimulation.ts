@@ -19,6 +19,7 @@
  */
 import {
   Simulation,
+  SimulationNodeDatum,
   forceCollide,
   forceLink,
   forceManyBody,
@@ -30,6 +31,9 @@ import {
 import {
   DEFAULT_ALPHA,
   DEFAULT_ALPHA_MIN,
+  DEFAULT_ALPHA_TARGET,
+  DRAGGING_ALPHA,
+  DRAGGING_ALPHA_TARGET,
   FORCE_CENTER_X,
   FORCE_CENTER_Y,
   FORCE_CHARGE,
@@ -43,26 +47,72 @@ import {
 import { GraphModel } from '../../../models/Graph'
 import { NodeModel } from '../../../models/Node'
 import { RelationshipModel } from '../../../models/Relationship'
+import {
+  SIMULATION_ALPHA_TARGET_MESSAGE,
+  SIMULATION_BUFFER_MESSAGE,
+  SIMULATION_FIX_NODE_MESSAGE,
+  SIMULATION_POSITIONS_MESSAGE,
+  SIMULATION_PRECOMPUTE_MESSAGE,
+  SIMULATION_RESTART_MESSAGE,
+  SIMULATION_STOP_MESSAGE,
+  SIMULATION_UPDATE_MESSAGE,
+  SimulationPositionsMessage,
+  SimulationRequestMessage
+} from './forceSimulationMessages'
 import circularLayout from './utils/circularLayout'
 
+// The forces of the layout, for the models or for the nodes of a worker
+export const createForceSimulation = <
+  Node extends SimulationNodeDatum
+>(): Simulation<Node, undefined> =>
+  forceSimulation<Node>()
+    .velocityDecay(VELOCITY_DECAY)
+    .force('charge', forceManyBody().strength(FORCE_CHARGE))
+    .force('centerX', forceX(0).strength(FORCE_CENTER_X))
+    .force('centerY', forceY(0).strength(FORCE_CENTER_Y))
+    .stop()
+
 const oneRelationshipPerPairOfNodes = (graph: GraphModel) =>
-  Array.from(graph.groupedRelationships()).map(pair => pair.relationships[0])
+  graph.groupedRelationships().map(pair => pair.relationships[0])
 
+/**
+ * Lays out the graph with d3-force. Given `createWorker` the simulation
+ * runs in that worker, which posts the positions it computes at display
+ * rate, otherwise it runs on the main thread.
+ */
 export class ForceSimulation {
   simulation: Simulation<NodeModel, RelationshipModel>
   simulationTimeout: null | number = null
 
-  constructor(private render: () => void) {
-    this.simulation = forceSimulation<NodeModel, RelationshipModel>()
-      .velocityDecay(VELOCITY_DECAY)
-      .force('charge', forceManyBody().strength(FORCE_CHARGE))
-      .force('centerX', forceX(0).strength(FORCE_CENTER_X))
-      .force('centerY', forceY(0).strength(FORCE_CENTER_Y))
-      .on('tick', () => {
-        this.simulation.tick(TICKS_PER_RENDER)
-        render()
-      })
-      .stop()
+  private worker: Worker | null = null
+  private nodes: NodeModel[] = []
+  private nodeIndexes = new Map<NodeModel, number>()
+  private relationships: RelationshipModel[] = []
+  private graphPending = false
+  // Positions of other versions of the graph are dropped
+  private version = 0
+  private positions: Float32Array | null = null
+  private frame: number | null = null
+  private onPrecomputed: (() => void) | null = null
+
+  constructor(private render: () => void, createWorker?: () => Worker) {
+    this.simulation = createForceSimulation<NodeModel>().on('tick', () => {
+      this.simulation.tick(TICKS_PER_RENDER)
+      render()
+    }) as Simulation<NodeModel, RelationshipModel>
+
+    if (createWorker) {
+      this.worker = createWorker()
+      this.worker.onmessage = ({
+        data
+      }: {
+        data: SimulationPositionsMessage
+      }) => {
+        if (data.type === SIMULATION_POSITIONS_MESSAGE) {
+          this.receivePositions(data)
+        }
+      }
+    }
   }
 
   updateNodes(graph: GraphModel) {
@@ -75,28 +125,225 @@ export class ForceSimulation {
     }
     circularLayout(nodes, center, radius)
 
-    this.simulation
-      .nodes(nodes)
-      .force('collide', forceCollide<NodeModel>().radius(FORCE_COLLIDE_RADIUS))
+    this.nodes = nodes
+    if (this.worker) {
+      this.graphChanged()
+    } else {
+      this.simulation
+        .nodes(nodes)
+        .force(
+          'collide',
+          forceCollide<NodeModel>().radius(FORCE_COLLIDE_RADIUS)
+        )
+    }
   }
 
   updateRelationships(graph: GraphModel) {
     const relationships = oneRelationshipPerPairOfNodes(graph)
 
-    this.simulation.force(
-      'link',
-      forceLink<NodeModel, RelationshipModel>(relationships)
-        .id(node => node.id)
-        .distance(FORCE_LINK_DISTANCE)
+    this.relationships = relationships
+    if (this.worker) {
+      this.graphChanged()
+    } else {
+      this.simulation.force(
+        'link',
+        forceLink<NodeModel, RelationshipModel>(relationships)
+          .id(node => node.id)
+          .distance(FORCE_LINK_DISTANCE)
+      )
+    }
+  }
+
+  // `onPrecomputed` is called once the precomputed positions are drawn
+  precompute(onPrecomputed?: () => void) {
+    if (this.worker) {
+      // The graph is shown where it is until the worker has laid it out
+      this.onPrecomputed = onPrecomputed ?? null
+      this.postMessage({ type: SIMULATION_PRECOMPUTE_MESSAGE })
+      this.render()
+    } else {
+      this.simulation.stop().tick(PRECOMPUTED_TICKS)
+      this.render()
+      onPrecomputed?.()
+    }
+  }
+
+  restart() {
+    if (this.worker) {
+      this.postMessage({
+        type: SIMULATION_RESTART_MESSAGE,
+        alpha: DEFAULT_ALPHA,
+        alphaMin: DEFAULT_ALPHA_MIN
+      })
+    } else {
+      this.simulation.alphaMin(DEFAULT_ALPHA_MIN).alpha(DEFAULT_ALPHA).restart()
+    }
+  }
+
+  // Keeps the simulation from stopping while a node is dragged
+  startDragging() {
+    if (this.worker) {
+      this.postMessage({
+        type: SIMULATION_ALPHA_TARGET_MESSAGE,
+        alphaTarget: DRAGGING_ALPHA_TARGET,
+        alpha: DRAGGING_ALPHA
+      })
+    } else {
+      this.simulation
+        .alphaTarget(DRAGGING_ALPHA_TARGET)
+        .alpha(DRAGGING_ALPHA)
+        .restart()
+    }
+  }
+
+  stopDragging() {
+    if (this.worker) {
+      this.postMessage({
+        type: SIMULATION_ALPHA_TARGET_MESSAGE,
+        alphaTarget: DEFAULT_ALPHA_TARGET
+      })
+    } else {
+      this.simulation.alphaTarget(DEFAULT_ALPHA_TARGET)
+    }
+  }
+
+  // To be called when `fx` or `fy` of a node changed
+  fixNode(node: NodeModel) {
+    if (!this.worker) {
+      return
+    }
+    if (this.graphPending) {
+      // The fixed positions are sent along with the graph
+      this.postGraph()
+      return
+    }
+    const index = this.nodeIndexes.get(node)
+    if (index !== undefined) {
+      this.postMessage({
+        type: SIMULATION_FIX_NODE_MESSAGE,
+        version: this.version,
+        index,
+        fx: node.fx ?? NaN,
+        fy: node.fy ?? NaN
+      })
+    }
+  }
+
+  destroy() {
+    this.simulation.stop()
+    if (this.worker) {
+      this.worker.postMessage({ type: SIMULATION_STOP_MESSAGE })
+      this.worker.terminate()
+      this.worker = null
+    }
+    if (this.frame !== null) {
+      cancelAnimationFrame(this.frame)
+    }
+  }
+
+  // Changes to nodes and relationships made together are sent once
+  private graphChanged() {
+    if (!this.graphPending) {
+      this.graphPending = true
+      Promise.resolve().then(() => {
+        if (this.graphPending) {
+          this.postGraph()
+        }
+      })
+    }
+  }
+
+  private postMessage(message: SimulationRequestMessage) {
+    // The worker has to know of the graph before what is done with it
+    if (this.graphPending) {
+      this.postGraph()
+    }
+    this.worker?.postMessage(message)
+  }
+
+  private postGraph() {
+    this.graphPending = false
+    const { nodes, relationships } = this
+    const indexes = new Map<NodeModel, number>()
+    this.nodeIndexes = indexes
+    const positions = new Float32Array(nodes.length * 2)
+    const fixed = new Float32Array(nodes.length * 2)
+    const radii = new Float32Array(nodes.length)
+    nodes.forEach((node, i) => {
+      indexes.set(node, i)
+      positions[i * 2] = node.x
+      positions[i * 2 + 1] = node.y
+      fixed[i * 2] = node.fx ?? NaN
+      fixed[i * 2 + 1] = node.fy ?? NaN
+      radii[i] = node.radius
+    })
+    const links = new Uint32Array(relationships.length * 2)
+    relationships.forEach((rel, i) => {
+      links[i * 2] = indexes.get(rel.source) ?? 0
+      links[i * 2 + 1] = indexes.get(rel.target) ?? 0
+    })
+
+    this.version++
+    if (this.positions) {
+      this.returnBuffer(this.positions)
+      this.positions = null
+    }
+    this.worker?.postMessage(
+      {
+        type: SIMULATION_UPDATE_MESSAGE,
+        version: this.version,
+        ids: nodes.map(node => node.id),
+        positions,
+        fixed,
+        radii,
+        links
+      },
+      [positions.buffer, fixed.buffer, radii.buffer, links.buffer]
     )
   }
 
-  precompute() {
-    this.simulation.stop().tick(PRECOMPUTED_TICKS)
+  private receivePositions({ version, positions }: SimulationPositionsMessage) {
+    if (version !== this.version) {
+      this.returnBuffer(positions)
+      return
+    }
+    // Only the latest positions are drawn
+    if (this.positions) {
+      this.returnBuffer(this.positions)
+    }
+    this.positions = positions
+    if (this.frame === null) {
+      this.frame = requestAnimationFrame(() => {
+        this.frame = null
+        this.applyPositions()
+      })
+    }
+  }
+
+  private applyPositions() {
+    const positions = this.positions
+    if (!positions) {
+      return
+    }
+    this.positions = null
+    this.nodes.forEach((node, i) => {
+      // Dragged nodes are where the pointer is, not where the worker last
+      // saw them
+      node.x = node.fx ?? positions[i * 2]
+      node.y = node.fy ?? positions[i * 2 + 1]
+    })
     this.render()
+    this.returnBuffer(positions)
+
+    const onPrecomputed = this.onPrecomputed
+    this.onPrecomputed = null
+    onPrecomputed?.()
   }
 
-  restart() {
-    this.simulation.alphaMin(DEFAULT_ALPHA_MIN).alpha(DEFAULT_ALPHA).restart()
+  private returnBuffer(positions: Float32Array) {
+    this.worker?.postMessage(
+      { type: SIMULATION_BUFFER_MESSAGE, buffer: positions.buffer },
+      [positions.buffer]
+    )
   }
 }
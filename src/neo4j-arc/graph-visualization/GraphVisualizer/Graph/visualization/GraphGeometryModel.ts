@@ -27,25 +27,15 @@ import { RelationshipModel } from '../../../models/Relationship'
 export class GraphGeometryModel {
   relationshipRouting: PairwiseArcsRelationshipRouting
   style: GraphStyleModel
-  canvas: HTMLCanvasElement
   constructor(style: GraphStyleModel) {
     this.style = style
     this.relationshipRouting = new PairwiseArcsRelationshipRouting(this.style)
-    this.canvas = document.createElement('canvas')
   }
 
   formatNodeCaptions(nodes: NodeModel[]): void {
-    const canvas2DContext = this.canvas.getContext('2d')
-    if (canvas2DContext) {
-      nodes.forEach(
-        node =>
-          (node.caption = fitCaptionIntoCircle(
-            node,
-            this.style,
-            canvas2DContext
-          ))
-      )
-    }
+    nodes.forEach(
+      node => (node.caption = fitCaptionIntoCircle(node, this.style))
+    )
   }
 
   formatRelationshipCaptions(relationships: RelationshipModel[]): void {
@@ -85,8 +75,7 @@ export class GraphGeometryModel {
 
 const fitCaptionIntoCircle = (
   node: NodeModel,
-  style: GraphStyleModel,
-  canvas2DContext: CanvasRenderingContext2D
+  style: GraphStyleModel
 ): NodeCaptionLine[] => {
   const fontFamily = 'sans-serif'
   const fontSize = parseFloat(style.forNode(node).get('font-size'))
@@ -100,8 +89,7 @@ const fitCaptionIntoCircle = (
     nodeText.length > maxCaptionTextLength
       ? nodeText.substring(0, maxCaptionTextLength)
       : nodeText
-  const measure = (text: string) =>
-    measureText(text, fontFamily, fontSize, canvas2DContext)
+  const measure = (text: string) => measureText(text, fontFamily, fontSize)
   const whiteSpaceMeasureWidth = measure(' ')
 
   const words = captionText.split(' ')
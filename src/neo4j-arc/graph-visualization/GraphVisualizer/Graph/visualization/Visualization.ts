@@ -17,16 +17,22 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-import { easeCubic } from 'd3-ease'
-import { BaseType, Selection, select as d3Select } from 'd3-selection'
+import {
+  BaseType,
+  Selection,
+  pointer as d3Pointer,
+  select as d3Select
+} from 'd3-selection'
 import {
   D3ZoomEvent,
   ZoomBehavior,
+  ZoomTransform,
   zoom as d3Zoom,
   zoomIdentity
 } from 'd3-zoom'
 
 import {
+  CANVAS_RENDERER_MIN_ITEMS,
   ZOOM_FIT_PADDING_PERCENT,
   ZOOM_MAX_SCALE,
   ZOOM_MIN_SCALE
@@ -38,15 +44,10 @@ import { NodeModel } from '../../../models/Node'
 import { RelationshipModel } from '../../../models/Relationship'
 import { isNullish } from '../../../utils/utils'
 import { ForceSimulation } from './ForceSimulation'
-import {
-  nodeEventHandlers,
-  relationshipEventHandlers
-} from './mouseEventHandlers'
-import {
-  node as nodeRenderer,
-  relationship as relationshipRenderer
-} from './renderers/init'
-import { nodeMenuRenderer } from './renderers/menu'
+import { canvasEventHandlers } from './mouseEventHandlers'
+import { CanvasGraphRenderer } from './renderers/CanvasGraphRenderer'
+import { GraphBoundingBox, GraphRenderer } from './renderers/GraphRenderer'
+import { SvgGraphRenderer } from './renderers/SvgGraphRenderer'
 import { ZoomLimitsReached, ZoomType } from '../../../types'
 
 type MeasureSizeFn = () => { width: number; height: number }
@@ -57,6 +58,8 @@ export class Visualization {
   private rect: Selection<SVGRectElement, unknown, BaseType, unknown>
   private container: Selection<SVGGElement, unknown, BaseType, unknown>
   private geometry: GraphGeometryModel
+  private renderer: GraphRenderer
+  private transform: ZoomTransform = zoomIdentity
   private zoomBehavior: ZoomBehavior<SVGElement, unknown>
   private zoomMinScaleExtent: number = ZOOM_MIN_SCALE
   private callbacks: Record<
@@ -78,7 +81,8 @@ export class Visualization {
     private onDisplayZoomWheelInfoMessage: () => void,
     private graph: GraphModel,
     public style: GraphStyleModel,
-    public isFullscreen: boolean
+    public isFullscreen: boolean,
+    createSimulationWorker?: () => Worker
   ) {
     this.root = d3Select(element)
 
@@ -100,17 +104,25 @@ export class Visualization {
       .attr('transform', 'scale(1)')
       // Background click event
       // Check if panning is ongoing
-      .on('click', () => {
-        if (!this.draw) {
+      .on('click', (event: MouseEvent) => {
+        if (!this.draw && !this.itemAt(event)) {
           return this.trigger('canvasClicked')
         }
       })
 
     this.container = this.baseGroup.append('g')
     this.geometry = new GraphGeometryModel(style)
+    this.renderer = new SvgGraphRenderer(this.container, this)
 
     this.zoomBehavior = d3Zoom<SVGElement, unknown>()
       .scaleExtent([this.zoomMinScaleExtent, ZOOM_MAX_SCALE])
+      // Items drawn on a canvas are dragged and clicked instead of panning
+      .filter(
+        (event: MouseEvent) =>
+          (!event.ctrlKey || event.type === 'wheel') &&
+          !event.button &&
+          !(event.type === 'mousedown' && this.itemAt(event))
+      )
       .on('zoom', (e: D3ZoomEvent<SVGElement, unknown>) => {
         const isZoomClick = this.isZoomClick
         this.draw = true
@@ -123,11 +135,8 @@ export class Visualization {
         }
         onZoomEvent(limitsReached)
 
-        return this.container
-          .transition()
-          .duration(isZoomClick ? 400 : 20)
-          .call(sel => (isZoomClick ? sel.ease(easeCubic) : sel))
-          .attr('transform', String(e.transform))
+        this.transform = e.transform
+        this.renderer.setTransform(e.transform, isZoomClick)
       })
 
     const zoomEventHandler = (
@@ -164,31 +173,74 @@ export class Visualization {
       // Single click is not panning
       .on('click.zoom', () => (this.draw = false))
 
-    this.forceSim = new ForceSimulation(this.render.bind(this))
+    this.forceSim = new ForceSimulation(
+      this.render.bind(this),
+      createSimulationWorker
+    )
+
+    const containerNode = this.container.node()
+    if (containerNode) {
+      this.root.call(
+        canvasEventHandlers,
+        containerNode,
+        this.hitTest,
+        (item: NodeModel | RelationshipModel | null) => {
+          if (this.renderer instanceof CanvasGraphRenderer) {
+            this.renderer.setHovered(item)
+          }
+        },
+        this.trigger,
+        this.forceSim
+      )
+    }
   }
 
   private render() {
     this.geometry.onTick(this.graph)
+    this.renderer.render()
+  }
 
-    const nodeGroups = this.container
-      .selectAll<SVGGElement, NodeModel>('g.node')
-      .attr('transform', d => `translate(${d.x},${d.y})`)
-
-    nodeRenderer.forEach(renderer => nodeGroups.call(renderer.onTick, this))
+  // Only items drawn on a canvas are looked up, svg elements get their
+  // own events
+  private hitTest = (
+    x: number,
+    y: number
+  ): NodeModel | RelationshipModel | null =>
+    this.renderer instanceof CanvasGraphRenderer
+      ? this.renderer.hitTest(x, y)
+      : null
+
+  private itemAt(event: MouseEvent): NodeModel | RelationshipModel | null {
+    const containerNode = this.container.node()
+    if (!containerNode) {
+      return null
+    }
+    const [x, y] = d3Pointer(event, containerNode)
+    return this.hitTest(x, y)
+  }
 
-    const relationshipGroups = this.container
-      .selectAll<SVGGElement, RelationshipModel>('g.relationship')
-      .attr(
-        'transform',
-        d =>
-          `translate(${d.source.x} ${d.source.y}) rotate(${
-            d.naturalAngle + 180
-          })`
-      )
+  // Returns whether the renderer changed, all items are to be updated then
+  private useRendererForGraphSize(): boolean {
+    const itemCount =
+      this.graph.nodes().length + this.graph.relationships().length
+    const type = itemCount > CANVAS_RENDERER_MIN_ITEMS ? 'canvas' : 'svg'
+    const svgElement = this.root.node()
+    if (type === this.renderer.type || !svgElement?.parentElement) {
+      return false
+    }
 
-    relationshipRenderer.forEach(renderer =>
-      relationshipGroups.call(renderer.onTick, this)
-    )
+    this.renderer.destroy()
+    if (type === 'canvas') {
+      const canvas = document.createElement('canvas')
+      svgElement.parentElement.insertBefore(canvas, svgElement)
+      this.renderer = new CanvasGraphRenderer(canvas, this.container, this)
+    } else {
+      this.renderer = new SvgGraphRenderer(this.container, this)
+    }
+    this.root.classed('canvas-rendered', type === 'canvas')
+    this.renderer.resize(this.measureSize())
+    this.renderer.setTransform(this.transform, false)
+    return true
   }
 
   private updateNodes() {
@@ -198,23 +250,7 @@ export class Visualization {
       updateRelationships: false
     })
 
-    const nodeGroups = this.container
-      .select('g.layer.nodes')
-      .selectAll<SVGGElement, NodeModel>('g.node')
-      .data(nodes, d => d.id)
-      .join('g')
-      .attr('class', 'node')
-      .attr('aria-label', d => `graph-node${d.id}`)
-      .call(nodeEventHandlers, this.trigger, this.forceSim.simulation)
-      .classed('selected', node => node.selected)
-
-    nodeRenderer.forEach(renderer =>
-      nodeGroups.call(renderer.onGraphChange, this)
-    )
-
-    nodeMenuRenderer.forEach(renderer =>
-      nodeGroups.call(renderer.onGraphChange, this)
-    )
+    this.renderer.updateNodes(nodes)
 
     this.forceSim.updateNodes(this.graph)
     this.forceSim.updateRelationships(this.graph)
@@ -227,18 +263,7 @@ export class Visualization {
       updateRelationships: true
     })
 
-    const relationshipGroups = this.container
-      .select('g.layer.relationships')
-      .selectAll<SVGGElement, RelationshipModel>('g.relationship')
-      .data(relationships, d => d.id)
-      .join('g')
-      .attr('class', 'relationship')
-      .call(relationshipEventHandlers, this.trigger)
-      .classed('selected', relationship => relationship.selected)
-
-    relationshipRenderer.forEach(renderer =>
-      relationshipGroups.call(renderer.onGraphChange, this)
-    )
+    this.renderer.updateRelationships(relationships)
 
     this.forceSim.updateRelationships(this.graph)
   }
@@ -273,7 +298,7 @@ export class Visualization {
   private getZoomScaleFactorToFitWholeGraph = ():
     | { scale: number; centerPointOffset: { x: number; y: number } }
     | undefined => {
-    const graphSize = this.container.node()?.getBBox()
+    const graphSize = this.renderer.boundingBox()
     const availableWidth = this.root.node()?.clientWidth
     const availableHeight = this.root.node()?.clientHeight
 
@@ -333,11 +358,11 @@ export class Visualization {
       .join('g')
       .attr('class', d => `layer ${d}`)
 
+    this.useRendererForGraphSize()
     this.updateNodes()
     this.updateRelationships()
-    this.forceSim.precompute()
-
-    this.adjustZoomMinScaleExtentToFitGraph()
+    // A worker only lays out the graph after this returns
+    this.forceSim.precompute(this.adjustZoomMinScaleExtentToFitGraph)
   }
 
   update(options: {
@@ -345,11 +370,12 @@ export class Visualization {
     updateRelationships: boolean
     restartSimulation?: boolean
   }): void {
-    if (options.updateNodes) {
+    const rendererChanged = this.useRendererForGraphSize()
+    if (options.updateNodes || rendererChanged) {
       this.updateNodes()
     }
 
-    if (options.updateRelationships) {
+    if (options.updateRelationships || rendererChanged) {
       this.updateRelationships()
     }
 
@@ -359,8 +385,29 @@ export class Visualization {
     this.trigger('updated')
   }
 
-  boundingBox(): DOMRect | undefined {
-    return this.container.node()?.getBBox()
+  boundingBox(): GraphBoundingBox | undefined {
+    return this.renderer.boundingBox()
+  }
+
+  // Graphs drawn on a canvas are exported from an svg rendered for it
+  getExportSvgElement(): SVGElement | null {
+    if (this.renderer.type === 'svg') {
+      return this.root.node()
+    }
+    const svg = d3Select(
+      document.createElementNS('http://www.w3.org/2000/svg', 'svg')
+    )
+    const container = svg.append('g')
+    container
+      .selectAll('g.layer')
+      .data(['relationships', 'nodes'])
+      .join('g')
+      .attr('class', d => `layer ${d}`)
+    const renderer = new SvgGraphRenderer(container, this, false)
+    renderer.updateRelationships(this.graph.relationships())
+    renderer.updateNodes(this.graph.nodes())
+    renderer.render()
+    return svg.node()
   }
 
   resize(isFullscreen: boolean): void {
@@ -371,6 +418,8 @@ export class Visualization {
       .attr('x', () => -Math.floor(size.width / 2))
       .attr('y', () => -Math.floor(size.height / 2))
 
+    this.renderer.resize(size)
+
     this.root.attr(
       'viewBox',
       [
@@ -393,4 +442,9 @@ export class Visualization {
   zoomToFitClick(): void {
     this.handleZoomClick(ZoomType.FIT)
   }
+
+  destroy(): void {
+    this.forceSim.destroy()
+    this.renderer.destroy()
+  }
 }
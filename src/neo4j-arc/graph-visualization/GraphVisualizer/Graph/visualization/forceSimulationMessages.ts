@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+export const SIMULATION_UPDATE_MESSAGE = 'SIMULATION_UPDATE_MESSAGE'
+export const SIMULATION_PRECOMPUTE_MESSAGE = 'SIMULATION_PRECOMPUTE_MESSAGE'
+export const SIMULATION_RESTART_MESSAGE = 'SIMULATION_RESTART_MESSAGE'
+export const SIMULATION_ALPHA_TARGET_MESSAGE = 'SIMULATION_ALPHA_TARGET_MESSAGE'
+export const SIMULATION_FIX_NODE_MESSAGE = 'SIMULATION_FIX_NODE_MESSAGE'
+export const SIMULATION_BUFFER_MESSAGE = 'SIMULATION_BUFFER_MESSAGE'
+export const SIMULATION_STOP_MESSAGE = 'SIMULATION_STOP_MESSAGE'
+export const SIMULATION_POSITIONS_MESSAGE = 'SIMULATION_POSITIONS_MESSAGE'
+
+/**
+ * The nodes and links to lay out. Nodes are referred to by their index
+ * in `ids`, positions are x and y pairs. Fixed positions are NaN for
+ * nodes that are free to move.
+ */
+export type SimulationUpdateMessage = {
+  type: typeof SIMULATION_UPDATE_MESSAGE
+  version: number
+  ids: string[]
+  positions: Float32Array
+  fixed: Float32Array
+  radii: Float32Array
+  links: Uint32Array
+}
+
+export type SimulationRequestMessage =
+  | SimulationUpdateMessage
+  | { type: typeof SIMULATION_PRECOMPUTE_MESSAGE }
+  | {
+      type: typeof SIMULATION_RESTART_MESSAGE
+      alpha: number
+      alphaMin: number
+    }
+  | {
+      type: typeof SIMULATION_ALPHA_TARGET_MESSAGE
+      alphaTarget: number
+      // Reheats the simulation when set
+      alpha?: number
+    }
+  | {
+      type: typeof SIMULATION_FIX_NODE_MESSAGE
+      version: number
+      index: number
+      // NaN releases the node
+      fx: number
+      fy: number
+    }
+  // A positions buffer the main thread is done with
+  | { type: typeof SIMULATION_BUFFER_MESSAGE; buffer: ArrayBuffer }
+  | { type: typeof SIMULATION_STOP_MESSAGE }
+
+export type SimulationPositionsMessage = {
+  type: typeof SIMULATION_POSITIONS_MESSAGE
+  version: number
+  positions: Float32Array
+}
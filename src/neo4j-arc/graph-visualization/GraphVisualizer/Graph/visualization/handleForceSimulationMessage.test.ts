@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import {
+  SIMULATION_BUFFER_MESSAGE,
+  SIMULATION_POSITIONS_MESSAGE,
+  SIMULATION_PRECOMPUTE_MESSAGE,
+  SIMULATION_UPDATE_MESSAGE,
+  SimulationPositionsMessage,
+  SimulationRequestMessage
+} from './forceSimulationMessages'
+import { handleForceSimulationMessage } from './handleForceSimulationMessage'
+
+const update = (fixed: number[]): SimulationRequestMessage => ({
+  type: SIMULATION_UPDATE_MESSAGE,
+  version: 1,
+  ids: ['a', 'b', 'c'],
+  positions: new Float32Array([0, 0, 10, 0, 0, 10]),
+  fixed: new Float32Array(fixed),
+  radii: new Float32Array([25, 25, 25]),
+  links: new Uint32Array([0, 1, 1, 2])
+})
+
+describe('handleForceSimulationMessage', () => {
+  test('posts the positions of the laid out graph', () => {
+    // Given
+    const posted: SimulationPositionsMessage[] = []
+    const handle = handleForceSimulationMessage(message =>
+      posted.push(message)
+    )
+
+    // When
+    handle({ data: update([NaN, NaN, NaN, NaN, NaN, NaN]) })
+    handle({ data: { type: SIMULATION_PRECOMPUTE_MESSAGE } })
+
+    // Then
+    expect(posted).toHaveLength(1)
+    expect(posted[0].type).toEqual(SIMULATION_POSITIONS_MESSAGE)
+    expect(posted[0].version).toEqual(1)
+    expect(posted[0].positions).toHaveLength(6)
+    // The nodes were pushed apart
+    expect(posted[0].positions[2] - posted[0].positions[0]).toBeGreaterThan(10)
+  })
+
+  test('keeps fixed nodes in place', () => {
+    // Given
+    const posted: SimulationPositionsMessage[] = []
+    const handle = handleForceSimulationMessage(message =>
+      posted.push(message)
+    )
+
+    // When
+    handle({ data: update([100, 200, NaN, NaN, NaN, NaN]) })
+    handle({ data: { type: SIMULATION_PRECOMPUTE_MESSAGE } })
+
+    // Then
+    expect(posted[0].positions[0]).toEqual(100)
+    expect(posted[0].positions[1]).toEqual(200)
+  })
+
+  test('waits for buffers to come back before posting more positions', () => {
+    // Given
+    const posted: SimulationPositionsMessage[] = []
+    const handle = handleForceSimulationMessage(message =>
+      posted.push(message)
+    )
+    handle({ data: update([NaN, NaN, NaN, NaN, NaN, NaN]) })
+
+    // When
+    handle({ data: { type: SIMULATION_PRECOMPUTE_MESSAGE } })
+    handle({ data: { type: SIMULATION_PRECOMPUTE_MESSAGE } })
+    handle({ data: { type: SIMULATION_PRECOMPUTE_MESSAGE } })
+
+    // Then
+    expect(posted).toHaveLength(2)
+
+    // When
+    handle({
+      data: {
+        type: SIMULATION_BUFFER_MESSAGE,
+        buffer: posted[0].positions.buffer
+      }
+    })
+
+    // Then
+    expect(posted).toHaveLength(3)
+    expect(posted[2].positions.buffer).toBe(posted[0].positions.buffer)
+  })
+})
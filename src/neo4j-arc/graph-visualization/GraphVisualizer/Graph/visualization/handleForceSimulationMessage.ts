@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { Simulation, forceCollide, forceLink } from 'd3-force'
+
+import {
+  FORCE_COLLIDE_RADIUS,
+  FORCE_LINK_DISTANCE,
+  PRECOMPUTED_TICKS,
+  TICKS_PER_RENDER
+} from '../../../constants'
+import { createForceSimulation } from './ForceSimulation'
+import {
+  SIMULATION_ALPHA_TARGET_MESSAGE,
+  SIMULATION_BUFFER_MESSAGE,
+  SIMULATION_FIX_NODE_MESSAGE,
+  SIMULATION_POSITIONS_MESSAGE,
+  SIMULATION_PRECOMPUTE_MESSAGE,
+  SIMULATION_RESTART_MESSAGE,
+  SIMULATION_STOP_MESSAGE,
+  SIMULATION_UPDATE_MESSAGE,
+  SimulationPositionsMessage,
+  SimulationRequestMessage,
+  SimulationUpdateMessage
+} from './forceSimulationMessages'
+
+type SimulatedNode = {
+  id: string
+  radius: number
+  x: number
+  y: number
+  vx?: number
+  vy?: number
+  fx?: number | null
+  fy?: number | null
+}
+
+type SimulatedLink = { source: SimulatedNode; target: SimulatedNode }
+
+// Positions posted that the main thread has not returned yet
+const MAX_POSITIONS_IN_FLIGHT = 2
+
+const orNull = (value: number): number | null =>
+  Number.isNaN(value) ? null : value
+
+export const handleForceSimulationMessage = (
+  postMessage: (message: SimulationPositionsMessage, transfer: any[]) => void
+): ((message: { data: SimulationRequestMessage }) => void) => {
+  let nodes: SimulatedNode[] = []
+  let version = 0
+  let buffers: ArrayBuffer[] = []
+  let inFlight = 0
+  let positionsPending = false
+
+  const postPositions = () => {
+    if (inFlight >= MAX_POSITIONS_IN_FLIGHT) {
+      // Posted once a buffer comes back
+      positionsPending = true
+      return
+    }
+    positionsPending = false
+
+    const size = nodes.length * 2 * Float32Array.BYTES_PER_ELEMENT
+    const buffer = buffers.find(buffer => buffer.byteLength === size)
+    // Buffers sized for previous graphs are let go
+    buffers = buffers.filter(
+      other => other !== buffer && other.byteLength === size
+    )
+    const positions = new Float32Array(buffer ?? new ArrayBuffer(size))
+    nodes.forEach((node, i) => {
+      positions[i * 2] = node.x
+      positions[i * 2 + 1] = node.y
+    })
+
+    inFlight++
+    postMessage(
+      { type: SIMULATION_POSITIONS_MESSAGE, version, positions },
+      [positions.buffer]
+    )
+  }
+
+  const simulation: Simulation<SimulatedNode, undefined> =
+    createForceSimulation<SimulatedNode>().on('tick', () => {
+      simulation.tick(TICKS_PER_RENDER)
+      postPositions()
+    })
+
+  const update = (message: SimulationUpdateMessage) => {
+    const previous = new Map(nodes.map(node => [node.id, node]))
+    version = message.version
+    nodes = message.ids.map((id, i) => {
+      // Nodes already laid out keep moving from where they are
+      const node = previous.get(id) ?? {
+        id,
+        radius: 0,
+        x: message.positions[i * 2],
+        y: message.positions[i * 2 + 1]
+      }
+      node.radius = message.radii[i]
+      node.fx = orNull(message.fixed[i * 2])
+      node.fy = orNull(message.fixed[i * 2 + 1])
+      return node
+    })
+
+    const links: SimulatedLink[] = []
+    for (let i = 0; i < message.links.length; i += 2) {
+      links.push({
+        source: nodes[message.links[i]],
+        target: nodes[message.links[i + 1]]
+      })
+    }
+
+    simulation
+      .nodes(nodes)
+      .force(
+        'collide',
+        forceCollide<SimulatedNode>().radius(FORCE_COLLIDE_RADIUS)
+      )
+      .force(
+        'link',
+        forceLink<SimulatedNode, SimulatedLink>(links).distance(
+          FORCE_LINK_DISTANCE
+        )
+      )
+  }
+
+  return ({ data }) => {
+    switch (data.type) {
+      case SIMULATION_UPDATE_MESSAGE:
+        update(data)
+        break
+      case SIMULATION_PRECOMPUTE_MESSAGE:
+        simulation.stop().tick(PRECOMPUTED_TICKS)
+        postPositions()
+        break
+      case SIMULATION_RESTART_MESSAGE:
+        simulation.alphaMin(data.alphaMin).alpha(data.alpha).restart()
+        break
+      case SIMULATION_ALPHA_TARGET_MESSAGE:
+        simulation.alphaTarget(data.alphaTarget)
+        if (data.alpha !== undefined) {
+          simulation.alpha(data.alpha).restart()
+        }
+        break
+      case SIMULATION_FIX_NODE_MESSAGE:
+        if (data.version === version && nodes[data.index]) {
+          nodes[data.index].fx = orNull(data.fx)
+          nodes[data.index].fy = orNull(data.fy)
+        }
+        break
+      case SIMULATION_BUFFER_MESSAGE:
+        inFlight = Math.max(0, inFlight - 1)
+        buffers.push(data.buffer)
+        if (positionsPending) {
+          postPositions()
+        }
+        break
+      case SIMULATION_STOP_MESSAGE:
+        simulation.stop()
+        break
+      default:
+        // Not a message for the simulation
+        break
+    }
+  }
+}
@@ -18,61 +18,46 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 import { D3DragEvent, drag as d3Drag } from 'd3-drag'
-import { Simulation } from 'd3-force'
-import { BaseType, Selection } from 'd3-selection'
-
-import {
-  DEFAULT_ALPHA_TARGET,
-  DRAGGING_ALPHA,
-  DRAGGING_ALPHA_TARGET
-} from '../../../constants'
+import { BaseType, Selection, pointer as d3Pointer } from 'd3-selection'
+
 import { NodeModel } from '../../../models/Node'
 import { RelationshipModel } from '../../../models/Relationship'
+import { ForceSimulation } from './ForceSimulation'
+
+// Hovered nodes are held in place until the pointer leaves them
+const fixHoveredNode = (node: NodeModel, simulation: ForceSimulation) => {
+  if (!node.fx && !node.fy) {
+    node.hoverFixed = true
+    node.fx = node.x
+    node.fy = node.y
+    simulation.fixNode(node)
+  }
+}
 
-export const nodeEventHandlers = (
-  selection: Selection<SVGGElement, NodeModel, BaseType, unknown>,
-  trigger: (event: string, node: NodeModel) => void,
-  simulation: Simulation<NodeModel, RelationshipModel>
+const releaseHoveredNode = (
+  node: NodeModel,
+  simulation: ForceSimulation
 ) => {
+  if (node.hoverFixed) {
+    node.hoverFixed = false
+    node.fx = null
+    node.fy = null
+    simulation.fixNode(node)
+  }
+}
+
+const nodeDragHandlers = (simulation: ForceSimulation) => {
   let initialDragPosition: [number, number]
   let restartedSimulation = false
   const tolerance = 25
 
-  const onNodeClick = (_event: Event, node: NodeModel) => {
-    trigger('nodeClicked', node)
-  }
-
-  const onNodeDblClick = (_event: Event, node: NodeModel) => {
-    trigger('nodeDblClicked', node)
-  }
-
-  const onNodeMouseOver = (_event: Event, node: NodeModel) => {
-    if (!node.fx && !node.fy) {
-      node.hoverFixed = true
-      node.fx = node.x
-      node.fy = node.y
-    }
-
-    trigger('nodeMouseOver', node)
-  }
-
-  const onNodeMouseOut = (_event: Event, node: NodeModel) => {
-    if (node.hoverFixed) {
-      node.hoverFixed = false
-      node.fx = null
-      node.fy = null
-    }
-
-    trigger('nodeMouseOut', node)
-  }
-
-  const dragstarted = (event: D3DragEvent<SVGGElement, NodeModel, any>) => {
+  const dragstarted = (event: D3DragEvent<Element, NodeModel, any>) => {
     initialDragPosition = [event.x, event.y]
     restartedSimulation = false
   }
 
   const dragged = (
-    event: D3DragEvent<SVGGElement, NodeModel, any>,
+    event: D3DragEvent<Element, NodeModel, any>,
     node: NodeModel
   ) => {
     // Math.sqrt was removed to avoid unnecessary computation, since this
@@ -85,25 +70,51 @@ export const nodeEventHandlers = (
     if (dist > tolerance && !restartedSimulation) {
       // Set alphaTarget to a value higher than alphaMin so the simulation
       // isn't stopped while nodes are being dragged.
-      simulation
-        .alphaTarget(DRAGGING_ALPHA_TARGET)
-        .alpha(DRAGGING_ALPHA)
-        .restart()
+      simulation.startDragging()
       restartedSimulation = true
     }
 
     node.hoverFixed = false
     node.fx = event.x
     node.fy = event.y
+    simulation.fixNode(node)
   }
 
-  const dragended = (_event: D3DragEvent<SVGGElement, NodeModel, any>) => {
+  const dragended = (_event: D3DragEvent<Element, NodeModel, any>) => {
     if (restartedSimulation) {
       // Reset alphaTarget so the simulation cools down and stops.
-      simulation.alphaTarget(DEFAULT_ALPHA_TARGET)
+      simulation.stopDragging()
     }
   }
 
+  return { dragstarted, dragged, dragended }
+}
+
+export const nodeEventHandlers = (
+  selection: Selection<SVGGElement, NodeModel, BaseType, unknown>,
+  trigger: (event: string, node: NodeModel) => void,
+  simulation: ForceSimulation
+) => {
+  const onNodeClick = (_event: Event, node: NodeModel) => {
+    trigger('nodeClicked', node)
+  }
+
+  const onNodeDblClick = (_event: Event, node: NodeModel) => {
+    trigger('nodeDblClicked', node)
+  }
+
+  const onNodeMouseOver = (_event: Event, node: NodeModel) => {
+    fixHoveredNode(node, simulation)
+    trigger('nodeMouseOver', node)
+  }
+
+  const onNodeMouseOut = (_event: Event, node: NodeModel) => {
+    releaseHoveredNode(node, simulation)
+    trigger('nodeMouseOut', node)
+  }
+
+  const { dragstarted, dragged, dragended } = nodeDragHandlers(simulation)
+
   return selection
     .call(
       d3Drag<SVGGElement, NodeModel>()
@@ -139,3 +150,88 @@ export const relationshipEventHandlers = (
     .on('mouseover', onRelMouseOver)
     .on('mouseout', onRelMouseOut)
 }
+
+/**
+ * Mouse events of graphs drawn on a canvas. They are listened to on the svg
+ * on top of it and the item under the pointer is found with `hitTest`, in
+ * the coordinates of `container`.
+ */
+export const canvasEventHandlers = (
+  selection: Selection<SVGElement, unknown, BaseType, unknown>,
+  container: SVGGElement,
+  hitTest: (x: number, y: number) => NodeModel | RelationshipModel | null,
+  onHover: (item: NodeModel | RelationshipModel | null) => void,
+  trigger: (event: string, item: NodeModel | RelationshipModel) => void,
+  simulation: ForceSimulation
+) => {
+  let hovered: NodeModel | RelationshipModel | null = null
+
+  const itemAt = (event: MouseEvent) => {
+    const [x, y] = d3Pointer(event, container)
+    return hitTest(x, y)
+  }
+
+  const setHovered = (item: NodeModel | RelationshipModel | null) => {
+    if (item === hovered) {
+      return
+    }
+    if (hovered?.isNode) {
+      releaseHoveredNode(hovered as NodeModel, simulation)
+      trigger('nodeMouseOut', hovered)
+    } else if (hovered) {
+      trigger('relMouseOut', hovered)
+    }
+    hovered = item
+    if (item?.isNode) {
+      fixHoveredNode(item as NodeModel, simulation)
+      trigger('nodeMouseOver', item)
+    } else if (item) {
+      trigger('relMouseOver', item)
+    }
+    selection.style('cursor', item ? 'pointer' : null)
+    onHover(item)
+  }
+
+  const onMouseDown = (event: MouseEvent) => {
+    const item = itemAt(event)
+    if (item?.isRelationship) {
+      trigger('relationshipClicked', item)
+    }
+  }
+
+  const onClick = (event: MouseEvent) => {
+    const item = itemAt(event)
+    if (item?.isNode) {
+      trigger('nodeClicked', item)
+    }
+  }
+
+  const onDblClick = (event: MouseEvent) => {
+    const item = itemAt(event)
+    if (item?.isNode) {
+      trigger('nodeDblClicked', item)
+    }
+  }
+
+  const { dragstarted, dragged, dragended } = nodeDragHandlers(simulation)
+
+  return selection
+    .call(
+      d3Drag<SVGElement, unknown, NodeModel>()
+        .container(container)
+        .subject(event => {
+          const item = hitTest(event.x, event.y)
+          return item?.isNode ? (item as NodeModel) : null
+        })
+        .on('start', dragstarted)
+        .on('drag', (event: D3DragEvent<Element, NodeModel, any>) =>
+          dragged(event, event.subject)
+        )
+        .on('end', dragended)
+    )
+    .on('mousemove.canvas', (event: MouseEvent) => setHovered(itemAt(event)))
+    .on('mouseleave.canvas', () => setHovered(null))
+    .on('mousedown.canvas', onMouseDown)
+    .on('click.canvas', onClick)
+    .on('dblclick.canvas', onDblClick)
+}
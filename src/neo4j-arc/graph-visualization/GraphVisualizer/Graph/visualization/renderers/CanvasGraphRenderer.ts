@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { BaseType, Selection } from 'd3-selection'
+import { ZoomTransform, zoomIdentity } from 'd3-zoom'
+
+import { CANVAS_MIN_CAPTION_SIZE } from '../../../../constants'
+import { NodeModel } from '../../../../models/Node'
+import { RelationshipModel } from '../../../../models/Relationship'
+import { SpatialIndex } from '../../../../utils/SpatialIndex'
+import { Visualization } from '../Visualization'
+import { GraphBoundingBox, GraphRenderer } from './GraphRenderer'
+import { nodeMenuRenderer } from './menu'
+
+// Same colors as the hover and selection styles of the svg
+const SELECTED_COLOR = '#fdcc59'
+const HOVER_COLOR = '#6ac6ff'
+const HIGHLIGHT_OPACITY = 0.3
+const NODE_RING_WIDTH = 8
+const RELATIONSHIP_OVERLAY_BAND = 16
+// How far relationships may curve away from the line between their nodes
+const RELATIONSHIP_MARGIN = 40
+
+type ArrowPath = {
+  arrow: RelationshipModel['arrow']
+  data: string
+  path: Path2D
+}
+
+// Layout creates new arrows on every tick, a parsed path is only replaced
+// once the path data of the new arrow differs
+const updateArrowPath = (
+  cached: ArrowPath | undefined,
+  arrow: RelationshipModel['arrow'],
+  getData: () => string
+): ArrowPath => {
+  if (cached?.arrow === arrow) {
+    return cached
+  }
+  const data = getData()
+  if (cached?.data === data) {
+    cached.arrow = arrow
+    return cached
+  }
+  return { arrow, data, path: new Path2D(data) }
+}
+
+type DrawStyle = {
+  color: string
+  borderColor: string
+  borderWidth: number
+  fontSize: number
+  textColor: string
+}
+
+/**
+ * Draws nodes, relationships and their captions on a canvas in one pass
+ * per frame. The items under the pointer are looked up in a spatial index
+ * rebuilt at most once per drawn frame after the positions changed. Arrow
+ * paths are only parsed again when the geometry of a relationship changed. Menus of selected nodes
+ * are still svg, in the `g.layer.nodes` group of `container`.
+ */
+export class CanvasGraphRenderer implements GraphRenderer {
+  readonly type = 'canvas'
+  private context: CanvasRenderingContext2D | null
+  private fontFamily: string
+  private nodes: NodeModel[] = []
+  private relationships: RelationshipModel[] = []
+  private nodeStyles = new Map<NodeModel, DrawStyle>()
+  private relationshipStyles = new Map<RelationshipModel, DrawStyle>()
+  private nodeIndex = new SpatialIndex<NodeModel>()
+  private relationshipIndex = new SpatialIndex<RelationshipModel>()
+  private indexIsStale = true
+  private indexedFrame = -1
+  private drawnFrames = 0
+  private outlinePaths = new WeakMap<RelationshipModel, ArrowPath>()
+  private overlayPaths = new WeakMap<RelationshipModel, ArrowPath>()
+  private transform: ZoomTransform = zoomIdentity
+  private size = { width: 0, height: 0 }
+  private pixelRatio = 1
+  private hovered: NodeModel | RelationshipModel | null = null
+  private frame: number | null = null
+
+  constructor(
+    private canvas: HTMLCanvasElement,
+    private container: Selection<SVGGElement, unknown, BaseType, unknown>,
+    private viz: Visualization
+  ) {
+    this.context = canvas.getContext('2d')
+    this.fontFamily = window.getComputedStyle(canvas).fontFamily || 'sans-serif'
+  }
+
+  updateNodes(nodes: NodeModel[]): void {
+    this.nodes = nodes
+    this.nodeStyles.clear()
+    nodes.forEach(node => {
+      const style = this.viz.style.forNode(node)
+      this.nodeStyles.set(node, {
+        ...this.getDrawStyle(style),
+        textColor: style.get('text-color-internal')
+      })
+    })
+
+    const menuGroups = this.container
+      .select('g.layer.nodes')
+      .selectAll<SVGGElement, NodeModel>('g.node')
+      .data(nodes.filter(node => node.selected), d => d.id)
+      .join('g')
+      .attr('class', 'node selected')
+    nodeMenuRenderer.forEach(renderer =>
+      menuGroups.call(renderer.onGraphChange, this.viz)
+    )
+
+    this.indexIsStale = true
+    this.scheduleDraw()
+  }
+
+  updateRelationships(relationships: RelationshipModel[]): void {
+    this.relationships = relationships
+    this.relationshipStyles.clear()
+    relationships.forEach(rel => {
+      const style = this.viz.style.forRelationship(rel)
+      this.relationshipStyles.set(rel, {
+        ...this.getDrawStyle(style),
+        textColor: style.get(`text-color-${rel.captionLayout}`)
+      })
+    })
+    this.indexIsStale = true
+    this.scheduleDraw()
+  }
+
+  render(): void {
+    this.container
+      .selectAll<SVGGElement, NodeModel>('g.node')
+      .attr('transform', d => `translate(${d.x},${d.y})`)
+    this.indexIsStale = true
+    this.draw()
+  }
+
+  setTransform(transform: ZoomTransform): void {
+    this.transform = transform
+    // Keeps the menus in place over the canvas
+    this.container.attr('transform', String(transform))
+    this.scheduleDraw()
+  }
+
+  boundingBox(): GraphBoundingBox | undefined {
+    if (!this.nodes.length) {
+      return undefined
+    }
+    let [minX, minY, maxX, maxY] = [Infinity, Infinity, -Infinity, -Infinity]
+    this.nodes.forEach(({ x, y, radius }) => {
+      minX = Math.min(minX, x - radius)
+      minY = Math.min(minY, y - radius)
+      maxX = Math.max(maxX, x + radius)
+      maxY = Math.max(maxY, y + radius)
+    })
+    return { x: minX, y: minY, width: maxX - minX, height: maxY - minY }
+  }
+
+  resize(size: { width: number; height: number }): void {
+    this.size = size
+    this.pixelRatio = window.devicePixelRatio || 1
+    this.canvas.width = Math.round(size.width * this.pixelRatio)
+    this.canvas.height = Math.round(size.height * this.pixelRatio)
+    this.scheduleDraw()
+  }
+
+  destroy(): void {
+    if (this.frame !== null) {
+      cancelAnimationFrame(this.frame)
+    }
+    this.container.selectAll('g.node').remove()
+    this.canvas.remove()
+  }
+
+  setHovered(item: NodeModel | RelationshipModel | null): void {
+    this.hovered = item
+    this.scheduleDraw()
+  }
+
+  // The topmost item at a point in graph coordinates
+  hitTest(x: number, y: number): NodeModel | RelationshipModel | null {
+    // Pointer events between two frames share the index of the first
+    if (this.indexIsStale && this.indexedFrame !== this.drawnFrames) {
+      this.updateIndex()
+    }
+    const node = this.nodeIndex
+      .query(x, y)
+      .find(node => (node.x - x) ** 2 + (node.y - y) ** 2 <= node.radius ** 2)
+    if (node) {
+      return node
+    }
+    const context = this.context
+    if (!context) {
+      return null
+    }
+    context.save()
+    context.setTransform(1, 0, 0, 1, 0, 0)
+    const relationship = this.relationshipIndex.query(x, y).find(rel => {
+      // Into the coordinates the arrow is drawn in
+      const angle = -((rel.naturalAngle + 180) * Math.PI) / 180
+      const dx = x - rel.source.x
+      const dy = y - rel.source.y
+      return context.isPointInPath(
+        this.getOverlayPath(rel),
+        dx * Math.cos(angle) - dy * Math.sin(angle),
+        dx * Math.sin(angle) + dy * Math.cos(angle)
+      )
+    })
+    context.restore()
+    return relationship ?? null
+  }
+
+  private getDrawStyle(style: {
+    get: (attr: string) => string
+  }): Omit<DrawStyle, 'textColor'> {
+    return {
+      color: style.get('color'),
+      borderColor: style.get('border-color'),
+      borderWidth: parseFloat(style.get('border-width')) || 0,
+      fontSize: parseFloat(style.get('font-size')) || 10
+    }
+  }
+
+  private updateIndex(): void {
+    this.nodeIndex.clear()
+    this.nodes.forEach(node =>
+      this.nodeIndex.insert(
+        node,
+        node.x - node.radius,
+        node.y - node.radius,
+        node.x + node.radius,
+        node.y + node.radius
+      )
+    )
+    this.relationshipIndex.clear()
+    this.relationships.forEach(rel => {
+      if (rel.arrow) {
+        const margin = RELATIONSHIP_MARGIN + rel.source.radius * 2
+        this.relationshipIndex.insert(
+          rel,
+          Math.min(rel.source.x, rel.target.x) - margin,
+          Math.min(rel.source.y, rel.target.y) - margin,
+          Math.max(rel.source.x, rel.target.x) + margin,
+          Math.max(rel.source.y, rel.target.y) + margin
+        )
+      }
+    })
+    this.indexIsStale = false
+    this.indexedFrame = this.drawnFrames
+  }
+
+  private getOutlinePath(rel: RelationshipModel): Path2D {
+    const cached = updateArrowPath(this.outlinePaths.get(rel), rel.arrow, () =>
+      rel.arrow!.outline(rel.shortCaptionLength ?? 0)
+    )
+    this.outlinePaths.set(rel, cached)
+    return cached.path
+  }
+
+  private getOverlayPath(rel: RelationshipModel): Path2D {
+    const cached = updateArrowPath(this.overlayPaths.get(rel), rel.arrow, () =>
+      rel.arrow!.overlay(RELATIONSHIP_OVERLAY_BAND)
+    )
+    this.overlayPaths.set(rel, cached)
+    return cached.path
+  }
+
+  private scheduleDraw(): void {
+    if (this.frame === null) {
+      this.frame = requestAnimationFrame(() => {
+        this.frame = null
+        this.draw()
+      })
+    }
+  }
+
+  private draw(): void {
+    const context = this.context
+    if (!context) {
+      return
+    }
+    this.drawnFrames++
+    const { width, height } = this.size
+    const { x, y, k } = this.transform
+    const ratio = this.pixelRatio
+    context.setTransform(1, 0, 0, 1, 0, 0)
+    context.clearRect(0, 0, this.canvas.width, this.canvas.height)
+    // (0, 0) is in the centre of the view, as in the viewBox of the svg
+    context.setTransform(
+      ratio * k,
+      0,
+      0,
+      ratio * k,
+      ratio * (width / 2 + x),
+      ratio * (height / 2 + y)
+    )
+
+    // The part of the graph in view
+    const view = {
+      minX: (-width / 2 - x) / k,
+      minY: (-height / 2 - y) / k,
+      maxX: (width / 2 - x) / k,
+      maxY: (height / 2 - y) / k
+    }
+    const isInView = (
+      minX: number,
+      minY: number,
+      maxX: number,
+      maxY: number
+    ) =>
+      maxX >= view.minX &&
+      minX <= view.maxX &&
+      maxY >= view.minY &&
+      minY <= view.maxY
+
+    this.relationships.forEach(rel => {
+      const { source, target } = rel
+      const margin = RELATIONSHIP_MARGIN + source.radius * 2
+      if (
+        rel.arrow &&
+        isInView(
+          Math.min(source.x, target.x) - margin,
+          Math.min(source.y, target.y) - margin,
+          Math.max(source.x, target.x) + margin,
+          Math.max(source.y, target.y) + margin
+        )
+      ) {
+        this.drawRelationship(context, rel, k)
+      }
+    })
+
+    this.nodes.forEach(node => {
+      const extent = node.radius + NODE_RING_WIDTH
+      if (
+        isInView(
+          node.x - extent,
+          node.y - extent,
+          node.x + extent,
+          node.y + extent
+        )
+      ) {
+        this.drawNode(context, node, k)
+      }
+    })
+  }
+
+  private drawRelationship(
+    context: CanvasRenderingContext2D,
+    rel: RelationshipModel,
+    scale: number
+  ): void {
+    const arrow = rel.arrow!
+    const style = this.relationshipStyles.get(rel)
+    if (!style) {
+      return
+    }
+    context.save()
+    context.translate(rel.source.x, rel.source.y)
+    context.rotate(((rel.naturalAngle + 180) * Math.PI) / 180)
+
+    context.fillStyle = style.color
+    context.fill(this.getOutlinePath(rel))
+
+    if (rel.shortCaption && style.fontSize * scale >= CANVAS_MIN_CAPTION_SIZE) {
+      const { x, y } = arrow.midShaftPoint
+      if (rel.naturalAngle < 90 || rel.naturalAngle > 270) {
+        // Keeps the caption upright
+        context.translate(x, y)
+        context.rotate(Math.PI)
+        context.translate(-x, -y)
+      }
+      context.font = `${style.fontSize}px ${this.fontFamily}`
+      context.textAlign = 'center'
+      context.fillStyle = style.textColor
+      context.fillText(rel.shortCaption, x, y + style.fontSize / 2 - 1)
+    }
+
+    if (rel.selected || rel === this.hovered) {
+      context.globalAlpha = HIGHLIGHT_OPACITY
+      context.fillStyle = rel.selected ? SELECTED_COLOR : HOVER_COLOR
+      context.fill(this.getOverlayPath(rel))
+    }
+    context.restore()
+  }
+
+  private drawNode(
+    context: CanvasRenderingContext2D,
+    node: NodeModel,
+    scale: number
+  ): void {
+    const style = this.nodeStyles.get(node)
+    if (!style) {
+      return
+    }
+    const { x, y, radius } = node
+    if (node.selected || node === this.hovered) {
+      context.beginPath()
+      context.arc(x, y, radius + 4, 0, Math.PI * 2)
+      context.globalAlpha = HIGHLIGHT_OPACITY
+      context.lineWidth = NODE_RING_WIDTH
+      context.strokeStyle = node.selected ? SELECTED_COLOR : HOVER_COLOR
+      context.stroke()
+      context.globalAlpha = 1
+    }
+
+    context.beginPath()
+    context.arc(x, y, radius, 0, Math.PI * 2)
+    context.fillStyle = style.color
+    context.fill()
+    if (style.borderWidth > 0) {
+      context.lineWidth = style.borderWidth
+      context.strokeStyle = style.borderColor
+      context.stroke()
+    }
+
+    if (style.fontSize * scale >= CANVAS_MIN_CAPTION_SIZE) {
+      context.font = `${style.fontSize}px ${this.fontFamily}`
+      context.textAlign = 'center'
+      context.fillStyle = style.textColor
+      node.caption.forEach(line => {
+        context.fillText(line.text, x, y + line.baseline)
+      })
+    }
+  }
+}
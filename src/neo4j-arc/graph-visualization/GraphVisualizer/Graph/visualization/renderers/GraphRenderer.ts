@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { ZoomTransform } from 'd3-zoom'
+
+import { NodeModel } from '../../../../models/Node'
+import { RelationshipModel } from '../../../../models/Relationship'
+
+export type GraphBoundingBox = {
+  x: number
+  y: number
+  width: number
+  height: number
+}
+
+/**
+ * Draws the graph of a `Visualization`. The svg renderer keeps one group
+ * of elements per node and relationship, the canvas renderer draws the
+ * whole graph in one pass per frame for graphs too large for the DOM.
+ */
+export interface GraphRenderer {
+  readonly type: 'svg' | 'canvas'
+  // The graph changed, `render` is called once positions are known
+  updateNodes(nodes: NodeModel[]): void
+  updateRelationships(relationships: RelationshipModel[]): void
+  // Called on every tick of the simulation
+  render(): void
+  setTransform(transform: ZoomTransform, animate: boolean): void
+  boundingBox(): GraphBoundingBox | undefined
+  resize(size: { width: number; height: number }): void
+  // Removes everything the renderer added to the page
+  destroy(): void
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { easeCubic } from 'd3-ease'
+import { BaseType, Selection } from 'd3-selection'
+import { ZoomTransform } from 'd3-zoom'
+
+import { NodeModel } from '../../../../models/Node'
+import { RelationshipModel } from '../../../../models/Relationship'
+import { Visualization } from '../Visualization'
+import {
+  nodeEventHandlers,
+  relationshipEventHandlers
+} from '../mouseEventHandlers'
+import { GraphBoundingBox, GraphRenderer } from './GraphRenderer'
+import {
+  node as nodeRenderer,
+  relationship as relationshipRenderer
+} from './init'
+import { nodeMenuRenderer } from './menu'
+
+/**
+ * One group of svg elements per node and relationship, in the
+ * `g.layer.nodes` and `g.layer.relationships` groups of `container`.
+ * Without `interactive` no event handlers or menus are added, as for
+ * the svg of an export.
+ */
+export class SvgGraphRenderer implements GraphRenderer {
+  readonly type = 'svg'
+
+  constructor(
+    private container: Selection<SVGGElement, unknown, BaseType, unknown>,
+    private viz: Visualization,
+    private interactive = true
+  ) {}
+
+  updateNodes(nodes: NodeModel[]): void {
+    const nodeGroups = this.container
+      .select('g.layer.nodes')
+      .selectAll<SVGGElement, NodeModel>('g.node')
+      .data(nodes, d => d.id)
+      .join('g')
+      .attr('class', 'node')
+      .attr('aria-label', d => `graph-node${d.id}`)
+      .classed('selected', node => node.selected)
+
+    if (this.interactive) {
+      nodeGroups.call(nodeEventHandlers, this.viz.trigger, this.viz.forceSim)
+    }
+
+    nodeRenderer.forEach(renderer =>
+      nodeGroups.call(renderer.onGraphChange, this.viz)
+    )
+
+    if (this.interactive) {
+      nodeMenuRenderer.forEach(renderer =>
+        nodeGroups.call(renderer.onGraphChange, this.viz)
+      )
+    }
+  }
+
+  updateRelationships(relationships: RelationshipModel[]): void {
+    const relationshipGroups = this.container
+      .select('g.layer.relationships')
+      .selectAll<SVGGElement, RelationshipModel>('g.relationship')
+      .data(relationships, d => d.id)
+      .join('g')
+      .attr('class', 'relationship')
+      .classed('selected', relationship => relationship.selected)
+
+    if (this.interactive) {
+      relationshipGroups.call(relationshipEventHandlers, this.viz.trigger)
+    }
+
+    relationshipRenderer.forEach(renderer =>
+      relationshipGroups.call(renderer.onGraphChange, this.viz)
+    )
+  }
+
+  render(): void {
+    const nodeGroups = this.container
+      .selectAll<SVGGElement, NodeModel>('g.node')
+      .attr('transform', d => `translate(${d.x},${d.y})`)
+
+    nodeRenderer.forEach(renderer => nodeGroups.call(renderer.onTick, this.viz))
+
+    const relationshipGroups = this.container
+      .selectAll<SVGGElement, RelationshipModel>('g.relationship')
+      .attr(
+        'transform',
+        d =>
+          `translate(${d.source.x} ${d.source.y}) rotate(${
+            d.naturalAngle + 180
+          })`
+      )
+
+    relationshipRenderer.forEach(renderer =>
+      relationshipGroups.call(renderer.onTick, this.viz)
+    )
+  }
+
+  setTransform(transform: ZoomTransform, animate: boolean): void {
+    this.container
+      .transition()
+      .duration(animate ? 400 : 20)
+      .call(sel => (animate ? sel.ease(easeCubic) : sel))
+      .attr('transform', String(transform))
+  }
+
+  boundingBox(): GraphBoundingBox | undefined {
+    return this.container.node()?.getBBox()
+  }
+
+  resize(): void {
+    // The svg is scaled by its viewBox
+  }
+
+  destroy(): void {
+    this.container.selectAll('g.node, g.relationship').remove()
+  }
+}
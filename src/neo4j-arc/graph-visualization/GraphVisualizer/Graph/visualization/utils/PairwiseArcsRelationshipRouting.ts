@@ -27,10 +27,8 @@ import { measureText } from '../../../../utils/textMeasurement'
 
 export class PairwiseArcsRelationshipRouting {
   style: GraphStyleModel
-  canvas: HTMLCanvasElement
   constructor(style: GraphStyleModel) {
     this.style = style
-    this.canvas = document.createElement('canvas')
   }
 
   measureRelationshipCaption(
@@ -41,15 +39,8 @@ export class PairwiseArcsRelationshipRouting {
     const padding = parseFloat(
       this.style.forRelationship(relationship).get('padding')
     )
-    const canvas2DContext = this.canvas.getContext('2d')
     return (
-      measureText(
-        caption,
-        fontFamily,
-        relationship.captionHeight,
-        <CanvasRenderingContext2D>canvas2DContext
-      ) +
-      padding * 2
+      measureText(caption, fontFamily, relationship.captionHeight) + padding * 2
     )
   }
 
@@ -117,13 +108,13 @@ export class PairwiseArcsRelationshipRouting {
 
   distributeAnglesForLoopArrows(
     nodePairs: NodePair[],
-    relationships: RelationshipModel[]
+    graph: GraphModel
   ): void {
     for (const nodePair of nodePairs) {
       if (nodePair.isLoop()) {
         let angles = []
         const node = nodePair.nodeA
-        for (const relationship of Array.from(relationships)) {
+        for (const relationship of graph.relationshipsOfNode(node)) {
           if (!relationship.isLoop()) {
             if (relationship.source === node) {
               angles.push(relationship.naturalAngle)
@@ -174,7 +165,7 @@ export class PairwiseArcsRelationshipRouting {
     const nodePairs = graph.groupedRelationships()
 
     this.computeGeometryForNonLoopArrows(nodePairs)
-    this.distributeAnglesForLoopArrows(nodePairs, graph.relationships())
+    this.distributeAnglesForLoopArrows(nodePairs, graph)
 
     for (const nodePair of nodePairs) {
       for (const relationship of nodePair.relationships) {
@@ -78,6 +78,9 @@ type GraphVisualizerProps = GraphVisualizerDefaultProps & {
   disableWheelZoomInfoMessage?: () => void
   DetailsPaneOverride?: React.FC<DetailsPaneProps>
   OverviewPaneOverride?: React.FC<OverviewPaneProps>
+  // Lays the graph out in the returned worker, which runs
+  // handleForceSimulationMessage from @neo4j-devtools/arc/worker
+  createSimulationWorker?: () => Worker
 }
 
 type GraphVisualizerState = {
@@ -264,6 +267,7 @@ export class GraphVisualizer extends Component<
           }
           wheelZoomInfoMessageEnabled={this.props.wheelZoomInfoMessageEnabled}
           disableWheelZoomInfoMessage={this.props.disableWheelZoomInfoMessage}
+          createSimulationWorker={this.props.createSimulationWorker}
         />
         <NodeInspectorPanel
           graphStyle={graphStyle}
@@ -17,8 +17,8 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-import { NodeModel } from './models/Node'
-import { RelationshipModel } from './models/Relationship'
+// Also used by the simulation worker, so only the radii are required
+type LaidOutNode = { radius: number }
 
 export const PRECOMPUTED_TICKS = 300
 export const TICKS_PER_RENDER = 10
@@ -43,14 +43,22 @@ export const DRAGGING_ALPHA_TARGET = 0.09
 
 export const LINK_DISTANCE = 45
 
-export const FORCE_LINK_DISTANCE = (relationship: RelationshipModel): number =>
+export const FORCE_LINK_DISTANCE = (relationship: {
+  source: LaidOutNode
+  target: LaidOutNode
+}): number =>
   relationship.source.radius + relationship.target.radius + LINK_DISTANCE * 2
-export const FORCE_COLLIDE_RADIUS = (node: NodeModel): number =>
+export const FORCE_COLLIDE_RADIUS = (node: LaidOutNode): number =>
   node.radius + 25
 export const FORCE_CHARGE = -400
 export const FORCE_CENTER_X = 0.03
 export const FORCE_CENTER_Y = 0.03
 
+// Graphs with more nodes and relationships than this are drawn on a canvas
+export const CANVAS_RENDERER_MIN_ITEMS = 1500
+// Captions smaller than this many pixels on screen aren't drawn on a canvas
+export const CANVAS_MIN_CAPTION_SIZE = 4
+
 export const ZOOM_MIN_SCALE = 0.1
 export const ZOOM_MAX_SCALE = 2
 export const ZOOM_FIT_PADDING_PERCENT = 0.05
@@ -28,7 +28,12 @@ export type {
   GraphStatsLabels,
   GraphStatsRelationshipTypes
 } from './utils/mapper'
-export { measureText } from './utils/textMeasurement'
+export {
+  clearTextMeasurementCache,
+  getTextMeasurementStats,
+  measureText
+} from './utils/textMeasurement'
+export type { TextMeasurementStats } from './utils/textMeasurement'
 
 export { GraphVisualizer } from './GraphVisualizer/GraphVisualizer'
 export type { DetailsPaneProps } from './GraphVisualizer/DefaultPanelContent/DefaultDetailsPane'
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { GraphModel } from './Graph'
+import { NodeModel } from './Node'
+import { RelationshipModel } from './Relationship'
+
+const HUBS = 100
+const NODES_PER_HUB = 100
+const ROUNDS = 5
+// Removing a node used to scan every relationship of the graph, which
+// took well over this on a graph of this size
+const BUDGET_MS = 5000
+
+// Builds a 10k node graph of hubs around a root, with every hub expanded
+const createExpandedGraph = () => {
+  const graph = new GraphModel()
+  const root = new NodeModel('root', [], {}, {})
+  const hubs = Array.from(
+    { length: HUBS },
+    (_, i) => new NodeModel(`hub${i}`, [], {}, {})
+  )
+  graph.addNodes([root, ...hubs])
+  graph.addRelationships(
+    hubs.map(
+      hub => new RelationshipModel(`root-${hub.id}`, root, hub, 'TYPE', {}, {})
+    )
+  )
+
+  const expand = (hub: NodeModel) => {
+    const nodes = Array.from(
+      { length: NODES_PER_HUB },
+      (_, i) => new NodeModel(`${hub.id}-${i}`, [], {}, {})
+    )
+    graph.addExpandedNodes(hub, nodes)
+    graph.addRelationships(
+      nodes.map(
+        node => new RelationshipModel(node.id, hub, node, 'TYPE', {}, {})
+      )
+    )
+  }
+  hubs.forEach(expand)
+
+  const collapseAndExpand = () => {
+    for (let round = 0; round < ROUNDS; round++) {
+      hubs.forEach(hub => graph.collapseNode(hub))
+      hubs.forEach(expand)
+    }
+  }
+  return { graph, collapseAndExpand }
+}
+
+// Timings only mean something on an otherwise idle machine, so the
+// benchmarks are left out of the test suite unless BENCHMARK is set
+const describeBenchmark = process.env.BENCHMARK ? describe : describe.skip
+
+describe('GraphModel on a large graph', () => {
+  test('expands and collapses nodes of a 10k node graph', () => {
+    // Given
+    const { graph, collapseAndExpand } = createExpandedGraph()
+    expect(graph.nodes()).toHaveLength(1 + HUBS + HUBS * NODES_PER_HUB)
+
+    // When
+    collapseAndExpand()
+
+    // Then
+    expect(graph.nodes()).toHaveLength(1 + HUBS + HUBS * NODES_PER_HUB)
+    expect(graph.relationships()).toHaveLength(HUBS + HUBS * NODES_PER_HUB)
+    expect(graph.findNodeNeighbourIds('hub0')).toHaveLength(1 + NODES_PER_HUB)
+  })
+})
+
+describeBenchmark('GraphModel on a large graph benchmark', () => {
+  test('measures expanding and collapsing nodes of a 10k node graph', () => {
+    const { collapseAndExpand } = createExpandedGraph()
+
+    const start = performance.now()
+    collapseAndExpand()
+    const duration = performance.now() - start
+
+    console.log(
+      `Collapse and expand ${HUBS} hubs ${ROUNDS} times: ${Math.round(
+        duration
+      )} ms`
+    )
+    expect(duration).toBeLessThan(BUDGET_MS)
+  })
+})
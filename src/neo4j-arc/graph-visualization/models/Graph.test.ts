@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { GraphModel } from './Graph'
+import { NodeModel } from './Node'
+import { RelationshipModel } from './Relationship'
+
+const node = (id: string) => new NodeModel(id, [], {}, {})
+const relationship = (id: string, source: NodeModel, target: NodeModel) =>
+  new RelationshipModel(id, source, target, 'TYPE', {}, {})
+const ids = (relationships: Iterable<RelationshipModel>) =>
+  Array.from(relationships).map(relationship => relationship.id)
+
+describe('GraphModel', () => {
+  const a = node('a')
+  const b = node('b')
+  const c = node('c')
+
+  test('groups relationships by pair of nodes', () => {
+    // Given
+    const graph = new GraphModel()
+    graph.addNodes([a, b, c])
+
+    // When
+    graph.addRelationships([
+      relationship('1', a, b),
+      relationship('2', b, a),
+      relationship('3', b, c),
+      relationship('4', c, c)
+    ])
+
+    // Then
+    expect(
+      graph
+        .groupedRelationships()
+        .map(pair => [pair.toString(), ids(pair.relationships)])
+    ).toEqual([
+      ['a:b', ['1', '2']],
+      ['b:c', ['3']],
+      ['c:c', ['4']]
+    ])
+    expect(ids(graph.relationshipsOfNode(b))).toEqual(['1', '2', '3'])
+    expect(ids(graph.relationshipsOfNode(c))).toEqual(['3', '4'])
+  })
+
+  test('updates the groups when relationships are removed', () => {
+    // Given
+    const graph = new GraphModel()
+    graph.addNodes([a, b, c])
+    graph.addRelationships([relationship('1', a, b), relationship('2', b, c)])
+    graph.addInternalRelationships([relationship('3', a, c)])
+    graph.groupedRelationships()
+
+    // When
+    graph.removeConnectedRelationships(a)
+    graph.removeNode(a)
+    graph.pruneInternalRelationships()
+
+    // Then
+    expect(graph.groupedRelationships().map(pair => pair.toString())).toEqual([
+      'b:c'
+    ])
+    expect(graph.relationshipsOfNode(a).size).toEqual(0)
+    expect(graph.relationshipsOfNode(c).size).toEqual(1)
+  })
+
+  test('finds the relationships and neighbours of a node', () => {
+    // Given
+    const graph = new GraphModel()
+    graph.addNodes([a, b, c])
+    graph.addRelationships([
+      relationship('1', a, b),
+      relationship('2', c, a),
+      relationship('3', b, c)
+    ])
+
+    // Then
+    expect(ids(graph.findAllRelationshipToNode(a))).toEqual(['1', '2'])
+    expect(graph.findNodeNeighbourIds('a')).toEqual(['b', 'c'])
+  })
+
+  test('keeps the other nodes and relationships when one is removed', () => {
+    // Given
+    const graph = new GraphModel()
+    const d = node('d')
+    graph.addNodes([a, b, c, d])
+    graph.addRelationships([relationship('1', a, b), relationship('2', c, d)])
+
+    // When
+    graph.removeConnectedRelationships(a)
+    graph.removeNode(a)
+    graph.removeNode(c)
+
+    // Then
+    expect(graph.nodes().map(node => node.id)).toEqual(['d', 'b'])
+    expect(ids(graph.relationships())).toEqual(['2'])
+    expect(graph.findNode('b')).toBe(b)
+  })
+})
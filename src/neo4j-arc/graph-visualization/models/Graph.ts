@@ -25,12 +25,38 @@ function uniq<T>(list: T[]): T[] {
   return [...new Set(list)]
 }
 
+function swapRemove<T extends { id: string }>(
+  list: T[],
+  positions: Map<string, number>,
+  id: string
+): void {
+  const position = positions.get(id)
+  if (position === undefined) {
+    return
+  }
+  const last = list.pop() as T
+  if (position < list.length) {
+    list[position] = last
+    positions.set(last.id, position)
+  }
+  positions.delete(id)
+}
+
 export class GraphModel {
   _nodes: NodeModel[]
   _relationships: RelationshipModel[]
   expandedNodeMap: NodeMap
   nodeMap: Record<string, NodeModel>
   relationshipMap: Record<string, RelationshipModel>
+  // Kept up to date as relationships are added and removed, the layout
+  // reads them on every tick
+  private nodePairs: Map<string, NodePair>
+  private nodePairList: NodePair[] | null
+  private incidentRelationships: Map<string, Set<RelationshipModel>>
+  // Positions in _nodes and _relationships by id, so items are removed by
+  // moving the last one in their place
+  private nodePositions: Map<string, number>
+  private relationshipPositions: Map<string, number>
 
   constructor() {
     this.addNodes = this.addNodes.bind(this)
@@ -50,6 +76,11 @@ export class GraphModel {
     this._nodes = []
     this.relationshipMap = {}
     this._relationships = []
+    this.nodePairs = new Map()
+    this.nodePairList = null
+    this.incidentRelationships = new Map()
+    this.nodePositions = new Map()
+    this.relationshipPositions = new Map()
   }
 
   nodes(): NodeModel[] {
@@ -61,28 +92,86 @@ export class GraphModel {
   }
 
   groupedRelationships(): NodePair[] {
-    const groups: Record<string, NodePair> = {}
-    for (const relationship of this._relationships) {
-      let nodePair = new NodePair(relationship.source, relationship.target)
+    if (this.nodePairList === null) {
+      this.nodePairList = Array.from(this.nodePairs.values())
+    }
+    return this.nodePairList
+  }
+
+  // Relationships that start or end at the node, loops included
+  relationshipsOfNode(node: NodeModel): Set<RelationshipModel> {
+    return this.incidentRelationships.get(node.id) ?? new Set()
+  }
+
+  private indexRelationship(relationship: RelationshipModel): void {
+    const key = NodePair.key(relationship.source, relationship.target)
+    let nodePair = this.nodePairs.get(key)
+    if (nodePair === undefined) {
+      nodePair = new NodePair(relationship.source, relationship.target)
+      this.nodePairs.set(key, nodePair)
+      this.nodePairList = null
+    }
+    nodePair.relationships.push(relationship)
 
-      nodePair =
-        groups[nodePair.toString()] != null
-          ? groups[nodePair.toString()]
-          : nodePair
+    for (const node of [relationship.source, relationship.target]) {
+      const incident = this.incidentRelationships.get(node.id)
+      if (incident) {
+        incident.add(relationship)
+      } else {
+        this.incidentRelationships.set(node.id, new Set([relationship]))
+      }
+    }
+  }
 
-      nodePair.relationships.push(relationship)
+  private unindexRelationship(relationship: RelationshipModel): void {
+    const key = NodePair.key(relationship.source, relationship.target)
+    const nodePair = this.nodePairs.get(key)
+    if (nodePair) {
+      nodePair.relationships.splice(
+        nodePair.relationships.indexOf(relationship),
+        1
+      )
+      if (nodePair.relationships.length === 0) {
+        this.nodePairs.delete(key)
+        this.nodePairList = null
+      }
+    }
 
-      groups[nodePair.toString()] = nodePair
+    for (const node of [relationship.source, relationship.target]) {
+      const incident = this.incidentRelationships.get(node.id)
+      incident?.delete(relationship)
+      if (incident?.size === 0) {
+        this.incidentRelationships.delete(node.id)
+      }
     }
+  }
+
+  private pushNode(node: NodeModel): void {
+    this.nodeMap[node.id] = node
+    this.nodePositions.set(node.id, this._nodes.length)
+    this._nodes.push(node)
+  }
 
-    return Object.values(groups)
+  private pushRelationship(relationship: RelationshipModel): void {
+    this.relationshipMap[relationship.id] = relationship
+    this.relationshipPositions.set(relationship.id, this._relationships.length)
+    this._relationships.push(relationship)
+    this.indexRelationship(relationship)
+  }
+
+  private clearRelationships(): void {
+    this.relationshipMap = {}
+    this._relationships = []
+    this.relationshipPositions = new Map()
+    this.nodePairs = new Map()
+    this.nodePairList = null
+    this.incidentRelationships = new Map()
   }
 
   addNodes(nodes: NodeModel[]): void {
     for (const node of nodes) {
       if (this.findNode(node.id) == null) {
-        this.nodeMap[node.id] = node
-        this._nodes.push(node)
+        this.pushNode(node)
       }
     }
   }
@@ -90,8 +179,7 @@ export class GraphModel {
   addExpandedNodes = (node: NodeModel, nodes: NodeModel[]): void => {
     for (const eNode of Array.from(nodes)) {
       if (this.findNode(eNode.id) == null) {
-        this.nodeMap[eNode.id] = eNode
-        this._nodes.push(eNode)
+        this.pushNode(eNode)
         this.expandedNodeMap[node.id] = this.expandedNodeMap[node.id]
           ? uniq(this.expandedNodeMap[node.id].concat([eNode.id]))
           : [eNode.id]
@@ -102,7 +190,7 @@ export class GraphModel {
   removeNode(node: NodeModel): void {
     if (this.findNode(node.id) != null) {
       delete this.nodeMap[node.id]
-      this._nodes.splice(this._nodes.indexOf(node), 1)
+      swapRemove(this._nodes, this.nodePositions, node.id)
     }
   }
 
@@ -132,8 +220,9 @@ export class GraphModel {
     for (const r of Array.from(this.findAllRelationshipToNode(node))) {
       this.updateNode(r.source)
       this.updateNode(r.target)
-      this._relationships.splice(this._relationships.indexOf(r), 1)
+      swapRemove(this._relationships, this.relationshipPositions, r.id)
       delete this.relationshipMap[r.id]
+      this.unindexRelationship(r)
     }
   }
 
@@ -144,8 +233,7 @@ export class GraphModel {
         existingRelationship.internal = false
       } else {
         relationship.internal = false
-        this.relationshipMap[relationship.id] = relationship
-        this._relationships.push(relationship)
+        this.pushRelationship(relationship)
       }
     }
   }
@@ -154,8 +242,7 @@ export class GraphModel {
     for (const relationship of Array.from(relationships)) {
       relationship.internal = true
       if (this.findRelationship(relationship.id) == null) {
-        this.relationshipMap[relationship.id] = relationship
-        this._relationships.push(relationship)
+        this.pushRelationship(relationship)
       }
     }
   }
@@ -164,8 +251,7 @@ export class GraphModel {
     const relationships = this._relationships.filter(
       relationship => !relationship.internal
     )
-    this.relationshipMap = {}
-    this._relationships = []
+    this.clearRelationships()
     this.addRelationships(relationships)
   }
 
@@ -174,17 +260,13 @@ export class GraphModel {
   }
 
   findNodeNeighbourIds(id: string): string[] {
-    return this._relationships
-      .filter(
-        relationship =>
-          relationship.source.id === id || relationship.target.id === id
-      )
-      .map(relationship => {
-        if (relationship.target.id === id) {
-          return relationship.source.id
-        }
-        return relationship.target.id
-      })
+    const relationships = this.incidentRelationships.get(id) ?? []
+    return Array.from(relationships, relationship => {
+      if (relationship.target.id === id) {
+        return relationship.source.id
+      }
+      return relationship.target.id
+    })
   }
 
   findRelationship(id: string): RelationshipModel | undefined {
@@ -192,17 +274,14 @@ export class GraphModel {
   }
 
   findAllRelationshipToNode(node: NodeModel): RelationshipModel[] {
-    return this._relationships.filter(
-      relationship =>
-        relationship.source.id === node.id || relationship.target.id === node.id
-    )
+    return Array.from(this.relationshipsOfNode(node))
   }
 
   resetGraph(): void {
     this.nodeMap = {}
     this._nodes = []
-    this.relationshipMap = {}
-    this._relationships = []
+    this.nodePositions = new Map()
+    this.clearRelationships()
   }
 }
 
@@ -228,4 +307,10 @@ export class NodePair {
   toString(): string {
     return `${this.nodeA.id}:${this.nodeB.id}`
   }
+
+  static key(node1: NodeModel, node2: NodeModel): string {
+    return node1.id < node2.id
+      ? `${node1.id}:${node2.id}`
+      : `${node2.id}:${node1.id}`
+  }
 }
@@ -55,16 +55,20 @@ export class NodeModel {
     id: string,
     labels: string[],
     properties: NodeProperties,
-    propertyTypes: Record<string, string>
+    propertyTypes: Record<string, string>,
+    // Read only, may be shared with other models of the same node
+    propertyList?: VizItemProperty[]
   ) {
     this.id = id
     this.labels = labels
     this.propertyMap = properties
-    this.propertyList = Object.keys(properties).map((key: string) => ({
-      key,
-      type: propertyTypes[key],
-      value: properties[key]
-    }))
+    this.propertyList =
+      propertyList ??
+      Object.keys(properties).map((key: string) => ({
+        key,
+        type: propertyTypes[key],
+        value: properties[key]
+      }))
 
     // Initialise visualisation items
     this.radius = 0
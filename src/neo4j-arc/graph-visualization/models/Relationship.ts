@@ -52,18 +52,24 @@ export class RelationshipModel {
     target: NodeModel,
     type: string,
     properties: Record<string, string>,
-    propertyTypes: Record<string, string>
+    propertyTypes: Record<string, string>,
+    // Read only, may be shared with other models of the same relationship
+    propertyList?: VizItemProperty[]
   ) {
     this.id = id
     this.source = source
     this.target = target
     this.type = type
     this.propertyMap = properties
-    this.propertyList = Object.keys(this.propertyMap || {}).reduce(
-      (acc: VizItemProperty[], key) =>
-        acc.concat([{ key, type: propertyTypes[key], value: properties[key] }]),
-      []
-    )
+    this.propertyList =
+      propertyList ??
+      Object.keys(this.propertyMap || {}).reduce(
+        (acc: VizItemProperty[], key) =>
+          acc.concat([
+            { key, type: propertyTypes[key], value: properties[key] }
+          ]),
+        []
+      )
 
     this.selected = false
     // These values are overriden as part of the initial layouting of the graph
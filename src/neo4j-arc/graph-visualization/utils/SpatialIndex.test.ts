@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { SpatialIndex } from './SpatialIndex'
+
+describe('SpatialIndex', () => {
+  test('finds items whose bounds contain the point', () => {
+    // Given
+    const index = new SpatialIndex<string>(10)
+    index.insert('a', 0, 0, 5, 5)
+    index.insert('b', 4, 4, 25, 25)
+    index.insert('c', -30, -30, -20, -20)
+
+    // Then
+    expect(index.query(1, 1)).toEqual(['a'])
+    expect(index.query(4.5, 4.5)).toEqual(['b', 'a'])
+    expect(index.query(24, 24)).toEqual(['b'])
+    expect(index.query(-25, -25)).toEqual(['c'])
+    expect(index.query(15, 2)).toEqual([])
+  })
+
+  test('is empty after clearing', () => {
+    // Given
+    const index = new SpatialIndex<string>()
+    index.insert('a', 0, 0, 5, 5)
+
+    // When
+    index.clear()
+
+    // Then
+    expect(index.query(1, 1)).toEqual([])
+  })
+})
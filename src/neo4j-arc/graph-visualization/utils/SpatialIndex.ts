@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+type Bounds = { minX: number; minY: number; maxX: number; maxY: number }
+
+// Graphs don't get anywhere near a million cells across
+const cellKey = (column: number, row: number) => column * 1e6 + row
+
+/**
+ * Uniform grid over the graph coordinates. Items are added to every cell
+ * their bounds overlap, a lookup only visits the items of one cell.
+ */
+export class SpatialIndex<T> {
+  private cells = new Map<number, { item: T; bounds: Bounds }[]>()
+
+  constructor(private cellSize = 64) {}
+
+  clear(): void {
+    this.cells.clear()
+  }
+
+  insert(item: T, minX: number, minY: number, maxX: number, maxY: number) {
+    const entry = { item, bounds: { minX, minY, maxX, maxY } }
+    const [firstColumn, firstRow] = this.cellOf(minX, minY)
+    const [lastColumn, lastRow] = this.cellOf(maxX, maxY)
+    for (let column = firstColumn; column <= lastColumn; column++) {
+      for (let row = firstRow; row <= lastRow; row++) {
+        const key = cellKey(column, row)
+        const cell = this.cells.get(key)
+        if (cell) {
+          cell.push(entry)
+        } else {
+          this.cells.set(key, [entry])
+        }
+      }
+    }
+  }
+
+  // Items whose bounds contain the point, most recently inserted first
+  query(x: number, y: number): T[] {
+    const [column, row] = this.cellOf(x, y)
+    const cell = this.cells.get(cellKey(column, row)) ?? []
+    const items: T[] = []
+    for (let i = cell.length - 1; i >= 0; i--) {
+      const { item, bounds } = cell[i]
+      if (
+        x >= bounds.minX &&
+        x <= bounds.maxX &&
+        y >= bounds.minY &&
+        y <= bounds.maxY
+      ) {
+        items.push(item)
+      }
+    }
+    return items
+  }
+
+  private cellOf(x: number, y: number): [number, number] {
+    return [Math.floor(x / this.cellSize), Math.floor(y / this.cellSize)]
+  }
+}
@@ -20,7 +20,11 @@
 import { GraphModel } from '../models/Graph'
 import { NodeModel } from '../models/Node'
 import { RelationshipModel } from '../models/Relationship'
-import { BasicNode, BasicRelationship } from 'neo4j-arc/common'
+import {
+  BasicNode,
+  BasicRelationship,
+  VizItemProperty
+} from 'neo4j-arc/common'
 import { optionalToString } from './utils'
 
 const mapProperties = (_: any) => Object.assign({}, ...stringifyValues(_))
@@ -29,6 +33,37 @@ const stringifyValues = (obj: any) =>
     [k]: obj[k] === null ? 'null' : optionalToString(obj[k])
   }))
 
+type MappedProperties = {
+  propertyMap: Record<string, string>
+  propertyList: VizItemProperty[]
+}
+
+// Nodes and relationships passed in again, e.g. when they are shared
+// between results, have their properties mapped once
+const mappedProperties = new WeakMap<
+  BasicNode | BasicRelationship,
+  MappedProperties
+>()
+
+const getMappedProperties = (
+  item: BasicNode | BasicRelationship
+): MappedProperties => {
+  let mapped = mappedProperties.get(item)
+  if (!mapped) {
+    const propertyMap = mapProperties(item.properties)
+    mapped = {
+      propertyMap,
+      propertyList: Object.keys(propertyMap).map(key => ({
+        key,
+        type: item.propertyTypes[key],
+        value: propertyMap[key]
+      }))
+    }
+    mappedProperties.set(item, mapped)
+  }
+  return mapped
+}
+
 export function createGraph(
   nodes: BasicNode[],
   relationships: BasicRelationship[]
@@ -40,15 +75,16 @@ export function createGraph(
 }
 
 export function mapNodes(nodes: BasicNode[]): NodeModel[] {
-  return nodes.map(
-    node =>
-      new NodeModel(
-        node.id,
-        node.labels,
-        mapProperties(node.properties),
-        node.propertyTypes
-      )
-  )
+  return nodes.map(node => {
+    const { propertyMap, propertyList } = getMappedProperties(node)
+    return new NodeModel(
+      node.id,
+      node.labels,
+      propertyMap,
+      node.propertyTypes,
+      propertyList
+    )
+  })
 }
 
 export function mapRelationships(
@@ -58,13 +94,15 @@ export function mapRelationships(
   return relationships.map(rel => {
     const source = graph.findNode(rel.startNodeId)
     const target = graph.findNode(rel.endNodeId)
+    const { propertyMap, propertyList } = getMappedProperties(rel)
     return new RelationshipModel(
       rel.id,
       source,
       target,
       rel.type,
-      mapProperties(rel.properties),
-      rel.propertyTypes
+      propertyMap,
+      rel.propertyTypes,
+      propertyList
     )
   })
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import {
+  clearTextMeasurementCache,
+  getTextMeasurementStats,
+  measureText
+} from './textMeasurement'
+
+describe('measureText', () => {
+  beforeEach(() => {
+    clearTextMeasurementCache()
+  })
+
+  test('measures each text in each font once', () => {
+    // When
+    measureText('Person', 'sans-serif', 10)
+    measureText('Person', 'sans-serif', 10)
+    measureText('Person', 'sans-serif', 12)
+    measureText('Movie', 'sans-serif', 10)
+    measureText('Person', 'sans-serif', 10)
+
+    // Then
+    expect(getTextMeasurementStats()).toEqual({ hits: 2, misses: 3, size: 3 })
+  })
+
+  test('forgets the least recently used widths', () => {
+    // Given
+    measureText('first', 'sans-serif', 10)
+    measureText('second', 'sans-serif', 10)
+
+    // When
+    for (let i = 0; i < 9999; i++) {
+      measureText(`${i}`, 'sans-serif', 10)
+      // Kept in use
+      measureText('first', 'sans-serif', 10)
+    }
+    const before = getTextMeasurementStats()
+    measureText('first', 'sans-serif', 10)
+    measureText('second', 'sans-serif', 10)
+
+    // Then
+    const after = getTextMeasurementStats()
+    expect(after.hits - before.hits).toEqual(1)
+    expect(after.misses - before.misses).toEqual(1)
+    expect(after.size).toEqual(10000)
+  })
+})
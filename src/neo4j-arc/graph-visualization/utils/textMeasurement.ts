@@ -18,6 +18,16 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+// Widths of text by font and text, shared by everything that measures text
+const CACHE_SIZE = 10000
+const textWidths = new Map<string, number>()
+let hits = 0
+let misses = 0
+
+let sharedContext: CanvasRenderingContext2D | null = null
+// Setting the font of a context is costly, even to the font it has
+let sharedContextFont = ''
+
 const measureTextWidthByCanvas = (
   text: string,
   font: string,
@@ -27,33 +37,60 @@ const measureTextWidthByCanvas = (
   return context.measureText(text).width
 }
 
-const cacheTextWidth = function () {
-  const CATCH_SIZE = 100000
-  const textMeasureMap: { [key: string]: number } = {}
-  const lruKeyList: string[] = []
-  return (key: string, calculate: () => number) => {
-    const cached = textMeasureMap[key]
-    if (cached) {
-      return cached
-    } else {
-      const result = calculate()
-      if (lruKeyList.length > CATCH_SIZE) {
-        delete textMeasureMap[lruKeyList.splice(0, 1).toString()]
-        lruKeyList.push(key)
-      }
-      return (textMeasureMap[key] = result)
-    }
+const measureTextWidthBySharedCanvas = (text: string, font: string): number => {
+  if (sharedContext === null) {
+    const canvas = document.createElement('canvas')
+    sharedContext = <CanvasRenderingContext2D>canvas.getContext('2d')
+  }
+  if (sharedContextFont !== font) {
+    sharedContext.font = font
+    sharedContextFont = font
   }
+  return sharedContext.measureText(text).width
 }
 
 export function measureText(
   text: string,
   fontFamily: string,
   fontSize: number,
-  canvas2DContext: CanvasRenderingContext2D
+  canvas2DContext?: CanvasRenderingContext2D
 ): number {
   const font = `normal normal normal ${fontSize}px/normal ${fontFamily}`
-  return cacheTextWidth()(`[${font}][${text}]`, () =>
-    measureTextWidthByCanvas(text, font, canvas2DContext)
-  )
+  const key = `[${font}][${text}]`
+  const cached = textWidths.get(key)
+  if (cached !== undefined) {
+    hits++
+    // Moved to the end, the least recently used width is the first one
+    textWidths.delete(key)
+    textWidths.set(key, cached)
+    return cached
+  }
+
+  misses++
+  const width = canvas2DContext
+    ? measureTextWidthByCanvas(text, font, canvas2DContext)
+    : measureTextWidthBySharedCanvas(text, font)
+  textWidths.set(key, width)
+  if (textWidths.size > CACHE_SIZE) {
+    textWidths.delete(textWidths.keys().next().value)
+  }
+  return width
+}
+
+export type TextMeasurementStats = {
+  hits: number
+  misses: number
+  size: number
+}
+
+export const getTextMeasurementStats = (): TextMeasurementStats => ({
+  hits,
+  misses,
+  size: textWidths.size
+})
+
+export const clearTextMeasurementCache = (): void => {
+  textWidths.clear()
+  hits = 0
+  misses = 0
 }
@@ -40,5 +40,26 @@ export default [
       file: pkg.typings,
       format: 'es'
     }
+  },
+  // Force simulation worker entry, kept apart so workers don't load React
+  {
+    input: 'graph-visualization/worker.ts',
+    external: id => dependenciesNotToBundle.includes(id),
+    plugins: [esbuild(), alias({ entries: aliasEntries })],
+    output: [
+      {
+        file: pkg.exports['./worker'].default,
+        format: 'es',
+        sourcemap: true
+      }
+    ]
+  },
+  {
+    input: 'graph-visualization/worker.ts',
+    plugins: [dts(), alias({ entries: aliasEntries })],
+    output: {
+      file: pkg.exports['./worker'].types,
+      format: 'es'
+    }
   }
 ]
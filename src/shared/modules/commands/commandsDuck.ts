@@ -95,6 +95,7 @@ export interface ExecuteSingleCommandAction {
   requestId?: string
   useDb?: string | null
   isRerun?: boolean
+  maxRecords?: number
 }
 
 export interface ExecuteCommandAction extends ExecuteSingleCommandAction {
@@ -121,12 +122,14 @@ export const executeSingleCommand = (
     id,
     requestId,
     useDb,
-    isRerun = false
+    isRerun = false,
+    maxRecords
   }: {
     id?: number | string
     requestId?: string
     useDb?: string | null
     isRerun?: boolean
+    maxRecords?: number
   } = {}
 ): ExecuteSingleCommandAction => {
   return {
@@ -135,7 +138,8 @@ export const executeSingleCommand = (
     id,
     requestId,
     useDb,
-    isRerun
+    isRerun,
+    maxRecords
   }
 }
 
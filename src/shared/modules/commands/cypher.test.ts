@@ -49,6 +49,15 @@ jest.mock('shared/modules/params/paramsDuck', () => {
   }
 })
 
+jest.mock('shared/modules/settings/settingsDuck', () => {
+  const orig = require.requireActual('shared/modules/settings/settingsDuck')
+  return {
+    ...orig,
+    getMaxRows: () => 1000,
+    shouldCacheReadResults: () => false
+  }
+})
+
 jest.mock('shared/modules/dbMeta/dbMetaDuck', () => {
   const orig = require.requireActual('shared/modules/dbMeta/dbMetaDuck')
   return {
@@ -194,3 +203,47 @@ multiline comment
     })
   })
 })
+
+describe('Row limiting', () => {
+  afterEach(() => {
+    bolt.routedWriteTransaction.mockClear()
+  })
+  test('it fetches one record more than max rows', done => {
+    // Given
+    const bus = createBus()
+    bus.applyReduxMiddleware(createEpicMiddleware(handleSingleCommandEpic))
+    const action: any = executeSingleCommand('MATCH (n) RETURN n')
+    action.$$responseChannel = 'test-channel5'
+
+    bus.send(action.type, action)
+    flushPromises().then(() => {
+      expect(bolt.routedWriteTransaction).toHaveBeenCalledWith(
+        'MATCH (n) RETURN n',
+        {},
+        expect.objectContaining({ maxRecords: 1001 })
+      )
+      done()
+    })
+  })
+  test('it keeps the limit of a fetch more re-run', done => {
+    // Given
+    const bus = createBus()
+    bus.applyReduxMiddleware(createEpicMiddleware(handleSingleCommandEpic))
+    const action: any = executeSingleCommand('MATCH (n) RETURN n', {
+      id: 'id',
+      isRerun: true,
+      maxRecords: 2001
+    })
+    action.$$responseChannel = 'test-channel6'
+
+    bus.send(action.type, action)
+    flushPromises().then(() => {
+      expect(bolt.routedWriteTransaction).toHaveBeenCalledWith(
+        'MATCH (n) RETURN n',
+        {},
+        expect.objectContaining({ maxRecords: 2001 })
+      )
+      done()
+    })
+  })
+})
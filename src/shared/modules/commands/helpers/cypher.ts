@@ -18,11 +18,12 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 import { QueryResult } from 'neo4j-driver'
+import { v4 } from 'uuid'
 
 import bolt from 'services/bolt/bolt'
 import { applyGraphTypes } from 'services/bolt/boltMappings'
 import { arrayToObject } from 'services/utils'
-import { send } from 'shared/modules/requests/requestsDuck'
+import { send, streamed } from 'shared/modules/requests/requestsDuck'
 
 export const applyParamGraphTypes = (params = {} as any) =>
   arrayToObject(
@@ -36,17 +37,23 @@ export const handleCypherCommand = (
   put: any,
   params = {} as any,
   txMetadata = {},
-  autoCommit = false
+  autoCommit = false,
+  useCache = false
 ): [string, Promise<QueryResult>] => {
+  const requestId = action.requestId || v4()
   const [id, request] = bolt.routedWriteTransaction(
     action.query,
     applyParamGraphTypes(params),
     {
-      requestId: action.requestId,
+      requestId,
       cancelable: true,
       ...txMetadata,
       autoCommit,
-      useDb: action.useDb
+      useDb: action.useDb,
+      maxRecords: action.maxRecords,
+      useCache,
+      onRecords: (records: any, count: number) =>
+        put(streamed(requestId, records, count))
     }
   )
   put(send(id))
@@ -28,11 +28,14 @@ import {
   DONE as DISCOVERY_DONE,
   updateDiscoveryConnection
 } from 'shared/modules/discovery/discoveryDuck'
+import { UPDATE as SETTINGS_UPDATE } from 'shared/modules/settings/settingsDuck'
 
 jest.mock('services/bolt/bolt', () => {
   return {
     closeConnection: jest.fn(),
-    openConnection: jest.fn()
+    openConnection: jest.fn(),
+    configureWorkerPool: jest.fn(),
+    prewarmWorkers: jest.fn()
   }
 })
 
@@ -221,6 +224,36 @@ describe('connectionsDucks Epics', () => {
     store.dispatch(action)
   })
 })
+describe('prewarmBoltWorkersEpic', () => {
+  let settings: any = {}
+  const epicMiddleware = createEpicMiddleware(
+    connections.prewarmBoltWorkersEpic
+  )
+  const mockStore = configureMockStore([epicMiddleware])
+  const store: any = mockStore(() => ({ settings }))
+
+  test('reconfigures the pool only when its settings change', () => {
+    // Given
+    const updateSettings = (update: any) => {
+      settings = { ...settings, ...update }
+      store.dispatch({ type: SETTINGS_UPDATE, state: update })
+    }
+    store.dispatch({ type: connections.CONNECTION_SUCCESS })
+
+    // When
+    updateSettings({ theme: 'dark' })
+    updateSettings({ maxBoltWorkers: 4 })
+    updateSettings({ theme: 'normal' })
+    store.dispatch({ type: connections.CONNECTION_SUCCESS })
+
+    // Then
+    expect(bolt.configureWorkerPool).toHaveBeenCalledTimes(3)
+    expect((bolt.configureWorkerPool as jest.Mock).mock.calls[1][0]).toEqual(
+      expect.objectContaining({ maxSize: 4 })
+    )
+    expect(bolt.prewarmWorkers).toHaveBeenCalledTimes(3)
+  })
+})
 describe('startupConnectEpic', () => {
   const bus = createBus()
   const epicMiddleware = createEpicMiddleware(connections.startupConnectEpic)
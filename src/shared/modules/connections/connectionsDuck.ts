@@ -17,6 +17,7 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
+import { isEqual } from 'lodash-es'
 import { authLog, handleRefreshingToken } from 'neo4j-client-sso'
 import Rx from 'rxjs/Rx'
 
@@ -31,6 +32,9 @@ import { APP_START, USER_CLEAR, inWebEnv } from 'shared/modules/app/appDuck'
 import { executeSystemCommand } from 'shared/modules/commands/commandsDuck'
 import * as discovery from 'shared/modules/discovery/discoveryDuck'
 import {
+  REPLACE as SETTINGS_REPLACE,
+  UPDATE as SETTINGS_UPDATE,
+  getBoltWorkerPoolSettings,
   getConnectionTimeout,
   getInitCmd,
   getPlayImplicitInitCommands
@@ -617,6 +621,27 @@ export const detectActiveConnectionChangeEpic = (action$: any) => {
     return Rx.Observable.of({ type: CONNECTION_SUCCESS }) // connect
   })
 }
+export const prewarmBoltWorkersEpic = (action$: any, store: any) => {
+  return action$
+    .ofType(CONNECTION_SUCCESS, SETTINGS_UPDATE, SETTINGS_REPLACE)
+    .map((action: any) => ({
+      action,
+      poolSettings: getBoltWorkerPoolSettings(store.getState())
+    }))
+    // Settings are saved on every change, only a new connection or other
+    // pool settings than the last ones configured need the pool touched
+    .distinctUntilChanged(
+      (previous: any, next: any) =>
+        next.action.type !== CONNECTION_SUCCESS &&
+        isEqual(previous.poolSettings, next.poolSettings)
+    )
+    .do(({ poolSettings }: any) => {
+      bolt.configureWorkerPool(poolSettings)
+      // Only spawns workers while connected
+      bolt.prewarmWorkers()
+    })
+    .ignoreElements()
+}
 export const disconnectEpic = (action$: any, store: any) => {
   return action$
     .ofType(DISCONNECT)
@@ -56,6 +56,20 @@ export function getFrames(state: GlobalState): FrameStack[] {
   return state[NAME].allIds.map(id => state[NAME].byId[id])
 }
 
+// Requests shown by frames, including the statements of multi statement frames
+export function getFrameRequestIds(state: GlobalState): string[] {
+  const requestIds: string[] = []
+  const addFrameStack = (id: string) =>
+    state[NAME].byId[id]?.stack.forEach(frame => {
+      if (frame.requestId) {
+        requestIds.push(frame.requestId)
+      }
+      frame.statements?.forEach(addFrameStack)
+    })
+  state[NAME].allIds.forEach(addFrameStack)
+  return requestIds
+}
+
 export function getRecentView(state: GlobalState): null | FrameView {
   return state[NAME].recentView
 }
@@ -256,6 +270,7 @@ export interface Frame {
   useDb: string | null
   history?: string[]
   dbs?: Database[]
+  maxRecords?: number
 }
 
 export interface FrameStack {
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import {
+  DecodedResultCache,
+  compactResult,
+  getDecodedBytes,
+  getRecordCount,
+  getResultMemoryReport,
+  getResultRecords,
+  isCompactResult
+} from './compactResult'
+
+const createResult = (rowCount: number) => {
+  const keys = ['n', 'r', 'm', 'score']
+  const records = []
+  for (let i = 0; i < rowCount; i++) {
+    const n = new (neo4j.types.Node as any)(neo4j.int(i % 100), ['Person'], {
+      name: `person ${i % 100}`,
+      age: neo4j.int(i % 100)
+    })
+    const m = new (neo4j.types.Node as any)(neo4j.int(i), ['Movie'], {
+      title: `movie ${i}`,
+      released: neo4j.int(1950 + (i % 70))
+    })
+    const r = new (neo4j.types.Relationship as any)(
+      neo4j.int(i),
+      n.identity,
+      m.identity,
+      'ACTED_IN',
+      { roles: ['lead'] }
+    )
+    records.push(
+      new (neo4j.types.Record as any)(keys, [n, r, m, i / rowCount])
+    )
+  }
+  return { records, summary: { query: { text: 'MATCH' } } } as any
+}
+
+describe('compactResult', () => {
+  test('keeps records readable', () => {
+    // Given
+    const result = createResult(10)
+
+    // When
+    const compact: any = compactResult(result)
+
+    // Then
+    expect(isCompactResult(compact)).toBe(true)
+    expect(Object.getPrototypeOf(compact)).toBe(Object.prototype)
+    expect(getRecordCount(compact)).toBe(10)
+    expect(compact.summary).toBe(result.summary)
+    expect(getDecodedBytes(compact)).toBe(0)
+    expect(getResultRecords(compact)).toEqual(result.records)
+  })
+
+  test('decodes the records of a stored result once', () => {
+    // Given
+    const result = createResult(10)
+    const stored = { ...(compactResult(result) as any) }
+
+    // When
+    const records = getResultRecords(stored)
+
+    // Then
+    expect(records).not.toBe(result.records)
+    expect(records).toEqual(result.records)
+    expect(getResultRecords(stored)).toBe(records)
+  })
+
+  test('drops the decoded records of the least recently read results', () => {
+    // Given
+    const [first, second] = [createResult(10), createResult(10)].map(
+      result => compactResult(result) as any
+    )
+    const cache = new DecodedResultCache(Infinity)
+    cache.get(first)
+    const bytes = cache.getBytes(first)
+    const smallCache = new DecodedResultCache(bytes * 1.5)
+
+    // When
+    const firstRead = smallCache.get(first)
+    smallCache.get(second)
+
+    // Then
+    expect(smallCache.getBytes(first)).toBe(0)
+    expect(smallCache.getBytes(second)).toBe(bytes)
+    expect(smallCache.get(first)).not.toBe(firstRead)
+  })
+
+  test('stores results without driver records as they are', () => {
+    const fakeRecords = { records: [{ keys: ['x'], _fields: [1] }] }
+
+    expect(compactResult(fakeRecords)).toBe(fakeRecords)
+    expect(compactResult({ records: [] })).toEqual({ records: [] })
+    expect(compactResult(null)).toBe(null)
+    expect(getRecordCount(fakeRecords)).toBe(1)
+  })
+
+  test('reports the memory saved on a reference result', () => {
+    // Given
+    const compact = compactResult(createResult(1000))
+
+    // When
+    const { storedBytes, materializedBytes } = getResultMemoryReport(compact)
+    getResultRecords(compact)
+    const whileDecoded = getResultMemoryReport(compact)
+
+    // Then
+    expect(storedBytes).toBeLessThan(materializedBytes / 2)
+    expect(whileDecoded.storedBytes).toBeGreaterThan(materializedBytes)
+  })
+})
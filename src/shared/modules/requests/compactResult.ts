@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j, { Record as Neo4jRecord, QueryResult } from 'neo4j-driver'
+
+import {
+  ColumnarRecords,
+  decodeRecordsColumnar,
+  encodeRecordsColumnar
+} from 'services/bolt/boltMappings'
+import { estimateSize } from 'services/bolt/readResultCache'
+
+/**
+ * Cypher results are kept in the requests state in the columnar transfer
+ * format: one table per column with interned strings, integers and floats
+ * unboxed in typed arrays and each node and relationship stored once.
+ * Views read the records through `getResultRecords`.
+ */
+export type CompactQueryResult = {
+  columnar: ColumnarRecords
+  summary: QueryResult['summary']
+}
+
+// Decoded records of the results read last, views compare them by identity
+export const DECODED_RESULTS_MAX_BYTES = 64 * 1024 * 1024
+
+/**
+ * Least recently read decoded results, bounded by their estimated size in
+ * bytes. Nothing else keeps the driver records of a compacted result.
+ */
+export class DecodedResultCache {
+  private readonly entries = new Map<
+    CompactQueryResult,
+    { result: QueryResult; bytes: number }
+  >()
+  private bytes = 0
+
+  constructor(private readonly maxBytes: number) {}
+
+  get(compact: CompactQueryResult): QueryResult {
+    const entry = this.entries.get(compact)
+    if (entry) {
+      // Moves the entry to the back, the most recently read end
+      this.entries.delete(compact)
+      this.entries.set(compact, entry)
+      return entry.result
+    }
+    const result = {
+      records: decodeRecordsColumnar(compact.columnar),
+      summary: compact.summary
+    } as QueryResult
+    const bytes = estimateSize(result.records)
+    // Results over the limit are decoded on every read
+    if (bytes <= this.maxBytes) {
+      while (this.bytes + bytes > this.maxBytes) {
+        this.delete(this.entries.keys().next().value)
+      }
+      this.entries.set(compact, { result, bytes })
+      this.bytes += bytes
+    }
+    return result
+  }
+
+  getBytes(compact: CompactQueryResult): number {
+    return this.entries.get(compact)?.bytes ?? 0
+  }
+
+  delete(compact: CompactQueryResult): void {
+    const entry = this.entries.get(compact)
+    if (entry) {
+      this.entries.delete(compact)
+      this.bytes -= entry.bytes
+    }
+  }
+}
+
+const decodedResults = new DecodedResultCache(DECODED_RESULTS_MAX_BYTES)
+
+export const isCompactResult = (
+  result: unknown
+): result is CompactQueryResult =>
+  !!result && typeof result === 'object' && 'columnar' in (result as object)
+
+/**
+ * Compacts results with driver records, anything else is returned as is.
+ * The records the result came with are not kept, views get decoded ones.
+ */
+export function compactResult<T>(result: T): T | CompactQueryResult {
+  const { records, summary } = ((result as any) ?? {}) as Partial<QueryResult>
+  if (
+    isCompactResult(result) ||
+    !Array.isArray(records) ||
+    !records.length ||
+    !(records[0] instanceof neo4j.types.Record)
+  ) {
+    return result
+  }
+  try {
+    return {
+      columnar: encodeRecordsColumnar(records),
+      summary: summary as QueryResult['summary']
+    }
+  } catch (e) {
+    return result
+  }
+}
+
+/**
+ * The result with driver records, the same object for reads of a stored
+ * result as long as it stays in the decoded results cache. Anything but
+ * compacted results is returned as is.
+ */
+export function getQueryResult<T>(
+  result: T | CompactQueryResult
+): T | QueryResult {
+  return isCompactResult(result) ? decodedResults.get(result) : (result as T)
+}
+
+// Estimated size of the decoded records kept for a result, if any
+export const getDecodedBytes = (result: unknown): number =>
+  isCompactResult(result) ? decodedResults.getBytes(result) : 0
+
+// To be called when a stored result is dropped
+export const releaseDecodedResult = (result: unknown): void => {
+  if (isCompactResult(result)) {
+    decodedResults.delete(result)
+  }
+}
+
+export const getResultRecords = (result: unknown): Neo4jRecord[] => {
+  const records = (getQueryResult(result) as Partial<QueryResult>)?.records
+  return Array.isArray(records) ? records : []
+}
+
+export const getRecordCount = (result: unknown): number =>
+  isCompactResult(result)
+    ? result.columnar.rowCount
+    : (result as Partial<QueryResult>)?.records?.length ?? 0
+
+const estimateColumnarSize = (columnar: ColumnarRecords): number =>
+  columnar.tags.byteLength +
+  columnar.ints.byteLength +
+  columnar.floats.byteLength +
+  columnar.refs.byteLength +
+  columnar.entityOffsets.byteLength +
+  estimateSize(columnar.keys) +
+  estimateSize(columnar.strings) +
+  estimateSize(columnar.others)
+
+export type ResultMemoryReport = {
+  // Estimated size of what is kept of the result, decoded records included
+  storedBytes: number
+  // Estimated size of the result with driver records
+  materializedBytes: number
+}
+
+/**
+ * Approximate memory use of a result as stored, without decoding the
+ * records of compacted results.
+ */
+export const estimateStoredSize = (result: unknown): number =>
+  isCompactResult(result)
+    ? estimateColumnarSize(result.columnar) + estimateSize(result.summary)
+    : estimateSize(result)
+
+/**
+ * Approximate memory use of a stored result, see `estimateSize`.
+ */
+export const getResultMemoryReport = (result: unknown): ResultMemoryReport => {
+  const storedBytes = estimateStoredSize(result) + getDecodedBytes(result)
+  if (!isCompactResult(result)) {
+    return { storedBytes, materializedBytes: storedBytes }
+  }
+  return {
+    storedBytes,
+    materializedBytes:
+      estimateSize(decodeRecordsColumnar(result.columnar)) +
+      estimateSize(result.summary)
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import { compactResult, getResultRecords } from './compactResult'
+import reducer, {
+  BrowserRequest,
+  RequestState,
+  canRestoreResult,
+  evicted,
+  getRequestsToEvict,
+  restore,
+  spilled,
+  streamed,
+  update,
+  viewed
+} from './requestsDuck'
+
+const createRequest = (
+  bytes: number,
+  viewedAt: number,
+  status: BrowserRequest['status'] = 'success'
+): BrowserRequest => ({
+  result: { records: [], summary: { queryType: 'r' } } as any,
+  status,
+  type: 'cypher',
+  updated: 0,
+  viewed: viewedAt,
+  bytes
+})
+
+describe('getRequestsToEvict', () => {
+  test('evicts nothing within the budget', () => {
+    // Given
+    const requests: RequestState = {
+      a: createRequest(100, 1),
+      b: createRequest(100, 2)
+    }
+
+    // When
+    const ids = getRequestsToEvict(requests, 200)
+
+    // Then
+    expect(ids).toEqual([])
+  })
+  test('evicts the least recently viewed results past the budget', () => {
+    // Given
+    const requests: RequestState = {
+      a: createRequest(100, 3),
+      b: createRequest(100, 1),
+      c: createRequest(100, 2),
+      d: createRequest(100, 4)
+    }
+
+    // When
+    const ids = getRequestsToEvict(requests, 250)
+
+    // Then
+    expect(ids).toEqual(['b', 'c'])
+  })
+  test('counts the decoded records kept for results', () => {
+    // Given
+    const record = new (neo4j.types.Record as any)(['x'], ['value'])
+    const decoded = createRequest(100, 1)
+    decoded.result = compactResult({ records: [record], summary: {} } as any)
+    getResultRecords(decoded.result)
+    const requests: RequestState = {
+      a: decoded,
+      b: createRequest(100, 2)
+    }
+
+    // When
+    const ids = getRequestsToEvict(requests, 200)
+
+    // Then
+    expect(ids).toEqual(['a'])
+  })
+  test('never evicts pending requests or the kept request', () => {
+    // Given
+    const requests: RequestState = {
+      a: createRequest(100, 1, 'pending'),
+      b: createRequest(100, 2),
+      c: createRequest(100, 3)
+    }
+
+    // When
+    const ids = getRequestsToEvict(requests, 0, 'b')
+
+    // Then
+    expect(ids).toEqual(['c'])
+  })
+})
+
+describe('requests reducer', () => {
+  test('estimates the size of updated results', () => {
+    // When
+    const state = reducer(
+      {},
+      update('a', { records: [], summary: {} } as any, 'success')
+    )
+
+    // Then
+    expect(state.a.bytes).toBeGreaterThan(0)
+  })
+  test('drops evicted results and keeps what is needed to restore them', () => {
+    // Given
+    const state: RequestState = {
+      a: createRequest(100, 1),
+      b: createRequest(100, 2, 'pending')
+    }
+
+    // When
+    const newState = reducer(state, evicted(['a', 'b']))
+
+    // Then
+    expect(newState.a.result).toBeUndefined()
+    expect(newState.a.bytes).toBe(0)
+    expect(newState.a.evicted).toEqual({ bytes: 100, queryType: 'r' })
+    expect(canRestoreResult(newState.a)).toBe(true)
+    expect(newState.b).toBe(state.b)
+  })
+  test('marks requests as viewed', () => {
+    // Given
+    const state: RequestState = { a: createRequest(100, 1) }
+
+    // When
+    const newState = reducer(state, viewed('a'))
+
+    // Then
+    expect(newState.a.viewed).toBeGreaterThan(1)
+    expect(reducer(state, viewed('missing'))).toBe(state)
+  })
+  test('keeps the growing array of streamed records', () => {
+    // Given
+    const records: any[] = [{ id: 1 }]
+    const state: RequestState = { a: createRequest(0, 1, 'pending') }
+
+    // When
+    const firstState = reducer(state, streamed('a', records, 1))
+    records.push({ id: 2 })
+    const secondState = reducer(firstState, streamed('a', records, 2))
+
+    // Then
+    expect(secondState.a.streamedRecords).toBe(records)
+    expect(firstState.a.streamedCount).toBe(1)
+    expect(secondState.a.streamedCount).toBe(2)
+  })
+  test('keeps spill handles of unchanged results only', () => {
+    // Given
+    const state: RequestState = { a: createRequest(100, 1) }
+    const spill = { requestId: 'a', rowCount: 10 } as any
+
+    // When
+    const staleState = reducer(state, spilled('a', spill, 5))
+    const newState = reducer(state, spilled('a', spill, 0))
+
+    // Then
+    expect(staleState).toBe(state)
+    expect(newState.a.spill).toBe(spill)
+  })
+  test('restores spilled results of any query type', () => {
+    // Given
+    const state: RequestState = {
+      a: {
+        ...createRequest(0, 1),
+        evicted: { bytes: 100, queryType: 'w' },
+        spill: { requestId: 'a' } as any
+      }
+    }
+
+    // When
+    const newState = reducer(state, restore('a'))
+
+    // Then
+    expect(canRestoreResult(state.a)).toBe(true)
+    expect(newState.a.evicted?.restoring).toBe(true)
+  })
+})
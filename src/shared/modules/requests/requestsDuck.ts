@@ -17,21 +17,54 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-import { QueryResult } from 'neo4j-driver'
+import { Record as Neo4jRecord, QueryResult } from 'neo4j-driver'
 import { Action } from 'redux'
 import { Epic } from 'redux-observable'
 import 'rxjs'
 
 import bolt from 'services/bolt/bolt'
 import { BrowserError } from 'services/exceptions'
+import {
+  SPILL_THRESHOLD_BYTES,
+  SpillHandle,
+  isSpillSupported,
+  readSpilledResult,
+  retainSpilledResults,
+  spillResult
+} from 'services/resultSpillStore'
 import { GlobalState } from 'shared/globalState'
 import { APP_START, AppStartAction } from 'shared/modules/app/appDuck'
+import {
+  ADD as ADD_FRAME,
+  CLEAR_ALL as CLEAR_ALL_FRAMES,
+  ENSURE_MAX_FRAMES,
+  REMOVE as REMOVE_FRAME,
+  getFrameRequestIds
+} from 'shared/modules/frames/framesDuck'
+import {
+  CompactQueryResult,
+  compactResult,
+  estimateStoredSize,
+  getDecodedBytes,
+  isCompactResult,
+  releaseDecodedResult
+} from 'shared/modules/requests/compactResult'
+import {
+  UPDATE as SETTINGS_UPDATE,
+  getMaxResultsMemoryBytes
+} from 'shared/modules/settings/settingsDuck'
 
 export const NAME = 'requests'
 export const REQUEST_SENT = 'requests/SENT'
 export const CANCEL_REQUEST = 'requests/CANCEL'
 export const REQUEST_CANCELED = 'requests/CANCELED'
 export const REQUEST_UPDATED = 'requests/UPDATED'
+export const REQUEST_STREAMED = 'requests/STREAMED'
+export const REQUEST_VIEWED = 'requests/VIEWED'
+export const REQUESTS_EVICTED = 'requests/EVICTED'
+export const REQUEST_SPILLED = 'requests/SPILLED'
+export const RESTORE_REQUEST = 'requests/RESTORE'
+export const REQUEST_RESTORE_FAILED = 'requests/RESTORE_FAILED'
 
 export const REQUEST_STATUS_PENDING = 'pending'
 export const REQUEST_STATUS_SUCCESS = 'success'
@@ -58,7 +91,19 @@ export type Status =
   | 'canceling'
   | 'canceled'
 
-export type BrowserRequestResult = undefined | null | QueryResult | BrowserError
+// Cypher results with records are stored compacted, see `getQueryResult`
+export type BrowserRequestResult =
+  | undefined
+  | null
+  | QueryResult
+  | CompactQueryResult
+  | BrowserError
+
+export type EvictedResult = {
+  bytes: number
+  queryType?: string
+  restoring?: boolean
+}
 
 export type BrowserRequest = {
   result: BrowserRequestResult
@@ -66,6 +111,64 @@ export type BrowserRequest = {
   type: string
   id?: string
   updated?: number
+  // Records received so far while the request is still pending. The array
+  // grows in place as batches arrive, streamedCount changes with each batch
+  streamedRecords?: Neo4jRecord[]
+  streamedCount?: number
+  // Estimated size of the stored result, without its decoded records
+  bytes?: number
+  // When the frame of the request was last seen
+  viewed?: number
+  // Set when the result was dropped to stay within the memory budget
+  evicted?: EvictedResult
+  // Set when a large result was also written to IndexedDB
+  spill?: SpillHandle
+}
+
+// Spilled results are read back, other results can only be restored
+// by re-running read queries
+export const canRestoreResult = (request?: BrowserRequest): boolean =>
+  !!request?.spill || request?.evicted?.queryType === 'r'
+
+// The stored result and the decoded records cached for it
+const getRetainedBytes = (request: BrowserRequest): number =>
+  (request.bytes ?? 0) + getDecodedBytes(request.result)
+
+/**
+ * Picks the results to drop to bring the total estimated size of the
+ * stored results and their cached decoded records within `maxBytes`,
+ * least recently viewed first. Pending requests and `keepId` are never
+ * picked.
+ */
+export function getRequestsToEvict(
+  requests: RequestState,
+  maxBytes: number,
+  keepId?: string
+): string[] {
+  let totalBytes = 0
+  Object.values(requests).forEach(request => {
+    totalBytes += getRetainedBytes(request)
+  })
+  if (totalBytes <= maxBytes) {
+    return []
+  }
+  const lastViewed = (id: string) =>
+    requests[id].viewed ?? requests[id].updated ?? 0
+  const candidates = Object.keys(requests)
+    .filter(
+      id =>
+        id !== keepId &&
+        requests[id].status === REQUEST_STATUS_SUCCESS &&
+        (requests[id].bytes ?? 0) > 0
+    )
+    .sort((a, b) => lastViewed(a) - lastViewed(b))
+
+  const evictIds: string[] = []
+  for (let i = 0; i < candidates.length && totalBytes > maxBytes; i++) {
+    evictIds.push(candidates[i])
+    totalBytes -= getRetainedBytes(requests[candidates[i]])
+  }
+  return evictIds
 }
 
 export default function reducer(
@@ -85,6 +188,20 @@ export default function reducer(
           type: 'cypher'
         }
       }
+    case REQUEST_STREAMED:
+      // Late batches must not bring canceled requests back to pending
+      if (state[action.id]?.status !== REQUEST_STATUS_PENDING) {
+        return state
+      }
+      return {
+        ...state,
+        [action.id]: {
+          ...state[action.id],
+          streamedRecords: action.records,
+          streamedCount: action.count,
+          updated: new Date().getTime()
+        }
+      }
     case CANCEL_REQUEST:
     case REQUEST_CANCELED:
     case REQUEST_UPDATED:
@@ -92,12 +209,73 @@ export default function reducer(
         ...state[action.id],
         result: action.result,
         status: action.status,
+        streamedRecords: undefined,
+        streamedCount: undefined,
+        evicted: undefined,
         updated: new Date().getTime()
       }
+      newRequest.bytes = estimateStoredSize(newRequest.result)
       return {
         ...state,
         [action.id]: newRequest
       }
+    case REQUEST_VIEWED:
+      if (!state[action.id]) {
+        return state
+      }
+      return {
+        ...state,
+        [action.id]: { ...state[action.id], viewed: action.viewed }
+      }
+    case REQUESTS_EVICTED:
+      const evictedState = { ...state }
+      action.ids.forEach(id => {
+        const request = state[id]
+        if (!request || request.status !== REQUEST_STATUS_SUCCESS) {
+          return
+        }
+        evictedState[id] = {
+          ...request,
+          result: undefined,
+          bytes: 0,
+          evicted: {
+            bytes: request.bytes ?? 0,
+            queryType: (request.result as QueryResult | undefined)?.summary
+              ?.queryType
+          }
+        }
+      })
+      return evictedState
+    case REQUEST_SPILLED:
+      // The result may have been replaced while it was written
+      if (state[action.id]?.updated !== action.updated) {
+        return state
+      }
+      return {
+        ...state,
+        [action.id]: { ...state[action.id], spill: action.spill }
+      }
+    case RESTORE_REQUEST:
+    case REQUEST_RESTORE_FAILED:
+      const restoringRequest = state[action.id]
+      if (!restoringRequest?.evicted) {
+        return state
+      }
+      return {
+        ...state,
+        [action.id]: {
+          ...restoringRequest,
+          // Restores fall back to re-running once the spilled result is lost
+          spill:
+            action.type === REQUEST_RESTORE_FAILED
+              ? undefined
+              : restoringRequest.spill,
+          evicted: {
+            ...restoringRequest.evicted,
+            restoring: action.type === RESTORE_REQUEST
+          }
+        }
+      }
     default:
       return state
   }
@@ -106,8 +284,14 @@ export default function reducer(
 type RequestsActionsUnion =
   | SendAction
   | UpdateAction
+  | StreamedAction
   | CancelAction
   | CanceledAction
+  | ViewedAction
+  | EvictedAction
+  | SpilledAction
+  | RestoreAction
+  | RestoreFailedAction
   | AppStartAction
 
 interface SendAction {
@@ -138,6 +322,84 @@ export const update = (
   status
 })
 
+interface StreamedAction {
+  type: typeof REQUEST_STREAMED
+  id: string
+  records: Neo4jRecord[]
+  count: number
+}
+
+export const streamed = (
+  id: string,
+  records: Neo4jRecord[],
+  count: number = records.length
+): StreamedAction => ({
+  type: REQUEST_STREAMED,
+  id,
+  records,
+  count
+})
+
+export interface ViewedAction {
+  type: typeof REQUEST_VIEWED
+  id: string
+  viewed: number
+}
+
+export const viewed = (id: string): ViewedAction => ({
+  type: REQUEST_VIEWED,
+  id,
+  viewed: new Date().getTime()
+})
+
+interface EvictedAction {
+  type: typeof REQUESTS_EVICTED
+  ids: string[]
+}
+
+export const evicted = (ids: string[]): EvictedAction => ({
+  type: REQUESTS_EVICTED,
+  ids
+})
+
+interface SpilledAction {
+  type: typeof REQUEST_SPILLED
+  id: string
+  spill: SpillHandle
+  updated?: number
+}
+
+export const spilled = (
+  id: string,
+  spill: SpillHandle,
+  updated?: number
+): SpilledAction => ({
+  type: REQUEST_SPILLED,
+  id,
+  spill,
+  updated
+})
+
+export interface RestoreAction {
+  type: typeof RESTORE_REQUEST
+  id: string
+}
+
+export const restore = (id: string): RestoreAction => ({
+  type: RESTORE_REQUEST,
+  id
+})
+
+interface RestoreFailedAction {
+  type: typeof REQUEST_RESTORE_FAILED
+  id: string
+}
+
+const restoreFailed = (id: string): RestoreFailedAction => ({
+  type: REQUEST_RESTORE_FAILED,
+  id
+})
+
 interface CancelAction {
   type: typeof CANCEL_REQUEST
   status: typeof REQUEST_STATUS_CANCELING
@@ -175,3 +437,72 @@ export const cancelRequestEpic: Epic<Action, GlobalState> = action$ =>
         })
       })
   )
+
+export const evictResultsEpic: Epic<Action, GlobalState> = (action$, store) =>
+  action$
+    .ofType(REQUEST_UPDATED, SETTINGS_UPDATE)
+    .map(action =>
+      getRequestsToEvict(
+        getRequests(store.getState()),
+        getMaxResultsMemoryBytes(store.getState()),
+        (action as UpdateAction).id
+      )
+    )
+    .filter(ids => ids.length > 0)
+    .map(ids => {
+      const requests = getRequests(store.getState())
+      ids.forEach(id => releaseDecodedResult(requests[id]?.result))
+      return evicted(ids)
+    })
+
+const shouldSpill = (request?: BrowserRequest): boolean =>
+  !!request &&
+  !request.spill &&
+  request.status === REQUEST_STATUS_SUCCESS &&
+  (request.bytes ?? 0) >= SPILL_THRESHOLD_BYTES &&
+  isCompactResult(request.result) &&
+  isSpillSupported()
+
+export const spillResultsEpic: Epic<Action, GlobalState> = (action$, store) =>
+  action$
+    .ofType(REQUEST_UPDATED)
+    .filter(action =>
+      shouldSpill(getRequest(store.getState(), (action as UpdateAction).id))
+    )
+    .mergeMap(action => {
+      const { id } = action as UpdateAction
+      const { result, updated } = getRequest(store.getState(), id)
+      return spillResult(id, result as CompactQueryResult)
+        .then(spill => spilled(id, spill, updated))
+        .catch(() => ({ type: 'NOOP' }))
+    })
+
+export const restoreResultEpic: Epic<Action, GlobalState> = (action$, store) =>
+  action$.ofType(RESTORE_REQUEST).mergeMap(action => {
+    const { id } = action as RestoreAction
+    const spill = getRequest(store.getState(), id)?.spill
+    if (!spill) {
+      return Promise.resolve(restoreFailed(id))
+    }
+    return readSpilledResult(spill)
+      .then(result =>
+        update(id, compactResult(result), REQUEST_STATUS_SUCCESS)
+      )
+      .catch(() => restoreFailed(id))
+  })
+
+// Spilled results of removed frames are deleted
+export const collectSpilledResultsEpic: Epic<Action, GlobalState> = (
+  action$,
+  store
+) =>
+  action$
+    .ofType(ADD_FRAME, REMOVE_FRAME, CLEAR_ALL_FRAMES, ENSURE_MAX_FRAMES)
+    .do(() => {
+      const state = store.getState()
+      const requestIds = getFrameRequestIds(state).filter(
+        id => getRequest(state, id)?.spill
+      )
+      retainSpilledResults(requestIds).catch(() => undefined)
+    })
+    .ignoreElements()
@@ -60,12 +60,19 @@ export const getMaxFieldItems = (state: GlobalState): number =>
   toNumber(state[NAME].maxFieldItems ?? initialState.maxFieldItems)
 export const getMaxFrames = (state: GlobalState): number =>
   toNumber(state[NAME].maxFrames ?? initialState.maxFrames)
+// The setting is in megabytes
+export const getMaxResultsMemoryBytes = (state: GlobalState): number =>
+  toNumber(state[NAME].maxResultsMemory ?? initialState.maxResultsMemory) *
+  1024 *
+  1024
 export const getInitialNodeDisplay = (state: GlobalState): number =>
   toNumber(state[NAME].initialNodeDisplay ?? initialState.initialNodeDisplay)
 export const getScrollToTop = (state: any) => state[NAME].scrollToTop
 export const shouldAutoComplete = (state: any) =>
   state[NAME].autoComplete !== false
 export const shouldEditorLint = (state: any) => state[NAME].editorLint === true
+export const shouldCacheReadResults = (state: any) =>
+  state[NAME].cacheReadResults === true
 export const shouldEnableMultiStatementMode = (state: any) =>
   state[NAME].enableMultiStatementMode
 export const shouldShowPerformanceOverlay = (state: any): boolean =>
@@ -85,6 +92,19 @@ const browserSyncConfig = (host = 'https://auth.neo4j.com') => ({
 export const getUseNewVisualization = (state: any) => state[NAME].useNewVis
 export const getConnectionTimeout = (state: any) =>
   state[NAME].connectionTimeout || initialState.connectionTimeout
+export const getBoltWorkerPoolSettings = (
+  state: GlobalState
+): { minSize: number; maxSize: number; idleTimeoutMs: number } => ({
+  minSize: toNumber(state[NAME].minBoltWorkers ?? initialState.minBoltWorkers),
+  // At least one worker is needed to run queries at all
+  maxSize: Math.max(
+    1,
+    toNumber(state[NAME].maxBoltWorkers ?? initialState.maxBoltWorkers)
+  ),
+  idleTimeoutMs: toNumber(
+    state[NAME].boltWorkerIdleTimeout ?? initialState.boltWorkerIdleTimeout
+  )
+})
 export const codeFontLigatures = (state: any) => state[NAME].codeFontLigatures
 export const getAllowCrashReports = (state: GlobalState): boolean =>
   state[NAME].allowCrashReports ?? initialState.allowCrashReports
@@ -113,15 +133,20 @@ export type SettingsState = {
   autoComplete: boolean
   scrollToTop: boolean
   maxFrames: string | number
+  maxResultsMemory: string | number
   codeFontLigatures: boolean
   useBoltRouting: boolean
   editorLint: boolean
   enableMultiStatementMode: boolean
   connectionTimeout: string | number
+  minBoltWorkers: string | number
+  maxBoltWorkers: string | number
+  boltWorkerIdleTimeout: string | number
   showPerformanceOverlay: boolean
   allowCrashReports: boolean
   allowUserStats: boolean
   showWheelZoomInfo: boolean
+  cacheReadResults: boolean
 }
 
 export const initialState: SettingsState = {
@@ -138,15 +163,20 @@ export const initialState: SettingsState = {
   autoComplete: true,
   scrollToTop: true,
   maxFrames: 15,
+  maxResultsMemory: 300,
   codeFontLigatures: true,
   useBoltRouting: false,
   editorLint: false,
   enableMultiStatementMode: true,
   connectionTimeout: 30 * 1000, // 30 seconds
+  minBoltWorkers: 2,
+  maxBoltWorkers: 10,
+  boltWorkerIdleTimeout: 60 * 1000, // 1 minute
   showPerformanceOverlay: false,
   allowCrashReports: true,
   allowUserStats: true,
-  showWheelZoomInfo: true
+  showWheelZoomInfo: true,
+  cacheReadResults: false
 }
 
 export default function settings(state = initialState, action: any) {
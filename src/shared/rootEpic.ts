@@ -32,6 +32,7 @@ import {
   disconnectEpic,
   disconnectSuccessEpic,
   initialSwitchConnectionFailEpic,
+  prewarmBoltWorkersEpic,
   retainCredentialsSettingsEpic,
   silentDisconnectEpic,
   startupConnectEpic,
@@ -73,7 +74,16 @@ import { clearOnDisconnectEpic } from './modules/features/featuresDuck'
 import { ensureMaxFramesEpic } from './modules/frames/framesDuck'
 import { fetchRemoteGuideEpic } from './modules/guides/guidesDuck'
 import { clearLocalstorageEpic } from './modules/localstorage/localstorageDuck'
-import { cancelRequestEpic } from './modules/requests/requestsDuck'
+import {
+  cancelRequestEpic,
+  collectSpilledResultsEpic,
+  evictResultsEpic,
+  spillResultsEpic,
+  restoreResultEpic,
+  collectSpilledResultsEpic,
+  restoreResultEpic,
+  spillResultsEpic
+} from './modules/requests/requestsDuck'
 import {
   clearSyncEpic,
   loadFavoritesFromSyncEpic,
@@ -112,10 +122,15 @@ export default combineEpics(
   startupConnectionSuccessEpic,
   startupConnectionFailEpic,
   detectActiveConnectionChangeEpic,
+  prewarmBoltWorkersEpic,
   dbMetaEpic,
   serverConfigEpic,
   clearMetaOnDisconnectEpic,
   cancelRequestEpic,
+  evictResultsEpic,
+  spillResultsEpic,
+  restoreResultEpic,
+  collectSpilledResultsEpic,
   discoveryOnStartupEpic,
   injectDiscoveryEpic,
   populateEditorFromUrlEpic,
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import WorkPool, { WORKER_STATE } from './WorkPool'
+
+const JOB_COUNT = 10000
+
+describe('WorkPool scheduling benchmark', () => {
+  test(`queues and finishes ${JOB_COUNT} jobs`, () => {
+    // Given
+    const createWorker = jest.fn(() => ({ postMessage: () => undefined }))
+    const pool = new WorkPool(createWorker as any, 10)
+
+    // When
+    const works = []
+    for (let i = 0; i < JOB_COUNT; i++) {
+      works.push(pool.doWork({ id: `work-${i}`, payload: i }))
+    }
+
+    // Cancel every other queued job, like a canceled multi-statement script
+    for (let i = 11; i < JOB_COUNT; i += 2) {
+      pool.finishWork(works[i].id)
+    }
+    for (const work of works) {
+      pool.finishWork(work.id)
+    }
+
+    // Then
+    expect(createWorker).toHaveBeenCalledTimes(10)
+    expect(pool.getQueueSize()).toBe(0)
+    expect(pool.getPoolSize(WORKER_STATE.FREE)).toBe(10)
+    expect(works.filter(work => work.executed)).toHaveLength(
+      10 + (JOB_COUNT - 10) / 2
+    )
+  })
+})
@@ -19,7 +19,7 @@
  */
 import { v4 as uuid } from 'uuid'
 
-import WorkPool, { WORKER_STATE } from './WorkPool'
+import WorkPool, { WORKER_STATE, WORK_PRIORITY } from './WorkPool'
 
 describe('Workpool', () => {
   let createWorker: any
@@ -270,4 +270,158 @@ describe('Workpool', () => {
     expect(postMessage3).toHaveBeenCalledTimes(1)
     expect(postMessage3).toHaveBeenCalledWith(message)
   })
+  describe('priorities', () => {
+    test('starts queued interactive work before background work', () => {
+      // Given
+      const localRegister = new WorkPool(createWorker, 1)
+      const first = localRegister.doWork({ id: uuid() })
+      const background = localRegister.doWork({
+        id: uuid(),
+        payload: 'background',
+        priority: WORK_PRIORITY.SYSTEM_BACKGROUND
+      })
+      const interactive = localRegister.doWork({
+        id: uuid(),
+        payload: 'interactive'
+      })
+
+      // When
+      localRegister.finishWork(first.id)
+
+      // Then
+      expect(interactive.executed).toBe(true)
+      expect(background.executed).toBe(false)
+      expect(localRegister.getQueueSize(WORK_PRIORITY.SYSTEM_BACKGROUND)).toBe(
+        1
+      )
+    })
+    test('keeps reserved workers free for their priority', () => {
+      // Given
+      const localRegister = new WorkPool(createWorker, 2, {
+        reservedWorkers: { [WORK_PRIORITY.INTERACTIVE]: 1 }
+      })
+
+      // When
+      const background1 = localRegister.doWork({
+        id: uuid(),
+        priority: WORK_PRIORITY.SYSTEM_BACKGROUND
+      })
+      const background2 = localRegister.doWork({
+        id: uuid(),
+        priority: WORK_PRIORITY.SYSTEM_BACKGROUND
+      })
+      const interactive = localRegister.doWork({ id: uuid() })
+
+      // Then
+      expect(background1.executed).toBe(true)
+      expect(background2.executed).toBe(false)
+      expect(interactive.executed).toBe(true)
+      expect(localRegister.getPoolSize(WORKER_STATE.BUSY)).toBe(2)
+    })
+    test('ages waiting background work so it eventually runs', () => {
+      // Given
+      let now = 0
+      const localRegister = new WorkPool(createWorker, 1, {
+        agingMs: 1000,
+        now: () => now
+      })
+      const first = localRegister.doWork({ id: uuid() })
+      const background = localRegister.doWork({
+        id: uuid(),
+        priority: WORK_PRIORITY.SYSTEM_BACKGROUND
+      })
+
+      // When
+      now = 2500
+      const interactive = localRegister.doWork({ id: uuid() })
+      localRegister.finishWork(first.id)
+
+      // Then
+      expect(background.executed).toBe(true)
+      expect(interactive.executed).toBe(false)
+      expect(
+        localRegister.getQueueWaitStats()[WORK_PRIORITY.SYSTEM_BACKGROUND]
+      ).toEqual({ count: 1, totalMs: 2500, maxMs: 2500, averageMs: 2500 })
+    })
+  })
+  describe('prewarm and idle termination', () => {
+    afterEach(() => {
+      jest.useRealTimers()
+    })
+    test('spawns free workers up to the min pool size', () => {
+      // Given
+      const localRegister = new WorkPool(createWorker, 5, { minPoolSize: 2 })
+      const message = { type: 'open' }
+
+      // When
+      localRegister.prewarm(message)
+
+      // Then
+      expect(createWorker).toHaveBeenCalledTimes(2)
+      expect(localRegister.getPoolSize(WORKER_STATE.FREE)).toBe(2)
+      expect(postMessage).toHaveBeenCalledTimes(2)
+      expect(postMessage).toHaveBeenCalledWith(message)
+
+      // When
+      localRegister.doWork({ id: uuid() })
+
+      // Then
+      expect(createWorker).toHaveBeenCalledTimes(2)
+      expect(localRegister.getPoolSize(WORKER_STATE.BUSY)).toBe(1)
+    })
+    test('terminates idle workers above the min pool size', () => {
+      // Given
+      jest.useFakeTimers()
+      const terminate = jest.fn()
+      createWorker = jest.fn(() => ({ postMessage, terminate }))
+      const localRegister = new WorkPool(createWorker, 5, {
+        minPoolSize: 1,
+        idleTimeoutMs: 1000
+      })
+      const work1 = localRegister.doWork({ id: uuid() })
+      const work2 = localRegister.doWork({ id: uuid() })
+      const work3 = localRegister.doWork({ id: uuid() })
+
+      // When
+      localRegister.finishWork(work1.id)
+      localRegister.finishWork(work2.id)
+      jest.advanceTimersByTime(500)
+      localRegister.doWork({ id: uuid() })
+      jest.advanceTimersByTime(1000)
+
+      // Then
+      expect(terminate).toHaveBeenCalledTimes(1)
+      expect(localRegister.getPoolSize()).toBe(2)
+
+      // When
+      localRegister.finishWork(work3.id)
+      jest.advanceTimersByTime(1000)
+
+      // Then
+      expect(terminate).toHaveBeenCalledTimes(2)
+      expect(localRegister.getPoolSize()).toBe(1)
+    })
+    test('terminates idle workers past a lowered max pool size', () => {
+      // Given
+      const terminate = jest.fn()
+      createWorker = jest.fn(() => ({ postMessage, terminate }))
+      const localRegister = new WorkPool(createWorker, 5, { minPoolSize: 3 })
+      localRegister.prewarm()
+
+      // When
+      localRegister.configure({ maxPoolSize: 1, minPoolSize: 1 })
+
+      // Then
+      expect(terminate).toHaveBeenCalledTimes(2)
+      expect(localRegister.getPoolSize()).toBe(1)
+
+      // When
+      localRegister.doWork({ id: uuid() })
+      localRegister.doWork({ id: uuid() })
+
+      // Then
+      expect(createWorker).toHaveBeenCalledTimes(3)
+      expect(localRegister.getQueueSize()).toBe(1)
+    })
+  })
 })
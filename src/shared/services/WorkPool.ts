@@ -20,6 +20,7 @@
 import { QueryResult } from 'neo4j-driver'
 import { v4 as uuid } from 'uuid'
 
+import { ColumnarRecords } from 'shared/services/bolt/boltMappings'
 import BoltWorkerModule from 'shared/services/bolt/boltWorker'
 
 export type WorkerMessageHandler = (message: {
@@ -27,6 +28,9 @@ export type WorkerMessageHandler = (message: {
     type: string
     error: Error
     result: QueryResult
+    records?: unknown[]
+    columnarRecords?: ColumnarRecords
+    offset?: number
   }
 }) => void
 
@@ -35,20 +39,59 @@ export enum WORKER_STATE {
   FREE = 'free'
 }
 
+export enum WORK_PRIORITY {
+  INTERACTIVE = 'interactive',
+  USER_BACKGROUND = 'user-background',
+  SYSTEM_BACKGROUND = 'system-background'
+}
+
+// Lanes in order of priority
+const PRIORITIES = [
+  WORK_PRIORITY.INTERACTIVE,
+  WORK_PRIORITY.USER_BACKGROUND,
+  WORK_PRIORITY.SYSTEM_BACKGROUND
+]
+
+export type WorkPoolOptions = {
+  // Workers that only work of that priority may take
+  reservedWorkers?: Partial<Record<WORK_PRIORITY, number>>
+  // Queued work is treated as one priority higher for every agingMs it waits
+  agingMs?: number
+  // Workers kept around even when idle, spawned by prewarm
+  minPoolSize?: number
+  // Idle workers above minPoolSize are terminated after this long, 0 keeps them
+  idleTimeoutMs?: number
+  now?: () => number
+}
+
+export type QueueWaitStats = {
+  count: number
+  totalMs: number
+  maxMs: number
+  averageMs: number
+}
+
 class Work {
   public executed = false
+  // Set when queued work is finished before it started,
+  // the queue drops it lazily once it reaches the front
+  public removed = false
   public onFinish?: (payload: any) => void = undefined
+  public startedAt?: number
 
   constructor(
     public readonly id: string,
     public readonly payload: any,
-    public readonly onmessage?: WorkerMessageHandler
+    public readonly onmessage?: WorkerMessageHandler,
+    public readonly priority = WORK_PRIORITY.INTERACTIVE,
+    public readonly queuedAt = 0
   ) {}
 }
 
 class Worker {
   public work?: Work
   public state = WORKER_STATE.BUSY
+  public idleTimer?: ReturnType<typeof setTimeout>
 
   constructor(public readonly worker: BoltWorkerModule) {}
 
@@ -77,50 +120,182 @@ class Worker {
   }
 }
 
+// Array backed FIFO queue with O(1) push and shift
+class Deque<T> {
+  private items: T[] = []
+  private head = 0
+
+  get length() {
+    return this.items.length - this.head
+  }
+
+  push(item: T) {
+    this.items.push(item)
+  }
+
+  peek(): T | undefined {
+    return this.items[this.head]
+  }
+
+  shift(): T | undefined {
+    if (!this.length) {
+      return undefined
+    }
+    const item = this.items[this.head]
+    this.head += 1
+    // Compact once the consumed part dominates
+    if (this.head > 1024 && this.head * 2 > this.items.length) {
+      this.items = this.items.slice(this.head)
+      this.head = 0
+    }
+    return item
+  }
+}
+
 class WorkPool {
-  private readonly queue: Array<Work> = []
+  private readonly queues: Record<WORK_PRIORITY, Deque<Work>> = {
+    [WORK_PRIORITY.INTERACTIVE]: new Deque(),
+    [WORK_PRIORITY.USER_BACKGROUND]: new Deque(),
+    [WORK_PRIORITY.SYSTEM_BACKGROUND]: new Deque()
+  }
+  // Queue lengths without work that was removed but not yet dropped
+  private readonly queued: Record<WORK_PRIORITY, number> = {
+    [WORK_PRIORITY.INTERACTIVE]: 0,
+    [WORK_PRIORITY.USER_BACKGROUND]: 0,
+    [WORK_PRIORITY.SYSTEM_BACKGROUND]: 0
+  }
+  private readonly busy: Record<WORK_PRIORITY, number> = {
+    [WORK_PRIORITY.INTERACTIVE]: 0,
+    [WORK_PRIORITY.USER_BACKGROUND]: 0,
+    [WORK_PRIORITY.SYSTEM_BACKGROUND]: 0
+  }
   private readonly register: Array<Worker> = []
+  private readonly freeWorkers: Array<Worker> = []
+  // Queued and ongoing work by work id
+  private readonly workById = new Map<string, Work>()
+  // Busy workers by the id of the work they do
+  private readonly workerByWorkId = new Map<string, Worker>()
+  private readonly waitStats: Record<
+    WORK_PRIORITY,
+    { count: number; totalMs: number; maxMs: number }
+  > = {
+    [WORK_PRIORITY.INTERACTIVE]: { count: 0, totalMs: 0, maxMs: 0 },
+    [WORK_PRIORITY.USER_BACKGROUND]: { count: 0, totalMs: 0, maxMs: 0 },
+    [WORK_PRIORITY.SYSTEM_BACKGROUND]: { count: 0, totalMs: 0, maxMs: 0 }
+  }
+  private reservedWorkers: Partial<Record<WORK_PRIORITY, number>>
+  private readonly agingMs: number
+  private minPoolSize: number
+  private idleTimeoutMs: number
+  private readonly now: () => number
 
   constructor(
     private readonly createWorker: () => BoltWorkerModule,
-    private readonly maxPoolSize = 15
-  ) {}
+    private maxPoolSize = 15,
+    {
+      reservedWorkers = {},
+      agingMs = 5000,
+      minPoolSize = 0,
+      idleTimeoutMs = 0,
+      now = () => Date.now()
+    }: WorkPoolOptions = {}
+  ) {
+    this.reservedWorkers = reservedWorkers
+    this.agingMs = agingMs
+    this.minPoolSize = Math.min(minPoolSize, maxPoolSize)
+    this.idleTimeoutMs = idleTimeoutMs
+    this.now = now
+  }
+
+  /**
+   * Changes the pool sizes, e.g. after a settings change. Idle workers the
+   * new maximum leaves no room for are terminated right away.
+   */
+  configure({
+    maxPoolSize = this.maxPoolSize,
+    minPoolSize = this.minPoolSize,
+    idleTimeoutMs = this.idleTimeoutMs,
+    reservedWorkers = this.reservedWorkers
+  }: Pick<
+    WorkPoolOptions,
+    'minPoolSize' | 'idleTimeoutMs' | 'reservedWorkers'
+  > & { maxPoolSize?: number }) {
+    this.maxPoolSize = maxPoolSize
+    this.minPoolSize = Math.min(minPoolSize, maxPoolSize)
+    this.idleTimeoutMs = idleTimeoutMs
+    this.reservedWorkers = reservedWorkers
+
+    for (const worker of [...this.freeWorkers]) {
+      if (worker.idleTimer) {
+        clearTimeout(worker.idleTimer)
+        worker.idleTimer = undefined
+      }
+      if (this.register.length > this.maxPoolSize) {
+        this.terminateWorker(worker)
+      } else {
+        this.scheduleIdleTermination(worker)
+      }
+    }
+    this.next()
+  }
 
   getPoolSize(state?: any) {
-    if (!state) {
-      return this.register.length
+    if (state === WORKER_STATE.FREE) {
+      return this.freeWorkers.length
+    }
+    if (state === WORKER_STATE.BUSY) {
+      return this.register.length - this.freeWorkers.length
+    }
+    return this.register.length
+  }
+
+  getQueueSize(priority?: WORK_PRIORITY) {
+    if (priority) {
+      return this.queued[priority]
     }
-    return this.register.filter(w => w.state === state).length
+    return PRIORITIES.reduce((size, p) => size + this.queued[p], 0)
   }
 
-  getQueueSize() {
-    return this.queue.length
+  getQueueWaitStats(): Record<WORK_PRIORITY, QueueWaitStats> {
+    const stats = {} as Record<WORK_PRIORITY, QueueWaitStats>
+    PRIORITIES.forEach(priority => {
+      const { count, totalMs, maxMs } = this.waitStats[priority]
+      stats[priority] = {
+        count,
+        totalMs,
+        maxMs,
+        averageMs: count ? totalMs / count : 0
+      }
+    })
+    return stats
   }
 
   getWorkerById(workId: string) {
-    return this.register.find(worker => worker.work?.id === workId) ?? null
+    return this.workerByWorkId.get(workId) ?? null
   }
 
   getWorkById(id: string) {
-    return (
-      // search through undone work
-      this.queue.find(work => work.id === id) ??
-      // search through work in progress
-      this.register.find(worker => worker.work?.id === id)?.work ??
-      null
-    )
+    return this.workById.get(id) ?? null
   }
 
   doWork({
     id,
     payload,
-    onmessage
+    onmessage,
+    priority = WORK_PRIORITY.INTERACTIVE
   }: {
     id: string
     payload?: any
     onmessage?: WorkerMessageHandler
+    priority?: WORK_PRIORITY
   }) {
-    const work = new Work(id || uuid(), payload, onmessage)
+    const work = new Work(
+      id || uuid(),
+      payload,
+      onmessage,
+      priority,
+      this.now()
+    )
     this.addToQueue(work)
     this.next()
     return work
@@ -130,6 +305,21 @@ class WorkPool {
     this.register.forEach(worker => worker.worker.postMessage(msg))
   }
 
+  /**
+   * Spawns workers up to minPoolSize and sends the message to all idle workers,
+   * so they can do their setup before any work is assigned to them.
+   */
+  prewarm(msg?: any) {
+    while (this.register.length < this.minPoolSize) {
+      const workerObj = new Worker(this.createWorker())
+      workerObj.state = WORKER_STATE.FREE
+      this.register.push(workerObj)
+      this.freeWorkers.push(workerObj)
+    }
+    this.freeWorkers.forEach(worker => worker.execute(msg))
+    this.next()
+  }
+
   finishWork(workId: string) {
     const worker = this.getWorkerById(workId)
     const work = this.getWorkById(workId)
@@ -137,9 +327,10 @@ class WorkPool {
     if (!work) {
       return
     }
+    this.workById.delete(workId)
 
     if (!work.executed) {
-      this.removeFromQueue(work.id)
+      this.removeFromQueue(work)
     }
 
     if (worker) {
@@ -152,10 +343,12 @@ class WorkPool {
   }
 
   private getFreeWorker() {
-    const freeWorker = this.register.find(
-      worker => worker.state === WORKER_STATE.FREE
-    )
+    const freeWorker = this.freeWorkers.pop()
     if (freeWorker) {
+      if (freeWorker.idleTimer) {
+        clearTimeout(freeWorker.idleTimer)
+        freeWorker.idleTimer = undefined
+      }
       return freeWorker
     }
 
@@ -169,42 +362,139 @@ class WorkPool {
     return null
   }
 
-  private next() {
-    if (!this.getQueueSize()) {
-      return
+  // Work of a priority may start if the workers left after it
+  // still cover the unused reservations of the other priorities
+  private canStart(priority: WORK_PRIORITY) {
+    const available = this.maxPoolSize - this.getPoolSize(WORKER_STATE.BUSY)
+    let reservedForOthers = 0
+    for (const other of PRIORITIES) {
+      if (other !== priority) {
+        const reserved = this.reservedWorkers[other] ?? 0
+        reservedForOthers += Math.max(0, reserved - this.busy[other])
+      }
     }
-    const worker = this.getFreeWorker()
-    if (!worker) {
-      return
+    return available - reservedForOthers > 0
+  }
+
+  private peekQueue(priority: WORK_PRIORITY): Work | undefined {
+    const queue = this.queues[priority]
+    while (queue.length && queue.peek()!.removed) {
+      queue.shift()
     }
-    const work = this.queue.shift()
-    if (!work) {
-      return
+    return queue.peek()
+  }
+
+  // Picks the head of the lane with the best priority after aging,
+  // the longest waiting work wins ties
+  private nextPriority(): WORK_PRIORITY | null {
+    const now = this.now()
+    let best: WORK_PRIORITY | null = null
+    let bestRank = Infinity
+    let bestQueuedAt = Infinity
+    for (let index = 0; index < PRIORITIES.length; index++) {
+      const priority = PRIORITIES[index]
+      const head = this.peekQueue(priority)
+      if (!head || !this.canStart(priority)) {
+        continue
+      }
+      const aged = this.agingMs > 0 ? (now - head.queuedAt) / this.agingMs : 0
+      const rank = index - Math.floor(aged)
+      if (
+        rank < bestRank ||
+        (rank === bestRank && head.queuedAt < bestQueuedAt)
+      ) {
+        best = priority
+        bestRank = rank
+        bestQueuedAt = head.queuedAt
+      }
+    }
+    return best
+  }
+
+  private next() {
+    while (this.getQueueSize()) {
+      const priority = this.nextPriority()
+      if (!priority) {
+        return
+      }
+      const worker = this.getFreeWorker()
+      if (!worker) {
+        return
+      }
+      const work = this.queues[priority].shift()
+      if (!work) {
+        return
+      }
+      this.queued[priority] -= 1
+
+      work.startedAt = this.now()
+      this.recordQueueWait(work)
+      worker.assignWork(work)
+      this.busy[priority] += 1
+      this.workerByWorkId.set(work.id, worker)
+      worker.executeInitial()
     }
+  }
 
-    worker.assignWork(work)
-    worker.executeInitial()
+  private recordQueueWait(work: Work) {
+    const waitMs = (work.startedAt ?? this.now()) - work.queuedAt
+    const stats = this.waitStats[work.priority]
+    stats.count += 1
+    stats.totalMs += waitMs
+    stats.maxMs = Math.max(stats.maxMs, waitMs)
   }
 
   private addToQueue(work: Work) {
-    this.queue.push(work)
+    this.workById.set(work.id, work)
+    this.queues[work.priority].push(work)
+    this.queued[work.priority] += 1
   }
 
-  private removeFromQueue(workId: string) {
-    const workIndex = this.queue.findIndex(el => el.id === workId)
-    if (workIndex === -1) {
+  private removeFromQueue(work: Work) {
+    if (work.removed) {
       return
     }
-    this.queue.splice(workIndex, 1)
+    work.removed = true
+    this.queued[work.priority] -= 1
   }
 
   private unregisterWorker = (workId: string) => {
-    const worker = this.register.find(worker => worker.work?.id === workId)
+    const worker = this.workerByWorkId.get(workId)
     if (!worker) {
       return
     }
+    this.workerByWorkId.delete(workId)
+    if (worker.work) {
+      this.busy[worker.work.priority] -= 1
+    }
     worker.state = WORKER_STATE.FREE
+    this.freeWorkers.push(worker)
     this.next()
+    if (worker.state === WORKER_STATE.FREE) {
+      this.scheduleIdleTermination(worker)
+    }
+  }
+
+  private scheduleIdleTermination(worker: Worker) {
+    if (!this.idleTimeoutMs || this.register.length <= this.minPoolSize) {
+      return
+    }
+    worker.idleTimer = setTimeout(() => {
+      worker.idleTimer = undefined
+      if (
+        worker.state !== WORKER_STATE.FREE ||
+        this.register.length <= this.minPoolSize
+      ) {
+        return
+      }
+      this.terminateWorker(worker)
+    }, this.idleTimeoutMs)
+  }
+
+  private terminateWorker(worker: Worker) {
+    this.register.splice(this.register.indexOf(worker), 1)
+    this.freeWorkers.splice(this.freeWorkers.indexOf(worker), 1)
+    worker.worker.terminate?.()
   }
 }
 
@@ -568,6 +568,60 @@ describe('applyGraphTypes', () => {
       typed.segments[0].start.properties.date instanceof neo4j.types.Time
     ).toBeTruthy()
   })
+
+  test('should not modify objects using the reserved property name', () => {
+    // Given
+    const obj = { [reservedTypePropertyName]: 'Node', x: 1 }
+
+    // When
+    const typed = applyGraphTypes(nativeTypesToCustom(obj))
+
+    // Then
+    expect(obj).toEqual({ [reservedTypePropertyName]: 'Node', x: 1 })
+    expect(typed).toEqual(obj)
+  })
+
+  test('should pass on unknown types without their tag', () => {
+    // Given
+    const raw = {
+      [reservedTypePropertyName]: 'FutureType',
+      [`\\${reservedTypePropertyName}`]: 'escaped',
+      value: 1
+    }
+
+    // When
+    const typed = applyGraphTypes(raw)
+
+    // Then
+    expect(typed).toEqual({ [reservedTypePropertyName]: 'escaped', value: 1 })
+    expect(raw[reservedTypePropertyName]).toBe('FutureType')
+  })
+
+  test('should encode keys shared by records once', () => {
+    // Given
+    const keys = ['n', 'x']
+    const fieldLookup = { n: 0, x: 1 }
+    const records = [1, 2, 3].map(
+      i =>
+        new (neo4j.types.Record as any)(
+          keys,
+          [new (neo4j.types.Node as any)(neo4j.int(i), ['Test'], { i }), i],
+          fieldLookup
+        )
+    )
+
+    // When
+    const encoded = recursivelyTypeGraphItems(records)
+
+    // Then
+    expect(encoded[0].keys).toEqual(keys)
+    expect(encoded[0].keys).toBe(encoded[2].keys)
+    expect(encoded[0]._fieldLookup).toBe(encoded[2]._fieldLookup)
+    expect(encoded[2]._fields[0].properties).toEqual({ i: 3 })
+    expect(applyGraphTypes(encoded[2]._fields[0]).identity).toEqual(
+      neo4j.int(3)
+    )
+  })
 })
 
 const nativeTypesToCustom = (x?: any) => {
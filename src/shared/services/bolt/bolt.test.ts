@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import bolt from './bolt'
+import { setupBoltWorker } from './setup-bolt-worker'
+import { flushPromises } from 'services/utils'
+
+jest.mock('./setup-bolt-worker', () => ({
+  ...jest.requireActual('./setup-bolt-worker'),
+  setupBoltWorker: jest.fn()
+}))
+
+const readResult = { records: [], summary: { queryType: 'r' } }
+
+describe('bolt single flight', () => {
+  let pendingWork: Array<(result: unknown) => void>
+  const resolveWork = () => pendingWork.splice(0).forEach(r => r(readResult))
+  beforeEach(() => {
+    pendingWork = []
+    ;(setupBoltWorker as jest.Mock).mockImplementation(
+      () => new Promise(resolve => pendingWork.push(resolve))
+    )
+  })
+  afterEach(async () => {
+    resolveWork()
+    await flushPromises()
+    ;(setupBoltWorker as jest.Mock).mockReset()
+  })
+
+  test('shares one execution between identical requests in flight', async () => {
+    // Given
+    const { coalesced } = bolt.getSingleFlightStats()
+
+    // When
+    const first = bolt.routedReadTransaction('RETURN 1', {}, { useDb: 'a' })
+    const second = bolt.routedReadTransaction('RETURN 1', {}, { useDb: 'a' })
+    const otherDb = bolt.routedReadTransaction('RETURN 1', {}, { useDb: 'b' })
+    resolveWork()
+
+    // Then
+    expect(setupBoltWorker).toHaveBeenCalledTimes(2)
+    expect(second).toBe(first)
+    expect(otherDb).not.toBe(first)
+    expect(await first).toBe(readResult)
+    expect(bolt.getSingleFlightStats().coalesced).toBe(coalesced + 1)
+  })
+  test('runs the request again once the first one has finished', async () => {
+    // When
+    const first = bolt.directTransaction('CALL dbms.components()', {})
+    resolveWork()
+    await first
+    bolt.directTransaction('CALL dbms.components()', {})
+
+    // Then
+    expect(setupBoltWorker).toHaveBeenCalledTimes(2)
+    expect(bolt.getSingleFlightStats().inFlight).toBe(1)
+  })
+  test('does not share cancelable requests', () => {
+    // When
+    bolt.routedReadTransaction('RETURN 2', {}, { cancelable: true })
+    bolt.routedReadTransaction('RETURN 2', {}, { cancelable: true })
+
+    // Then
+    expect(setupBoltWorker).toHaveBeenCalledTimes(2)
+  })
+})
@@ -20,14 +20,17 @@
 import neo4j, { QueryResult } from 'neo4j-driver'
 import { v4 } from 'uuid'
 
-import WorkPool from '../WorkPool'
+import WorkPool, { WORK_PRIORITY } from '../WorkPool'
 import * as boltConnection from './boltConnection'
 import * as mappings from './boltMappings'
 import {
   cancelTransactionMessage,
   closeConnectionMessage,
-  getWorkerPayloadForRunningCypherMessage
+  getWorkerPayloadForRunningCypherMessage,
+  openConnectionMessage
 } from './boltWorkerMessages'
+import { EntityStore } from './entityStore'
+import { ReadResultCache, getReadResultCacheKey } from './readResultCache'
 import { addTypesAsField, setupBoltWorker } from './setup-bolt-worker'
 import { cancelTransaction as globalCancelTransaction } from './transactions'
 import { NATIVE } from 'services/bolt/boltHelpers'
@@ -36,7 +39,107 @@ import BoltWorkerModule from 'shared/services/bolt/boltWorker'
 
 let connectionProperties: {} | null = null
 let _useDb: string | null = null
-const boltWorkPool = new WorkPool(() => new BoltWorkerModule(), 10)
+
+export type BoltWorkerPoolSettings = {
+  minSize: number
+  maxSize: number
+  idleTimeoutMs: number
+}
+
+// Reservations grow with the pool, a pool of 10 reserves 4/1/1 workers.
+// Small pools reserve nothing for background work so queries still run.
+const getReservedWorkers = (maxSize: number) => ({
+  [WORK_PRIORITY.INTERACTIVE]: Math.floor(maxSize * 0.4),
+  [WORK_PRIORITY.USER_BACKGROUND]: maxSize >= 3 ? 1 : 0,
+  [WORK_PRIORITY.SYSTEM_BACKGROUND]: maxSize >= 3 ? 1 : 0
+})
+
+// Sized by the settings once connected, see configureWorkerPool
+const boltWorkPool = new WorkPool(() => new BoltWorkerModule(), 10, {
+  reservedWorkers: getReservedWorkers(10)
+})
+export const READ_RESULT_CACHE_MAX_BYTES = 20 * 1024 * 1024
+// Opt-in with useCache, results are reused until this browser runs a write
+const readResultCache = new ReadResultCache(READ_RESULT_CACHE_MAX_BYTES)
+
+const getCacheKey = (
+  useCache: boolean,
+  input: string,
+  typedParameters: unknown,
+  useDb: string | null,
+  maxRecords?: number
+): string | null =>
+  useCache
+    ? getReadResultCacheKey(input, typedParameters, useDb, maxRecords)
+    : null
+
+// Anything but a read query may have changed what cached reads return.
+// Failed transactions are rolled back, only failed auto-commit queries
+// can have committed partially.
+const trackResult = (
+  promise: Promise<QueryResult>,
+  cacheKey: string | null,
+  autoCommit = false
+): Promise<QueryResult> =>
+  promise.then(
+    result => {
+      if (result?.summary?.queryType !== 'r') {
+        readResultCache.clear()
+      } else if (cacheKey) {
+        readResultCache.set(cacheKey, result)
+      }
+      return result
+    },
+    error => {
+      if (autoCommit) {
+        readResultCache.clear()
+      }
+      throw error
+    }
+  )
+
+// Identical reads in flight share one worker execution and its result.
+// Only the first request's onLostConnection is called.
+const inFlightReads = new Map<string, Promise<QueryResult>>()
+const singleFlightStats = { executed: 0, coalesced: 0 }
+
+// Cancelable requests can't share, canceling one would cancel them all
+const getFlightKey = (
+  cancelable: boolean,
+  connectionType: string,
+  input: string,
+  typedParameters: unknown,
+  useDb: string | null
+): string | null =>
+  cancelable
+    ? null
+    : `${connectionType}:${getReadResultCacheKey(
+        input,
+        typedParameters,
+        useDb
+      )}`
+
+const singleFlight = (
+  key: string | null,
+  run: () => Promise<QueryResult>
+): Promise<QueryResult> => {
+  if (key === null) {
+    return run()
+  }
+  const inFlight = inFlightReads.get(key)
+  if (inFlight) {
+    singleFlightStats.coalesced++
+    return inFlight
+  }
+  singleFlightStats.executed++
+  const promise = run()
+  inFlightReads.set(key, promise)
+  const forget = () => {
+    inFlightReads.delete(key)
+  }
+  promise.then(forget, forget)
+  return promise
+}
 
 function openConnection(
   props: Connection,
@@ -47,6 +150,7 @@ function openConnection(
     boltConnection
       .openConnection(props, opts, onLostConnection)
       .then(() => {
+        readResultCache.clear()
         connectionProperties = {
           authenticationMethod: props.authenticationMethod || NATIVE,
           username: props.username,
@@ -84,12 +188,29 @@ function routedWriteTransaction(
     onLostConnection = () => {},
     txMetadata = undefined,
     autoCommit = false,
-    useDb = null
+    useDb = null,
+    onRecords = undefined,
+    onRecordsBatch = undefined,
+    columnarTransfer = true,
+    maxRecords = undefined,
+    useCache = false
   } = requestMetaData
   const id = requestId || v4()
+  const typedParameters = mappings.recursivelyTypeGraphItems(parameters)
+  const cacheKey = getCacheKey(
+    useCache,
+    input,
+    typedParameters,
+    useDb || _useDb,
+    maxRecords
+  )
+  const cached = cacheKey && readResultCache.get(cacheKey)
+  if (cached) {
+    return [id, Promise.resolve(cached)]
+  }
   const payload = getWorkerPayloadForRunningCypherMessage(
     input,
-    mappings.recursivelyTypeGraphItems(parameters),
+    typedParameters,
     boltConnection.ROUTED_WRITE_CONNECTION,
     id,
     cancelable,
@@ -97,16 +218,21 @@ function routedWriteTransaction(
       ...connectionProperties,
       txMetadata,
       useDb: useDb || _useDb,
-      autoCommit
-    }
+      autoCommit,
+      maxRecords
+    },
+    !!onRecords || !!onRecordsBatch,
+    columnarTransfer
   )
   const workerPromise = setupBoltWorker(
     boltWorkPool,
     id,
     payload,
-    onLostConnection
+    onLostConnection,
+    onRecords,
+    onRecordsBatch
   )
-  return [id, workerPromise]
+  return [id, trackResult(workerPromise, cacheKey, autoCommit)]
 }
 
 function routedReadTransaction(
@@ -119,28 +245,49 @@ function routedReadTransaction(
     cancelable = false,
     onLostConnection = () => {},
     txMetadata = undefined,
-    useDb = null
+    useDb = null,
+    useCache = false
   } = requestMetaData
   const id = requestId || v4()
-  const payload = getWorkerPayloadForRunningCypherMessage(
+  const typedParameters = mappings.recursivelyTypeGraphItems(parameters)
+  const cacheKey = getCacheKey(
+    useCache,
     input,
-    mappings.recursivelyTypeGraphItems(parameters),
-    boltConnection.ROUTED_READ_CONNECTION,
-    id,
-    cancelable,
-    {
-      ...connectionProperties,
-      txMetadata,
-      useDb: useDb || _useDb
-    }
+    typedParameters,
+    useDb || _useDb
   )
-  const workerPromise = setupBoltWorker(
-    boltWorkPool,
-    id,
-    payload,
-    onLostConnection
+  const cached = cacheKey && readResultCache.get(cacheKey)
+  if (cached) {
+    return Promise.resolve(cached)
+  }
+  const flightKey = getFlightKey(
+    cancelable,
+    boltConnection.ROUTED_READ_CONNECTION,
+    input,
+    typedParameters,
+    useDb || _useDb
   )
-  return workerPromise
+  return singleFlight(flightKey, () => {
+    const payload = getWorkerPayloadForRunningCypherMessage(
+      input,
+      typedParameters,
+      boltConnection.ROUTED_READ_CONNECTION,
+      id,
+      cancelable,
+      {
+        ...connectionProperties,
+        txMetadata,
+        useDb: useDb || _useDb
+      }
+    )
+    const workerPromise = setupBoltWorker(
+      boltWorkPool,
+      id,
+      payload,
+      onLostConnection
+    )
+    return trackResult(workerPromise, cacheKey)
+  })
 }
 
 function directTransaction(
@@ -153,41 +300,100 @@ function directTransaction(
     cancelable = false,
     onLostConnection = () => {},
     txMetadata = undefined,
-    useDb = null
+    useDb = null,
+    useCache = false
   } = requestMetaData
   const id = requestId || v4()
-  const payload = getWorkerPayloadForRunningCypherMessage(
+  const typedParameters = mappings.recursivelyTypeGraphItems(parameters)
+  const cacheKey = getCacheKey(
+    useCache,
     input,
-    mappings.recursivelyTypeGraphItems(parameters),
-    boltConnection.DIRECT_CONNECTION,
-    id,
-    cancelable,
-    {
-      ...connectionProperties,
-      txMetadata,
-      useDb: useDb || _useDb
-    }
+    typedParameters,
+    useDb || _useDb
   )
-  const workerPromise = setupBoltWorker(
-    boltWorkPool,
-    id,
-    payload,
-    onLostConnection
+  const cached = cacheKey && readResultCache.get(cacheKey)
+  if (cached) {
+    return Promise.resolve(cached)
+  }
+  const flightKey = getFlightKey(
+    cancelable,
+    boltConnection.DIRECT_CONNECTION,
+    input,
+    typedParameters,
+    useDb || _useDb
   )
-  return workerPromise
+  return singleFlight(flightKey, () => {
+    const payload = getWorkerPayloadForRunningCypherMessage(
+      input,
+      typedParameters,
+      boltConnection.DIRECT_CONNECTION,
+      id,
+      cancelable,
+      {
+        ...connectionProperties,
+        txMetadata,
+        useDb: useDb || _useDb
+      }
+    )
+    const workerPromise = setupBoltWorker(
+      boltWorkPool,
+      id,
+      payload,
+      onLostConnection
+    )
+    return trackResult(workerPromise, cacheKey)
+  })
 }
 
 const closeConnectionInWorkers = (): void => {
   boltWorkPool.messageAllWorkers(closeConnectionMessage())
 }
 
+const configureWorkerPool = ({
+  minSize,
+  maxSize,
+  idleTimeoutMs
+}: BoltWorkerPoolSettings): void => {
+  boltWorkPool.configure({
+    maxPoolSize: maxSize,
+    minPoolSize: minSize,
+    idleTimeoutMs,
+    reservedWorkers: getReservedWorkers(maxSize)
+  })
+}
+
+// Spawns the minimum number of workers and has idle workers open their
+// driver, so the first queries skip worker boot and connection handshake
+const prewarmWorkers = (): void => {
+  if (connectionProperties) {
+    boltWorkPool.prewarm(openConnectionMessage(connectionProperties))
+  }
+}
+
+const oldVisConverters = {
+  intChecker: neo4j.isInt,
+  intConverter: (val: any): string => val.toString(),
+  objectConverter: mappings.extractFromNeoObjects
+}
+
+// Converted entities shared by the visualizations of all frames
+const visEntityStores: mappings.VisEntityStores = {
+  nodes: new EntityStore(node => mappings.toBasicNode(node, oldVisConverters)),
+  relationships: new EntityStore(rel =>
+    mappings.toBasicRelationship(rel, oldVisConverters)
+  )
+}
+
 export default {
   hasMultiDbSupport: boltConnection.hasMultiDbSupport,
   useDb: (db: any) => (_useDb = db),
   directConnect: boltConnection.directConnect,
   openConnection,
+  configureWorkerPool,
+  prewarmWorkers,
   closeConnection: () => {
     connectionProperties = null
+    readResultCache.clear()
     boltConnection.closeGlobalConnection()
     closeConnectionInWorkers()
   },
@@ -195,6 +401,12 @@ export default {
   routedReadTransaction,
   routedWriteTransaction,
   cancelTransaction,
+  getQueueWaitStats: () => boltWorkPool.getQueueWaitStats(),
+  getReadResultCacheStats: () => readResultCache.getStats(),
+  getSingleFlightStats: () => ({
+    ...singleFlightStats,
+    inFlight: inFlightReads.size
+  }),
   recordsToTableArray: (records: any, convertInts = true) => {
     const intChecker = convertInts ? neo4j.isInt : () => true
     const intConverter = convertInts
@@ -223,23 +435,41 @@ export default {
   extractNodesAndRelationshipsFromRecordsForOldVis: (
     records: any,
     filterRels = true,
-    maxFieldItems: any
+    maxFieldItems: any,
+    owner?: string
   ) => {
-    const intChecker = neo4j.isInt
-    const intConverter = (val: any): string => val.toString()
-
     return mappings.extractNodesAndRelationshipsFromRecordsForOldVis(
       records,
       neo4j.types,
       filterRels,
-      {
-        intChecker,
-        intConverter,
-        objectConverter: mappings.extractFromNeoObjects
-      },
-      maxFieldItems
+      oldVisConverters,
+      maxFieldItems,
+      visEntityStores,
+      owner
+    )
+  },
+  createGraphExtractorForOldVis: (
+    filterRels = true,
+    maxFieldItems?: number,
+    owner?: string
+  ): mappings.VisGraphExtractor => {
+    return new mappings.VisGraphExtractor(
+      neo4j.types,
+      filterRels,
+      oldVisConverters,
+      maxFieldItems,
+      visEntityStores,
+      owner
     )
   },
+  releaseVisEntities: (owner: string): void => {
+    visEntityStores.nodes.release(owner)
+    visEntityStores.relationships.release(owner)
+  },
+  getVisEntityStoreStats: () => ({
+    nodes: visEntityStores.nodes.getStats(),
+    relationships: visEntityStores.relationships.getStats()
+  }),
   extractPlan: (result: any, calculateTotalDbHits?: boolean) => {
     return mappings.extractPlan(result, calculateTotalDbHits)
   },
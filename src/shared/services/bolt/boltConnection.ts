@@ -28,9 +28,10 @@ import {
   setGlobalDrivers,
   unsetGlobalDrivers
 } from './globalDrivers'
+import { closeCachedSessions } from './transactions'
+import { backgroundTxMetadata } from './txMetadata'
 import { buildTxFunctionByMode } from 'services/bolt/boltHelpers'
 import { Connection } from 'shared/modules/connections/connectionsDuck'
-import { backgroundTxMetadata } from './txMetadata'
 
 export const DIRECT_CONNECTION = 'DIRECT_CONNECTION'
 export const ROUTED_WRITE_CONNECTION = 'ROUTED_WRITE_CONNECTION'
@@ -147,6 +148,7 @@ export function openConnection(
 export const closeGlobalConnection = (): void => {
   const globalDrivers = getGlobalDrivers()
   if (globalDrivers) {
+    closeCachedSessions()
     globalDrivers.close()
     unsetGlobalDrivers()
   }
@@ -157,14 +159,10 @@ export const ensureConnection = (
   opts: Record<string, unknown>,
   onLostConnection: () => void
 ): Promise<unknown> => {
-  const session = getGlobalDrivers()
-    ?.getDirectDriver()
-    ?.session({ defaultAccessMode: neo4j.session.READ })
-  if (session) {
-    return new Promise<void>(resolve => {
-      session.close()
-      resolve()
-    })
+  // Lost connections are reported by the driver's fail function,
+  // so the existence of the driver is enough here
+  if (getGlobalDrivers()?.getDirectDriver()) {
+    return Promise.resolve()
   } else {
     return openConnection(props, opts, onLostConnection)
   }
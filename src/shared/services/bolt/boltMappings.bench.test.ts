@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import {
+  decodeRecordsColumnar,
+  encodeRecordsColumnar,
+  extractNodesAndRelationshipsFromRecordsForOldVis,
+  recursivelyTypeGraphItems
+} from './boltMappings'
+import { addTypesAsField } from './setup-bolt-worker'
+
+const ROW_COUNT = 5000
+
+const createSyntheticRecords = (rowCount: number) => {
+  const keys = ['n', 'r', 'm', 'score', 'tags']
+  const records = []
+  for (let i = 0; i < rowCount; i++) {
+    const n = new (neo4j.types.Node as any)(neo4j.int(i), ['Person'], {
+      name: `person ${i}`,
+      age: neo4j.int(i % 90),
+      active: i % 2 === 0
+    })
+    const m = new (neo4j.types.Node as any)(neo4j.int(i + 1), ['Person'], {
+      name: `person ${i + 1}`,
+      age: neo4j.int((i + 1) % 90),
+      active: i % 2 === 1
+    })
+    const r = new (neo4j.types.Relationship as any)(
+      neo4j.int(rowCount + i),
+      n.identity,
+      m.identity,
+      'KNOWS',
+      { weight: i / rowCount }
+    )
+    records.push(
+      new (neo4j.types.Record as any)(keys, [
+        n,
+        r,
+        m,
+        i * 0.5,
+        ['a', 'b', 'c']
+      ])
+    )
+  }
+  return records
+}
+
+// Timings only mean something on an otherwise idle machine, so the
+// benchmarks are left out of the test suite unless BENCHMARK is set
+const describeBenchmark = process.env.BENCHMARK ? describe : describe.skip
+
+const time = (fn: () => void): number => {
+  const start = Date.now()
+  fn()
+  return Date.now() - start
+}
+
+describeBenchmark('columnar transfer benchmark', () => {
+  test('compares structured clone format with columnar format', () => {
+    const records = createSyntheticRecords(ROW_COUNT)
+    let structuredResult: any
+    let columnarResult: any
+
+    // Structured clone is approximated by a JSON round trip,
+    // it copies the same object graph that postMessage would
+    const structuredMs = time(() => {
+      const sent = recursivelyTypeGraphItems({ records, summary: {} })
+      const received = JSON.parse(JSON.stringify(sent))
+      structuredResult = addTypesAsField(received).records
+    })
+    const columnarMs = time(() => {
+      const sent = encodeRecordsColumnar(records)
+      const received = { ...sent, strings: [...sent.strings] }
+      columnarResult = decodeRecordsColumnar(received)
+    })
+
+    console.log(
+      `${ROW_COUNT} records: structured clone ${structuredMs}ms, columnar ${columnarMs}ms`
+    )
+    expect(columnarResult).toHaveLength(ROW_COUNT)
+    expect(columnarResult[ROW_COUNT - 1].get('r')).toEqual(
+      structuredResult[ROW_COUNT - 1].get('r')
+    )
+  })
+})
+
+// Half of the relationships point to nodes outside of the result,
+// so filtering has work to do
+const createGraphRecords = (nodeCount: number) => {
+  const keys = ['item']
+  const records = []
+  for (let i = 0; i < nodeCount; i++) {
+    const node = new (neo4j.types.Node as any)(neo4j.int(i), ['Person'], {
+      name: `person ${i}`
+    })
+    records.push(new (neo4j.types.Record as any)(keys, [node]))
+  }
+  for (let i = 0; i < nodeCount * 4; i++) {
+    const end = i % 2 === 0 ? (i * 7) % nodeCount : nodeCount + i
+    const rel = new (neo4j.types.Relationship as any)(
+      neo4j.int(i),
+      neo4j.int(i % nodeCount),
+      neo4j.int(end),
+      'KNOWS',
+      {}
+    )
+    records.push(new (neo4j.types.Record as any)(keys, [rel]))
+  }
+  return records
+}
+
+describeBenchmark('graph extraction scaling benchmark', () => {
+  test('filters relationships in linear time', () => {
+    const converters = {
+      intChecker: neo4j.isInt,
+      intConverter: (val: any) => val.toString()
+    }
+    const extract = (records: any[]) =>
+      extractNodesAndRelationshipsFromRecordsForOldVis(
+        records,
+        neo4j.types,
+        true,
+        converters
+      )
+    // Warm up
+    extract(createGraphRecords(1000))
+
+    const sizes = [1000, 2000, 4000, 8000]
+    const perItemMs = sizes.map(nodeCount => {
+      const records = createGraphRecords(nodeCount)
+      let relationshipCount = 0
+      const ms = time(() => {
+        relationshipCount = extract(records).relationships.length
+      })
+      console.log(
+        `Graph extraction: ${nodeCount} nodes, ${
+          records.length - nodeCount
+        } rels in ${ms}ms`
+      )
+      expect(relationshipCount).toBe(nodeCount * 2)
+      return Math.max(ms, 1) / records.length
+    })
+
+    // Quadratic filtering would make the cost per item grow with the size
+    expect(perItemMs[perItemMs.length - 1]).toBeLessThan(perItemMs[0] * 4)
+  })
+})
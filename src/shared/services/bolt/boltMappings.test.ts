@@ -21,13 +21,17 @@ import neo4j from 'neo4j-driver'
 
 import {
   arrayIntToString,
+  chunkColumnarRecords,
+  decodeRecordsColumnar,
+  encodeRecordsColumnar,
   extractFromNeoObjects,
   extractNodesAndRelationshipsFromRecords,
   extractNodesAndRelationshipsFromRecordsForOldVis,
   extractPlan,
   flattenProperties,
   itemIntToString,
-  objIntToString
+  objIntToString,
+  VisGraphExtractor
 } from './boltMappings'
 
 describe('boltMappings', () => {
@@ -487,6 +491,108 @@ describe('boltMappings', () => {
       expect(out.nodes.length).toEqual(1)
       expect(out.nodes[0].properties.x).toEqual('2.0')
     })
+    test('should infer property types and share them between items of the same shape', () => {
+      // Given
+      const converters = {
+        intChecker: () => false,
+        intConverter: (a: any) => a,
+        objectConverter: extractFromNeoObjects
+      }
+      const nodes = [
+        new (neo4j.types.Node as any)(1, ['X'], {
+          age: neo4j.int(1),
+          name: 'a'
+        }),
+        new (neo4j.types.Node as any)(2, ['X'], {
+          age: neo4j.int(2),
+          name: 'b'
+        }),
+        new (neo4j.types.Node as any)(3, ['Y'], {
+          age: neo4j.int(3),
+          name: 'c'
+        }),
+        new (neo4j.types.Node as any)(4, ['X'], { age: 4.5, name: null })
+      ]
+      const boltRecord = {
+        keys: ['n'],
+        get: (key: any) => {
+          if (key === 'n') return nodes
+        }
+      }
+      const records: any = [boltRecord]
+
+      // When
+      const out = extractNodesAndRelationshipsFromRecordsForOldVis(
+        records,
+        neo4j.types,
+        false,
+        converters
+      )
+
+      // Then
+      expect(out.nodes.map((node: any) => node.propertyTypes)).toEqual([
+        { age: 'Integer', name: 'String' },
+        { age: 'Integer', name: 'String' },
+        { age: 'Integer', name: 'String' },
+        { age: 'Float', name: 'null' }
+      ])
+      expect(out.nodes[0].propertyTypes).toBe(out.nodes[1].propertyTypes)
+      expect(out.nodes[0].propertyTypes).not.toBe(out.nodes[2].propertyTypes)
+    })
+  })
+  describe('VisGraphExtractor', () => {
+    const converters = {
+      intChecker: () => false,
+      intConverter: (a: any) => a,
+      objectConverter: extractFromNeoObjects
+    }
+    const createRecord = (item: any) =>
+      new (neo4j.types.Record as any)(['item'], [item])
+    const records = [
+      createRecord(new (neo4j.types.Node as any)(1, ['X'], {})),
+      createRecord(
+        new (neo4j.types.Relationship as any)(3, 1, 2, 'REL', { rel: 1 })
+      ),
+      createRecord(new (neo4j.types.Node as any)(2, ['Y'], {}))
+    ]
+
+    test('should extract records in batches like all at once', () => {
+      // Given
+      const extractor = new VisGraphExtractor(neo4j.types, true, converters)
+
+      // When
+      extractor.addRecords(records.slice(0, 2))
+      const partialGraph = extractor.getGraph()
+      extractor.addRecords(records.slice(2))
+
+      // Then
+      expect(partialGraph.nodes.map(node => node.id)).toEqual(['1'])
+      // The relationship is kept back until its end node has arrived
+      expect(partialGraph.relationships).toEqual([])
+      expect(extractor.getGraph()).toEqual(
+        extractNodesAndRelationshipsFromRecordsForOldVis(
+          records,
+          neo4j.types,
+          true,
+          converters
+        )
+      )
+      expect(extractor.getGraph().relationships).toHaveLength(1)
+    })
+    test('should only extend results starting with the extracted records', () => {
+      // Given
+      const extractor = new VisGraphExtractor(neo4j.types, true, converters)
+
+      // When
+      extractor.addRecords(records.slice(0, 2))
+
+      // Then
+      expect(extractor.recordCount).toBe(2)
+      expect(extractor.canExtend(records)).toBe(true)
+      expect(extractor.canExtend(records.slice(0, 1))).toBe(false)
+      expect(extractor.canExtend(records.slice(1))).toBe(false)
+      expect(extractor.canExtend(records, 10)).toBe(false)
+    })
   })
   describe('extractFromNeoObjects', () => {
     test('should extract objects from paths with zero segments', () => {
@@ -566,4 +672,144 @@ describe('boltMappings', () => {
       expect(result[5].y).toEqual('2.0')
     })
   })
+  describe('columnar records transfer', () => {
+    const createRecords = () => {
+      const start = new (neo4j.types.Node as any)(neo4j.int(1), ['X'], {
+        x: neo4j.int(1),
+        name: 'start'
+      })
+      const end = new (neo4j.types.Node as any)(neo4j.int(2), ['Y', 'Z'], {
+        y: 1.5,
+        list: [1, 'two', null, true]
+      })
+      const rel = new (neo4j.types.Relationship as any)(
+        neo4j.int(3),
+        neo4j.int(1),
+        neo4j.int(2),
+        'REL',
+        { since: neo4j.int(-12) }
+      )
+      const path = new (neo4j.types.Path as any)(start, end, [
+        new (neo4j.types.PathSegment as any)(start, rel, end)
+      ])
+      const point = new (neo4j.types.Point as any)(neo4j.int(7203), 1, 2)
+      const keys = ['n', 'r', 'p', 'other']
+      return [
+        new (neo4j.types.Record as any)(keys, [
+          start,
+          rel,
+          path,
+          { nested: { map: [neo4j.int(5), false] }, point }
+        ]),
+        new (neo4j.types.Record as any)(keys, [end, null, undefined, 'str'])
+      ]
+    }
+
+    test('round trips records with graph and scalar types', () => {
+      // Given
+      const records = createRecords()
+
+      // When
+      const decoded = decodeRecordsColumnar(encodeRecordsColumnar(records))
+
+      // Then
+      expect(decoded).toHaveLength(2)
+      expect(decoded[0]).toBeInstanceOf(neo4j.types.Record)
+      expect(decoded[0].keys).toEqual(records[0].keys)
+      expect(decoded[0].get('n')).toBeInstanceOf(neo4j.types.Node)
+      expect(decoded[0].get('n')).toEqual(records[0].get('n'))
+      expect(decoded[0].get('r')).toEqual(records[0].get('r'))
+      expect(decoded[0].get('p')).toEqual(records[0].get('p'))
+      expect(decoded[0].get('other')).toEqual(records[0].get('other'))
+      expect(decoded[1].get('n')).toEqual(records[1].get('n'))
+      expect(decoded[1].get('r')).toBeNull()
+      expect(decoded[1].get('p')).toBeUndefined()
+      expect(decoded[1].get('other')).toEqual('str')
+    })
+
+    test('stores each node and relationship once and shares decoded entities', () => {
+      // Given
+      const records = createRecords()
+
+      // When
+      const encoded = encodeRecordsColumnar(records)
+      const decoded = decodeRecordsColumnar(encoded)
+
+      // Then
+      expect(encoded.entityOffsets.length).toBe(3 * 4)
+      expect(decoded[0].get('p').start).toBe(decoded[0].get('n'))
+      expect(decoded[0].get('p').end).toBe(decoded[1].get('n'))
+      expect(decoded[0].get('p').segments[0].relationship).toBe(
+        decoded[0].get('r')
+      )
+    })
+
+    test('keeps the versions of an entity changed between rows', () => {
+      // Given
+      const records = [1, 2, 1].map(
+        x =>
+          new (neo4j.types.Record as any)(
+            ['n'],
+            [new (neo4j.types.Node as any)(neo4j.int(1), ['X'], { x })]
+          )
+      )
+
+      // When
+      const decoded = decodeRecordsColumnar(encodeRecordsColumnar(records))
+      const values = decoded.map(record => record.get('n').properties.x)
+
+      // Then
+      expect(values).toEqual([1, 2, 1])
+    })
+
+    test('decodes the fields of a record when first read', () => {
+      // Given
+      const records = createRecords()
+
+      // When
+      const decoded = decodeRecordsColumnar(encodeRecordsColumnar(records))
+      const isDecoded = (record: any) =>
+        'value' in Object.getOwnPropertyDescriptor(record, '_fields')!
+      const before = decoded.map(isDecoded)
+      const value = decoded[1].get('other')
+
+      // Then
+      expect(before).toEqual([false, false])
+      expect(value).toBe('str')
+      expect(decoded.map(isDecoded)).toEqual([false, true])
+      expect(decoded[1].get('n')).toEqual(records[1].get('n'))
+    })
+
+    test('interns repeated strings', () => {
+      // Given
+      const records = ['a', 'b', 'a', 'a'].map(
+        value => new (neo4j.types.Record as any)(['s'], [value])
+      )
+
+      // When
+      const encoded = encodeRecordsColumnar(records)
+
+      // Then
+      expect(encoded.strings).toEqual(['a', 'b'])
+      expect(
+        decodeRecordsColumnar(encoded).map(record => record.get('s'))
+      ).toEqual(['a', 'b', 'a', 'a'])
+    })
+
+    test('splits encoded records into chunks without decoding them', () => {
+      // Given
+      const records = [...createRecords(), ...createRecords().reverse()]
+
+      // When
+      const chunks = chunkColumnarRecords(encodeRecordsColumnar(records), 3)
+      const decoded = chunks.map(chunk => decodeRecordsColumnar(chunk))
+
+      // Then
+      expect(chunks.map(chunk => chunk.rowCount)).toEqual([3, 1])
+      expect(decoded[0]).toEqual(records.slice(0, 3))
+      expect(decoded[1]).toEqual(records.slice(3))
+      expect(chunks[1].entityOffsets.length).toBe(3 * 4)
+      expect(decoded[0][2].get('n')).toBe(decoded[0][0].get('p').end)
+    })
+  })
 })
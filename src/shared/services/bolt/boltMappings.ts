@@ -17,21 +17,26 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-import { flatten, map, take } from 'lodash-es'
 import neo4j from 'neo4j-driver'
 
-import { upperFirst, BasicNodesAndRels } from 'neo4j-arc/common'
-
 import {
-  escapeReservedProps,
-  safelyAddObjectProp,
-  safelyRemoveObjectProp,
-  unEscapeReservedProps
-} from '../utils'
+  getDriverTypeName,
+  upperFirst,
+  BasicNode,
+  BasicNodesAndRels,
+  BasicRelationship
+} from 'neo4j-arc/common'
+
+import { EntityStore, isSameValue } from './entityStore'
+import { applyGraphTypes, recursivelyTypeGraphItems } from './graphTypesCodec'
 import updateStatsFields from './updateStatisticsFields'
 import { stringModifier } from 'services/bolt/cypherTypesFormatting'
 
-export const reservedTypePropertyName = 'transport-class'
+export {
+  applyGraphTypes,
+  recursivelyTypeGraphItems,
+  reservedTypePropertyName
+} from './graphTypesCodec'
 
 interface Converters {
   intChecker: (item: {}) => boolean
@@ -189,17 +194,6 @@ export function extractNodesAndRelationshipsFromRecords(
   return { nodes: rawNodes, relationships: rawRels }
 }
 
-const getDriverTypeName = (val: any) => {
-  const driverTypeMap = neo4j.types as any
-  const driverTypes = Object.keys(neo4j.types)
-  for (const type of driverTypes) {
-    if (val instanceof driverTypeMap[type]) {
-      return type
-    }
-  }
-  return undefined
-}
-
 const getTypeDisplayName = (val: any): string => {
   const jsType = typeof val
   const complexType = jsType === 'object'
@@ -223,58 +217,88 @@ const getTypeDisplayName = (val: any): string => {
   return getDriverTypeName(val) || 'Unknown'
 }
 
+// Entities with the same labels and property types share one, read only,
+// propertyTypes object. Results rarely have more than a few shapes.
+const MAX_PROPERTY_TYPE_SHAPES = 1000
+const propertyTypeShapes = new Map<string, Record<string, string>>()
+
+const getPropertyTypes = (
+  labels: string,
+  properties: Record<string, unknown>
+): Record<string, string> => {
+  const keys = Object.keys(properties)
+  const typeNames: string[] = new Array(keys.length)
+  let shape = labels
+  for (let i = 0; i < keys.length; i++) {
+    typeNames[i] = getTypeDisplayName(properties[keys[i]])
+    shape += `\u0000${keys[i]}\u0001${typeNames[i]}`
+  }
+
+  const cached = propertyTypeShapes.get(shape)
+  if (cached) {
+    return cached
+  }
+  const propertyTypes: Record<string, string> = {}
+  for (let i = 0; i < keys.length; i++) {
+    propertyTypes[keys[i]] = typeNames[i]
+  }
+  if (propertyTypeShapes.size >= MAX_PROPERTY_TYPE_SHAPES) {
+    propertyTypeShapes.clear()
+  }
+  propertyTypeShapes.set(shape, propertyTypes)
+  return propertyTypes
+}
+
+export const toBasicNode = (item: any, converters: Converters): BasicNode => ({
+  id: item.identity.toString(),
+  labels: item.labels,
+  properties: itemIntToString(item.properties, converters),
+  propertyTypes: getPropertyTypes(item.labels.join(':'), item.properties)
+})
+
+export const toBasicRelationship = (
+  item: any,
+  converters: Converters
+): BasicRelationship => ({
+  id: item.identity.toString(),
+  startNodeId: item.start.toString(),
+  endNodeId: item.end.toString(),
+  type: item.type,
+  properties: itemIntToString(item.properties, converters),
+  propertyTypes: getPropertyTypes(item.type, item.properties)
+})
+
+// Newer servers identify entities by element id
+const getEntityKey = (item: any): string =>
+  item.elementId ?? item.identity.toString()
+
+export type VisEntityStores = {
+  nodes: EntityStore<BasicNode>
+  relationships: EntityStore<BasicRelationship>
+}
+
 export function extractNodesAndRelationshipsFromRecordsForOldVis(
   records: typeof neo4j.types.Record[],
   types: any,
   filterRels: any,
   converters: Converters,
-  maxFieldItems?: any
+  maxFieldItems?: any,
+  entityStores?: VisEntityStores,
+  owner?: string
 ): BasicNodesAndRels {
   if (records.length === 0) {
     return { nodes: [], relationships: [] }
   }
-  const { rawNodes, rawRels } = extractRawNodesAndRelationShipsFromRecords(
-    records,
+  const extractor = new VisGraphExtractor(
     types,
-    maxFieldItems
+    filterRels,
+    converters,
+    maxFieldItems,
+    entityStores,
+    owner
   )
-
-  const nodes = rawNodes.map(item => {
-    return {
-      id: item.identity.toString(),
-      labels: item.labels,
-      properties: itemIntToString(item.properties, converters),
-      propertyTypes: Object.entries(item.properties).reduce(
-        (acc, [key, val]) => ({ ...acc, [key]: getTypeDisplayName(val) }),
-        {}
-      )
-    }
-  })
-  let relationships = rawRels
-  if (filterRels) {
-    relationships = rawRels.filter(item => {
-      const start = item.start.toString()
-      const end = item.end.toString()
-      return (
-        nodes.some(node => node.id === start) &&
-        nodes.some(node => node.id === end)
-      )
-    })
-  }
-  relationships = relationships.map(item => {
-    return {
-      id: item.identity.toString(),
-      startNodeId: item.start.toString(),
-      endNodeId: item.end.toString(),
-      type: item.type,
-      properties: itemIntToString(item.properties, converters),
-      propertyTypes: Object.entries(item.properties).reduce(
-        (acc, [key, val]) => ({ ...acc, [key]: getTypeDisplayName(val) }),
-        {}
-      )
-    }
-  })
-  return { nodes, relationships }
+  extractor.addRecords(records)
+  return extractor.getGraph()
 }
 
 export const recursivelyExtractGraphItems = (types: any, item: any): any => {
@@ -294,83 +318,293 @@ export const recursivelyExtractGraphItems = (types: any, item: any): any => {
   return item
 }
 
+/**
+ * Recursively looks for graph items and elevates their properties if found.
+ * Leaves everything else (including neo4j integers) as is
+ */
+export const flattenGraphItems = (
+  types = neo4j.types,
+  intChecker = neo4j.isInt,
+  item: any
+): any => {
+  if (Array.isArray(item)) {
+    return item.map(flattenGraphItems.bind(null, types, intChecker))
+  }
+  if (
+    typeof item === 'object' &&
+    item !== null &&
+    !isGraphItem(types, item) &&
+    !intChecker(item)
+  ) {
+    const out: any = {}
+    const keys = Object.keys(item)
+    for (let i = 0; i < keys.length; i++) {
+      out[keys[i]] = flattenGraphItems(types, intChecker, item[keys[i]])
+    }
+    return out
+  }
+  if (isGraphItem(types, item)) {
+    return extractPropertiesFromGraphItems(types, item)
+  }
+  return item
+}
+
+export const isGraphItem = (types = neo4j.types, item: any) => {
+  return (
+    item instanceof (types.Node as any) ||
+    item instanceof (types.Relationship as any) ||
+    item instanceof (types.Path as any) ||
+    item instanceof (types.PathSegment as any) ||
+    item instanceof neo4j.types.Date ||
+    item instanceof neo4j.types.DateTime ||
+    item instanceof neo4j.types.Duration ||
+    item instanceof neo4j.types.LocalDateTime ||
+    item instanceof neo4j.types.LocalTime ||
+    item instanceof neo4j.types.Time ||
+    item instanceof neo4j.types.Point
+  )
+}
+
+export function extractPropertiesFromGraphItems(types = neo4j.types, obj: any) {
+  if (
+    obj instanceof (types.Node as any) ||
+    obj instanceof (types.Relationship as any)
+  ) {
+    return obj.properties
+  } else if (obj instanceof (types.Path as any)) {
+    return [].concat.apply([], arrayifyPath(types, obj))
+  }
+  return obj
+}
+
+const arrayifyPath = (types = neo4j.types, path: any) => {
+  let segments = path.segments
+  // Zero length path. No relationship, end === start
+  if (!Array.isArray(path.segments) || path.segments.length < 1) {
+    segments = [{ ...path, end: null }]
+  }
+  return segments.map((segment: any) =>
+    [
+      extractPropertiesFromGraphItems(types, segment.start),
+      extractPropertiesFromGraphItems(types, segment.relationship),
+      extractPropertiesFromGraphItems(types, segment.end)
+    ].filter(part => part !== null)
+  )
+}
+
 export function extractRawNodesAndRelationShipsFromRecords(
   records: typeof neo4j.types.Record[],
   types = neo4j.types,
   maxFieldItems: any
 ) {
-  const items = new Set<any>()
-  const paths = new Set<any>()
-  const segments = new Set<any>()
-  const rawNodes = new Set<any>()
-  const rawRels = new Set<any>()
-
-  for (const record of records) {
-    for (const key of record.keys) {
-      items.add(record.get(key))
+  const extractor = new GraphItemsExtractor(types, maxFieldItems)
+  extractor.addRecords(records)
+  return { rawNodes: extractor.nodes, rawRels: extractor.relationships }
+}
+
+/**
+ * Collects the nodes and relationships of records that arrive in batches,
+ * so a streaming result only has its new records walked. Items are
+ * deduplicated by object identity.
+ */
+export class GraphItemsExtractor {
+  readonly nodes: any[] = []
+  readonly relationships: any[] = []
+  recordCount = 0
+  private readonly nodeSet = new Set<any>()
+  private readonly relationshipSet = new Set<any>()
+  private readonly pathSet = new Set<any>()
+  private readonly segmentSet = new Set<any>()
+
+  constructor(
+    private readonly types: any = neo4j.types,
+    readonly maxFieldItems?: number
+  ) {}
+
+  /**
+   * Returns the nodes and relationships not found in earlier batches.
+   */
+  addRecords(records: typeof neo4j.types.Record[]): {
+    nodes: any[]
+    relationships: any[]
+  } {
+    const firstNode = this.nodes.length
+    const firstRelationship = this.relationships.length
+    const paths: any[] = []
+
+    for (const record of records) {
+      for (const key of record.keys) {
+        const item = record.get(key)
+        if (Array.isArray(item)) {
+          const length = this.maxFieldItems
+            ? Math.min(item.length, this.maxFieldItems)
+            : item.length
+          for (let i = 0; i < length; i++) {
+            this.findAllEntities(item[i], paths)
+          }
+        } else {
+          this.findAllEntities(item, paths)
+        }
+      }
     }
-  }
+    this.recordCount += records.length
 
-  const flatTruncatedItems = flatten(
-    map([...items], item =>
-      maxFieldItems && Array.isArray(item) ? take(item, maxFieldItems) : item
-    )
-  )
+    // Path members are added after the batch's entities, like they always were
+    const segments: any[] = []
+    for (const path of paths) {
+      if (path.start) {
+        this.addNode(path.start)
+      }
+      if (path.end) {
+        this.addNode(path.end)
+      }
+      for (const segment of path.segments) {
+        if (!this.segmentSet.has(segment)) {
+          this.segmentSet.add(segment)
+          segments.push(segment)
+        }
+      }
+    }
+    for (const segment of segments) {
+      if (segment.start) {
+        this.addNode(segment.start)
+      }
+      if (segment.end) {
+        this.addNode(segment.end)
+      }
+      if (segment.relationship) {
+        this.addRelationship(segment.relationship)
+      }
+    }
 
-  const findAllEntities = (item: any) => {
-    if (item instanceof (types.Relationship as any)) {
-      rawRels.add(item)
-      return
+    return {
+      nodes: this.nodes.slice(firstNode),
+      relationships: this.relationships.slice(firstRelationship)
     }
-    if (item instanceof (types.Node as any)) {
-      rawNodes.add(item)
-      return
+  }
+
+  private addNode(node: any) {
+    if (!this.nodeSet.has(node)) {
+      this.nodeSet.add(node)
+      this.nodes.push(node)
     }
-    if (item instanceof (types.Path as any)) {
-      paths.add(item)
-      return
+  }
+
+  private addRelationship(relationship: any) {
+    if (!this.relationshipSet.has(relationship)) {
+      this.relationshipSet.add(relationship)
+      this.relationships.push(relationship)
     }
-    if (Array.isArray(item)) {
+  }
+
+  private findAllEntities(item: any, paths: any[]): void {
+    const { types } = this
+    if (item instanceof types.Relationship) {
+      this.addRelationship(item)
+    } else if (item instanceof types.Node) {
+      this.addNode(item)
+    } else if (item instanceof types.Path) {
+      if (!this.pathSet.has(item)) {
+        this.pathSet.add(item)
+        paths.push(item)
+      }
+    } else if (Array.isArray(item)) {
       for (const subItem of item) {
-        findAllEntities(subItem)
+        this.findAllEntities(subItem, paths)
       }
-      return
-    }
-    if (item && typeof item === 'object') {
+    } else if (item && typeof item === 'object') {
       for (const subItem of Object.values(item)) {
-        findAllEntities(subItem)
+        this.findAllEntities(subItem, paths)
       }
-      return
     }
   }
+}
 
-  findAllEntities(flatTruncatedItems)
+/**
+ * Keeps the visualization graph of a streaming result up to date, only the
+ * records appended since the last batch are extracted and converted.
+ * With `entityStores` converted entities are interned for `owner`.
+ */
+export class VisGraphExtractor {
+  private readonly extractor: GraphItemsExtractor
+  private readonly nodes: BasicNode[] = []
+  // Unfiltered, the end nodes of a relationship can arrive in a later batch
+  private readonly relationships: BasicRelationship[] = []
+  private readonly nodeIds = new Set<string>()
+  private firstRecord: unknown
+  private lastRecord: unknown
 
-  for (const path of paths) {
-    if (path.start) {
-      rawNodes.add(path.start)
-    }
-    if (path.end) {
-      rawNodes.add(path.end)
-    }
-    for (const segment of path.segments) {
-      segments.add(segment)
-    }
+  constructor(
+    types: any,
+    private readonly filterRels: boolean,
+    private readonly converters: Converters,
+    maxFieldItems?: number,
+    private readonly entityStores?: VisEntityStores,
+    private readonly owner?: string
+  ) {
+    this.extractor = new GraphItemsExtractor(types, maxFieldItems)
+  }
+
+  get recordCount(): number {
+    return this.extractor.recordCount
   }
 
-  for (const segment of segments) {
-    if (segment.start) {
-      rawNodes.add(segment.start)
+  /**
+   * Whether `records` starts with the records extracted so far,
+   * i.e. the result has grown since the last batch.
+   */
+  canExtend(
+    records: typeof neo4j.types.Record[],
+    maxFieldItems?: number
+  ): boolean {
+    const { recordCount } = this
+    return (
+      maxFieldItems === this.extractor.maxFieldItems &&
+      records.length >= recordCount &&
+      (recordCount === 0 ||
+        (records[0] === this.firstRecord &&
+          records[recordCount - 1] === this.lastRecord))
+    )
+  }
+
+  addRecords(records: typeof neo4j.types.Record[]): void {
+    if (records.length === 0) {
+      return
+    }
+    if (this.recordCount === 0) {
+      this.firstRecord = records[0]
     }
-    if (segment.end) {
-      rawNodes.add(segment.end)
+    this.lastRecord = records[records.length - 1]
+
+    const { entityStores, owner, converters } = this
+    const { nodes, relationships } = this.extractor.addRecords(records)
+    for (const item of nodes) {
+      const node = entityStores
+        ? entityStores.nodes.intern(getEntityKey(item), item, owner)
+        : toBasicNode(item, converters)
+      this.nodeIds.add(node.id)
+      this.nodes.push(node)
     }
-    if (segment.relationship) {
-      rawRels.add(segment.relationship)
+    for (const item of relationships) {
+      this.relationships.push(
+        entityStores
+          ? entityStores.relationships.intern(getEntityKey(item), item, owner)
+          : toBasicRelationship(item, converters)
+      )
     }
   }
 
-  return { rawNodes: [...rawNodes], rawRels: [...rawRels] }
+  getGraph(): BasicNodesAndRels {
+    const { nodeIds } = this
+    return {
+      nodes: [...this.nodes],
+      relationships: this.filterRels
+        ? this.relationships.filter(
+            rel => nodeIds.has(rel.startNodeId) && nodeIds.has(rel.endNodeId)
+          )
+        : [...this.relationships]
+    }
+  }
 }
 
 export const retrieveFormattedUpdateStatistics = (result: any) => {
@@ -398,208 +632,615 @@ export const flattenProperties = (rows: any) => {
   )
 }
 
-export const applyGraphTypes = (
-  rawItem: any,
-  types: any = neo4j.types
-): any => {
-  if (rawItem === null || rawItem === undefined) {
-    return rawItem
-  } else if (Array.isArray(rawItem)) {
-    return rawItem.map(i => applyGraphTypes(i, types))
-  } else if (
-    Object.prototype.hasOwnProperty.call(rawItem, reservedTypePropertyName)
+/**
+ * Binary columnar transfer format for records crossing the worker boundary.
+ * Cells are written column by column into typed arrays that can be sent as
+ * Transferables. Strings are interned in a string table, nodes and
+ * relationships are stored once in an entity table and referenced by index.
+ * Values without a dedicated encoding (temporal and spatial types etc.)
+ * fall back to the `recursivelyTypeGraphItems` representation.
+ */
+export type ColumnarRecords = {
+  keys: string[]
+  rowCount: number
+  tags: Uint8Array
+  ints: Int32Array
+  floats: Float64Array
+  refs: Uint32Array
+  strings: string[]
+  others: unknown[]
+  // tags, ints, floats and refs positions for every entity
+  entityOffsets: Uint32Array
+}
+
+const TAG_NULL = 0
+const TAG_UNDEFINED = 1
+const TAG_TRUE = 2
+const TAG_FALSE = 3
+const TAG_INTEGER = 4
+const TAG_FLOAT = 5
+const TAG_STRING = 6
+const TAG_LIST = 7
+const TAG_MAP = 8
+const TAG_NODE = 9
+const TAG_RELATIONSHIP = 10
+const TAG_PATH = 11
+const TAG_OTHER = 12
+
+class ColumnarWriter {
+  tags: number[] = []
+  ints: number[] = []
+  floats: number[] = []
+  refs: number[] = []
+  strings: string[] = []
+  others: unknown[] = []
+  entities: any[] = []
+  private stringIndex = new Map<string, number>()
+  private entityIndex = new Map<string, number>()
+
+  constructor(private readonly types: any) {}
+
+  writeString(str: string) {
+    let index = this.stringIndex.get(str)
+    if (index === undefined) {
+      index = this.strings.length
+      this.strings.push(str)
+      this.stringIndex.set(str, index)
+    }
+    this.refs.push(index)
+  }
+
+  writeEntityRef(
+    entity: any,
+    kind: typeof TAG_NODE | typeof TAG_RELATIONSHIP
   ) {
-    const item = { ...rawItem }
-    const className = item[reservedTypePropertyName]
-    const tmpItem = safelyRemoveObjectProp(item, reservedTypePropertyName)
-    switch (className) {
-      case 'Node':
-        return new types[className](
-          applyGraphTypes(tmpItem.identity, types),
-          tmpItem.labels,
-          applyGraphTypes(tmpItem.properties, types)
-        )
-      case 'Relationship':
-        return new types[className](
-          applyGraphTypes(tmpItem.identity, types),
-          applyGraphTypes(item.start, types),
-          applyGraphTypes(item.end, types),
-          item.type,
-          applyGraphTypes(item.properties, types)
-        )
-      case 'PathSegment':
-        return new types[className](
-          applyGraphTypes(item.start, types),
-          applyGraphTypes(item.relationship, types),
-          applyGraphTypes(item.end, types)
-        )
-      case 'Path':
-        return new types[className](
-          applyGraphTypes(item.start, types),
-          applyGraphTypes(item.end, types),
-          item.segments.map((x: any) => applyGraphTypes(x, types))
-        )
-      case 'Point':
-        return new types[className](
-          applyGraphTypes(item.srid),
-          applyGraphTypes(item.x),
-          applyGraphTypes(item.y),
-          applyGraphTypes(item.z)
-        )
-      case 'Date':
-        return new types[className](
-          applyGraphTypes(item.year),
-          applyGraphTypes(item.month),
-          applyGraphTypes(item.day)
-        )
-      case 'DateTime':
-        return new types[className](
-          applyGraphTypes(item.year),
-          applyGraphTypes(item.month),
-          applyGraphTypes(item.day),
-          applyGraphTypes(item.hour),
-          applyGraphTypes(item.minute),
-          applyGraphTypes(item.second),
-          applyGraphTypes(item.nanosecond),
-          applyGraphTypes(item.timeZoneOffsetSeconds),
-          applyGraphTypes(item.timeZoneId)
-        )
-      case 'Duration':
-        return new types[className](
-          applyGraphTypes(item.months),
-          applyGraphTypes(item.days),
-          applyGraphTypes(item.seconds),
-          applyGraphTypes(item.nanoseconds)
-        )
-      case 'LocalDateTime':
-        return new types[className](
-          applyGraphTypes(item.year),
-          applyGraphTypes(item.month),
-          applyGraphTypes(item.day),
-          applyGraphTypes(item.hour),
-          applyGraphTypes(item.minute),
-          applyGraphTypes(item.second),
-          applyGraphTypes(item.nanosecond)
-        )
-      case 'LocalTime':
-        return new types[className](
-          applyGraphTypes(item.hour),
-          applyGraphTypes(item.minute),
-          applyGraphTypes(item.second),
-          applyGraphTypes(item.nanosecond)
-        )
-      case 'Time':
-        return new types[className](
-          applyGraphTypes(item.hour),
-          applyGraphTypes(item.minute),
-          applyGraphTypes(item.second),
-          applyGraphTypes(item.nanosecond),
-          applyGraphTypes(item.timeZoneOffsetSeconds)
-        )
-      case 'Integer':
-        return neo4j.int(tmpItem)
-      default:
-        return item
+    const key = `${kind}:${entity.identity.toString()}`
+    let index = this.entityIndex.get(key)
+    // Queries that change an entity between rows return it with other
+    // properties, each version is stored on its own
+    if (
+      index === undefined ||
+      (this.entities[index] !== entity &&
+        !isSameValue(this.entities[index], entity))
+    ) {
+      index = this.entities.length
+      this.entities.push(entity)
+      this.entityIndex.set(key, index)
     }
-  } else if (typeof rawItem === 'object') {
-    let typedObject: Record<string, any> = {}
-    Object.keys(rawItem).forEach(key => {
-      typedObject[key] = applyGraphTypes(rawItem[key], types)
-    })
-    typedObject = unEscapeReservedProps(typedObject, reservedTypePropertyName)
-    return typedObject
-  } else {
-    return rawItem
+    this.refs.push(index)
+  }
+
+  writeValue(item: any): void {
+    const { types } = this
+    if (item === null) {
+      this.tags.push(TAG_NULL)
+    } else if (item === undefined) {
+      this.tags.push(TAG_UNDEFINED)
+    } else if (typeof item === 'boolean') {
+      this.tags.push(item ? TAG_TRUE : TAG_FALSE)
+    } else if (typeof item === 'number') {
+      this.tags.push(TAG_FLOAT)
+      this.floats.push(item)
+    } else if (typeof item === 'string') {
+      this.tags.push(TAG_STRING)
+      this.writeString(item)
+    } else if (Array.isArray(item)) {
+      this.tags.push(TAG_LIST)
+      this.refs.push(item.length)
+      for (const subItem of item) {
+        this.writeValue(subItem)
+      }
+    } else if (neo4j.isInt(item)) {
+      this.tags.push(TAG_INTEGER)
+      this.ints.push(item.low, item.high)
+    } else if (item instanceof types.Node) {
+      this.tags.push(TAG_NODE)
+      this.writeEntityRef(item, TAG_NODE)
+    } else if (item instanceof types.Relationship) {
+      this.tags.push(TAG_RELATIONSHIP)
+      this.writeEntityRef(item, TAG_RELATIONSHIP)
+    } else if (item instanceof types.Path) {
+      this.tags.push(TAG_PATH)
+      this.writeEntityRef(item.start, TAG_NODE)
+      this.writeEntityRef(item.end, TAG_NODE)
+      this.refs.push(item.segments.length)
+      for (const segment of item.segments) {
+        this.writeEntityRef(segment.start, TAG_NODE)
+        this.writeEntityRef(segment.relationship, TAG_RELATIONSHIP)
+        this.writeEntityRef(segment.end, TAG_NODE)
+      }
+    } else if (typeof item === 'object' && item.constructor === Object) {
+      const keys = Object.keys(item)
+      this.tags.push(TAG_MAP)
+      this.refs.push(keys.length)
+      for (const key of keys) {
+        this.writeString(key)
+        this.writeValue(item[key])
+      }
+    } else {
+      this.tags.push(TAG_OTHER)
+      this.refs.push(this.others.length)
+      this.others.push(recursivelyTypeGraphItems(item, types))
+    }
+  }
+
+  writeEntity(entity: any) {
+    if (entity instanceof this.types.Node) {
+      this.tags.push(TAG_NODE)
+      this.writeValue(entity.identity)
+      this.refs.push(entity.labels.length)
+      for (const label of entity.labels) {
+        this.writeString(label)
+      }
+    } else {
+      this.tags.push(TAG_RELATIONSHIP)
+      this.writeValue(entity.identity)
+      this.writeValue(entity.start)
+      this.writeValue(entity.end)
+      this.writeString(entity.type)
+    }
+    this.writeValue(entity.properties)
   }
 }
 
-export const recursivelyTypeGraphItems = (
-  item: any,
+export function encodeRecordsColumnar(
+  records: any[],
   types: any = neo4j.types
-): any => {
-  if (item === null || item === undefined) {
-    return item
+): ColumnarRecords {
+  const writer = new ColumnarWriter(types)
+  const keys: string[] = records.length ? [...records[0].keys] : []
+
+  for (let column = 0; column < keys.length; column++) {
+    for (const record of records) {
+      writer.writeValue(record._fields[column])
+    }
   }
-  if (['number', 'string', 'boolean'].indexOf(typeof item) !== -1) {
-    return item
+
+  return finishColumnarRecords(
+    writer,
+    keys,
+    records.length,
+    writer.entities.length,
+    index => writer.writeEntity(writer.entities[index])
+  )
+}
+
+function finishColumnarRecords(
+  writer: ColumnarWriter,
+  keys: string[],
+  rowCount: number,
+  entityCount: number,
+  writeEntity: (index: number) => void
+): ColumnarRecords {
+  // The entity table can't grow while it is written,
+  // entity properties never contain other entities
+  const entityOffsets = new Uint32Array(entityCount * 4)
+  for (let index = 0; index < entityCount; index++) {
+    entityOffsets[index * 4] = writer.tags.length
+    entityOffsets[index * 4 + 1] = writer.ints.length
+    entityOffsets[index * 4 + 2] = writer.floats.length
+    entityOffsets[index * 4 + 3] = writer.refs.length
+    writeEntity(index)
   }
-  if (Array.isArray(item)) {
-    return item.map(i => recursivelyTypeGraphItems(i, types))
-  }
-  if (item instanceof types.Node) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Node')
-    return tmp
-  }
-  if (item instanceof types.PathSegment) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'PathSegment')
-    return tmp
-  }
-  if (item instanceof types.Path) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Path')
-    return tmp
-  }
-  if (item instanceof types.Relationship) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Relationship')
-    return tmp
-  }
-  if (item instanceof types.Point) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Point')
-    return tmp
-  }
-  if (item instanceof types.Date) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Date')
-    return tmp
-  }
-  if (item instanceof types.DateTime) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'DateTime')
-    return tmp
-  }
-  if (item instanceof types.Duration) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Duration')
-    return tmp
-  }
-  if (item instanceof types.LocalDateTime) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'LocalDateTime')
-    return tmp
-  }
-  if (item instanceof types.LocalTime) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'LocalTime')
-    return tmp
-  }
-  if (item instanceof types.Time) {
-    const tmp = copyAndType(item, types)
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Time')
-    return tmp
-  }
-  if (neo4j.isInt(item)) {
-    const tmp = { ...item }
-    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Integer')
-    return tmp
+
+  return {
+    keys,
+    rowCount,
+    tags: Uint8Array.from(writer.tags),
+    ints: Int32Array.from(writer.ints),
+    floats: Float64Array.from(writer.floats),
+    refs: Uint32Array.from(writer.refs),
+    strings: writer.strings,
+    others: writer.others,
+    entityOffsets
   }
-  if (typeof item === 'object') {
-    const typedObject: Record<string, any> = {}
-    const localItem = escapeReservedProps(item, reservedTypePropertyName)
-    Object.keys(localItem).forEach(key => {
-      typedObject[key] = recursivelyTypeGraphItems(localItem[key], types)
+}
+
+type ColumnarChunk = {
+  writer: ColumnarWriter
+  // source entity index of every entity in the chunk
+  entities: number[]
+  entityIndex: Map<number, number>
+}
+
+/**
+ * Copies encoded values into chunks without decoding them, only string,
+ * entity and other table references are renumbered for the chunk.
+ */
+class ColumnarCopier {
+  private tag = 0
+  private int = 0
+  private float = 0
+  private ref = 0
+
+  constructor(private readonly source: ColumnarRecords) {}
+
+  seek(tag: number, int: number, float: number, ref: number) {
+    this.tag = tag
+    this.int = int
+    this.float = float
+    this.ref = ref
+  }
+
+  private copyRef(chunk: ColumnarChunk): number {
+    const ref = this.source.refs[this.ref++]
+    chunk.writer.refs.push(ref)
+    return ref
+  }
+
+  private copyString(chunk: ColumnarChunk) {
+    chunk.writer.writeString(this.source.strings[this.source.refs[this.ref++]])
+  }
+
+  private copyEntityRef(chunk: ColumnarChunk) {
+    const sourceIndex = this.source.refs[this.ref++]
+    let index = chunk.entityIndex.get(sourceIndex)
+    if (index === undefined) {
+      index = chunk.entities.length
+      chunk.entities.push(sourceIndex)
+      chunk.entityIndex.set(sourceIndex, index)
+    }
+    chunk.writer.refs.push(index)
+  }
+
+  copyValue(chunk: ColumnarChunk): void {
+    const { source } = this
+    const { writer } = chunk
+    const tag = source.tags[this.tag++]
+    writer.tags.push(tag)
+    switch (tag) {
+      case TAG_NULL:
+      case TAG_UNDEFINED:
+      case TAG_TRUE:
+      case TAG_FALSE:
+        break
+      case TAG_INTEGER:
+        writer.ints.push(source.ints[this.int++], source.ints[this.int++])
+        break
+      case TAG_FLOAT:
+        writer.floats.push(source.floats[this.float++])
+        break
+      case TAG_STRING:
+        this.copyString(chunk)
+        break
+      case TAG_LIST: {
+        const length = this.copyRef(chunk)
+        for (let i = 0; i < length; i++) {
+          this.copyValue(chunk)
+        }
+        break
+      }
+      case TAG_MAP: {
+        const size = this.copyRef(chunk)
+        for (let i = 0; i < size; i++) {
+          this.copyString(chunk)
+          this.copyValue(chunk)
+        }
+        break
+      }
+      case TAG_NODE:
+      case TAG_RELATIONSHIP:
+        this.copyEntityRef(chunk)
+        break
+      case TAG_PATH: {
+        this.copyEntityRef(chunk)
+        this.copyEntityRef(chunk)
+        const segmentCount = this.copyRef(chunk)
+        for (let i = 0; i < segmentCount * 3; i++) {
+          this.copyEntityRef(chunk)
+        }
+        break
+      }
+      case TAG_OTHER:
+        writer.refs.push(writer.others.length)
+        writer.others.push(source.others[source.refs[this.ref++]])
+        break
+      default:
+        throw new Error('Unknown tag in columnar records')
+    }
+  }
+
+  copyEntity(chunk: ColumnarChunk) {
+    const tag = this.source.tags[this.tag++]
+    chunk.writer.tags.push(tag)
+    this.copyValue(chunk)
+    if (tag === TAG_NODE) {
+      const labelCount = this.copyRef(chunk)
+      for (let i = 0; i < labelCount; i++) {
+        this.copyString(chunk)
+      }
+    } else {
+      this.copyValue(chunk)
+      this.copyValue(chunk)
+      this.copyString(chunk)
+    }
+    this.copyValue(chunk)
+  }
+}
+
+/**
+ * Splits `encodeRecordsColumnar` output into results of `chunkRows` records
+ * each, so pages can be stored and read back without decoding the whole
+ * result.
+ */
+export function chunkColumnarRecords(
+  encoded: ColumnarRecords,
+  chunkRows: number
+): ColumnarRecords[] {
+  const { keys, rowCount, entityOffsets } = encoded
+  const chunks: ColumnarChunk[] = Array.from(
+    { length: Math.ceil(rowCount / chunkRows) },
+    () => ({
+      writer: new ColumnarWriter(neo4j.types),
+      entities: [],
+      entityIndex: new Map()
     })
-    return typedObject
+  )
+
+  const copier = new ColumnarCopier(encoded)
+  for (let column = 0; column < keys.length; column++) {
+    for (let row = 0; row < rowCount; row++) {
+      copier.copyValue(chunks[Math.floor(row / chunkRows)])
+    }
   }
-  return item
+
+  return chunks.map((chunk, chunkIndex) =>
+    finishColumnarRecords(
+      chunk.writer,
+      keys,
+      Math.min(chunkRows, rowCount - chunkIndex * chunkRows),
+      chunk.entities.length,
+      index => {
+        const sourceIndex = chunk.entities[index]
+        copier.seek(
+          entityOffsets[sourceIndex * 4],
+          entityOffsets[sourceIndex * 4 + 1],
+          entityOffsets[sourceIndex * 4 + 2],
+          entityOffsets[sourceIndex * 4 + 3]
+        )
+        copier.copyEntity(chunk)
+      }
+    )
+  )
 }
 
-function copyAndType(any: any, types = neo4j.types) {
-  const keys = Object.keys(any)
-  const tmp: Record<string, any> = {}
-  keys.forEach(key => (tmp[key] = recursivelyTypeGraphItems(any[key], types)))
-  return tmp
+export const getColumnarTransferables = (
+  encoded: ColumnarRecords
+): ArrayBuffer[] => [
+  encoded.tags.buffer,
+  encoded.ints.buffer,
+  encoded.floats.buffer,
+  encoded.refs.buffer,
+  encoded.entityOffsets.buffer
+]
+
+class ColumnarReader {
+  private tag = 0
+  private int = 0
+  private float = 0
+  private ref = 0
+
+  constructor(
+    private readonly encoded: ColumnarRecords,
+    private readonly getEntity: (index: number) => any,
+    private readonly types: any
+  ) {}
+
+  seek(tag: number, int: number, float: number, ref: number) {
+    this.tag = tag
+    this.int = int
+    this.float = float
+    this.ref = ref
+  }
+
+  // Stores the position of the reader at `index * 4` of `positions`
+  tell(positions: Uint32Array, index: number) {
+    positions[index * 4] = this.tag
+    positions[index * 4 + 1] = this.int
+    positions[index * 4 + 2] = this.float
+    positions[index * 4 + 3] = this.ref
+  }
+
+  readTag(): number {
+    return this.encoded.tags[this.tag++]
+  }
+
+  readRef(): number {
+    return this.encoded.refs[this.ref++]
+  }
+
+  readString(): string {
+    return this.encoded.strings[this.readRef()]
+  }
+
+  readValue(): any {
+    const { encoded, types } = this
+    switch (this.readTag()) {
+      case TAG_NULL:
+        return null
+      case TAG_UNDEFINED:
+        return undefined
+      case TAG_TRUE:
+        return true
+      case TAG_FALSE:
+        return false
+      case TAG_INTEGER: {
+        const low = encoded.ints[this.int++]
+        const high = encoded.ints[this.int++]
+        return neo4j.int({ low, high })
+      }
+      case TAG_FLOAT:
+        return encoded.floats[this.float++]
+      case TAG_STRING:
+        return this.readString()
+      case TAG_LIST: {
+        const list = new Array(this.readRef())
+        for (let i = 0; i < list.length; i++) {
+          list[i] = this.readValue()
+        }
+        return list
+      }
+      case TAG_MAP: {
+        const size = this.readRef()
+        const obj: Record<string, any> = {}
+        for (let i = 0; i < size; i++) {
+          const key = this.readString()
+          obj[key] = this.readValue()
+        }
+        return obj
+      }
+      case TAG_NODE:
+      case TAG_RELATIONSHIP:
+        return this.getEntity(this.readRef())
+      case TAG_PATH: {
+        const start = this.getEntity(this.readRef())
+        const end = this.getEntity(this.readRef())
+        const segments = new Array(this.readRef())
+        for (let i = 0; i < segments.length; i++) {
+          segments[i] = new types.PathSegment(
+            this.getEntity(this.readRef()),
+            this.getEntity(this.readRef()),
+            this.getEntity(this.readRef())
+          )
+        }
+        return new types.Path(start, end, segments)
+      }
+      case TAG_OTHER:
+        return applyGraphTypes(encoded.others[this.readRef()], types)
+      default:
+        throw new Error('Unknown tag in columnar records')
+    }
+  }
+
+  // Moves past a value without building it
+  skipValue(): void {
+    switch (this.readTag()) {
+      case TAG_INTEGER:
+        this.int += 2
+        break
+      case TAG_FLOAT:
+        this.float++
+        break
+      case TAG_STRING:
+      case TAG_NODE:
+      case TAG_RELATIONSHIP:
+      case TAG_OTHER:
+        this.ref++
+        break
+      case TAG_LIST: {
+        const length = this.readRef()
+        for (let i = 0; i < length; i++) {
+          this.skipValue()
+        }
+        break
+      }
+      case TAG_MAP: {
+        const size = this.readRef()
+        for (let i = 0; i < size; i++) {
+          this.ref++
+          this.skipValue()
+        }
+        break
+      }
+      case TAG_PATH: {
+        this.ref += 2
+        this.ref += this.readRef() * 3
+        break
+      }
+    }
+  }
+
+  readEntity(): any {
+    const { types } = this
+    if (this.readTag() === TAG_NODE) {
+      const identity = this.readValue()
+      const labels = new Array(this.readRef())
+      for (let i = 0; i < labels.length; i++) {
+        labels[i] = this.readString()
+      }
+      return new types.Node(identity, labels, this.readValue())
+    }
+    const identity = this.readValue()
+    const start = this.readValue()
+    const end = this.readValue()
+    const type = this.readString()
+    return new types.Relationship(identity, start, end, type, this.readValue())
+  }
+}
+
+/**
+ * Rebuilds driver records from `encodeRecordsColumnar` output. The fields
+ * of a record are only decoded when first read, the records themselves
+ * cost one pass noting where each cell starts. Nodes and relationships
+ * are decoded when first referenced and then shared between all cells
+ * referencing them.
+ */
+export function decodeRecordsColumnar(
+  encoded: ColumnarRecords,
+  types: any = neo4j.types
+): any[] {
+  const { keys, rowCount, entityOffsets } = encoded
+  const entities = new Array(entityOffsets.length / 4)
+  const getEntity = (index: number): any => {
+    if (entities[index] === undefined) {
+      const entityReader = new ColumnarReader(encoded, getEntity, types)
+      entityReader.seek(
+        entityOffsets[index * 4],
+        entityOffsets[index * 4 + 1],
+        entityOffsets[index * 4 + 2],
+        entityOffsets[index * 4 + 3]
+      )
+      entities[index] = entityReader.readEntity()
+    }
+    return entities[index]
+  }
+
+  // Values are stored column by column, cells are indexed row by row
+  const reader = new ColumnarReader(encoded, getEntity, types)
+  const cellPositions = new Uint32Array(rowCount * keys.length * 4)
+  for (let column = 0; column < keys.length; column++) {
+    for (let row = 0; row < rowCount; row++) {
+      reader.tell(cellPositions, row * keys.length + column)
+      reader.skipValue()
+    }
+  }
+
+  const readRow = (row: number): any[] => {
+    const fields = new Array(keys.length)
+    for (let column = 0; column < keys.length; column++) {
+      const cell = (row * keys.length + column) * 4
+      reader.seek(
+        cellPositions[cell],
+        cellPositions[cell + 1],
+        cellPositions[cell + 2],
+        cellPositions[cell + 3]
+      )
+      fields[column] = reader.readValue()
+    }
+    return fields
+  }
+
+  const fieldLookup: Record<string, number> = {}
+  keys.forEach((key, index) => (fieldLookup[key] = index))
+  const records = new Array(rowCount)
+  for (let row = 0; row < rowCount; row++) {
+    const record = new types.Record(keys, new Array(keys.length), fieldLookup)
+    // Replaced by the decoded fields on first read
+    Object.defineProperty(record, '_fields', {
+      configurable: true,
+      enumerable: true,
+      get: () => {
+        const fields = readRow(row)
+        Object.defineProperty(record, '_fields', {
+          configurable: true,
+          enumerable: true,
+          writable: true,
+          value: fields
+        })
+        return fields
+      }
+    })
+    records[row] = record
+  }
+  return records
 }
@@ -20,15 +20,31 @@
 import { Action, AnyAction } from 'redux'
 
 import { ROUTED_WRITE_CONNECTION } from './boltConnection'
-import { recursivelyTypeGraphItems } from './boltMappings'
+import {
+  ColumnarRecords,
+  encodeRecordsColumnar,
+  getColumnarTransferables,
+  recursivelyTypeGraphItems
+} from './boltMappings'
 
 export const RUN_CYPHER_MESSAGE = 'RUN_CYPHER_MESSAGE'
 export const CANCEL_TRANSACTION_MESSAGE = 'CANCEL_TRANSACTION_MESSAGE'
 export const CYPHER_ERROR_MESSAGE = 'CYPHER_ERROR_MESSAGE'
 export const CYPHER_RESPONSE_MESSAGE = 'CYPHER_RESPONSE_MESSAGE'
+export const CYPHER_RECORDS_MESSAGE = 'CYPHER_RECORDS_MESSAGE'
 export const POST_CANCEL_TRANSACTION_MESSAGE = 'POST_CANCEL_TRANSACTION_MESSAGE'
 export const BOLT_CONNECTION_ERROR_MESSAGE = 'BOLT_CONNECTION_ERROR_MESSAGE'
 export const CLOSE_CONNECTION_MESSAGE = 'CLOSE_CONNECTION_MESSAGE'
+export const OPEN_CONNECTION_MESSAGE = 'OPEN_CONNECTION_MESSAGE'
+
+// Wall clock stamps of a query in the worker, so the main thread
+// can compare them with its own
+export type WorkerTimings = {
+  receivedAt: number
+  connectedAt?: number
+  executedAt?: number
+  postedAt?: number
+}
 
 export const getWorkerPayloadForRunningCypherMessage = (
   input: string,
@@ -36,7 +52,9 @@ export const getWorkerPayloadForRunningCypherMessage = (
   connectionType = ROUTED_WRITE_CONNECTION,
   requestId = null,
   cancelable = false,
-  connectionProperties: unknown
+  connectionProperties: unknown,
+  streamRecords = false,
+  columnarTransfer = false
 ): AnyAction => {
   return {
     type: RUN_CYPHER_MESSAGE,
@@ -45,7 +63,9 @@ export const getWorkerPayloadForRunningCypherMessage = (
     connectionType,
     requestId,
     cancelable,
-    connectionProperties
+    connectionProperties,
+    streamRecords,
+    columnarTransfer
   }
 }
 
@@ -56,13 +76,68 @@ export const cancelTransactionMessage = (id: string): AnyAction => {
   }
 }
 
-export const cypherResponseMessage = (result: unknown): AnyAction => {
+// Falls back to the structured clone format if a value can't be encoded
+const tryEncodeRecordsColumnar = (records: any[]): ColumnarRecords | null => {
+  if (!records.length) {
+    return null
+  }
+  try {
+    return encodeRecordsColumnar(records)
+  } catch (e) {
+    return null
+  }
+}
+
+export const cypherResponseMessage = (
+  result: any,
+  columnarTransfer = false
+): AnyAction => {
+  const columnarRecords =
+    columnarTransfer && result ? tryEncodeRecordsColumnar(result.records) : null
+  if (columnarRecords) {
+    return {
+      type: CYPHER_RESPONSE_MESSAGE,
+      result: {
+        records: [],
+        summary: recursivelyTypeGraphItems(result.summary)
+      },
+      columnarRecords
+    }
+  }
   return {
     type: CYPHER_RESPONSE_MESSAGE,
     result: recursivelyTypeGraphItems(result)
   }
 }
 
+export const cypherRecordsMessage = (
+  records: any[],
+  offset: number,
+  columnarTransfer = false
+): AnyAction => {
+  const columnarRecords = columnarTransfer
+    ? tryEncodeRecordsColumnar(records)
+    : null
+  if (columnarRecords) {
+    return {
+      type: CYPHER_RECORDS_MESSAGE,
+      records: [],
+      columnarRecords,
+      offset
+    }
+  }
+  return {
+    type: CYPHER_RECORDS_MESSAGE,
+    records: recursivelyTypeGraphItems(records),
+    offset
+  }
+}
+
+export const getMessageTransferables = (message: AnyAction): ArrayBuffer[] =>
+  message.columnarRecords
+    ? getColumnarTransferables(message.columnarRecords)
+    : []
+
 export const cypherErrorMessage = (error: {
   code: number
   message: string
@@ -92,3 +167,10 @@ export const boltConnectionErrorMessage = (error: {
 export const closeConnectionMessage = (): Action => ({
   type: CLOSE_CONNECTION_MESSAGE
 })
+
+export const openConnectionMessage = (
+  connectionProperties: unknown
+): AnyAction => ({
+  type: OPEN_CONNECTION_MESSAGE,
+  connectionProperties
+})
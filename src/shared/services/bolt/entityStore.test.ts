@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import {
+  VisEntityStores,
+  extractFromNeoObjects,
+  extractNodesAndRelationshipsFromRecordsForOldVis,
+  toBasicNode,
+  toBasicRelationship
+} from './boltMappings'
+import { EntityStore, isSameValue } from './entityStore'
+
+const converters = {
+  intChecker: neo4j.isInt,
+  intConverter: (val: any) => val.toString(),
+  objectConverter: extractFromNeoObjects
+}
+
+const createStores = (): VisEntityStores => ({
+  nodes: new EntityStore(node => toBasicNode(node, converters)),
+  relationships: new EntityStore(rel => toBasicRelationship(rel, converters))
+})
+
+const createRecords = (name: string) => {
+  const a = new (neo4j.types.Node as any)(neo4j.int(1), ['Person'], {
+    name,
+    born: neo4j.int(1964)
+  })
+  const b = new (neo4j.types.Node as any)(neo4j.int(2), ['Movie'], {
+    title: 'The Matrix'
+  })
+  const r = new (neo4j.types.Relationship as any)(
+    neo4j.int(3),
+    neo4j.int(1),
+    neo4j.int(2),
+    'ACTED_IN',
+    { roles: ['Neo'] }
+  )
+  return [new (neo4j.types.Record as any)(['a', 'r', 'b'], [a, r, b])]
+}
+
+describe('EntityStore', () => {
+  test('compares driver values by content', () => {
+    expect(isSameValue(neo4j.int(1), neo4j.int(1))).toBe(true)
+    expect(isSameValue(neo4j.int(1), neo4j.int(2))).toBe(false)
+    expect(isSameValue({ a: [1, 'x'] }, { a: [1, 'x'] })).toBe(true)
+    expect(isSameValue({ a: [1, 'x'] }, { a: [1, 'y'] })).toBe(false)
+    expect(isSameValue({ a: 1 }, { a: 1, b: 2 })).toBe(false)
+  })
+  test('shares converted entities between frames', () => {
+    // Given
+    const stores = createStores()
+
+    // When
+    const first = extractNodesAndRelationshipsFromRecordsForOldVis(
+      createRecords('Keanu'),
+      neo4j.types,
+      true,
+      converters,
+      undefined,
+      stores,
+      'frame1'
+    )
+    const second = extractNodesAndRelationshipsFromRecordsForOldVis(
+      createRecords('Keanu'),
+      neo4j.types,
+      true,
+      converters,
+      undefined,
+      stores,
+      'frame2'
+    )
+
+    // Then
+    expect(second.nodes[0]).toBe(first.nodes[0])
+    expect(second.relationships[0]).toBe(first.relationships[0])
+    expect(stores.nodes.getStats()).toEqual({
+      size: 2,
+      owners: 2,
+      hits: 2,
+      misses: 2
+    })
+  })
+  test('replaces changed entities and keeps the copies owners were given', () => {
+    // Given
+    const stores = createStores()
+    const first = extractNodesAndRelationshipsFromRecordsForOldVis(
+      createRecords('Keanu'),
+      neo4j.types,
+      true,
+      converters,
+      undefined,
+      stores,
+      'frame1'
+    )
+
+    // When
+    const second = extractNodesAndRelationshipsFromRecordsForOldVis(
+      createRecords('Keanu Reeves'),
+      neo4j.types,
+      true,
+      converters,
+      undefined,
+      stores,
+      'frame2'
+    )
+
+    // Then
+    expect(first.nodes[0].properties.name).toBe('Keanu')
+    expect(second.nodes[0].properties.name).toBe('Keanu Reeves')
+    expect(second.nodes[1]).toBe(first.nodes[1])
+  })
+  test('tells values of different types apart', () => {
+    // Given
+    const store = new EntityStore((raw: any) => ({ ...raw }))
+    const first = store.intern('1', { x: 1 }, 'frame1')
+
+    // When
+    const second = store.intern('1', { x: '1' }, 'frame1')
+
+    // Then
+    expect(second).not.toBe(first)
+    expect(second.x).toBe('1')
+    expect(store.getStats()).toMatchObject({ hits: 0, misses: 2 })
+  })
+  test('drops entities once every owner released them', () => {
+    // Given
+    const store = new EntityStore((raw: any) => ({ ...raw }))
+    store.intern('1', { id: 1 }, 'frame1')
+    store.intern('1', { id: 1 }, 'frame2')
+    store.intern('2', { id: 2 })
+
+    // When
+    store.release('frame1')
+    const afterFirst = store.getStats().size
+    store.release('frame2')
+
+    // Then
+    expect(afterFirst).toBe(1)
+    expect(store.getStats()).toMatchObject({ size: 0, owners: 0 })
+  })
+})
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+// Driver values are compared by content, integers, points and temporal
+// values are plain objects of numbers
+export const isSameValue = (a: any, b: any): boolean => {
+  if (a === b) {
+    return true
+  }
+  if (
+    !a ||
+    !b ||
+    typeof a !== 'object' ||
+    typeof b !== 'object' ||
+    a.constructor !== b.constructor
+  ) {
+    return false
+  }
+  if (Array.isArray(a)) {
+    return a.length === b.length && a.every((v, i) => isSameValue(v, b[i]))
+  }
+  const keys = Object.keys(a)
+  return (
+    keys.length === Object.keys(b).length &&
+    keys.every(key => isSameValue(a[key], b[key]))
+  )
+}
+
+// 53 bit hash of the content of a driver value, fed value by value
+// without building a serialization of it
+const hashValue = (value: unknown): number => {
+  let h1 = 0xdeadbeef
+  let h2 = 0x41c6ce57
+  const add = (str: string) => {
+    for (let i = 0; i < str.length; i++) {
+      const ch = str.charCodeAt(i)
+      h1 = Math.imul(h1 ^ ch, 2654435761)
+      h2 = Math.imul(h2 ^ ch, 1597334677)
+    }
+  }
+  const stack: unknown[] = [value]
+  while (stack.length) {
+    const item: any = stack.pop()
+    if (typeof item === 'string') {
+      add(`s${item.length}:`)
+      add(item)
+    } else if (Array.isArray(item)) {
+      add(`a${item.length}:`)
+      for (let i = item.length - 1; i >= 0; i--) {
+        stack.push(item[i])
+      }
+    } else if (item && typeof item === 'object') {
+      const keys = Object.keys(item)
+      add(`o${keys.length}:`)
+      for (let i = keys.length - 1; i >= 0; i--) {
+        stack.push(item[keys[i]], keys[i])
+      }
+    } else {
+      add(`${typeof item}${item};`)
+    }
+  }
+  h1 =
+    Math.imul(h1 ^ (h1 >>> 16), 2246822507) ^
+    Math.imul(h2 ^ (h2 >>> 13), 3266489909)
+  h2 =
+    Math.imul(h2 ^ (h2 >>> 16), 2246822507) ^
+    Math.imul(h1 ^ (h1 >>> 13), 3266489909)
+  return 4294967296 * (2097151 & h2) + (h1 >>> 0)
+}
+
+type EntityEntry<T> = {
+  hash: number
+  value: T
+  refs: number
+}
+
+export type EntityStoreStats = {
+  size: number
+  owners: number
+  hits: number
+  misses: number
+}
+
+/**
+ * Session wide store of converted nodes and relationships keyed by element
+ * id, so frames returning the same entities share one converted copy and
+ * skip converting it again. Entries are reference counted by the frames
+ * (owners) that interned them and dropped once the last one releases them.
+ * An entity that changed between queries replaces the stored copy, owners
+ * keep the copy they were given. Changes are found by a hash of the
+ * content, computed once per driver object.
+ */
+export class EntityStore<T> {
+  private readonly entries = new Map<string, EntityEntry<T>>()
+  private readonly owners = new Map<string, Set<string>>()
+  // Decoded results share their entity objects, which are only hashed once
+  private readonly hashes = new WeakMap<object, number>()
+  private hits = 0
+  private misses = 0
+
+  constructor(private readonly convert: (raw: any) => T) {}
+
+  intern(key: string, raw: unknown, owner?: string): T {
+    let entry = this.entries.get(key)
+    const hash = this.getHash(raw)
+    if (entry && entry.hash === hash) {
+      this.hits++
+    } else {
+      this.misses++
+      const value = this.convert(raw)
+      if (!owner && !entry) {
+        return value
+      }
+      if (entry) {
+        entry.hash = hash
+        entry.value = value
+      } else {
+        entry = { hash, value, refs: 0 }
+        this.entries.set(key, entry)
+      }
+    }
+
+    if (owner) {
+      let keys = this.owners.get(owner)
+      if (!keys) {
+        keys = new Set()
+        this.owners.set(owner, keys)
+      }
+      if (!keys.has(key)) {
+        keys.add(key)
+        entry.refs++
+      }
+    }
+    return entry.value
+  }
+
+  private getHash(raw: unknown): number {
+    if (!raw || typeof raw !== 'object') {
+      return hashValue(raw)
+    }
+    let hash = this.hashes.get(raw)
+    if (hash === undefined) {
+      hash = hashValue(raw)
+      this.hashes.set(raw, hash)
+    }
+    return hash
+  }
+
+  release(owner: string): void {
+    this.owners.get(owner)?.forEach(key => {
+      const entry = this.entries.get(key)
+      if (entry && --entry.refs <= 0) {
+        this.entries.delete(key)
+      }
+    })
+    this.owners.delete(owner)
+  }
+
+  getStats(): EntityStoreStats {
+    return {
+      size: this.entries.size,
+      owners: this.owners.size,
+      hits: this.hits,
+      misses: this.misses
+    }
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import {
+  escapeReservedProps,
+  safelyAddObjectProp,
+  safelyRemoveObjectProp,
+  unEscapeReservedProps
+} from '../utils'
+import {
+  applyGraphTypes,
+  recursivelyTypeGraphItems,
+  reservedTypePropertyName
+} from './graphTypesCodec'
+
+const ROW_COUNT = 2000
+const WARMUP_ITERATIONS = 3
+const MEASURED_ITERATIONS = 5
+
+// The codec as it was before graphTypesCodec, kept as the baseline
+const legacyApplyGraphTypes = (
+  rawItem: any,
+  types: any = neo4j.types
+): any => {
+  if (rawItem === null || rawItem === undefined) {
+    return rawItem
+  } else if (Array.isArray(rawItem)) {
+    return rawItem.map(i => legacyApplyGraphTypes(i, types))
+  } else if (
+    Object.prototype.hasOwnProperty.call(rawItem, reservedTypePropertyName)
+  ) {
+    const item = { ...rawItem }
+    const className = item[reservedTypePropertyName]
+    const tmpItem = safelyRemoveObjectProp(item, reservedTypePropertyName)
+    switch (className) {
+      case 'Node':
+        return new types[className](
+          legacyApplyGraphTypes(tmpItem.identity, types),
+          tmpItem.labels,
+          legacyApplyGraphTypes(tmpItem.properties, types)
+        )
+      case 'Relationship':
+        return new types[className](
+          legacyApplyGraphTypes(tmpItem.identity, types),
+          legacyApplyGraphTypes(item.start, types),
+          legacyApplyGraphTypes(item.end, types),
+          item.type,
+          legacyApplyGraphTypes(item.properties, types)
+        )
+      case 'PathSegment':
+        return new types[className](
+          legacyApplyGraphTypes(item.start, types),
+          legacyApplyGraphTypes(item.relationship, types),
+          legacyApplyGraphTypes(item.end, types)
+        )
+      case 'Path':
+        return new types[className](
+          legacyApplyGraphTypes(item.start, types),
+          legacyApplyGraphTypes(item.end, types),
+          item.segments.map((x: any) => legacyApplyGraphTypes(x, types))
+        )
+      case 'Point':
+        return new types[className](
+          legacyApplyGraphTypes(item.srid),
+          legacyApplyGraphTypes(item.x),
+          legacyApplyGraphTypes(item.y),
+          legacyApplyGraphTypes(item.z)
+        )
+      case 'Date':
+        return new types[className](
+          legacyApplyGraphTypes(item.year),
+          legacyApplyGraphTypes(item.month),
+          legacyApplyGraphTypes(item.day)
+        )
+      case 'DateTime':
+        return new types[className](
+          legacyApplyGraphTypes(item.year),
+          legacyApplyGraphTypes(item.month),
+          legacyApplyGraphTypes(item.day),
+          legacyApplyGraphTypes(item.hour),
+          legacyApplyGraphTypes(item.minute),
+          legacyApplyGraphTypes(item.second),
+          legacyApplyGraphTypes(item.nanosecond),
+          legacyApplyGraphTypes(item.timeZoneOffsetSeconds),
+          legacyApplyGraphTypes(item.timeZoneId)
+        )
+      case 'Duration':
+        return new types[className](
+          legacyApplyGraphTypes(item.months),
+          legacyApplyGraphTypes(item.days),
+          legacyApplyGraphTypes(item.seconds),
+          legacyApplyGraphTypes(item.nanoseconds)
+        )
+      case 'LocalDateTime':
+        return new types[className](
+          legacyApplyGraphTypes(item.year),
+          legacyApplyGraphTypes(item.month),
+          legacyApplyGraphTypes(item.day),
+          legacyApplyGraphTypes(item.hour),
+          legacyApplyGraphTypes(item.minute),
+          legacyApplyGraphTypes(item.second),
+          legacyApplyGraphTypes(item.nanosecond)
+        )
+      case 'LocalTime':
+        return new types[className](
+          legacyApplyGraphTypes(item.hour),
+          legacyApplyGraphTypes(item.minute),
+          legacyApplyGraphTypes(item.second),
+          legacyApplyGraphTypes(item.nanosecond)
+        )
+      case 'Time':
+        return new types[className](
+          legacyApplyGraphTypes(item.hour),
+          legacyApplyGraphTypes(item.minute),
+          legacyApplyGraphTypes(item.second),
+          legacyApplyGraphTypes(item.nanosecond),
+          legacyApplyGraphTypes(item.timeZoneOffsetSeconds)
+        )
+      case 'Integer':
+        return neo4j.int(tmpItem)
+      default:
+        return item
+    }
+  } else if (typeof rawItem === 'object') {
+    let typedObject: Record<string, any> = {}
+    Object.keys(rawItem).forEach(key => {
+      typedObject[key] = legacyApplyGraphTypes(rawItem[key], types)
+    })
+    typedObject = unEscapeReservedProps(typedObject, reservedTypePropertyName)
+    return typedObject
+  } else {
+    return rawItem
+  }
+}
+
+const legacyRecursivelyTypeGraphItems = (
+  item: any,
+  types: any = neo4j.types
+): any => {
+  if (item === null || item === undefined) {
+    return item
+  }
+  if (['number', 'string', 'boolean'].indexOf(typeof item) !== -1) {
+    return item
+  }
+  if (Array.isArray(item)) {
+    return item.map(i => legacyRecursivelyTypeGraphItems(i, types))
+  }
+  if (item instanceof types.Node) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Node')
+    return tmp
+  }
+  if (item instanceof types.PathSegment) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'PathSegment')
+    return tmp
+  }
+  if (item instanceof types.Path) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Path')
+    return tmp
+  }
+  if (item instanceof types.Relationship) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Relationship')
+    return tmp
+  }
+  if (item instanceof types.Point) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Point')
+    return tmp
+  }
+  if (item instanceof types.Date) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Date')
+    return tmp
+  }
+  if (item instanceof types.DateTime) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'DateTime')
+    return tmp
+  }
+  if (item instanceof types.Duration) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Duration')
+    return tmp
+  }
+  if (item instanceof types.LocalDateTime) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'LocalDateTime')
+    return tmp
+  }
+  if (item instanceof types.LocalTime) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'LocalTime')
+    return tmp
+  }
+  if (item instanceof types.Time) {
+    const tmp = legacyCopyAndType(item, types)
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Time')
+    return tmp
+  }
+  if (neo4j.isInt(item)) {
+    const tmp = { ...item }
+    safelyAddObjectProp(tmp, reservedTypePropertyName, 'Integer')
+    return tmp
+  }
+  if (typeof item === 'object') {
+    const typedObject: Record<string, any> = {}
+    const localItem = escapeReservedProps(item, reservedTypePropertyName)
+    Object.keys(localItem).forEach(key => {
+      typedObject[key] = legacyRecursivelyTypeGraphItems(localItem[key], types)
+    })
+    return typedObject
+  }
+  return item
+}
+
+function legacyCopyAndType(any: any, types = neo4j.types) {
+  const keys = Object.keys(any)
+  const tmp: Record<string, any> = {}
+  keys.forEach(
+    key => (tmp[key] = legacyRecursivelyTypeGraphItems(any[key], types))
+  )
+  return tmp
+}
+
+const createRecords = (rowCount: number) => {
+  const keys = ['n', 'r', 'm', 'score', 'meta']
+  const records = []
+  for (let i = 0; i < rowCount; i++) {
+    const n = new (neo4j.types.Node as any)(neo4j.int(i), ['Person'], {
+      name: `person ${i}`,
+      age: neo4j.int(i % 90),
+      born: new neo4j.types.Date(1900 + (i % 100), 1, 1)
+    })
+    const m = new (neo4j.types.Node as any)(neo4j.int(i + 1), ['Person'], {
+      name: `person ${i + 1}`,
+      age: neo4j.int((i + 1) % 90),
+      born: new neo4j.types.Date(1901 + (i % 100), 1, 1)
+    })
+    const r = new (neo4j.types.Relationship as any)(
+      neo4j.int(rowCount + i),
+      n.identity,
+      m.identity,
+      'KNOWS',
+      { weight: i / rowCount }
+    )
+    records.push(
+      new (neo4j.types.Record as any)(keys, [
+        n,
+        r,
+        m,
+        i * 0.5,
+        { tags: ['a', 'b'], [reservedTypePropertyName]: 'user data' }
+      ])
+    )
+  }
+  return records
+}
+
+// Runs warm up iterations before measuring, like JMH, and reports the
+// throughput of the measured iterations as mean ± standard deviation
+const measureThroughput = (rowCount: number, fn: () => void) => {
+  for (let i = 0; i < WARMUP_ITERATIONS; i++) {
+    fn()
+  }
+  const recordsPerSec = []
+  for (let i = 0; i < MEASURED_ITERATIONS; i++) {
+    const start = process.hrtime.bigint()
+    fn()
+    const ns = Number(process.hrtime.bigint() - start)
+    recordsPerSec.push((rowCount * 1e9) / Math.max(ns, 1))
+  }
+  const mean =
+    recordsPerSec.reduce((sum, value) => sum + value, 0) / recordsPerSec.length
+  const variance =
+    recordsPerSec.reduce((sum, value) => sum + (value - mean) ** 2, 0) /
+    recordsPerSec.length
+  return { mean, stdDev: Math.sqrt(variance) }
+}
+
+const formatThroughput = ({ mean, stdDev }: { mean: number; stdDev: number }) =>
+  `${Math.round(mean)} ± ${Math.round(stdDev)} records/sec`
+
+// Timings only mean something on an otherwise idle machine, so the
+// benchmarks are left out of the test suite unless BENCHMARK is set
+const describeBenchmark = process.env.BENCHMARK ? describe : describe.skip
+
+describe('graph types codec', () => {
+  const records = createRecords(ROW_COUNT)
+
+  test('encodes records like the legacy codec', () => {
+    const legacy = legacyRecursivelyTypeGraphItems(createRecords(ROW_COUNT))
+    const encoded = recursivelyTypeGraphItems(records)
+    expect(JSON.parse(JSON.stringify(encoded))).toEqual(
+      JSON.parse(JSON.stringify(legacy))
+    )
+    expect(applyGraphTypes(encoded)).toEqual(legacyApplyGraphTypes(legacy))
+  })
+
+  test('decodes records like the legacy codec', () => {
+    // Structured clone is approximated by a JSON round trip
+    const received = JSON.parse(
+      JSON.stringify(recursivelyTypeGraphItems(records))
+    )
+    expect(applyGraphTypes(received)).toEqual(legacyApplyGraphTypes(received))
+  })
+})
+
+describeBenchmark('graph types codec benchmark', () => {
+  const records = createRecords(ROW_COUNT)
+
+  test('measures encoding throughput', () => {
+    const legacyEncode = measureThroughput(ROW_COUNT, () =>
+      legacyRecursivelyTypeGraphItems(records)
+    )
+    const encode = measureThroughput(ROW_COUNT, () =>
+      recursivelyTypeGraphItems(records)
+    )
+    console.log(
+      `Encode ${ROW_COUNT} records: legacy ${formatThroughput(
+        legacyEncode
+      )}, codec ${formatThroughput(encode)}`
+    )
+  })
+
+  test('measures decoding throughput', () => {
+    const received = JSON.parse(
+      JSON.stringify(recursivelyTypeGraphItems(records))
+    )
+    const legacyDecode = measureThroughput(ROW_COUNT, () =>
+      legacyApplyGraphTypes(received)
+    )
+    const decode = measureThroughput(ROW_COUNT, () =>
+      applyGraphTypes(received)
+    )
+    console.log(
+      `Decode ${ROW_COUNT} records: legacy ${formatThroughput(
+        legacyDecode
+      )}, codec ${formatThroughput(decode)}`
+    )
+  })
+})
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import { escapeReservedProps, unEscapeReservedProps } from '../utils'
+
+/**
+ * Codec for values crossing the worker boundary. Driver types can't survive
+ * structured cloning, so they are sent as plain objects tagged with their
+ * class name in `reservedTypePropertyName`. Plain objects already using
+ * that name get it escaped on the way out and unescaped on the way in.
+ */
+export const reservedTypePropertyName = 'transport-class'
+const escapedTypePropertyName = `\\${reservedTypePropertyName}`
+
+// Checked in this order for constructors seen for the first time
+const GRAPH_TYPE_NAMES = [
+  'Node',
+  'PathSegment',
+  'Path',
+  'Relationship',
+  'Point',
+  'Date',
+  'DateTime',
+  'Duration',
+  'LocalDateTime',
+  'LocalTime',
+  'Time'
+]
+
+const hasOwn = (obj: any, prop: string) =>
+  Object.prototype.hasOwnProperty.call(obj, prop)
+
+const getGraphTypeName = (item: any, types: any): string | undefined => {
+  for (const name of GRAPH_TYPE_NAMES) {
+    if (types[name] && item instanceof types[name]) {
+      return name
+    }
+  }
+  return neo4j.isInt(item) ? 'Integer' : undefined
+}
+
+type TypeLayout = {
+  className?: string
+  // Only set for driver classes, which assign all their fields in the
+  // constructor so every instance has the same keys
+  keys?: string[]
+  // Last object value seen per key and its encoding. Records of one result
+  // share their keys and field lookup, those are only encoded once.
+  sources: unknown[]
+  encoded: unknown[]
+}
+
+class GraphTypesEncoder {
+  private readonly layouts = new Map<unknown, TypeLayout>()
+
+  constructor(private readonly types: any) {}
+
+  encode(item: any): any {
+    if (item === null || typeof item !== 'object') {
+      return item
+    }
+    if (Array.isArray(item)) {
+      const encoded = new Array(item.length)
+      for (let i = 0; i < item.length; i++) {
+        encoded[i] = this.encode(item[i])
+      }
+      return encoded
+    }
+    if (item.constructor === Object) {
+      return this.encodeMap(item)
+    }
+    const layout = this.getLayout(item)
+    return layout.keys
+      ? this.encodeWithLayout(item, layout)
+      : this.encodeMap(item)
+  }
+
+  private getLayout(item: any): TypeLayout {
+    let layout = this.layouts.get(item.constructor)
+    if (layout === undefined) {
+      const className = getGraphTypeName(item, this.types)
+      const fixedKeys =
+        className !== undefined || item.constructor === this.types.Record
+      layout = {
+        className,
+        keys: fixedKeys ? Object.keys(item) : undefined,
+        sources: [],
+        encoded: []
+      }
+      this.layouts.set(item.constructor, layout)
+    }
+    return layout
+  }
+
+  private encodeWithLayout(item: any, layout: TypeLayout) {
+    const keys = layout.keys as string[]
+    const { sources, encoded: encodedValues } = layout
+    const encoded: Record<string, unknown> = {}
+    for (let i = 0; i < keys.length; i++) {
+      const value = item[keys[i]]
+      if (typeof value === 'object' && value !== null) {
+        if (value !== sources[i]) {
+          // Nested items of the same class overwrite the slot while encoding
+          const encodedValue = this.encode(value)
+          sources[i] = value
+          encodedValues[i] = encodedValue
+        }
+        encoded[keys[i]] = encodedValues[i]
+      } else {
+        encoded[keys[i]] = value
+      }
+    }
+    if (layout.className !== undefined) {
+      encoded[reservedTypePropertyName] = layout.className
+    }
+    return encoded
+  }
+
+  private encodeMap(item: any) {
+    const source = hasOwn(item, reservedTypePropertyName)
+      ? escapeReservedProps({ ...item }, reservedTypePropertyName)
+      : item
+    const keys = Object.keys(source)
+    const encoded: Record<string, unknown> = {}
+    for (let i = 0; i < keys.length; i++) {
+      encoded[keys[i]] = this.encode(source[keys[i]])
+    }
+    return encoded
+  }
+}
+
+export const recursivelyTypeGraphItems = (
+  item: any,
+  types: any = neo4j.types
+): any => new GraphTypesEncoder(types).encode(item)
+
+type GraphTypeDecoder = (item: any, types: any) => any
+
+const graphTypeDecoders = new Map<string, GraphTypeDecoder>([
+  [
+    'Node',
+    (item, types) =>
+      new types.Node(
+        applyGraphTypes(item.identity, types),
+        item.labels,
+        applyGraphTypes(item.properties, types)
+      )
+  ],
+  [
+    'Relationship',
+    (item, types) =>
+      new types.Relationship(
+        applyGraphTypes(item.identity, types),
+        applyGraphTypes(item.start, types),
+        applyGraphTypes(item.end, types),
+        item.type,
+        applyGraphTypes(item.properties, types)
+      )
+  ],
+  [
+    'PathSegment',
+    (item, types) =>
+      new types.PathSegment(
+        applyGraphTypes(item.start, types),
+        applyGraphTypes(item.relationship, types),
+        applyGraphTypes(item.end, types)
+      )
+  ],
+  [
+    'Path',
+    (item, types) =>
+      new types.Path(
+        applyGraphTypes(item.start, types),
+        applyGraphTypes(item.end, types),
+        applyGraphTypes(item.segments, types)
+      )
+  ],
+  [
+    'Point',
+    (item, types) =>
+      new types.Point(
+        applyGraphTypes(item.srid, types),
+        applyGraphTypes(item.x, types),
+        applyGraphTypes(item.y, types),
+        applyGraphTypes(item.z, types)
+      )
+  ],
+  [
+    'Date',
+    (item, types) =>
+      new types.Date(
+        applyGraphTypes(item.year, types),
+        applyGraphTypes(item.month, types),
+        applyGraphTypes(item.day, types)
+      )
+  ],
+  [
+    'DateTime',
+    (item, types) =>
+      new types.DateTime(
+        applyGraphTypes(item.year, types),
+        applyGraphTypes(item.month, types),
+        applyGraphTypes(item.day, types),
+        applyGraphTypes(item.hour, types),
+        applyGraphTypes(item.minute, types),
+        applyGraphTypes(item.second, types),
+        applyGraphTypes(item.nanosecond, types),
+        applyGraphTypes(item.timeZoneOffsetSeconds, types),
+        applyGraphTypes(item.timeZoneId, types)
+      )
+  ],
+  [
+    'Duration',
+    (item, types) =>
+      new types.Duration(
+        applyGraphTypes(item.months, types),
+        applyGraphTypes(item.days, types),
+        applyGraphTypes(item.seconds, types),
+        applyGraphTypes(item.nanoseconds, types)
+      )
+  ],
+  [
+    'LocalDateTime',
+    (item, types) =>
+      new types.LocalDateTime(
+        applyGraphTypes(item.year, types),
+        applyGraphTypes(item.month, types),
+        applyGraphTypes(item.day, types),
+        applyGraphTypes(item.hour, types),
+        applyGraphTypes(item.minute, types),
+        applyGraphTypes(item.second, types),
+        applyGraphTypes(item.nanosecond, types)
+      )
+  ],
+  [
+    'LocalTime',
+    (item, types) =>
+      new types.LocalTime(
+        applyGraphTypes(item.hour, types),
+        applyGraphTypes(item.minute, types),
+        applyGraphTypes(item.second, types),
+        applyGraphTypes(item.nanosecond, types)
+      )
+  ],
+  [
+    'Time',
+    (item, types) =>
+      new types.Time(
+        applyGraphTypes(item.hour, types),
+        applyGraphTypes(item.minute, types),
+        applyGraphTypes(item.second, types),
+        applyGraphTypes(item.nanosecond, types),
+        applyGraphTypes(item.timeZoneOffsetSeconds, types)
+      )
+  ],
+  ['Integer', item => neo4j.int(item)]
+])
+
+// Unknown classes are passed on untyped, without their tag and with
+// escaped reserved properties restored, as applyGraphTypes always did.
+// The nested values are left as they are.
+const decodeUnknownType = (item: any) => {
+  const untyped = { ...item }
+  delete untyped[reservedTypePropertyName]
+  return unEscapeReservedProps(untyped, reservedTypePropertyName)
+}
+
+export const applyGraphTypes = (
+  rawItem: any,
+  types: any = neo4j.types
+): any => {
+  if (rawItem === null || typeof rawItem !== 'object') {
+    return rawItem
+  }
+  if (Array.isArray(rawItem)) {
+    const typed = new Array(rawItem.length)
+    for (let i = 0; i < rawItem.length; i++) {
+      typed[i] = applyGraphTypes(rawItem[i], types)
+    }
+    return typed
+  }
+  if (hasOwn(rawItem, reservedTypePropertyName)) {
+    const decode = graphTypeDecoders.get(rawItem[reservedTypePropertyName])
+    return decode ? decode(rawItem, types) : decodeUnknownType(rawItem)
+  }
+  const keys = Object.keys(rawItem)
+  const typedObject: Record<string, unknown> = {}
+  for (let i = 0; i < keys.length; i++) {
+    typedObject[keys[i]] = applyGraphTypes(rawItem[keys[i]], types)
+  }
+  return hasOwn(rawItem, escapedTypePropertyName)
+    ? unEscapeReservedProps(typedObject, reservedTypePropertyName)
+    : typedObject
+}
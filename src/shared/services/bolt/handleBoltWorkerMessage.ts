@@ -13,10 +13,14 @@ import {
   BOLT_CONNECTION_ERROR_MESSAGE,
   CANCEL_TRANSACTION_MESSAGE,
   CLOSE_CONNECTION_MESSAGE,
+  OPEN_CONNECTION_MESSAGE,
   RUN_CYPHER_MESSAGE,
+  WorkerTimings,
   boltConnectionErrorMessage,
   cypherErrorMessage,
+  cypherRecordsMessage,
   cypherResponseMessage,
+  getMessageTransferables,
   postCancelTransactionMessage
 } from './boltWorkerMessages'
 import {
@@ -34,6 +38,7 @@ type WorkerMessage = {
       txMetadata: unknown
       useDb: string
       autoCommit: boolean
+      maxRecords?: number
       opts: Record<string, unknown>
       host: string
       username: string
@@ -47,6 +52,8 @@ type WorkerMessage = {
     input: string
     parameters: unknown
     requestId: string
+    streamRecords?: boolean
+    columnarTransfer?: boolean
     type: string
   }
 }
@@ -59,6 +66,28 @@ const connectionTypeMap = {
 
 let runningCypherQuery = false
 const closeConnectionQueue: Array<() => void> = []
+// Shared by a prewarm message and a query arriving while it connects
+let pendingConnection: Promise<unknown> | null = null
+// The driver may have been opened for a prewarm message, so lost
+// connections are reported to whichever query runs at the time
+let onLostConnection: () => void = () => undefined
+const reportLostConnection = () => onLostConnection()
+
+const ensureWorkerConnection = (
+  connectionProperties: WorkerMessage['data']['connectionProperties']
+): Promise<unknown> => {
+  if (!pendingConnection) {
+    // Cleared when settled, a failed connection is retried by the next query
+    pendingConnection = ensureConnection(
+      connectionProperties as any,
+      connectionProperties.opts,
+      reportLostConnection
+    ).finally(() => {
+      pendingConnection = null
+    })
+  }
+  return pendingConnection
+}
 
 const maybeCypherErrorMessage = (error: any): AnyAction | undefined => {
   if (isBoltConnectionErrorCode(error.code)) {
@@ -73,7 +102,8 @@ const maybeCypherErrorMessage = (error: any): AnyAction | undefined => {
 
 const runCypherMessage = async (
   data: WorkerMessage['data'],
-  postMessage: (msg: any, options?: any) => void
+  postMessage: (msg: any, options?: any) => void,
+  timings: WorkerTimings
 ) => {
   const {
     input,
@@ -81,18 +111,17 @@ const runCypherMessage = async (
     connectionType,
     requestId,
     cancelable,
-    connectionProperties
+    connectionProperties,
+    streamRecords,
+    columnarTransfer
   } = data
 
-  const { txMetadata, useDb, autoCommit } = connectionProperties
-  const onLostConnection = () =>
+  const { txMetadata, useDb, autoCommit, maxRecords } = connectionProperties
+  onLostConnection = () =>
     postMessage(boltConnectionErrorMessage(BoltConnectionError()))
 
-  await ensureConnection(
-    connectionProperties as any,
-    connectionProperties.opts,
-    onLostConnection
-  )
+  await ensureWorkerConnection(connectionProperties)
+  timings.connectedAt = Date.now()
 
   const transactionType = connectionTypeMap[connectionType]
   const res: any = transactionType(input, applyGraphTypes(parameters), {
@@ -100,7 +129,15 @@ const runCypherMessage = async (
     cancelable,
     txMetadata,
     useDb,
-    autoCommit
+    autoCommit,
+    maxRecords,
+    onRecords: streamRecords
+      ? (records: unknown[], offset: number) =>
+          postWithTransferables(
+            postMessage,
+            cypherRecordsMessage(records, offset, columnarTransfer)
+          )
+      : undefined
   })
 
   if (Array.isArray(res)) {
@@ -110,6 +147,18 @@ const runCypherMessage = async (
   return res
 }
 
+const postWithTransferables = (
+  postMessage: (msg: any, options?: any) => void,
+  message: AnyAction
+): void => {
+  const transferables = getMessageTransferables(message)
+  if (transferables.length) {
+    postMessage(message, transferables)
+  } else {
+    postMessage(message)
+  }
+}
+
 const execCloseConnectionQueue = (): void => {
   while (!runningCypherQuery && closeConnectionQueue.length) {
     const workFn = closeConnectionQueue.shift()
@@ -126,14 +175,20 @@ export const handleBoltWorkerMessage =
 
     if (messageType === RUN_CYPHER_MESSAGE) {
       runningCypherQuery = true
-      runCypherMessage(data, postMessage)
+      const timings: WorkerTimings = { receivedAt: Date.now() }
+      runCypherMessage(data, postMessage, timings)
         .then(res => {
           runningCypherQuery = false
+          onLostConnection = () => undefined
           execCloseConnectionQueue()
-          postMessage(cypherResponseMessage(res))
+          timings.executedAt = Date.now()
+          const message = cypherResponseMessage(res, data.columnarTransfer)
+          timings.postedAt = Date.now()
+          postWithTransferables(postMessage, { ...message, timings })
         })
         .catch(err => {
           runningCypherQuery = false
+          onLostConnection = () => undefined
           execCloseConnectionQueue()
           postMessage(
             maybeCypherErrorMessage({ code: err.code, message: err.message })
@@ -146,6 +201,10 @@ export const handleBoltWorkerMessage =
     } else if (messageType === CLOSE_CONNECTION_MESSAGE) {
       closeConnectionQueue.push(closeGlobalConnection)
       execCloseConnectionQueue()
+    } else if (messageType === OPEN_CONNECTION_MESSAGE) {
+      // Sent to idle workers so the driver is ready before the first query,
+      // failures surface when a query is run
+      ensureWorkerConnection(data.connectionProperties).catch(() => undefined)
     } else {
       postMessage(
         cypherErrorMessage({
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import {
+  ReadResultCache,
+  estimateSize,
+  getReadResultCacheKey,
+  normalizeQuery
+} from './readResultCache'
+
+const resultOfSize = (length: number): any => ({
+  records: ['x'.repeat(length)],
+  summary: {}
+})
+
+describe('ReadResultCache', () => {
+  test('normalizes whitespace outside of strings', () => {
+    expect(normalizeQuery(' MATCH  (n)\n  RETURN n; ')).toBe(
+      'MATCH (n)\nRETURN n'
+    )
+    expect(normalizeQuery("RETURN 'a  b'")).toBe("RETURN 'a  b'")
+  })
+  test('keeps line breaks that end comments', () => {
+    expect(normalizeQuery('// comment\nRETURN 1')).not.toBe(
+      normalizeQuery('// comment RETURN 1')
+    )
+    expect(normalizeQuery('// comment \r\n\n  RETURN 1')).toBe(
+      '// comment\nRETURN 1'
+    )
+  })
+  test('keys on query, parameters, database and row limit', () => {
+    const key = getReadResultCacheKey('RETURN $a', { a: 1 }, 'neo4j', 1001)
+
+    expect(getReadResultCacheKey('RETURN  $a', { a: 1 }, 'neo4j', 1001)).toBe(
+      key
+    )
+    expect(
+      getReadResultCacheKey('RETURN $a', { a: 2 }, 'neo4j', 1001)
+    ).not.toBe(key)
+    expect(
+      getReadResultCacheKey('RETURN $a', { a: 1 }, 'system', 1001)
+    ).not.toBe(key)
+    expect(
+      getReadResultCacheKey('RETURN $a', { a: 1 }, 'neo4j', 2001)
+    ).not.toBe(key)
+  })
+  test('evicts least recently used results by size', () => {
+    // Given
+    const entrySize = estimateSize(resultOfSize(100)) + 2
+    const cache = new ReadResultCache(entrySize * 2)
+    cache.set('a', resultOfSize(100))
+    cache.set('b', resultOfSize(100))
+
+    // When
+    cache.get('a')
+    cache.set('c', resultOfSize(100))
+
+    // Then
+    expect(cache.get('a')).toBeDefined()
+    expect(cache.get('b')).toBeUndefined()
+    expect(cache.get('c')).toBeDefined()
+    expect(cache.getStats()).toEqual({
+      entries: 2,
+      bytes: entrySize * 2,
+      hits: 3,
+      misses: 1
+    })
+  })
+  test('does not keep results larger than the cache', () => {
+    // Given
+    const cache = new ReadResultCache(100)
+
+    // When
+    cache.set('a', resultOfSize(1000))
+
+    // Then
+    expect(cache.get('a')).toBeUndefined()
+    expect(cache.getStats().bytes).toBe(0)
+  })
+})
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { QueryResult } from 'neo4j-driver'
+
+type CacheEntry = { result: QueryResult; bytes: number }
+
+export type ReadResultCacheStats = {
+  entries: number
+  bytes: number
+  hits: number
+  misses: number
+}
+
+// Whitespace outside of string literals and escaped names doesn't change
+// the meaning of a query, line breaks do since they end // comments
+const QUOTED_PARTS = /('(?:[^'\\]|\\.)*'|"(?:[^"\\]|\\.)*"|`[^`]*`)/
+const collapseWhitespace = (part: string): string =>
+  part.replace(/\s+/g, space => (space.includes('\n') ? '\n' : ' '))
+export const normalizeQuery = (query: string): string =>
+  query
+    .split(QUOTED_PARTS)
+    .map((part, i) => (i % 2 === 1 ? part : collapseWhitespace(part)))
+    .join('')
+    .trim()
+    .replace(/;$/, '')
+
+export const getReadResultCacheKey = (
+  query: string,
+  typedParameters: unknown,
+  useDb: string | null,
+  maxRecords?: number
+): string =>
+  [
+    normalizeQuery(query),
+    JSON.stringify(typedParameters ?? {}),
+    useDb ?? '',
+    maxRecords ?? ''
+  ].join('\u0000')
+
+/**
+ * Rough size of a value in memory, strings count two bytes per character
+ * and everything else a fixed amount per value or property.
+ */
+export function estimateSize(value: unknown): number {
+  let bytes = 0
+  const stack: unknown[] = [value]
+  while (stack.length) {
+    const item = stack.pop()
+    if (typeof item === 'string') {
+      bytes += 2 * item.length
+    } else if (Array.isArray(item)) {
+      bytes += 8 * item.length
+      for (let i = 0; i < item.length; i++) {
+        stack.push(item[i])
+      }
+    } else if (item && typeof item === 'object') {
+      Object.keys(item).forEach(key => {
+        bytes += 2 * key.length + 8
+        stack.push((item as any)[key])
+      })
+    } else {
+      bytes += 8
+    }
+  }
+  return bytes
+}
+
+/**
+ * Least recently used cache of read query results, bounded by their
+ * estimated size in bytes.
+ */
+export class ReadResultCache {
+  private readonly entries = new Map<string, CacheEntry>()
+  private bytes = 0
+  private hits = 0
+  private misses = 0
+
+  constructor(private readonly maxBytes: number) {}
+
+  get(key: string): QueryResult | undefined {
+    const entry = this.entries.get(key)
+    if (!entry) {
+      this.misses++
+      return undefined
+    }
+    this.hits++
+    // Maps iterate in insertion order, re-inserting marks it as recently used
+    this.entries.delete(key)
+    this.entries.set(key, entry)
+    return entry.result
+  }
+
+  set(key: string, result: QueryResult): void {
+    const bytes = estimateSize(result) + 2 * key.length
+    this.delete(key)
+    if (bytes > this.maxBytes) {
+      return
+    }
+    while (this.bytes + bytes > this.maxBytes) {
+      this.delete(this.entries.keys().next().value)
+    }
+    this.entries.set(key, { result, bytes })
+    this.bytes += bytes
+  }
+
+  clear(): void {
+    this.entries.clear()
+    this.bytes = 0
+  }
+
+  getStats(): ReadResultCacheStats {
+    return {
+      entries: this.entries.size,
+      bytes: this.bytes,
+      hits: this.hits,
+      misses: this.misses
+    }
+  }
+
+  private delete(key: string): void {
+    const entry = this.entries.get(key)
+    if (entry) {
+      this.entries.delete(key)
+      this.bytes -= entry.bytes
+    }
+  }
+}
@@ -17,27 +17,67 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-import { QueryResult, types } from 'neo4j-driver'
+import { Record as Neo4jRecord, QueryResult, types } from 'neo4j-driver'
 
-import { applyGraphTypes } from './boltMappings'
+import {
+  ColumnarRecords,
+  applyGraphTypes,
+  decodeRecordsColumnar
+} from './boltMappings'
 import {
   BOLT_CONNECTION_ERROR_MESSAGE,
   CYPHER_ERROR_MESSAGE,
+  CYPHER_RECORDS_MESSAGE,
   CYPHER_RESPONSE_MESSAGE,
-  POST_CANCEL_TRANSACTION_MESSAGE
+  POST_CANCEL_TRANSACTION_MESSAGE,
+  WorkerTimings
 } from './boltWorkerMessages'
-import WorkPool from 'services/WorkPool'
+import {
+  NEO4J_BROWSER_BACKGROUND_QUERY,
+  NEO4J_BROWSER_USER_ACTION_QUERY,
+  NEO4J_BROWSER_USER_QUERY
+} from './txMetadata'
+import WorkPool, { WORK_PRIORITY } from 'services/WorkPool'
+import { recordQueryPhase } from 'services/queryTimings'
+
+const txMetadataTypePriorities: Record<string, WORK_PRIORITY> = {
+  [NEO4J_BROWSER_USER_QUERY]: WORK_PRIORITY.INTERACTIVE,
+  [NEO4J_BROWSER_USER_ACTION_QUERY]: WORK_PRIORITY.USER_BACKGROUND,
+  [NEO4J_BROWSER_BACKGROUND_QUERY]: WORK_PRIORITY.SYSTEM_BACKGROUND
+}
+
+export const getWorkPriority = (txMetadata?: {
+  type?: string
+}): WORK_PRIORITY =>
+  (txMetadata?.type && txMetadataTypePriorities[txMetadata.type]) ||
+  WORK_PRIORITY.INTERACTIVE
+
+// A batch of streamed records as posted by the worker
+export type RecordsBatch = {
+  records?: unknown[]
+  columnarRecords?: ColumnarRecords
+  offset?: number
+}
 
 export const setupBoltWorker = (
   boltWorkPool: WorkPool,
   id: string,
   payload: any,
-  onLostConnection: (error: Error) => void = (): void => undefined
+  onLostConnection: (error: Error) => void = (): void => undefined,
+  // Gets the same growing array with each batch, and how many records it holds
+  onRecords?: (records: Neo4jRecord[], count: number) => void,
+  // Gets the batches as received, they are neither decoded nor kept
+  onRecordsBatch?: (batch: RecordsBatch) => void
 ): Promise<QueryResult> => {
+  // Records streamed in batches are assembled here,
+  // the final response then only carries the summary
+  const streamedRecords: Neo4jRecord[] = []
+  let rehydrationMs = 0
   const workerPromise = new Promise<QueryResult>((resolve, reject) => {
     const work = boltWorkPool.doWork({
       id,
       payload,
+      priority: getWorkPriority(payload?.connectionProperties?.txMetadata),
       onmessage: ({ data }) => {
         switch (data.type) {
           case BOLT_CONNECTION_ERROR_MESSAGE:
@@ -49,9 +89,31 @@ export const setupBoltWorker = (
             boltWorkPool.finishWork(work.id)
             reject(data.error)
             break
+          case CYPHER_RECORDS_MESSAGE:
+            if (onRecordsBatch) {
+              onRecordsBatch(data)
+              break
+            }
+            // A retried transaction starts over from offset 0
+            streamedRecords.length = data.offset ?? 0
+            const batchStart = Date.now()
+            for (const record of receivedRecords(data)) {
+              streamedRecords.push(record)
+            }
+            rehydrationMs += Date.now() - batchStart
+            // Copying the records received so far for every batch is
+            // quadratic, the count tells consumers that the array changed
+            onRecords && onRecords(streamedRecords, streamedRecords.length)
+            break
           case CYPHER_RESPONSE_MESSAGE:
             boltWorkPool.finishWork(work.id)
-            resolve(addTypesAsField(data.result))
+            const receivedAt = Date.now()
+            const result = receivedResult(data)
+            rehydrationMs += Date.now() - receivedAt
+            recordPhases(id, work, data.timings, receivedAt, rehydrationMs)
+            resolve(
+              onRecords ? { ...result, records: streamedRecords } : result
+            )
             break
           case POST_CANCEL_TRANSACTION_MESSAGE:
             boltWorkPool.finishWork(work.id)
@@ -65,8 +127,33 @@ export const setupBoltWorker = (
   return workerPromise
 }
 
-export const addTypesAsField = (result: QueryResult): QueryResult => {
-  const records = result.records.map((record: any) => {
+const recordPhases = (
+  id: string,
+  work: { queuedAt: number; startedAt?: number },
+  timings: WorkerTimings | undefined,
+  receivedAt: number,
+  rehydrationMs: number
+): void => {
+  if (work.startedAt !== undefined) {
+    recordQueryPhase(id, 'queue', work.startedAt - work.queuedAt)
+  }
+  if (timings) {
+    const { connectedAt, executedAt, postedAt } = timings
+    if (work.startedAt !== undefined) {
+      recordQueryPhase(id, 'dispatch', timings.receivedAt - work.startedAt)
+    }
+    if (connectedAt && executedAt && postedAt) {
+      recordQueryPhase(id, 'connection', connectedAt - timings.receivedAt)
+      recordQueryPhase(id, 'execution', executedAt - connectedAt)
+      recordQueryPhase(id, 'serialization', postedAt - executedAt)
+      recordQueryPhase(id, 'transfer', receivedAt - postedAt)
+    }
+  }
+  recordQueryPhase(id, 'rehydration', rehydrationMs)
+}
+
+const applyRecordTypes = (records: any[]): Neo4jRecord[] =>
+  records.map((record: any) => {
     const typedRecord = new (types.Record as any)(
       record.keys,
       record._fields,
@@ -77,6 +164,28 @@ export const addTypesAsField = (result: QueryResult): QueryResult => {
     }
     return typedRecord
   })
+
+type ReceivedData = {
+  result: QueryResult
+  records?: unknown[]
+  columnarRecords?: ColumnarRecords
+}
+
+const receivedRecords = (data: ReceivedData): Neo4jRecord[] =>
+  data.columnarRecords
+    ? decodeRecordsColumnar(data.columnarRecords)
+    : applyRecordTypes(data.records ?? [])
+
+const receivedResult = (data: ReceivedData): QueryResult =>
+  data.columnarRecords
+    ? {
+        summary: applyGraphTypes(data.result.summary),
+        records: decodeRecordsColumnar(data.columnarRecords)
+      }
+    : addTypesAsField(data.result)
+
+export const addTypesAsField = (result: QueryResult): QueryResult => {
+  const records = applyRecordTypes(result.records)
   const summary = applyGraphTypes(result.summary)
   return { summary, records }
 }
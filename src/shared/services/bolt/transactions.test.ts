@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import { getGlobalDrivers } from './globalDrivers'
+import {
+  closeCachedSessions,
+  consumeResult,
+  routedReadTransaction,
+  routedWriteTransaction
+} from './transactions'
+
+jest.mock('./globalDrivers', () => ({ getGlobalDrivers: jest.fn() }))
+
+const QUERY_COUNT = 500
+const WARMUP_QUERIES = 50
+
+// Timings only mean something on an otherwise idle machine, so the
+// benchmarks are left out of the test suite unless BENCHMARK is set
+const describeBenchmark = process.env.BENCHMARK ? describe : describe.skip
+
+const createFakeDriver = () => {
+  const runWork = (work: any) =>
+    Promise.resolve(
+      work({
+        run: () =>
+          Object.assign(Promise.resolve({ records: [], summary: {} }), {
+            subscribe: ({ onCompleted }: any) => onCompleted({})
+          })
+      })
+    )
+  return {
+    session: jest.fn(({ defaultAccessMode, database }) => ({
+      _mode: defaultAccessMode,
+      database,
+      close: jest.fn(() => Promise.resolve()),
+      readTransaction: jest.fn(runWork),
+      writeTransaction: jest.fn(runWork)
+    }))
+  }
+}
+
+describe('transactions session reuse', () => {
+  let driver: ReturnType<typeof createFakeDriver>
+  beforeEach(() => {
+    driver = createFakeDriver()
+    ;(getGlobalDrivers as jest.Mock).mockReturnValue({
+      getRoutedDriver: () => driver,
+      getDirectDriver: () => driver
+    })
+  })
+  afterEach(() => {
+    closeCachedSessions()
+  })
+
+  test('reuses the session between sequential transactions', async () => {
+    // When
+    await routedReadTransaction('RETURN 1', {})
+    await routedReadTransaction('RETURN 2', {})
+    await routedWriteTransaction('CREATE ()', {})
+
+    // Then
+    expect(driver.session).toHaveBeenCalledTimes(2)
+    const readSession = driver.session.mock.results[0].value
+    expect(readSession.readTransaction).toHaveBeenCalledTimes(2)
+    expect(readSession.close).not.toHaveBeenCalled()
+  })
+  test('opens one session for many small transactions', async () => {
+    // When
+    for (let i = 0; i < 100; i++) {
+      await routedReadTransaction('RETURN $i', { i })
+    }
+
+    // Then
+    expect(driver.session).toHaveBeenCalledTimes(1)
+    const session = driver.session.mock.results[0].value
+    expect(session.readTransaction).toHaveBeenCalledTimes(100)
+    expect(session.close).not.toHaveBeenCalled()
+  })
+  test('reuses the session for different record limits', async () => {
+    // When
+    await routedWriteTransaction('MATCH (n) RETURN n', {}, { maxRecords: 1001 })
+    await routedWriteTransaction('MATCH (n) RETURN n', {}, { maxRecords: 2001 })
+
+    // Then
+    expect(driver.session).toHaveBeenCalledTimes(1)
+    const session = driver.session.mock.results[0].value
+    expect(session.writeTransaction).toHaveBeenCalledTimes(2)
+    expect(session.close).not.toHaveBeenCalled()
+  })
+  test('uses a throwaway session for concurrent transactions', async () => {
+    // When
+    await Promise.all([
+      routedReadTransaction('RETURN 1', {}),
+      routedReadTransaction('RETURN 2', {})
+    ])
+
+    // Then
+    expect(driver.session).toHaveBeenCalledTimes(2)
+    expect(driver.session.mock.results[0].value.close).not.toHaveBeenCalled()
+    expect(driver.session.mock.results[1].value.close).toHaveBeenCalledTimes(1)
+  })
+  test('opens a new session when the database changes', async () => {
+    // When
+    await routedReadTransaction('RETURN 1', {}, { useDb: 'neo4j' })
+    await routedReadTransaction('RETURN 1', {}, { useDb: 'movies' })
+
+    // Then
+    expect(driver.session).toHaveBeenCalledTimes(2)
+    expect(driver.session.mock.results[0].value.close).toHaveBeenCalledTimes(1)
+    expect(driver.session.mock.calls[1][0].database).toBe('movies')
+  })
+  test('drops the session after a failed transaction', async () => {
+    // Given
+    await routedReadTransaction('RETURN 1', {})
+    const failingSession = driver.session.mock.results[0].value
+    failingSession.readTransaction.mockImplementationOnce(() =>
+      Promise.reject(new Error('failed'))
+    )
+
+    // When
+    await expect(routedReadTransaction('RETURN 1', {})).rejects.toThrow(
+      'failed'
+    )
+    await routedReadTransaction('RETURN 1', {})
+
+    // Then
+    expect(failingSession.close).toHaveBeenCalledTimes(1)
+    expect(driver.session).toHaveBeenCalledTimes(2)
+  })
+  test('closes cached sessions with the connection', async () => {
+    // Given
+    await routedReadTransaction('RETURN 1', {})
+
+    // When
+    closeCachedSessions()
+
+    // Then
+    expect(driver.session.mock.results[0].value.close).toHaveBeenCalledTimes(1)
+  })
+})
+
+describe('consumeResult with maxRecords', () => {
+  test('stops keeping records and discards the rest after the limit', async () => {
+    // Given
+    const summary = jest.fn(() => Promise.resolve({ queryType: 'r' }))
+    const result: any = {
+      summary,
+      subscribe: ({ onNext, onCompleted }: any) => {
+        for (let i = 0; i < 5; i++) {
+          onNext(i)
+        }
+        onCompleted({ queryType: 'r' })
+      }
+    }
+
+    // When
+    const consumed = await consumeResult(result, undefined, 3)
+
+    // Then
+    expect(consumed.records).toEqual([0, 1, 2])
+    expect(consumed.summary).toEqual({ queryType: 'r' })
+    expect(summary).toHaveBeenCalledTimes(1)
+  })
+})
+
+// Opening a session is cheap against a fake driver, so this runs against the
+// database started by test-e2e, or the one BOLT_URL points to
+describeBenchmark('transactions session reuse benchmark', () => {
+  let driver: ReturnType<typeof neo4j.driver>
+  beforeAll(() => {
+    driver = neo4j.driver(
+      process.env.BOLT_URL ?? 'bolt://localhost:7687',
+      neo4j.auth.basic(
+        process.env.BOLT_USER ?? 'neo4j',
+        process.env.BOLT_PASSWORD ?? 'newpassword'
+      )
+    )
+    ;(getGlobalDrivers as jest.Mock).mockReturnValue({
+      getRoutedDriver: () => driver,
+      getDirectDriver: () => driver
+    })
+  })
+  afterAll(() => {
+    closeCachedSessions()
+    return driver.close()
+  })
+
+  // Closing the cached sessions after every query opens a fresh session per
+  // query, the way transactions ran before sessions were reused
+  const runQueries = async (count: number, freshSession: boolean) => {
+    for (let i = 0; i < count; i++) {
+      await routedReadTransaction('RETURN $i', { i })
+      if (freshSession) {
+        closeCachedSessions()
+      }
+    }
+  }
+  const measureQueriesPerSec = async (freshSession: boolean) => {
+    await runQueries(WARMUP_QUERIES, freshSession)
+    const start = process.hrtime.bigint()
+    await runQueries(QUERY_COUNT, freshSession)
+    const ns = Number(process.hrtime.bigint() - start)
+    return Math.round((QUERY_COUNT * 1e9) / Math.max(ns, 1))
+  }
+
+  test('measures small queries with a fresh and a reused session', async () => {
+    const fresh = await measureQueriesPerSec(true)
+    const reused = await measureQueriesPerSec(false)
+    console.log(
+      `Run ${QUERY_COUNT} small queries: fresh session ${fresh} queries/sec, ` +
+        `reused session ${reused} queries/sec`
+    )
+  })
+})
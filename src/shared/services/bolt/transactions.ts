@@ -17,7 +17,13 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-import neo4j, { Session } from 'neo4j-driver'
+import neo4j, {
+  Driver,
+  Record as Neo4jRecord,
+  QueryResult,
+  Result,
+  Session
+} from 'neo4j-driver'
 import { v4 } from 'uuid'
 
 import { BoltConnectionError } from '../exceptions'
@@ -27,23 +33,195 @@ import { defaultTxMetadata } from './txMetadata'
 
 const runningQueryRegister: Record<string, (cb?: () => void) => void> = {}
 
+type DriverType = 'direct' | 'routed'
+type CachedSession = {
+  driver: Driver
+  database?: string
+  session: Session
+  inUse: boolean
+}
+type SessionLease = {
+  session: Session
+  // Hands the session back for reuse, closes it if it isn't cached
+  release: () => void
+  // Closes the session and drops it from the cache
+  close: (cb?: () => void) => void
+}
+
+// One reusable session per driver and access mode. A session can only run one
+// transaction at a time, concurrent transactions get a throwaway session.
+const sessionCache: Partial<Record<string, CachedSession>> = {}
+
+function acquireSession(
+  driverType: DriverType,
+  accessMode: typeof neo4j.session.READ,
+  database?: string
+): SessionLease | undefined {
+  const drivers = getGlobalDrivers()
+  const driver =
+    driverType === 'direct'
+      ? drivers?.getDirectDriver()
+      : drivers?.getRoutedDriver()
+  if (!driver) {
+    return undefined
+  }
+  const newSession = () =>
+    driver.session({ defaultAccessMode: accessMode, database })
+
+  const key = `${driverType}:${accessMode}`
+  let cached = sessionCache[key]
+  // Reconnected or switched database since the session was opened
+  if (
+    cached &&
+    !cached.inUse &&
+    (cached.driver !== driver || cached.database !== database)
+  ) {
+    cached.session.close()
+    cached = sessionCache[key] = undefined
+  }
+  if (!cached) {
+    cached = sessionCache[key] = {
+      driver,
+      database,
+      session: newSession(),
+      inUse: false
+    }
+  }
+
+  if (cached.inUse) {
+    const session = newSession()
+    return {
+      session,
+      release: () => session.close(),
+      close: cb => (session.close as any)(cb)
+    }
+  }
+
+  const entry = cached
+  entry.inUse = true
+  return {
+    session: entry.session,
+    release: () => {
+      entry.inUse = false
+    },
+    close: cb => {
+      if (sessionCache[key] === entry) {
+        delete sessionCache[key]
+      }
+      ;(entry.session.close as any)(cb)
+    }
+  }
+}
+
+/**
+ * Closes all sessions kept for reuse, called when the connection is closed.
+ */
+export function closeCachedSessions(): void {
+  Object.keys(sessionCache).forEach(key => {
+    sessionCache[key]?.session.close()
+    delete sessionCache[key]
+  })
+}
+
+// Records are handed over in batches of this size,
+// or earlier if this many ms passed since the last batch
+export const STREAM_BATCH_SIZE = 1000
+export const STREAM_BATCH_INTERVAL_MS = 100
+
+/**
+ * Called with every batch of streamed records.
+ * `offset` is the index of the first record in the batch, it is reset to 0
+ * if the driver retries the transaction function.
+ */
+export type RecordsBatchHandler = (
+  records: Neo4jRecord[],
+  offset: number
+) => void
+
+/**
+ * Consumes a driver result through its record subscription when a batch handler
+ * is given. Streamed records are not retained, so the returned result only
+ * carries the summary. Without a handler the result is buffered as usual.
+ * With maxRecords the result summary is requested once that many records
+ * have been received, which discards the rest of the stream on the server.
+ */
+export function consumeResult(
+  result: Result,
+  onRecords?: RecordsBatchHandler,
+  maxRecords?: number
+): Promise<QueryResult> {
+  if (!onRecords && !maxRecords) {
+    return result
+  }
+  return new Promise((resolve, reject) => {
+    const records: Neo4jRecord[] = []
+    let received = 0
+    let batch: Neo4jRecord[] = []
+    let offset = 0
+    let lastFlush = Date.now()
+    const flush = () => {
+      if (onRecords && batch.length) {
+        onRecords(batch, offset)
+        offset += batch.length
+        batch = []
+      }
+      lastFlush = Date.now()
+    }
+    result.subscribe({
+      onNext: (record: Neo4jRecord) => {
+        if (maxRecords && received >= maxRecords) {
+          return
+        }
+        received++
+        if (maxRecords && received === maxRecords) {
+          // The driver sends DISCARD instead of PULL for the next batch,
+          // the subscription completes with the same summary
+          result.summary().catch(() => undefined)
+        }
+        if (!onRecords) {
+          records.push(record)
+          return
+        }
+        batch.push(record)
+        if (
+          batch.length >= STREAM_BATCH_SIZE ||
+          Date.now() - lastFlush >= STREAM_BATCH_INTERVAL_MS
+        ) {
+          flush()
+        }
+      },
+      onCompleted: (summary: any) => {
+        flush()
+        resolve({ records, summary })
+      },
+      onError: reject
+    })
+  })
+}
+
 function _trackedTransaction(
   input: string,
   parameters = {},
-  session?: Session,
+  lease?: SessionLease,
   requestId = null,
   txMetadata = defaultTxMetadata.txMetadata,
-  autoCommit = false
+  autoCommit = false,
+  onRecords?: RecordsBatchHandler,
+  maxRecords?: number
 ): [string, Promise<unknown>] {
   const id = requestId || v4()
-  if (!session) {
+  if (!lease) {
     return [id, Promise.reject(BoltConnectionError())]
   }
-  const closeFn = (cb = (): void => undefined): void => {
-    ;(session.close as any)(cb)
+  const { session } = lease
+  const unregister = (): void => {
     if (runningQueryRegister[id]) delete runningQueryRegister[id]
   }
-  runningQueryRegister[id] = closeFn
+  // Canceling closes the session, which aborts the running query
+  runningQueryRegister[id] = (cb = (): void => undefined): void => {
+    lease.close(cb)
+    unregister()
+  }
 
   const metadata = txMetadata ? { metadata: txMetadata } : undefined
 
@@ -62,22 +240,33 @@ function _trackedTransaction(
       metadata: unknown
     ): Promise<unknown> =>
       txFn!(
-        (tx: { run: (input: string, parameters: unknown) => unknown }) =>
-          tx.run(input, parameters),
+        (tx: { run: (input: string, parameters: unknown) => Result }) =>
+          consumeResult(tx.run(input, parameters), onRecords, maxRecords),
         metadata as any
       )
   } else {
     // Auto-Commit transaction, only used for PERIODIC COMMIT etc.
-    runFn = session.run.bind(session)
+    runFn = (
+      input: string,
+      parameters: unknown,
+      metadata: unknown
+    ): Promise<unknown> =>
+      consumeResult(
+        session.run(input, parameters as any, metadata as any),
+        onRecords,
+        maxRecords
+      )
   }
 
   const queryPromise = runFn(input, parameters, metadata)
     .then((result: unknown) => {
-      closeFn()
+      unregister()
+      lease.release()
       return result
     })
     .catch((e: Error) => {
-      closeFn()
+      unregister()
+      lease.close()
       throw e
     })
   return [id, queryPromise]
@@ -86,21 +275,27 @@ function _trackedTransaction(
 function _transaction(
   input: string,
   parameters: unknown,
-  session: any,
-  txMetadata = defaultTxMetadata.txMetadata
+  lease: SessionLease | undefined,
+  txMetadata = defaultTxMetadata.txMetadata,
+  onRecords?: RecordsBatchHandler,
+  maxRecords?: number
 ): Promise<unknown> {
-  if (!session) return Promise.reject(BoltConnectionError())
+  if (!lease) return Promise.reject(BoltConnectionError())
 
   const metadata = txMetadata ? { metadata: txMetadata } : undefined
-  const txFn = buildTxFunctionByMode(session)
+  const txFn = buildTxFunctionByMode(lease.session)
 
-  return txFn!((tx: any) => tx.run(input, parameters), metadata)
+  return txFn!(
+    (tx: any) =>
+      consumeResult(tx.run(input, parameters), onRecords, maxRecords),
+    metadata
+  )
     .then((r: any) => {
-      session.close()
+      lease.release()
       return r
     })
     .catch((e: any) => {
-      session.close()
+      lease.close()
       throw e
     })
 }
@@ -120,13 +315,22 @@ export function directTransaction(
     requestId = null,
     cancelable = false,
     txMetadata = undefined,
-    useDb = undefined
+    useDb = undefined,
+    onRecords = undefined
   } = opts
-  const session = getGlobalDrivers()
-    ?.getDirectDriver()
-    ?.session({ defaultAccessMode: neo4j.session.WRITE, database: useDb })
-  if (!cancelable) return _transaction(input, parameters, session, txMetadata)
-  return _trackedTransaction(input, parameters, session, requestId, txMetadata)
+  const lease = acquireSession('direct', neo4j.session.WRITE, useDb)
+  if (!cancelable) {
+    return _transaction(input, parameters, lease, txMetadata, onRecords)
+  }
+  return _trackedTransaction(
+    input,
+    parameters,
+    lease,
+    requestId,
+    txMetadata,
+    false,
+    onRecords
+  )
 }
 
 export function routedReadTransaction(
@@ -138,13 +342,22 @@ export function routedReadTransaction(
     requestId = null,
     cancelable = false,
     txMetadata = undefined,
-    useDb = undefined
+    useDb = undefined,
+    onRecords = undefined
   } = opts
-  const session = getGlobalDrivers()
-    ?.getRoutedDriver()
-    ?.session({ defaultAccessMode: neo4j.session.READ, database: useDb })
-  if (!cancelable) return _transaction(input, parameters, session, txMetadata)
-  return _trackedTransaction(input, parameters, session, requestId, txMetadata)
+  const lease = acquireSession('routed', neo4j.session.READ, useDb)
+  if (!cancelable) {
+    return _transaction(input, parameters, lease, txMetadata, onRecords)
+  }
+  return _trackedTransaction(
+    input,
+    parameters,
+    lease,
+    requestId,
+    txMetadata,
+    false,
+    onRecords
+  )
 }
 
 export function routedWriteTransaction(
@@ -157,18 +370,29 @@ export function routedWriteTransaction(
     cancelable = false,
     txMetadata = undefined,
     useDb = undefined,
-    autoCommit = false
+    autoCommit = false,
+    onRecords = undefined,
+    maxRecords = undefined
   } = opts
-  const session = getGlobalDrivers()
-    ?.getRoutedDriver()
-    ?.session({ defaultAccessMode: neo4j.session.WRITE, database: useDb })
-  if (!cancelable) return _transaction(input, parameters, session, txMetadata)
+  const lease = acquireSession('routed', neo4j.session.WRITE, useDb)
+  if (!cancelable) {
+    return _transaction(
+      input,
+      parameters,
+      lease,
+      txMetadata,
+      onRecords,
+      maxRecords
+    )
+  }
   return _trackedTransaction(
     input,
     parameters,
-    session,
+    lease,
     requestId,
     txMetadata,
-    autoCommit
+    autoCommit,
+    onRecords,
+    maxRecords
   )
 }
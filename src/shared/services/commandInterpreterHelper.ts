@@ -87,6 +87,7 @@ import {
 import { fetchRemoteGuide, resetGuide } from 'shared/modules/guides/guidesDuck'
 import { clearHistory, getHistory } from 'shared/modules/history/historyDuck'
 import { getParams } from 'shared/modules/params/paramsDuck'
+import { compactResult } from 'shared/modules/requests/compactResult'
 import {
   REQUEST_STATUS_ERROR,
   REQUEST_STATUS_PENDING,
@@ -94,13 +95,21 @@ import {
   getRequest,
   update as updateQueryResult
 } from 'shared/modules/requests/requestsDuck'
-import { getSettings } from 'shared/modules/settings/settingsDuck'
+import {
+  getMaxRows,
+  getSettings,
+  shouldCacheReadResults
+} from 'shared/modules/settings/settingsDuck'
 import { open } from 'shared/modules/sidebar/sidebarDuck'
 import {
   backgroundTxMetadata,
   userDirectTxMetadata
 } from 'shared/services/bolt/txMetadata'
 import { objToCss, parseGrass } from 'shared/services/grassUtils'
+import {
+  getQueryPhasePercentiles,
+  getRecentQueryTimings
+} from 'shared/services/queryTimings'
 import { URL } from 'whatwg-url'
 
 const PLAY_FRAME_TYPES = ['play', 'play-remote']
@@ -334,6 +343,15 @@ const availableCommands = [
         userCapabilities: getUserCapabilities(store.getState()),
         serverConfig: getAvailableSettings(store.getState()),
         browserSettings: getSettings(store.getState()),
+        queryTimings: {
+          percentilesMs: getQueryPhasePercentiles(),
+          recentMs: getRecentQueryTimings(20)
+        },
+        queryStats: {
+          workPoolQueueWait: bolt.getQueueWaitStats(),
+          readResultCache: bolt.getReadResultCacheStats(),
+          singleFlight: bolt.getSingleFlightStats()
+        },
         ssoLogs: sessionStorage.getItem(AUTH_STORAGE_LOGS)?.trim().split('\n')
       }
       put(
@@ -407,6 +425,8 @@ const availableCommands = [
         query.substring(prefixIndex + autoPrefix.length)
 
       action.query = isAutocommit ? withoutAutoPrefix : query
+      // One more row than is shown, to know if there are more to fetch
+      action.maxRecords = action.maxRecords || getMaxRows(state) + 1
 
       const [id, request] = handleCypherCommand(
         action,
@@ -415,7 +435,8 @@ const availableCommands = [
         action.type === SINGLE_COMMAND_QUEUED
           ? userDirectTxMetadata
           : backgroundTxMetadata,
-        isAutocommit
+        isAutocommit,
+        shouldCacheReadResults(state)
       )
       put(
         frames.add({
@@ -433,7 +454,11 @@ const availableCommands = [
       })
       return request
         .then((res: any) => {
-          put(updateQueryResult(id, res, REQUEST_STATUS_SUCCESS))
+          // Compacted before it is stored, views read the records it
+          // came with until the result is evicted
+          put(
+            updateQueryResult(id, compactResult(res), REQUEST_STATUS_SUCCESS)
+          )
           put(successfulCypher(action.cmd))
           return res
         })
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { v4 } from 'uuid'
+
+import {
+  CSV_EXPORT_BATCH_MESSAGE,
+  CSV_EXPORT_DONE_MESSAGE,
+  CSV_EXPORT_END_MESSAGE,
+  CSV_EXPORT_ERROR_MESSAGE,
+  CSV_EXPORT_PART_MESSAGE,
+  CSV_EXPORT_RESET_MESSAGE,
+  CSV_EXPORT_SPILLED_MESSAGE,
+  CsvExportRequestMessage,
+  CsvExportResponseMessage
+} from './csvExportMessages'
+import bolt from 'services/bolt/bolt'
+import {
+  encodeRecordsColumnar,
+  getColumnarTransferables
+} from 'services/bolt/boltMappings'
+import { RecordsBatch } from 'services/bolt/setup-bolt-worker'
+import {
+  NEO4J_BROWSER_USER_ACTION_QUERY,
+  getUserTxMetadata
+} from 'services/bolt/txMetadata'
+import { applyParamGraphTypes } from 'shared/modules/commands/helpers/cypher'
+import {
+  getRecordCount,
+  isCompactResult
+} from 'shared/modules/requests/compactResult'
+import CsvExportWorker from 'shared/services/exporting/csvExportWorker'
+import {
+  SpillHandle,
+  getSpillSessionId
+} from 'shared/services/resultSpillStore'
+
+export type CsvExportProgress = (rows: number, total?: number) => void
+
+export type CsvExport = {
+  done: Promise<Blob>
+  cancel: () => void
+}
+
+export const CSV_EXPORT_CANCELLED = 'CSV export cancelled'
+
+export const isCsvExportSupported = (): boolean =>
+  typeof Worker !== 'undefined'
+
+type PostCsvExportMessage = (
+  message: CsvExportRequestMessage,
+  transfer?: Transferable[]
+) => void
+
+/**
+ * Runs an export in its own worker, `send` posts the records and resolves
+ * once all of them are posted. Cancelling drops the parts written so far.
+ */
+const startCsvExport = (
+  send: (post: PostCsvExportMessage) => Promise<unknown>,
+  onProgress: CsvExportProgress,
+  total?: number,
+  onCancel?: () => void
+): CsvExport => {
+  const worker = new CsvExportWorker()
+  let parts: Blob[] = []
+  let fail: (error: Error) => void = () => undefined
+  const done = new Promise<Blob>((resolve, reject) => {
+    fail = reject
+    worker.onmessage = ({ data }: { data: CsvExportResponseMessage }) => {
+      switch (data.type) {
+        case CSV_EXPORT_PART_MESSAGE:
+          parts.push(data.part)
+          onProgress(data.rows, total)
+          break
+        case CSV_EXPORT_RESET_MESSAGE:
+          parts = []
+          onProgress(0, total)
+          break
+        case CSV_EXPORT_DONE_MESSAGE:
+          resolve(new Blob(parts, { type: 'text/plain;charset=utf-8' }))
+          break
+        case CSV_EXPORT_ERROR_MESSAGE:
+          reject(new Error(data.message))
+          break
+      }
+    }
+  })
+  const terminate = () => worker.terminate()
+  done.then(terminate, terminate)
+
+  send((message, transfer = []) =>
+    worker.postMessage(message, transfer)
+  ).then(() => worker.postMessage({ type: CSV_EXPORT_END_MESSAGE }), fail)
+  return {
+    done,
+    cancel: () => {
+      onCancel && onCancel()
+      fail(new Error(CSV_EXPORT_CANCELLED))
+    }
+  }
+}
+
+/**
+ * Exports the records of a request. Spilled results are read from
+ * IndexedDB by the export worker one chunk at a time, so they don't have
+ * to be in memory. Rows past `maxRows` are left out.
+ */
+export const exportResultToCsv = (
+  result: unknown,
+  spill: SpillHandle | undefined,
+  onProgress: CsvExportProgress,
+  maxRows?: number
+): CsvExport => {
+  const records = (result as any)?.records
+  const rowCount = spill ? spill.rowCount : getRecordCount(result)
+  const total = maxRows === undefined ? rowCount : Math.min(rowCount, maxRows)
+  return startCsvExport(
+    async post => {
+      if (spill) {
+        post({
+          type: CSV_EXPORT_SPILLED_MESSAGE,
+          sessionId: getSpillSessionId(),
+          requestId: spill.requestId,
+          // Chunks past the row limit aren't read
+          chunkCount: Math.min(
+            spill.chunkCount,
+            Math.ceil(total / spill.chunkRows)
+          ),
+          maxRows
+        })
+      } else if (isCompactResult(result)) {
+        // Copied, the buffers stay with the result in the state
+        post({
+          type: CSV_EXPORT_BATCH_MESSAGE,
+          columnarRecords: result.columnar,
+          maxRows
+        })
+      } else if (Array.isArray(records) && records.length) {
+        post({
+          type: CSV_EXPORT_BATCH_MESSAGE,
+          columnarRecords: encodeRecordsColumnar(records.slice(0, maxRows)),
+          maxRows
+        })
+      }
+    },
+    onProgress,
+    total
+  )
+}
+
+/**
+ * Runs a query again without a record limit and exports the records as
+ * they are streamed, none of them are kept on the main thread.
+ */
+export const exportQueryToCsv = (
+  {
+    query,
+    params,
+    useDb,
+    autoCommit
+  }: {
+    query: string
+    params: Record<string, unknown>
+    useDb: string | null
+    autoCommit?: boolean
+  },
+  onProgress: CsvExportProgress
+): CsvExport => {
+  const requestId = v4()
+  return startCsvExport(
+    post => {
+      const [, request] = bolt.routedWriteTransaction(
+        query,
+        applyParamGraphTypes(params),
+        {
+          requestId,
+          cancelable: true,
+          ...getUserTxMetadata(NEO4J_BROWSER_USER_ACTION_QUERY),
+          autoCommit,
+          useDb,
+          onRecordsBatch: (batch: RecordsBatch) =>
+            post(
+              { type: CSV_EXPORT_BATCH_MESSAGE, ...batch },
+              batch.columnarRecords
+                ? getColumnarTransferables(batch.columnarRecords)
+                : []
+            )
+        }
+      )
+      return request
+    },
+    onProgress,
+    undefined,
+    () => bolt.cancelTransaction(requestId, () => undefined)
+  )
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { ColumnarRecords } from '../bolt/boltMappings'
+
+export const CSV_EXPORT_BATCH_MESSAGE = 'CSV_EXPORT_BATCH_MESSAGE'
+export const CSV_EXPORT_SPILLED_MESSAGE = 'CSV_EXPORT_SPILLED_MESSAGE'
+export const CSV_EXPORT_END_MESSAGE = 'CSV_EXPORT_END_MESSAGE'
+export const CSV_EXPORT_PART_MESSAGE = 'CSV_EXPORT_PART_MESSAGE'
+export const CSV_EXPORT_RESET_MESSAGE = 'CSV_EXPORT_RESET_MESSAGE'
+export const CSV_EXPORT_DONE_MESSAGE = 'CSV_EXPORT_DONE_MESSAGE'
+export const CSV_EXPORT_ERROR_MESSAGE = 'CSV_EXPORT_ERROR_MESSAGE'
+
+// Records as posted by the bolt worker, `offset` 0 restarts the export.
+// Rows past `maxRows` are left out of the export.
+export type CsvExportBatchMessage = {
+  type: typeof CSV_EXPORT_BATCH_MESSAGE
+  columnarRecords?: ColumnarRecords
+  records?: unknown[]
+  offset?: number
+  maxRows?: number
+}
+
+// The records of a result spilled to IndexedDB by the spill worker
+export type CsvExportSpilledMessage = {
+  type: typeof CSV_EXPORT_SPILLED_MESSAGE
+  sessionId: string
+  requestId: string
+  chunkCount: number
+  maxRows?: number
+}
+
+export type CsvExportEndMessage = {
+  type: typeof CSV_EXPORT_END_MESSAGE
+}
+
+export type CsvExportRequestMessage =
+  | CsvExportBatchMessage
+  | CsvExportSpilledMessage
+  | CsvExportEndMessage
+
+export type CsvExportResponseMessage =
+  | { type: typeof CSV_EXPORT_PART_MESSAGE; part: Blob; rows: number }
+  // The parts posted so far are to be dropped
+  | { type: typeof CSV_EXPORT_RESET_MESSAGE }
+  | { type: typeof CSV_EXPORT_DONE_MESSAGE; rows: number }
+  | { type: typeof CSV_EXPORT_ERROR_MESSAGE; message: string }
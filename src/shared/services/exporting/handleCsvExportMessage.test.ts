@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import { encodeRecordsColumnar } from '../bolt/boltMappings'
+import { SpillDatabase } from '../handleResultSpillMessage'
+import { CSVSerializer } from '../serializer'
+import {
+  CSV_EXPORT_BATCH_MESSAGE,
+  CSV_EXPORT_DONE_MESSAGE,
+  CSV_EXPORT_END_MESSAGE,
+  CSV_EXPORT_ERROR_MESSAGE,
+  CSV_EXPORT_PART_MESSAGE,
+  CSV_EXPORT_RESET_MESSAGE,
+  CSV_EXPORT_SPILLED_MESSAGE
+} from './csvExportMessages'
+import { handleCsvExportMessage } from './handleCsvExportMessage'
+
+const createRecords = (rowCount: number, first = 0) =>
+  Array.from(
+    { length: rowCount },
+    (_, i) =>
+      new (neo4j.types.Record as any)(
+        ['n', 'name'],
+        [neo4j.int(first + i), `n, ${first + i}`]
+      )
+  )
+
+const expectedCsv = (rowCount: number) => {
+  const csv = CSVSerializer(['n', 'name'])
+  csv.appendRows(
+    Array.from({ length: rowCount }, (_, i) => [`${i}`, `n, ${i}`])
+  )
+  return csv.output()
+}
+
+const readText = (blob: Blob): Promise<string> =>
+  new Promise(resolve => {
+    const reader = new FileReader()
+    reader.onload = () => resolve(reader.result as string)
+    reader.readAsText(blob)
+  })
+
+const readParts = (messages: any[]): Promise<string> =>
+  readText(
+    new Blob(
+      messages
+        .filter(message => message.type === CSV_EXPORT_PART_MESSAGE)
+        .map(message => message.part)
+    )
+  )
+
+const spillDatabase = (chunks: any[]): SpillDatabase => ({
+  putChunks: async () => undefined,
+  getChunk: async (_sessionId, requestId, index) =>
+    requestId === 'spilled' ? chunks[index] : undefined,
+  getRequestIds: async () => [],
+  deleteResults: async () => undefined,
+  deleteSessions: async () => undefined
+})
+
+describe('handleCsvExportMessage', () => {
+  test('writes the same CSV as the serializer', async () => {
+    // Given
+    const messages: any[] = []
+    const handle = handleCsvExportMessage(
+      message => messages.push(message),
+      async () => spillDatabase([])
+    )
+
+    // When
+    handle({
+      data: {
+        type: CSV_EXPORT_BATCH_MESSAGE,
+        columnarRecords: encodeRecordsColumnar(createRecords(3)),
+        offset: 0
+      }
+    })
+    handle({
+      data: {
+        type: CSV_EXPORT_BATCH_MESSAGE,
+        columnarRecords: encodeRecordsColumnar(createRecords(2, 3)),
+        offset: 3
+      }
+    })
+    await handle({ data: { type: CSV_EXPORT_END_MESSAGE } })
+
+    // Then
+    expect(await readParts(messages)).toBe(expectedCsv(5))
+    expect(messages[messages.length - 1]).toEqual({
+      type: CSV_EXPORT_DONE_MESSAGE,
+      rows: 5
+    })
+  })
+
+  test('leaves out the rows past maxRows', async () => {
+    // Given
+    const messages: any[] = []
+    const handle = handleCsvExportMessage(
+      message => messages.push(message),
+      async () => spillDatabase([])
+    )
+
+    // When
+    handle({
+      data: {
+        type: CSV_EXPORT_BATCH_MESSAGE,
+        columnarRecords: encodeRecordsColumnar(createRecords(4)),
+        maxRows: 3
+      }
+    })
+    await handle({ data: { type: CSV_EXPORT_END_MESSAGE } })
+
+    // Then
+    expect(await readParts(messages)).toBe(expectedCsv(3))
+    expect(messages[messages.length - 1]).toEqual({
+      type: CSV_EXPORT_DONE_MESSAGE,
+      rows: 3
+    })
+  })
+
+  test('posts parts as they fill up', async () => {
+    // Given
+    const messages: any[] = []
+    const handle = handleCsvExportMessage(
+      message => messages.push(message),
+      async () => spillDatabase([]),
+      20
+    )
+
+    // When
+    await handle({
+      data: {
+        type: CSV_EXPORT_BATCH_MESSAGE,
+        columnarRecords: encodeRecordsColumnar(createRecords(10))
+      }
+    })
+
+    // Then
+    const parts = messages.filter(m => m.type === CSV_EXPORT_PART_MESSAGE)
+    expect(parts.length).toBeGreaterThan(1)
+    expect(parts.map(part => part.rows)).toEqual(
+      [...parts.map(part => part.rows)].sort((a, b) => a - b)
+    )
+  })
+
+  test('starts over when a retried query streams from offset 0', async () => {
+    // Given
+    const messages: any[] = []
+    const handle = handleCsvExportMessage(
+      message => messages.push(message),
+      async () => spillDatabase([]),
+      1
+    )
+    const batch = {
+      type: CSV_EXPORT_BATCH_MESSAGE,
+      columnarRecords: encodeRecordsColumnar(createRecords(2)),
+      offset: 0
+    } as const
+
+    // When
+    handle({ data: batch })
+    handle({
+      data: {
+        ...batch,
+        columnarRecords: encodeRecordsColumnar(createRecords(2))
+      }
+    })
+    await handle({ data: { type: CSV_EXPORT_END_MESSAGE } })
+
+    // Then
+    const reset = messages.findIndex(m => m.type === CSV_EXPORT_RESET_MESSAGE)
+    expect(reset).toBeGreaterThan(0)
+    expect(await readParts(messages.slice(reset))).toBe(expectedCsv(2))
+  })
+
+  test('reads spilled results chunk by chunk', async () => {
+    // Given
+    const messages: any[] = []
+    const chunks = [
+      encodeRecordsColumnar(createRecords(3)),
+      encodeRecordsColumnar(createRecords(3, 3))
+    ]
+    const handle = handleCsvExportMessage(
+      message => messages.push(message),
+      async () => spillDatabase(chunks)
+    )
+
+    // When
+    handle({
+      data: {
+        type: CSV_EXPORT_SPILLED_MESSAGE,
+        sessionId: 'session',
+        requestId: 'spilled',
+        chunkCount: 2
+      }
+    })
+    await handle({ data: { type: CSV_EXPORT_END_MESSAGE } })
+
+    // Then
+    expect(await readParts(messages)).toBe(expectedCsv(6))
+  })
+
+  test('stops at the first error', async () => {
+    // Given
+    const messages: any[] = []
+    const handle = handleCsvExportMessage(
+      message => messages.push(message),
+      async () => spillDatabase([])
+    )
+
+    // When
+    handle({
+      data: {
+        type: CSV_EXPORT_SPILLED_MESSAGE,
+        sessionId: 'session',
+        requestId: 'missing',
+        chunkCount: 1
+      }
+    })
+    await handle({ data: { type: CSV_EXPORT_END_MESSAGE } })
+
+    // Then
+    expect(messages).toEqual([
+      {
+        type: CSV_EXPORT_ERROR_MESSAGE,
+        message: 'Spilled result missing not found'
+      }
+    ])
+  })
+
+  test('ignores other messages', async () => {
+    // Given
+    const postMessage = jest.fn()
+    const handle = handleCsvExportMessage(postMessage, async () =>
+      spillDatabase([])
+    )
+
+    // When
+    await handle({ data: { type: 'SPILL_READ_MESSAGE' } as any })
+
+    // Then
+    expect(postMessage).not.toHaveBeenCalled()
+  })
+})
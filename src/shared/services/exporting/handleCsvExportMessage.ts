@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import {
+  applyGraphTypes,
+  decodeRecordsColumnar,
+  flattenGraphItems
+} from '../bolt/boltMappings'
+import { csvFormat } from '../bolt/cypherTypesFormatting'
+import { SpillDatabase } from '../handleResultSpillMessage'
+import { csvNewline, serializeCsvRow } from '../serializer'
+import { stringifyMod } from '../utils'
+import {
+  CSV_EXPORT_BATCH_MESSAGE,
+  CSV_EXPORT_DONE_MESSAGE,
+  CSV_EXPORT_END_MESSAGE,
+  CSV_EXPORT_ERROR_MESSAGE,
+  CSV_EXPORT_PART_MESSAGE,
+  CSV_EXPORT_RESET_MESSAGE,
+  CSV_EXPORT_SPILLED_MESSAGE,
+  CsvExportBatchMessage,
+  CsvExportRequestMessage,
+  CsvExportResponseMessage
+} from './csvExportMessages'
+
+// Characters of CSV buffered before they are posted as a Blob part
+export const CSV_EXPORT_PART_CHARS = 1024 * 1024
+
+const csvExportRequestTypes: string[] = [
+  CSV_EXPORT_BATCH_MESSAGE,
+  CSV_EXPORT_SPILLED_MESSAGE,
+  CSV_EXPORT_END_MESSAGE
+]
+
+const toRecords = (data: CsvExportBatchMessage): any[] => {
+  if (data.columnarRecords) {
+    return decodeRecordsColumnar(data.columnarRecords)
+  }
+  return (data.records || []).map(
+    (record: any) =>
+      new (neo4j.types.Record as any)(
+        record.keys,
+        applyGraphTypes(record._fields),
+        record._fieldLookup
+      )
+  )
+}
+
+/**
+ * Serializes the records it is sent to CSV, the output is posted in Blob
+ * parts so neither the records nor the whole text are kept in memory.
+ * The lines are the same as the ones of `CSVSerializer`.
+ */
+export const handleCsvExportMessage = (
+  postMessage: (msg: CsvExportResponseMessage) => void,
+  getDatabase: () => Promise<SpillDatabase>,
+  partChars = CSV_EXPORT_PART_CHARS
+): ((message: { data: CsvExportRequestMessage }) => Promise<void>) => {
+  let lines: string[] = []
+  let bufferedChars = 0
+  let hasHeader = false
+  let rows = 0
+  let failed = false
+  let queue = Promise.resolve()
+
+  const flush = () => {
+    if (lines.length) {
+      const part = new Blob(lines, { type: 'text/plain;charset=utf-8' })
+      postMessage({ type: CSV_EXPORT_PART_MESSAGE, part, rows })
+      lines = []
+      bufferedChars = 0
+    }
+  }
+
+  const writeLine = (values: string[]) => {
+    const line = serializeCsvRow(values)
+    lines.push(hasHeader || lines.length ? csvNewline + line : line)
+    bufferedChars += line.length + 1
+    if (bufferedChars >= partChars) {
+      flush()
+    }
+  }
+
+  const writeRecords = (records: any[], maxRows = Infinity) => {
+    records.slice(0, Math.max(maxRows - rows, 0)).forEach(record => {
+      if (!hasHeader) {
+        writeLine(
+          record.keys.map((key: string) => stringifyMod(key, csvFormat))
+        )
+        hasHeader = true
+      }
+      rows++
+      writeLine(
+        record.keys.map((_key: string, column: number) =>
+          stringifyMod(
+            flattenGraphItems(neo4j.types, neo4j.isInt, record.get(column)),
+            csvFormat
+          )
+        )
+      )
+    })
+  }
+
+  const handleMessage = async (data: CsvExportRequestMessage) => {
+    switch (data.type) {
+      case CSV_EXPORT_BATCH_MESSAGE:
+        // A retried transaction starts over from offset 0
+        if (data.offset === 0 && hasHeader) {
+          lines = []
+          bufferedChars = 0
+          hasHeader = false
+          rows = 0
+          postMessage({ type: CSV_EXPORT_RESET_MESSAGE })
+        }
+        writeRecords(toRecords(data), data.maxRows)
+        break
+      case CSV_EXPORT_SPILLED_MESSAGE:
+        const db = await getDatabase()
+        for (let index = 0; index < data.chunkCount; index++) {
+          const chunk = await db.getChunk(
+            data.sessionId,
+            data.requestId,
+            index
+          )
+          if (!chunk) {
+            throw new Error(`Spilled result ${data.requestId} not found`)
+          }
+          writeRecords(decodeRecordsColumnar(chunk), data.maxRows)
+        }
+        break
+      case CSV_EXPORT_END_MESSAGE:
+        flush()
+        postMessage({ type: CSV_EXPORT_DONE_MESSAGE, rows })
+        break
+    }
+  }
+
+  return ({ data }) => {
+    if (!csvExportRequestTypes.includes(data?.type)) {
+      return queue
+    }
+    // Batches are written in the order they were received
+    queue = queue.then(async () => {
+      if (failed) {
+        return
+      }
+      try {
+        await handleMessage(data)
+      } catch (e) {
+        failed = true
+        postMessage({ type: CSV_EXPORT_ERROR_MESSAGE, message: e.message })
+      }
+    })
+    return queue
+  }
+}
@@ -39,7 +39,11 @@ export const prepareForExport = (
     }
     case 'graph':
     default:
-      svg = appendGraphLayers(svgElement, svg)
+      // Large graphs are drawn on a canvas, they have an svg just for exports
+      svg = appendGraphLayers(
+        graphElement.getExportSvgElement?.() ?? svgElement,
+        svg
+      )
   }
 
   svg.selectAll('.overlay, .ring').remove()
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import neo4j from 'neo4j-driver'
+
+import {
+  ColumnarRecords,
+  decodeRecordsColumnar,
+  encodeRecordsColumnar
+} from './bolt/boltMappings'
+import {
+  SpillDatabase,
+  handleResultSpillMessage
+} from './handleResultSpillMessage'
+import {
+  SPILL_CHUNK_MESSAGE,
+  SPILL_DONE_MESSAGE,
+  SPILL_ERROR_MESSAGE,
+  SPILL_READ_MESSAGE,
+  SPILL_RETAIN_MESSAGE,
+  SPILL_WRITE_MESSAGE
+} from './resultSpillMessages'
+
+class MemorySpillDatabase implements SpillDatabase {
+  chunks = new Map<string, ColumnarRecords[]>()
+  deletedSessions: string[] = []
+
+  async putChunks(sessionId: string, requestId: string, chunks: any[]) {
+    this.chunks.set(`${sessionId}/${requestId}`, chunks)
+  }
+  async getChunk(sessionId: string, requestId: string, index: number) {
+    return this.chunks.get(`${sessionId}/${requestId}`)?.[index]
+  }
+  async getRequestIds(sessionId: string) {
+    return Array.from(this.chunks.keys())
+      .filter(key => key.startsWith(`${sessionId}/`))
+      .map(key => key.split('/')[1])
+  }
+  async deleteResults(sessionId: string, requestIds: string[]) {
+    requestIds.forEach(id => this.chunks.delete(`${sessionId}/${id}`))
+  }
+  async deleteSessions(_before: number, keepSessionId: string) {
+    this.deletedSessions.push(keepSessionId)
+  }
+}
+
+const createColumnar = (rowCount: number) =>
+  encodeRecordsColumnar(
+    Array.from(
+      { length: rowCount },
+      (_, i) =>
+        new (neo4j.types.Record as any)(['n', 'name'], [neo4j.int(i), `n${i}`])
+    )
+  )
+
+describe('handleResultSpillMessage', () => {
+  test('writes, reads back and deletes spilled results', async () => {
+    // Given
+    const db = new MemorySpillDatabase()
+    const postMessage = jest.fn()
+    const handle = handleResultSpillMessage(postMessage, () =>
+      Promise.resolve(db)
+    )
+    const base = { sessionId: 's1', requestId: 'r1' }
+
+    // When
+    await handle({
+      data: {
+        ...base,
+        type: SPILL_WRITE_MESSAGE,
+        messageId: 1,
+        columnar: createColumnar(25),
+        chunkRows: 10
+      }
+    })
+    await handle({
+      data: { ...base, type: SPILL_READ_MESSAGE, messageId: 2, index: 1 }
+    })
+    await handle({
+      data: {
+        type: SPILL_RETAIN_MESSAGE,
+        sessionId: 's1',
+        messageId: 3,
+        requestIds: []
+      }
+    })
+    await handle({
+      data: { ...base, type: SPILL_READ_MESSAGE, messageId: 4, index: 1 }
+    })
+
+    // Then
+    const [written, read, retained, missing] = postMessage.mock.calls.map(
+      call => call[0]
+    )
+    expect(db.deletedSessions).toEqual(['s1'])
+    expect(written).toEqual({
+      type: SPILL_DONE_MESSAGE,
+      messageId: 1,
+      chunkCount: 3
+    })
+    expect(read.type).toBe(SPILL_CHUNK_MESSAGE)
+    expect(decodeRecordsColumnar(read.columnar)[0].get('name')).toBe('n10')
+    expect(retained).toEqual({ type: SPILL_DONE_MESSAGE, messageId: 3 })
+    expect(missing.type).toBe(SPILL_ERROR_MESSAGE)
+    expect(missing.messageId).toBe(4)
+  })
+})
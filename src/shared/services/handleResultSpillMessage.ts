@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import {
+  ColumnarRecords,
+  chunkColumnarRecords,
+  getColumnarTransferables
+} from './bolt/boltMappings'
+import {
+  SPILL_CHUNK_MESSAGE,
+  SPILL_DONE_MESSAGE,
+  SPILL_ERROR_MESSAGE,
+  SPILL_READ_MESSAGE,
+  SPILL_RETAIN_MESSAGE,
+  SPILL_WRITE_MESSAGE,
+  SpillRequestMessage,
+  SpillResponseMessage
+} from './resultSpillMessages'
+
+export const SPILL_DB_NAME = 'neo4j-browser-results'
+const CHUNKS_STORE = 'chunks'
+const SESSIONS_STORE = 'sessions'
+// Tabs that haven't written for this long are considered closed
+export const SPILL_SESSION_TTL_MS = 24 * 60 * 60 * 1000
+
+export interface SpillDatabase {
+  putChunks(
+    sessionId: string,
+    requestId: string,
+    chunks: ColumnarRecords[]
+  ): Promise<void>
+  getChunk(
+    sessionId: string,
+    requestId: string,
+    index: number
+  ): Promise<ColumnarRecords | undefined>
+  getRequestIds(sessionId: string): Promise<string[]>
+  deleteResults(sessionId: string, requestIds: string[]): Promise<void>
+  // Drops everything of other sessions last written before `before`
+  deleteSessions(before: number, keepSessionId: string): Promise<void>
+}
+
+const requestToPromise = <T>(request: IDBRequest<T>): Promise<T> =>
+  new Promise((resolve, reject) => {
+    request.onsuccess = () => resolve(request.result)
+    request.onerror = () => reject(request.error)
+  })
+
+const transactionToPromise = (transaction: IDBTransaction): Promise<void> =>
+  new Promise((resolve, reject) => {
+    transaction.oncomplete = () => resolve()
+    transaction.onerror = () => reject(transaction.error)
+    transaction.onabort = () => reject(transaction.error)
+  })
+
+// Chunks are keyed by [sessionId, requestId, index], arrays sort after
+// strings and numbers so [...prefix, []] is above every key of the prefix
+const keyPrefixRange = (...prefix: (string | number)[]): IDBKeyRange =>
+  IDBKeyRange.bound(prefix, [...prefix, []])
+
+class IndexedDbSpillDatabase implements SpillDatabase {
+  constructor(private readonly db: IDBDatabase) {}
+
+  putChunks(
+    sessionId: string,
+    requestId: string,
+    chunks: ColumnarRecords[]
+  ): Promise<void> {
+    const transaction = this.db.transaction(
+      [CHUNKS_STORE, SESSIONS_STORE],
+      'readwrite'
+    )
+    const chunksStore = transaction.objectStore(CHUNKS_STORE)
+    chunksStore.delete(keyPrefixRange(sessionId, requestId))
+    chunks.forEach((chunk, index) =>
+      chunksStore.put(chunk, [sessionId, requestId, index])
+    )
+    transaction.objectStore(SESSIONS_STORE).put(Date.now(), sessionId)
+    return transactionToPromise(transaction)
+  }
+
+  getChunk(
+    sessionId: string,
+    requestId: string,
+    index: number
+  ): Promise<ColumnarRecords | undefined> {
+    return requestToPromise(
+      this.db
+        .transaction(CHUNKS_STORE, 'readonly')
+        .objectStore(CHUNKS_STORE)
+        .get([sessionId, requestId, index])
+    )
+  }
+
+  async getRequestIds(sessionId: string): Promise<string[]> {
+    const keys = await requestToPromise(
+      this.db
+        .transaction(CHUNKS_STORE, 'readonly')
+        .objectStore(CHUNKS_STORE)
+        .getAllKeys(keyPrefixRange(sessionId))
+    )
+    return Array.from(new Set(keys.map(key => (key as string[])[1])))
+  }
+
+  deleteResults(sessionId: string, requestIds: string[]): Promise<void> {
+    const transaction = this.db.transaction(CHUNKS_STORE, 'readwrite')
+    const chunksStore = transaction.objectStore(CHUNKS_STORE)
+    requestIds.forEach(requestId =>
+      chunksStore.delete(keyPrefixRange(sessionId, requestId))
+    )
+    return transactionToPromise(transaction)
+  }
+
+  async deleteSessions(before: number, keepSessionId: string): Promise<void> {
+    const transaction = this.db.transaction(
+      [CHUNKS_STORE, SESSIONS_STORE],
+      'readwrite'
+    )
+    const sessionsStore = transaction.objectStore(SESSIONS_STORE)
+    const [sessionIds, writtenAt] = await Promise.all([
+      requestToPromise(sessionsStore.getAllKeys()),
+      requestToPromise(sessionsStore.getAll())
+    ])
+    sessionIds.forEach((sessionId, i) => {
+      if (sessionId !== keepSessionId && writtenAt[i] < before) {
+        transaction
+          .objectStore(CHUNKS_STORE)
+          .delete(keyPrefixRange(sessionId as string))
+        sessionsStore.delete(sessionId)
+      }
+    })
+    return transactionToPromise(transaction)
+  }
+}
+
+export const openSpillDatabase = (): Promise<SpillDatabase> => {
+  const request = indexedDB.open(SPILL_DB_NAME, 1)
+  request.onupgradeneeded = () => {
+    request.result.createObjectStore(CHUNKS_STORE)
+    request.result.createObjectStore(SESSIONS_STORE)
+  }
+  return requestToPromise(request).then(db => new IndexedDbSpillDatabase(db))
+}
+
+const spillRequestTypes: string[] = [
+  SPILL_WRITE_MESSAGE,
+  SPILL_READ_MESSAGE,
+  SPILL_RETAIN_MESSAGE
+]
+
+const handleMessage = async (
+  data: SpillRequestMessage,
+  db: SpillDatabase
+): Promise<SpillResponseMessage> => {
+  const { messageId, sessionId } = data
+  switch (data.type) {
+    case SPILL_WRITE_MESSAGE:
+      const chunks = chunkColumnarRecords(data.columnar, data.chunkRows)
+      await db.putChunks(sessionId, data.requestId, chunks)
+      return { type: SPILL_DONE_MESSAGE, messageId, chunkCount: chunks.length }
+    case SPILL_READ_MESSAGE:
+      const columnar = await db.getChunk(sessionId, data.requestId, data.index)
+      if (!columnar) {
+        throw new Error(`Spilled result ${data.requestId} not found`)
+      }
+      return { type: SPILL_CHUNK_MESSAGE, messageId, columnar }
+    case SPILL_RETAIN_MESSAGE:
+      const retained = new Set(data.requestIds)
+      const requestIds = await db.getRequestIds(sessionId)
+      await db.deleteResults(
+        sessionId,
+        requestIds.filter(requestId => !retained.has(requestId))
+      )
+      return { type: SPILL_DONE_MESSAGE, messageId }
+  }
+}
+
+export const handleResultSpillMessage = (
+  postMessage: (msg: any, options?: any) => void,
+  getDatabase: () => Promise<SpillDatabase>
+): ((message: { data: SpillRequestMessage }) => Promise<void>) => {
+  let database: Promise<SpillDatabase> | null = null
+  const openDatabase = (sessionId: string): Promise<SpillDatabase> => {
+    if (!database) {
+      // Results of closed tabs are dropped once per worker
+      database = getDatabase().then(db =>
+        db
+          .deleteSessions(Date.now() - SPILL_SESSION_TTL_MS, sessionId)
+          .then(() => db)
+      )
+      database.catch(() => {
+        database = null
+      })
+    }
+    return database
+  }
+  return async ({ data }) => {
+    if (!spillRequestTypes.includes(data?.type)) {
+      return
+    }
+    try {
+      const db = await openDatabase(data.sessionId)
+      const response = await handleMessage(data, db)
+      if (response.type === SPILL_CHUNK_MESSAGE) {
+        postMessage(response, getColumnarTransferables(response.columnar))
+      } else {
+        postMessage(response)
+      }
+    } catch (e) {
+      postMessage({
+        type: SPILL_ERROR_MESSAGE,
+        messageId: data.messageId,
+        message: e.message
+      })
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import {
+  clearQueryTimings,
+  formatQueryTimings,
+  formatQueryTimingsTotal,
+  getQueryPhasePercentiles,
+  getQueryTimings,
+  getRecentQueryTimings,
+  recordQueryPhase,
+  subscribeToQueryTimings
+} from './queryTimings'
+
+describe('queryTimings', () => {
+  afterEach(() => {
+    clearQueryTimings()
+  })
+  test('stamps phases per request', () => {
+    // When
+    recordQueryPhase('a', 'queue', 3)
+    recordQueryPhase('a', 'execution', 10.4)
+    recordQueryPhase('b', 'queue', -1)
+
+    // Then
+    expect(getQueryTimings('a')).toEqual({ queue: 3, execution: 10.4 })
+    expect(getQueryTimings('b')).toEqual({ queue: 0 })
+    expect(formatQueryTimings(getQueryTimings('a')!)).toBe(
+      'queue 3, execution 10 ms'
+    )
+    expect(formatQueryTimingsTotal(getQueryTimings('a')!)).toBe(
+      '13 ms in browser and worker'
+    )
+    expect(Object.keys(getRecentQueryTimings(1))).toEqual(['b'])
+  })
+  test('notifies subscribers of the request until they unsubscribe', () => {
+    // Given
+    const listener = jest.fn()
+    const unsubscribe = subscribeToQueryTimings('a', listener)
+
+    // When
+    recordQueryPhase('a', 'render', 5)
+    recordQueryPhase('b', 'render', 5)
+    unsubscribe()
+    recordQueryPhase('a', 'render', 6)
+
+    // Then
+    expect(listener).toHaveBeenCalledTimes(1)
+  })
+  test('aggregates percentiles per phase', () => {
+    // When
+    for (let i = 1; i <= 100; i++) {
+      recordQueryPhase(`request-${i}`, 'transfer', i)
+    }
+
+    // Then
+    expect(getQueryPhasePercentiles()).toEqual({
+      transfer: { count: 100, p50: 51, p90: 91, p99: 100 }
+    })
+  })
+})
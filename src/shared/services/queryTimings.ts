@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Where the time of a query went, per requestId. Phases in order:
+ * - queue: waiting in the WorkPool for a free worker
+ * - dispatch: posting to the worker until it picks the message up,
+ *   includes booting a new worker
+ * - connection: driver and session setup in the worker
+ * - execution: running the query and consuming the result in the worker
+ * - serialization: preparing the response message in the worker
+ * - transfer: posting the response back to the main thread
+ * - rehydration: restoring driver types on the main thread
+ * - render: from storing the result until the frame has rendered it
+ */
+export const QUERY_PHASES = [
+  'queue',
+  'dispatch',
+  'connection',
+  'execution',
+  'serialization',
+  'transfer',
+  'rehydration',
+  'render'
+] as const
+export type QueryPhase = typeof QUERY_PHASES[number]
+export type QueryTimings = Partial<Record<QueryPhase, number>>
+export type PhasePercentiles = {
+  count: number
+  p50: number
+  p90: number
+  p99: number
+}
+
+// Timings of the most recent requests, and samples for the percentiles
+const MAX_TRACKED_REQUESTS = 200
+const MAX_SAMPLES_PER_PHASE = 1000
+
+const timingsByRequestId = new Map<string, QueryTimings>()
+const listenersByRequestId = new Map<string, Set<() => void>>()
+const samples = QUERY_PHASES.reduce(
+  (all, phase) => ({ ...all, [phase]: [] }),
+  {} as Record<QueryPhase, number[]>
+)
+
+export function recordQueryPhase(
+  requestId: string,
+  phase: QueryPhase,
+  ms: number
+): void {
+  if (!Number.isFinite(ms)) {
+    return
+  }
+  const duration = Math.max(0, ms)
+  let timings = timingsByRequestId.get(requestId)
+  if (!timings) {
+    timings = {}
+    timingsByRequestId.set(requestId, timings)
+    if (timingsByRequestId.size > MAX_TRACKED_REQUESTS) {
+      timingsByRequestId.delete(timingsByRequestId.keys().next().value)
+    }
+  }
+  timings[phase] = duration
+
+  const phaseSamples = samples[phase]
+  phaseSamples.push(duration)
+  if (phaseSamples.length > MAX_SAMPLES_PER_PHASE) {
+    phaseSamples.shift()
+  }
+  listenersByRequestId.get(requestId)?.forEach(listener => listener())
+}
+
+/**
+ * Calls `listener` whenever a phase of `requestId` is recorded, returns
+ * the function to unsubscribe.
+ */
+export function subscribeToQueryTimings(
+  requestId: string,
+  listener: () => void
+): () => void {
+  let listeners = listenersByRequestId.get(requestId)
+  if (!listeners) {
+    listeners = new Set()
+    listenersByRequestId.set(requestId, listeners)
+  }
+  listeners.add(listener)
+  return () => {
+    listeners?.delete(listener)
+    if (!listeners?.size) {
+      listenersByRequestId.delete(requestId)
+    }
+  }
+}
+
+export const getQueryTimings = (requestId: string): QueryTimings | undefined =>
+  timingsByRequestId.get(requestId)
+
+export const getRecentQueryTimings = (
+  limit = MAX_TRACKED_REQUESTS
+): Record<string, QueryTimings> =>
+  Array.from(timingsByRequestId.entries())
+    .slice(-limit)
+    .reduce(
+      (all, [requestId, timings]) => ({ ...all, [requestId]: timings }),
+      {}
+    )
+
+const percentile = (sorted: number[], p: number): number =>
+  sorted[Math.min(sorted.length - 1, Math.floor((p / 100) * sorted.length))]
+
+export function getQueryPhasePercentiles(): Partial<
+  Record<QueryPhase, PhasePercentiles>
+> {
+  const result: Partial<Record<QueryPhase, PhasePercentiles>> = {}
+  QUERY_PHASES.forEach(phase => {
+    const sorted = [...samples[phase]].sort((a, b) => a - b)
+    if (sorted.length) {
+      result[phase] = {
+        count: sorted.length,
+        p50: percentile(sorted, 50),
+        p90: percentile(sorted, 90),
+        p99: percentile(sorted, 99)
+      }
+    }
+  })
+  return result
+}
+
+export const formatQueryTimings = (timings: QueryTimings): string =>
+  QUERY_PHASES.filter(phase => timings[phase] !== undefined)
+    .map(phase => `${phase} ${Math.round(timings[phase]!)}`)
+    .join(', ') + ' ms'
+
+export const formatQueryTimingsTotal = (timings: QueryTimings): string =>
+  `${Math.round(
+    QUERY_PHASES.reduce((sum, phase) => sum + (timings[phase] ?? 0), 0)
+  )} ms in browser and worker`
+
+export function clearQueryTimings(): void {
+  timingsByRequestId.clear()
+  QUERY_PHASES.forEach(phase => {
+    samples[phase] = []
+  })
+}
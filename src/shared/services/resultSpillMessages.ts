@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { ColumnarRecords } from './bolt/boltMappings'
+
+export const SPILL_WRITE_MESSAGE = 'SPILL_WRITE_MESSAGE'
+export const SPILL_READ_MESSAGE = 'SPILL_READ_MESSAGE'
+export const SPILL_RETAIN_MESSAGE = 'SPILL_RETAIN_MESSAGE'
+export const SPILL_DONE_MESSAGE = 'SPILL_DONE_MESSAGE'
+export const SPILL_CHUNK_MESSAGE = 'SPILL_CHUNK_MESSAGE'
+export const SPILL_ERROR_MESSAGE = 'SPILL_ERROR_MESSAGE'
+
+// Every message is scoped to the browser tab that spilled the results
+type SpillMessageBase = {
+  messageId: number
+  sessionId: string
+}
+
+export type SpillWriteMessage = SpillMessageBase & {
+  type: typeof SPILL_WRITE_MESSAGE
+  requestId: string
+  columnar: ColumnarRecords
+  chunkRows: number
+}
+
+export type SpillReadMessage = SpillMessageBase & {
+  type: typeof SPILL_READ_MESSAGE
+  requestId: string
+  index: number
+}
+
+// Deletes the results of the session that are not listed
+export type SpillRetainMessage = SpillMessageBase & {
+  type: typeof SPILL_RETAIN_MESSAGE
+  requestIds: string[]
+}
+
+export type SpillRequestMessage =
+  | SpillWriteMessage
+  | SpillReadMessage
+  | SpillRetainMessage
+
+export type SpillResponseMessage =
+  | { type: typeof SPILL_DONE_MESSAGE; messageId: number; chunkCount?: number }
+  | {
+      type: typeof SPILL_CHUNK_MESSAGE
+      messageId: number
+      columnar: ColumnarRecords
+    }
+  | { type: typeof SPILL_ERROR_MESSAGE; messageId: number; message: string }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+import { Record as Neo4jRecord, QueryResult } from 'neo4j-driver'
+import { v4 as uuid } from 'uuid'
+
+import { decodeRecordsColumnar } from './bolt/boltMappings'
+import {
+  SPILL_CHUNK_MESSAGE,
+  SPILL_ERROR_MESSAGE,
+  SPILL_READ_MESSAGE,
+  SPILL_RETAIN_MESSAGE,
+  SPILL_WRITE_MESSAGE,
+  SpillRequestMessage,
+  SpillResponseMessage
+} from './resultSpillMessages'
+import ResultSpillWorker from 'shared/services/resultSpillWorker'
+import { CompactQueryResult } from 'shared/modules/requests/compactResult'
+
+// Results estimated above this are also written to IndexedDB. Results are
+// capped at the max rows setting, so only wide rows get anywhere near this
+export const SPILL_THRESHOLD_BYTES = 1024 * 1024
+export const SPILL_CHUNK_ROWS = 1000
+
+/**
+ * What a request keeps of a spilled result, the records are read back
+ * from IndexedDB in chunks of `chunkRows`.
+ */
+export type SpillHandle = {
+  requestId: string
+  rowCount: number
+  chunkRows: number
+  chunkCount: number
+  summary: QueryResult['summary']
+}
+
+type DistributiveOmit<T, K extends keyof any> = T extends unknown
+  ? Omit<T, K>
+  : never
+
+const sessionId = uuid()
+let worker: ResultSpillWorker | null = null
+let nextMessageId = 0
+const pendingMessages = new Map<
+  number,
+  {
+    resolve: (response: SpillResponseMessage) => void
+    reject: (error: Error) => void
+  }
+>()
+
+// Spilled results are stored under the session of the tab
+export const getSpillSessionId = (): string => sessionId
+
+export const isSpillSupported = (): boolean =>
+  typeof Worker !== 'undefined' && typeof indexedDB !== 'undefined'
+
+const getWorker = (): ResultSpillWorker => {
+  if (!worker) {
+    worker = new ResultSpillWorker()
+    worker.onmessage = ({ data }: { data: SpillResponseMessage }) => {
+      const pending = pendingMessages.get(data.messageId)
+      pendingMessages.delete(data.messageId)
+      if (data.type === SPILL_ERROR_MESSAGE) {
+        pending?.reject(new Error(data.message))
+      } else {
+        pending?.resolve(data)
+      }
+    }
+  }
+  return worker
+}
+
+const postSpillMessage = (
+  message: DistributiveOmit<SpillRequestMessage, 'messageId' | 'sessionId'>
+): Promise<SpillResponseMessage> =>
+  new Promise((resolve, reject) => {
+    const messageId = nextMessageId++
+    pendingMessages.set(messageId, { resolve, reject })
+    getWorker().postMessage({ ...message, messageId, sessionId })
+  })
+
+/**
+ * Writes a result to IndexedDB from the spill worker, the result is
+ * copied to the worker and stays usable.
+ */
+export const spillResult = async (
+  requestId: string,
+  result: CompactQueryResult
+): Promise<SpillHandle> => {
+  const response = await postSpillMessage({
+    type: SPILL_WRITE_MESSAGE,
+    requestId,
+    columnar: result.columnar,
+    chunkRows: SPILL_CHUNK_ROWS
+  })
+  return {
+    requestId,
+    rowCount: result.columnar.rowCount,
+    chunkRows: SPILL_CHUNK_ROWS,
+    chunkCount: 'chunkCount' in response ? response.chunkCount ?? 0 : 0,
+    summary: result.summary
+  }
+}
+
+const readSpilledChunk = async (
+  handle: SpillHandle,
+  index: number
+): Promise<Neo4jRecord[]> => {
+  const response = await postSpillMessage({
+    type: SPILL_READ_MESSAGE,
+    requestId: handle.requestId,
+    index
+  })
+  return response.type === SPILL_CHUNK_MESSAGE
+    ? decodeRecordsColumnar(response.columnar)
+    : []
+}
+
+/**
+ * Reads the records from `start` up to `end` of a spilled result,
+ * only the chunks holding them are read.
+ */
+export async function readSpilledRecords(
+  handle: SpillHandle,
+  start = 0,
+  end = handle.rowCount
+): Promise<Neo4jRecord[]> {
+  const { chunkRows } = handle
+  const firstChunk = Math.floor(start / chunkRows)
+  const lastChunk = Math.min(
+    Math.ceil(Math.min(end, handle.rowCount) / chunkRows),
+    handle.chunkCount
+  )
+  const chunkIndexes: number[] = []
+  for (let i = firstChunk; i < lastChunk; i++) {
+    chunkIndexes.push(i)
+  }
+  const chunks = await Promise.all(
+    chunkIndexes.map(index => readSpilledChunk(handle, index))
+  )
+  const offset = firstChunk * chunkRows
+  return ([] as Neo4jRecord[])
+    .concat(...chunks)
+    .slice(start - offset, end - offset)
+}
+
+export const readSpilledResult = async (
+  handle: SpillHandle
+): Promise<QueryResult> => ({
+  records: await readSpilledRecords(handle),
+  summary: handle.summary
+})
+
+/**
+ * Deletes the spilled results of this tab not listed in `requestIds`.
+ */
+export const retainSpilledResults = async (
+  requestIds: string[]
+): Promise<void> => {
+  // Nothing was spilled if the worker hasn't been started
+  if (worker) {
+    await postSpillMessage({ type: SPILL_RETAIN_MESSAGE, requestIds })
+  }
+}
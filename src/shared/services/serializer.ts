@@ -19,7 +19,7 @@
  */
 
 const csvDelimiter = ','
-const csvNewline = '\n'
+export const csvNewline = '\n'
 
 const csvEscape = (str: any) => {
   if (!isString(str)) return str
@@ -46,6 +46,9 @@ const csvChain = (input: any) =>
     .map(csvEscape)
     .join(csvDelimiter)
 
+// One line of CSV output, without the newline
+export const serializeCsvRow = (input: any): string => csvChain(input)
+
 export const CSVSerializer = (cols: any) => {
   const _cols = cols
   const _data: any = []